@@ -0,0 +1,31 @@
+package ptolemy.myactors.MaximumEntropy;
+
+/**
+ * Turns the samples of a {@link SampleBatch} into the byte[] values of the
+ * channel attributes and back. The master and the slaves must use the same
+ * codec, it is chosen with the attributeCodec parameter of the directors.
+ *
+ * @see AttributeCodecs
+ * @author adapted by Alisson Brito
+ */
+public interface AttributeCodec {
+
+	/** @return the name of the codec, as given in the director parameter */
+	public String getName();
+
+	/** @return the attribute value for sample <i>index</i> of the batch */
+	public byte[] encode(SampleBatch batch, int index);
+
+	/**
+	 * Decode one attribute value and append the sample to <i>into</i>.
+	 *
+	 * @param channel
+	 *            the channel of the reflected attribute, -1 if unknown
+	 * @param time
+	 *            the time of the reflect, used when the value carries none
+	 * @exception IllegalArgumentException
+	 *                If the value cannot be decoded.
+	 */
+	public void decode(int channel, byte[] data, int offset, int length,
+			double time, SampleBatch into);
+}
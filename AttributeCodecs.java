@@ -0,0 +1,33 @@
+package ptolemy.myactors.MaximumEntropy;
+
+/**
+ * The available {@link AttributeCodec}s, by the name used in the
+ * attributeCodec director parameter.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class AttributeCodecs {
+
+	/** "canalN:value" strings, the original format */
+	public static final String STRING = "string";
+
+	/** Fixed layout binary samples, see {@link BinaryAttributeCodec} */
+	public static final String BINARY = "binary";
+
+	private AttributeCodecs() {
+	}
+
+	/**
+	 * @return the codec with the given name
+	 * @exception IllegalArgumentException
+	 *                If there is no codec with that name.
+	 */
+	public static AttributeCodec forName(String name) {
+		if (STRING.equals(name)) {
+			return new StringAttributeCodec();
+		} else if (BINARY.equals(name)) {
+			return new BinaryAttributeCodec();
+		}
+		throw new IllegalArgumentException("Unknown attribute codec: " + name);
+	}
+}
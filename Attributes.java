@@ -1,44 +1,217 @@
 package ptolemy.myactors.MaximumEntropy;
 
+import hla.rti.ArrayIndexOutOfBounds;
 import hla.rti.LogicalTime;
 import hla.rti.ReceivedInteraction;
 import hla.rti.ReflectedAttributes;
+import certi.rti.impl.CertiLogicalTime;
 
 
+/**
+ * One reflection received from the RTI.
+ * <p/>
+ * The FederateAmbassador does not keep the ReflectedAttributes of the RTI,
+ * it copies their values with {@link #copy(double, ReflectedAttributes)}
+ * into buffers kept by attribute handle, and pools the Attributes objects.
+ * Once the buffers have grown to the largest value of each attribute, a
+ * reflection allocates nothing. Read the values with {@link #size()},
+ * {@link #getAttributeHandle(int)}, {@link #getValueReference(int)} and
+ * {@link #getValueLength(int)}; the arrays are only valid until the
+ * Attributes are recycled by the director after the actor firing.
+ */
 public class Attributes {
-	
+
 	 private LogicalTime receivedTime 			= null;
 	 private ReflectedAttributes receivedData 	= null;
-	 
-	 
+	 // the channel samples of receivedData, decoded by the federate
+	 private SampleBatch samples 				= null;
+
+	 // copied reflection: time, handles in reflection order, and the value
+	 // of each handle in buffers indexed by attribute handle
+	 private double time 						= 0.0;
+	 private int size 							= 0;
+	 private int[] handles 						= new int[4];
+	 private int[] lengths 						= new int[4];
+	 private byte[][] buffers 					= new byte[4][];
+	 private SampleBatch sampleBuffer 			= null;
+
+	 // arrival order, breaks ties between reflections with the same time
+	 long sequence 								= 0;
+
+
 	 public Attributes(){
-		 
+
 	 }
-	 
-	 
+
+
 	public Attributes(LogicalTime receivedTime, ReflectedAttributes receivedData) {
 		super();
 		this.receivedTime = receivedTime;
 		this.receivedData = receivedData;
+		if (receivedTime != null) {
+			this.time = ((CertiLogicalTime) receivedTime).getTime();
+		}
+		if (receivedData != null) {
+			try {
+				copyValues(receivedData);
+			} catch (ArrayIndexOutOfBounds e) {
+				// won't happen, we stay below size()
+			}
+		}
+	}
+
+	/**
+	 * Copy a reflection into this object, reusing its buffers. The previous
+	 * content is forgotten.
+	 */
+	void copy(double time, ReflectedAttributes data) throws ArrayIndexOutOfBounds {
+		this.time = time;
+		this.receivedTime = null;
+		this.receivedData = null;
+		this.samples = null;
+		copyValues(data);
+	}
+
+	/**
+	 * Copy a reflection of a single attribute, as delivered by the
+	 * {@link LoopbackFederation}. The previous content is forgotten.
+	 */
+	void copy(double time, int handle, byte[] value, int length) {
+		this.time = time;
+		this.receivedTime = null;
+		this.receivedData = null;
+		this.samples = null;
+		size = 0;
+		copyValue(handle, value, length);
+	}
+
+	/** Forget the reflection, keeping the buffers for the next one */
+	void recycle() {
+		receivedTime = null;
+		receivedData = null;
+		samples = null;
+		size = 0;
+	}
+
+	private void copyValues(ReflectedAttributes data) throws ArrayIndexOutOfBounds {
+		size = 0;
+		int count = data.size();
+		if (handles.length < count) {
+			handles = new int[count];
+		}
+		for (int i = 0; i < count; i++) {
+			byte[] value = data.getValueReference(i);
+			copyValue(data.getAttributeHandle(i), value, value.length);
+		}
+	}
+
+	private void copyValue(int handle, byte[] value, int length) {
+		if (size >= handles.length) {
+			int[] newHandles = new int[handles.length * 2];
+			System.arraycopy(handles, 0, newHandles, 0, size);
+			handles = newHandles;
+		}
+		if (handle >= buffers.length) {
+			growBuffers(handle + 1);
+		}
+		byte[] buffer = buffers[handle];
+		if (buffer == null || buffer.length < length) {
+			buffer = new byte[length];
+			buffers[handle] = buffer;
+		}
+		System.arraycopy(value, 0, buffer, 0, length);
+		lengths[handle] = length;
+		handles[size++] = handle;
+	}
+
+	private void growBuffers(int capacity) {
+		capacity = Math.max(capacity, buffers.length * 2);
+		byte[][] newBuffers = new byte[capacity][];
+		int[] newLengths = new int[capacity];
+		System.arraycopy(buffers, 0, newBuffers, 0, buffers.length);
+		System.arraycopy(lengths, 0, newLengths, 0, lengths.length);
+		buffers = newBuffers;
+		lengths = newLengths;
+	}
+
+	/** @return the time stamp of the reflection */
+	public double getTime() {
+		return time;
 	}
-	
+
 	public LogicalTime getReceivedTime() {
+		if (receivedTime == null) {
+			// only built for the callers still using LogicalTime
+			receivedTime = new CertiLogicalTime(time);
+		}
 		return receivedTime;
 	}
-	
+
 	public void setReceivedTime(LogicalTime receivedTime) {
 		this.receivedTime = receivedTime;
+		if (receivedTime != null) {
+			this.time = ((CertiLogicalTime) receivedTime).getTime();
+		}
 	}
-	
+
+	/**
+	 * @return the RTI object this reflection was built from, or null when the
+	 *         values were copied by the FederateAmbassador
+	 */
 	public ReflectedAttributes getReceivedData() {
 		return receivedData;
 	}
-	
+
 	public void setReceivedData(ReflectedAttributes receivedData) {
 		this.receivedData = receivedData;
 	}
-	   
-	
-	
+
+	/** @return how many attributes were reflected */
+	public int size() {
+		return size;
+	}
+
+	public int getAttributeHandle(int i) {
+		return handles[i];
+	}
+
+	/**
+	 * @return the buffer holding the value of the i-th attribute, valid up to
+	 *         {@link #getValueLength(int)}; do not keep it
+	 */
+	public byte[] getValueReference(int i) {
+		return buffers[handles[i]];
+	}
+
+	public int getValueLength(int i) {
+		return lengths[handles[i]];
+	}
+
+	/**
+	 * @return the decoded channel samples, or null if the federate did not
+	 *         decode them yet
+	 */
+	public SampleBatch getSamples() {
+		return samples;
+	}
+
+	public void setSamples(SampleBatch samples) {
+		this.samples = samples;
+	}
+
+	/**
+	 * @return an empty batch owned by this object, for the federate to decode
+	 *         the samples into
+	 */
+	public SampleBatch getSampleBuffer() {
+		if (sampleBuffer == null) {
+			sampleBuffer = new SampleBatch(Math.max(size, 1));
+		}
+		sampleBuffer.clear();
+		return sampleBuffer;
+	}
+
+
+
 
 }
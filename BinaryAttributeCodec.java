@@ -0,0 +1,114 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Fixed layout binary samples, big endian, written with a ByteBuffer:
+ * 
+ * <pre>
+ * int and double samples (21 bytes)
+ *   byte   kind     SampleBatch.INT or SampleBatch.DOUBLE
+ *   int    channel
+ *   long   value    the int value, or the double bits
+ *   double time
+ * 
+ * string samples (17 bytes + text)
+ *   byte   kind     SampleBatch.STRING
+ *   int    channel
+ *   double time
+ *   int    length   of the UTF-8 text
+ *   byte[] text
+ * </pre>
+ * 
+ * Decoding reads the numbers straight from the attribute bytes, nothing is
+ * parsed and no String is created for numeric samples.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class BinaryAttributeCodec implements AttributeCodec {
+
+	/** Size of an int or double sample */
+	public static final int NUMBER_SIZE = 1 + 4 + 8 + 8;
+
+	/** Size of a string sample without its text */
+	public static final int STRING_HEADER_SIZE = 1 + 4 + 8 + 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public String getName() {
+		return AttributeCodecs.BINARY;
+	}
+
+	public byte[] encode(SampleBatch batch, int index) {
+		byte kind = batch.getKind(index);
+		if (kind == SampleBatch.STRING) {
+			byte[] text = batch.getString(index).getBytes(UTF8);
+			byte[] data = new byte[STRING_HEADER_SIZE + text.length];
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			buffer.put(kind);
+			buffer.putInt(batch.getChannel(index));
+			buffer.putDouble(batch.getTime(index));
+			buffer.putInt(text.length);
+			buffer.put(text);
+			return data;
+		}
+
+		byte[] data = new byte[NUMBER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		buffer.put(kind);
+		buffer.putInt(batch.getChannel(index));
+		buffer.putLong(batch.getBits(index));
+		buffer.putDouble(batch.getTime(index));
+		return data;
+	}
+
+	public void decode(int channel, byte[] data, int offset, int length,
+			double time, SampleBatch into) {
+		if (length < 1) {
+			throw new IllegalArgumentException("Empty binary sample");
+		}
+		// read by hand rather than through ByteBuffer.wrap(), so that decoding
+		// a numeric sample allocates nothing
+		byte kind = data[offset];
+		if (kind == SampleBatch.INT || kind == SampleBatch.DOUBLE) {
+			if (length < NUMBER_SIZE) {
+				throw new IllegalArgumentException("Binary sample too short: "
+						+ length + " bytes");
+			}
+			int sampleChannel = readInt(data, offset + 1);
+			long bits = readLong(data, offset + 5);
+			double sampleTime = Double.longBitsToDouble(readLong(data,
+					offset + 13));
+			into.addRaw(sampleChannel, kind, bits, sampleTime);
+		} else if (kind == SampleBatch.STRING) {
+			if (length < STRING_HEADER_SIZE) {
+				throw new IllegalArgumentException("Binary sample too short: "
+						+ length + " bytes");
+			}
+			int sampleChannel = readInt(data, offset + 1);
+			double sampleTime = Double.longBitsToDouble(readLong(data,
+					offset + 5));
+			int textLength = readInt(data, offset + 13);
+			if (textLength < 0 || textLength > length - STRING_HEADER_SIZE) {
+				throw new IllegalArgumentException("Bad text length: "
+						+ textLength);
+			}
+			String text = new String(data, offset + STRING_HEADER_SIZE,
+					textLength, UTF8);
+			into.addString(sampleChannel, text, sampleTime);
+		} else {
+			throw new IllegalArgumentException("Unknown sample kind: " + kind);
+		}
+	}
+
+	private static int readInt(byte[] data, int offset) {
+		return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+				| ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+	}
+
+	private static long readLong(byte[] data, int offset) {
+		return ((long) readInt(data, offset) << 32)
+				| (readInt(data, offset + 4) & 0xffffffffL);
+	}
+}
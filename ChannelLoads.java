@@ -0,0 +1,80 @@
+package ptolemy.myactors.MaximumEntropy;
+
+/**
+ * The load the slaves reported, by channel: how many reflections were
+ * waiting in the slave federate when it last reported. The master keeps it in
+ * its federate ambassador and the least loaded strategy of the
+ * {@link DataSeparator} reads it. Written by the thread delivering the RTI
+ * callbacks, read by the director thread.
+ * <p/>
+ * With CERTI a report travels as an InteractionRoot.X whose xa parameter is
+ * the string "load:N:backlog", sent receive ordered so that it does not take
+ * part in time management.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class ChannelLoads {
+
+	/** Start of the interaction parameter carrying a load report */
+	public static final String LOAD_PREFIX = "load:";
+
+	private int[] backlogs = new int[0];
+	private long[] reports = new long[0];
+
+	/** Record the backlog a slave reported for its channel */
+	public synchronized void report(int channel, int backlog) {
+		if (channel < 0) {
+			return;
+		}
+		if (channel >= backlogs.length) {
+			int[] grownBacklogs = new int[channel + 1];
+			long[] grownReports = new long[channel + 1];
+			System.arraycopy(backlogs, 0, grownBacklogs, 0, backlogs.length);
+			System.arraycopy(reports, 0, grownReports, 0, reports.length);
+			backlogs = grownBacklogs;
+			reports = grownReports;
+		}
+		backlogs[channel] = backlog;
+		reports[channel]++;
+	}
+
+	/** @return the last backlog reported for a channel, -1 if none was */
+	public synchronized int getBacklog(int channel) {
+		if (channel < 0 || channel >= reports.length || reports[channel] == 0) {
+			return -1;
+		}
+		return backlogs[channel];
+	}
+
+	/** @return how many reports were received for a channel */
+	public synchronized long getReportCount(int channel) {
+		return channel >= 0 && channel < reports.length ? reports[channel] : 0;
+	}
+
+	/** @return the interaction parameter value of a report */
+	public static String encode(int channel, int backlog) {
+		return LOAD_PREFIX + channel + ":" + backlog;
+	}
+
+	/**
+	 * Record the report carried by an interaction parameter value.
+	 *
+	 * @return false if the value is not a load report
+	 */
+	public boolean decode(String value) {
+		if (value == null || !value.startsWith(LOAD_PREFIX)) {
+			return false;
+		}
+		int colon = value.indexOf(':', LOAD_PREFIX.length());
+		if (colon < 0) {
+			return false;
+		}
+		try {
+			report(Integer.parseInt(value.substring(LOAD_PREFIX.length(),
+					colon)), Integer.parseInt(value.substring(colon + 1)));
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,94 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.RTIambassador;
+import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+import hla.rti.Region;
+
+import java.util.List;
+
+/**
+ * Data Distribution Management regions of the channels. Channel N covers
+ * [N, N + 1) on the first dimension of the routing space of the channel
+ * attributes: the master updates each canalN attribute with the region of
+ * its channel, and a slave subscribes with a region of that dimension, the
+ * one of its slave channel unless the settings give other bounds (a sensor
+ * area spanning several channels, say). The RTI then only delivers to a slave
+ * the channels its region overlaps.
+ * <p/>
+ * The FOM must give the canalN attributes a routing space, as in
+ * <code>(attribute canal1 reliable timestamp TestSpace)</code>.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class ChannelRegions {
+
+	private ChannelRegions() {
+	}
+
+	/** @return the lower bound of the subscription region of a slave */
+	public static long getLowerBound(FederateSettings settings) {
+		long bound = settings.getRegionLowerBound();
+		return bound >= 0 ? bound : settings.getSlaveChannel();
+	}
+
+	/** @return the upper bound, excluded, of the subscription region */
+	public static long getUpperBound(FederateSettings settings) {
+		long bound = settings.getRegionUpperBound();
+		return bound >= 0 ? bound : settings.getSlaveChannel() + 1;
+	}
+
+	/** @return true if the subscription region of a slave covers a channel */
+	public static boolean contains(FederateSettings settings, int channel) {
+		return channel < getUpperBound(settings)
+				&& channel + 1 > getLowerBound(settings);
+	}
+
+	/**
+	 * @return the routing space of the settings, or the one the FOM gives the
+	 *         channel attributes
+	 * @exception RTIinternalError
+	 *                If there is none.
+	 */
+	public static String getRoutingSpace(FederateSettings settings,
+			HandleRegistry handles) throws RTIinternalError {
+		String space = settings.getRoutingSpace();
+		if (space == null) {
+			space = handles.getChannelRoutingSpace();
+		}
+		if (space == null) {
+			throw new RTIinternalError("DDM needs a routing space: none is "
+					+ "set and the FOM gives none to the canalN attributes");
+		}
+		return space;
+	}
+
+	/**
+	 * Create a region of one extent, [lowerBound, upperBound) on the first
+	 * dimension of the routing space, and tell the RTI about it.
+	 */
+	public static Region createRegion(RTIambassador rtiamb,
+			HandleRegistry handles, String space, long lowerBound,
+			long upperBound) throws RTIexception {
+		List<String> dimensions = handles.getDimensions(space);
+		if (dimensions == null || dimensions.isEmpty()) {
+			throw new RTIinternalError("The FOM declares no dimension for "
+					+ "the routing space " + space);
+		}
+		int spaceHandle = rtiamb.getRoutingSpaceHandle(space);
+		int dimension = rtiamb.getDimensionHandle(dimensions.get(0),
+				spaceHandle);
+		Region region = rtiamb.createRegion(spaceHandle, 1);
+		region.setRangeLowerBound(0, dimension, lowerBound);
+		region.setRangeUpperBound(0, dimension, upperBound);
+		rtiamb.notifyAboutRegionModification(region);
+		return region;
+	}
+
+	/** Create the update region of a channel, [channel, channel + 1) */
+	public static Region createChannelRegion(RTIambassador rtiamb,
+			HandleRegistry handles, String space, int channel)
+			throws RTIexception {
+		return createRegion(rtiamb, handles, space, channel, channel + 1);
+	}
+}
@@ -32,6 +32,8 @@ import java.util.Queue;
 
 import javax.swing.JOptionPane;
 
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.Director;
 import ptolemy.actor.TypedAtomicActor;
 import ptolemy.actor.TypedIOPort;
 
@@ -39,11 +41,15 @@ import ptolemy.data.StringToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.StringParameter;
 
 import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.Location;
 import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.kernel.util.NamedObj;
+import ptolemy.myactors.MaximumEntropy.domain.HLADEDirector;
 
 //////////////////////////////////////////////////////////////////////////
 //// Locator
@@ -92,13 +98,20 @@ public class DataSeparator extends TypedAtomicActor {
 		super(container, name);
 
 		// Create and configure the ports.
+		// one channel per sensor
 		input = new TypedIOPort(this, "input", true, false);
+		input.setMultiport(true);
 
 		outputChannel1 = new TypedIOPort(this, "outputChannel1", false, true);
 		outputChannel1.setMultiport(true);
 		myValue.add(new StringToken(""));
 		myTime = 0;
 
+		strategy = new StringParameter(this, "strategy");
+		strategy.setExpression(LoadBalancingStrategies.ROUND_ROBIN);
+		strategy.addChoice(LoadBalancingStrategies.ROUND_ROBIN);
+		strategy.addChoice(LoadBalancingStrategies.HASH);
+		strategy.addChoice(LoadBalancingStrategies.LEAST_LOADED);
 	}
 
 	// /////////////////////////////////////////////////////////////////
@@ -153,6 +166,14 @@ public class DataSeparator extends TypedAtomicActor {
 	 */
 	public TypedIOPort outputChannel1;
 
+	/**
+	 * How the tokens are spread over the channels of <i>outputChannel1</i>:
+	 * "roundRobin" (the default) in turn, "hash" every token of a sensor, that
+	 * is of an <i>input</i> channel, to the same slave, or "leastLoaded" to
+	 * the slave with the smallest backlog, as reported by the slaves.
+	 */
+	public StringParameter strategy;
+
 
 	// private SlaveFederate rtiFederation;
 
@@ -160,46 +181,53 @@ public class DataSeparator extends TypedAtomicActor {
 	// // public methods ////
 
 	/**
-	 * Generate an event on the <i>output</i> port that indicates the current
-	 * position and time of the last input on the <i>input</i> port. The value
-	 * of the input is ignored.
+	 * If the parameter is <i>strategy</i>, use the strategy with that name.
+	 * 
+	 * @exception IllegalActionException
+	 *                If there is no strategy with that name.
+	 */
+	public void attributeChanged(Attribute attribute)
+			throws IllegalActionException {
+		if (attribute == strategy) {
+			try {
+				_strategy = LoadBalancingStrategies.forName(strategy
+						.stringValue());
+			} catch (IllegalArgumentException ex) {
+				throw new IllegalActionException(this, ex.getMessage());
+			}
+		} else {
+			super.attributeChanged(attribute);
+		}
+	}
+
+	/**
+	 * Send each token of the <i>input</i> channels, as a string, to the
+	 * channel of <i>outputChannel1</i> chosen by the strategy.
 	 */
-	
-	
-	private final int DATA_SIZE = 300;
-	private int countInteractions = 0;
-	
 	public void fire() throws IllegalActionException {
 		super.fire();
 
 		// System.out.println("MasterFederateActor - fire() at " +
 		// this.getDirector().getModelTime());
-		// dados recebidos do slave
-		if (input.hasToken(0)) {
-
-			Token inputValue = input.get(0);
-
-			IntToken val = (IntToken) inputValue;
-			//int value = val.intValue();
-			StringToken s =new StringToken (val.intValue()+"");// StringToken.convert(val);
-			// StringToken s = new StringToken(string);
-
-		
-			int faixa = DATA_SIZE/3;
-            //Parameter finalTime = (Parameter)getAttribute("timeWindow");
-
-			
-			if (countInteractions <= faixa ) { 
-				outputChannel1.send(0, s);
-				countInteractions++;
-			} else if (countInteractions > faixa && countInteractions <= (faixa*2)) {
-				outputChannel1.send(1, s);
-				countInteractions++;
-			}else{
-				outputChannel1.send(2, s);
-				countInteractions++;
-			}
+		int width = outputChannel1.getWidth();
+		ChannelLoads loads = null;
+		if (_strategy instanceof LeastLoadedStrategy) {
+			loads = _channelLoads();
+		}
+		for (int i = 0; i < input.getWidth(); i++) {
+			if (input.hasToken(i)) {
 
+				Token inputValue = input.get(i);
+				if (width == 0) {
+					continue;
+				}
+
+				IntToken val = (IntToken) inputValue;
+				StringToken s = new StringToken(val.intValue() + "");// StringToken.convert(val);
+
+				outputChannel1.send(_strategy.selectChannel(i, inputValue,
+						width, loads), s);
+			}
 		}
 
 	}
@@ -238,8 +266,10 @@ public class DataSeparator extends TypedAtomicActor {
 	 */
 	@Override
 	public void initialize() throws IllegalActionException {
-		// TODO Auto-generated method stub
 		super.initialize();
+		// a fresh strategy, the previous run must not skew this one
+		_strategy = LoadBalancingStrategies.forName(_strategy.getName());
+		_loads = null;
 	}
 
 	/*
@@ -253,4 +283,33 @@ public class DataSeparator extends TypedAtomicActor {
 		super.terminate();
 	}
 
+	/**
+	 * @return the backlogs the slaves reported to the federate of the
+	 *         enclosing HLA director, or null if there is none
+	 */
+	private ChannelLoads _channelLoads() {
+		if (_loads != null) {
+			return _loads;
+		}
+		NamedObj container = getContainer();
+		while (container instanceof CompositeActor) {
+			Director director = ((CompositeActor) container).getDirector();
+			if (director instanceof HLADEDirector) {
+				PtolemyFederate federate = ((HLADEDirector) director)
+						.getRTIFederation();
+				if (federate != null) {
+					_loads = federate.getChannelLoads();
+				}
+				return _loads;
+			}
+			container = container.getContainer();
+		}
+		return null;
+	}
+
+	/** The strategy given by the strategy parameter. */
+	private LoadBalancingStrategy _strategy = new RoundRobinStrategy();
+
+	/** The loads read by the leastLoaded strategy, found at the first firing. */
+	private ChannelLoads _loads;
 }
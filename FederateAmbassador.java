@@ -21,6 +21,15 @@ import hla.rti.ReceivedInteraction;
 import hla.rti.ReflectedAttributes;
 import hla.rti.jlc.EncodingHelpers;
 import hla.rti.jlc.NullFederateAmbassador;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ptolemy.kernel.util.DebugListener;
+
 import certi.rti.impl.CertiLogicalTime;
 
 /** 
@@ -34,31 +43,69 @@ public class FederateAmbassador extends NullFederateAmbassador
 	//                    STATIC VARIABLES  
 	//----------------------------------------------------------  
 
+	/** Default bound of the inbound reflection queue */
+	public static final int DEFAULT_RECEIVED_DATA_CAPACITY = 4096;
+
+	/** Lookahead the federates start with, also the adaptive lookahead cap */
+	public static final double DEFAULT_LOOKAHEAD = 1000.0;
+
+	/** Orders the queued reflections by time stamp and then arrival */
+	private static final Comparator<Attributes> BY_TIME = new Comparator<Attributes>()
+	{
+		public int compare(Attributes a, Attributes b)
+		{
+			if(a.getTime() != b.getTime())
+				return a.getTime() < b.getTime() ? -1 : 1;
+			return a.sequence < b.sequence ? -1
+					: (a.sequence == b.sequence ? 0 : 1);
+		}
+	};
+
 	//----------------------------------------------------------  
 	//                   INSTANCE VARIABLES  
 	//----------------------------------------------------------  
 	// these variables are accessible in the package  
-	protected double federateTime        = 0.0;  
-	protected double federateLookahead   = 1000.0;  
+	// volatile: written by the RTI pump thread when there is one, read by
+	// the director
+	protected volatile double federateTime = 0.0;  
+	protected volatile double federateLookahead = DEFAULT_LOOKAHEAD;  
 
-	protected boolean isRegulating       = false;  
-	protected boolean isConstrained      = false;  
-	protected boolean isAdvancing        = false;  
+	protected volatile boolean isRegulating = false;  
+	protected volatile boolean isConstrained = false;  
+	protected volatile boolean isAdvancing = false;  
 
-	protected boolean isAnnounced        = false;  
-	protected boolean isReadyToRun       = false;
-	protected boolean isRegistered		 = false;
+	protected volatile boolean isAnnounced = false;  
+	protected volatile boolean isReadyToRun = false;
+	protected volatile boolean isRegistered = false;
 
 	//angelo
-	protected static int qtdSlaves;
-	
-	protected boolean hasData 			= false;
+	// slaves discovered by any federate of this JVM
+	protected static final AtomicInteger qtdSlaves = new AtomicInteger();
+	// slaves discovered by this federate
+	private final AtomicInteger joinedSlaves = new AtomicInteger();
 	
 	//angelo - mudei
 	//protected Interaction receivedData 			= null;
 	
-	protected Attributes receivedData      = null;
-	protected LogicalTime lastReceivedTime = null;
+	// reflections not consumed yet, earliest time stamp first. Bounded so
+	// that a federate that stops reading cannot exhaust the heap.
+	protected PriorityQueue<Attributes> receivedData = new PriorityQueue<Attributes>(16, BY_TIME);
+	protected int receivedDataCapacity = DEFAULT_RECEIVED_DATA_CAPACITY;
+	protected long droppedData = 0;
+	private long receivedSequence = 0;
+	protected double lastReceivedTime = 0.0;
+
+	// recycled Attributes, their buffers are reused by the next reflections
+	private List<Attributes> pool = new ArrayList<Attributes>();
+
+	// debug messages are only formatted when someone listens
+	protected DebugListener debugListener = null;
+
+	// grants and reflections, recorded when the director traces the run
+	protected volatile TimeTrace timeTrace = null;
+
+	// backlogs the slaves reported, read by the DataSeparator of the master
+	protected final ChannelLoads channelLoads = new ChannelLoads();
 
 	//----------------------------------------------------------  
 	//                      CONSTRUCTORS  
@@ -69,6 +116,16 @@ public class FederateAmbassador extends NullFederateAmbassador
 
 	}  
 
+	/**
+	 * @param receivedDataCapacity
+	 *            how many reflections can wait to be consumed, the ones
+	 *            arriving when the queue is full are dropped
+	 */
+	public FederateAmbassador(int receivedDataCapacity)
+	{
+		this.receivedDataCapacity = Math.max(receivedDataCapacity, 1);
+	}
+
 
 	/*
 	 * angelo - mudando de Interaction para Attributes
@@ -100,26 +157,143 @@ public class FederateAmbassador extends NullFederateAmbassador
 	}
 */
 	//angelo - novo attributes
+	/**
+	 * Queue a reflection. Time stamped reflections are ordered by their time
+	 * stamp, receive ordered ones by the federate time they arrived at; equal
+	 * times keep the arrival order.
+	 */
 	public void dataReceived(LogicalTime theTime, ReflectedAttributes theAttributes){
-		lastReceivedTime = theTime;
-		receivedData = new Attributes(theTime, theAttributes);
-		hasData = true;
-		log("**** DataReceived  at " + theTime + " ***");
+		dataReceived(((CertiLogicalTime)theTime).getTime(), theAttributes);
+	}
+
+	/**
+	 * Copy a reflection into a pooled {@link Attributes} and queue it. The
+	 * RTI object is not kept, so it can be reused by the RTI.
+	 */
+	protected synchronized void dataReceived(double time, ReflectedAttributes theAttributes){
+		Attributes attrs = obtainAttributes(time);
+		if(attrs == null)
+			return;
+		try
+		{
+			attrs.copy(time, theAttributes);
+		}
+		catch( ArrayIndexOutOfBounds aioob )
+		{
+			// won't happen, we stay below size()
+		}
+		queue(attrs);
+	}
+
+	/**
+	 * Queue the reflection of a single attribute, delivered without an RTI
+	 * by the {@link LoopbackFederation}. The value is copied.
+	 */
+	protected synchronized void dataReceived(double time, int handle, byte[] value, int length){
+		Attributes attrs = obtainAttributes(time);
+		if(attrs == null)
+			return;
+		attrs.copy(time, handle, value, length);
+		queue(attrs);
+	}
+
+	/** @return a pooled Attributes, or null if the queue is full */
+	private Attributes obtainAttributes(double time){
+		lastReceivedTime = time;
+		if(receivedData.size() >= receivedDataCapacity){
+			// the first loss is always told, the count goes to the
+			// director metrics
+			if(droppedData++ == 0)
+				System.err.println("Ptolemy FederateAmbassador: inbound queue full ("
+						+ receivedDataCapacity + "), reflections dropped from " + time
+						+ ", raise receivedDataCapacity");
+			else if(debugListener != null)
+				log("**** Inbound queue full, reflection at " + time + " dropped ***");
+			return null;
+		}
+		return pool.isEmpty() ? new Attributes() : pool.remove(pool.size() - 1);
+	}
+
+	private void queue(Attributes attrs){
+		attrs.sequence = receivedSequence++;
+		receivedData.add(attrs);
+		TimeTrace trace = timeTrace;
+		if(trace != null)
+			trace.reflect(attrs.getTime());
+		if(debugListener != null)
+			log("**** DataReceived  at " + attrs.getTime() + " ***");
 	}
 	
-	public Attributes consumeReceivedData(LogicalTime time){
-		hasData = false;
-		receivedData =  null;
-		log("     **** Data Processed at " + time + " ***");
-		return null;
-		
+	/** Remove and return the earliest reflection, or null if there is none */
+	public synchronized Attributes consumeReceivedData(LogicalTime time){
+		if(debugListener != null)
+			log("     **** Data Processed at " + time + " ***");
+		return receivedData.poll();
 	}
 	
-	public Attributes receivedData(LogicalTime time){
-		if(hasData){
-			return receivedData;
+	/** @return the earliest reflection, without removing it, or null */
+	public synchronized Attributes receivedData(LogicalTime time){
+		return receivedData.peek();
+	}
+
+	/**
+	 * Move every reflection with a time stamp up to <i>time</i> to the given
+	 * list, earliest first.
+	 * @return how many reflections were added
+	 */
+	public synchronized int drainReceivedData(double time, List<Attributes> into){
+		int count = 0;
+		while(!receivedData.isEmpty() && receivedData.peek().getTime() <= time){
+			into.add(receivedData.poll());
+			count++;
 		}
-		return null;
+		return count;
+	}
+
+	/**
+	 * Give back reflections taken from the queue once they have been used,
+	 * so their buffers serve the next reflections. They must not be read
+	 * afterwards.
+	 */
+	public synchronized void recycle(List<Attributes> used){
+		for(int i = 0; i < used.size(); i++){
+			recycle(used.get(i));
+		}
+	}
+
+	public synchronized void recycle(Attributes used){
+		if(used != null && pool.size() < receivedDataCapacity){
+			used.recycle();
+			pool.add(used);
+		}
+	}
+
+	/** @return true if a reflection up to <i>time</i> is waiting */
+	public synchronized boolean hasReceivedData(double time){
+		return !receivedData.isEmpty() && receivedData.peek().getTime() <= time;
+	}
+
+	/** @return how many reflections are waiting to be consumed */
+	public synchronized int getReceivedDataCount(){
+		return receivedData.size();
+	}
+
+	/** @return how many reflections were dropped because the queue was full */
+	public synchronized long getDroppedDataCount(){
+		return droppedData;
+	}
+
+	/** @return the backlogs the slaves reported, by channel */
+	public ChannelLoads getChannelLoads(){
+		return channelLoads;
+	}
+
+	/**
+	 * A slave reported its backlog, delivered by the {@link LoopbackFederation}
+	 * or the NioCoordinator; with CERTI the report is an interaction.
+	 */
+	public void loadReported( int channel, int backlog ){
+		channelLoads.report(channel, backlog);
 	}
 		
 
@@ -128,9 +302,31 @@ public class FederateAmbassador extends NullFederateAmbassador
 	//----------------------------------------------------------  
 
 
+	/**
+	 * @param listener
+	 *            receives the callback messages, null (the default) to skip
+	 *            formatting them at all
+	 */
+	public void setDebugListener( DebugListener listener )
+	{
+		this.debugListener = listener;
+	}
+
+	/**
+	 * @param trace
+	 *            records the grants and reflections, null (the default) to
+	 *            record nothing
+	 */
+	public void setTimeTrace( TimeTrace trace )
+	{
+		this.timeTrace = trace;
+	}
+
 	private void log( String message )  
 	{  
 //		System.out.println( "Ptolemy FederateAmbassador: " + message );  
+		if( debugListener != null )
+			debugListener.message( "Ptolemy FederateAmbassador: " + message );
 	}  
 
 	//////////////////////////////////////////////////////////////////////////  
@@ -183,7 +379,11 @@ public class FederateAmbassador extends NullFederateAmbassador
 	{  
 		this.federateTime = ((CertiLogicalTime)theTime).getTime();  
 		this.isAdvancing = false; 
-		log("    +++   HLA - Logical Time avancou para " + federateTime);
+		TimeTrace trace = timeTrace;
+		if(trace != null)
+			trace.grant(federateTime);
+		if(debugListener != null)
+			log("    +++   HLA - Logical Time avancou para " + federateTime);
 	}  
 
 	public void discoverObjectInstance( int theObject,  
@@ -192,6 +392,11 @@ public class FederateAmbassador extends NullFederateAmbassador
 	{  
 		log( "Discoverd Object: handle=" + theObject + ", classHandle=" +  
 				theObjectClass + ", name=" + objectName );  
+		if( objectName != null && objectName.startsWith(MasterFederate.SLAVE_JOINED) ){
+			// a headless slave has joined
+			joinedSlaves.incrementAndGet();
+			incrementQtdSlaves();
+		}
 	}  
 
 	public void reflectAttributeValues( int theObject,  
@@ -208,6 +413,19 @@ public class FederateAmbassador extends NullFederateAmbassador
 	public void reflectAttributeValues( int theObject,	ReflectedAttributes theAttributes,  
 			byte[] tag,	LogicalTime theTime, EventRetractionHandle retractionHandle ){  
 		
+		// the description is only built for a debug listener, formatting
+		// every reflection would cost more than receiving it
+		if( debugListener != null )
+			log( describeReflection(theObject, theAttributes, tag, theTime) );
+
+		// receive ordered reflections have no time stamp, they happen now
+		dataReceived(theTime != null ? ((CertiLogicalTime)theTime).getTime()
+				: federateTime, theAttributes);
+	}  
+
+	private String describeReflection( int theObject, ReflectedAttributes theAttributes,
+			byte[] tag, LogicalTime theTime )
+	{
 		StringBuilder builder = new StringBuilder( "Reflection for object:" );  
 
 		// print the handle  
@@ -242,10 +460,8 @@ public class FederateAmbassador extends NullFederateAmbassador
 				// won't happen  
 			}  
 		}  
-
-		//System.out.println( "Ptolemy FederateAmbassador: " + builder.toString() );  
-		dataReceived(new CertiLogicalTime(federateTime), theAttributes);
-	}  
+		return builder.toString();
+	}
 
 	public void receiveInteraction( int interactionClass,  
 			ReceivedInteraction theInteraction,  
@@ -263,6 +479,20 @@ public class FederateAmbassador extends NullFederateAmbassador
 			LogicalTime theTime,  
 			EventRetractionHandle eventRetractionHandle )  
 	{  
+		// load reports of the slaves, see ChannelLoads
+		for( int i = 0; i < theInteraction.size(); i++ )
+		{
+			try
+			{
+				if( channelLoads.decode(EncodingHelpers.decodeString(theInteraction.getValue(i))) )
+					return;
+			}
+			catch( ArrayIndexOutOfBounds aioob )
+			{
+				// won't happen
+			}
+		}
+
 		StringBuilder builder = new StringBuilder( "****** Interaction Received: ******" );  
 
 		// print the handle  
@@ -318,11 +548,19 @@ public class FederateAmbassador extends NullFederateAmbassador
 
 	
 	public static void incrementQtdSlaves(){
-		qtdSlaves++;
+		qtdSlaves.incrementAndGet();
 	}
 	
 	public static int getQtdSlaves(){
-		return qtdSlaves;
+		return qtdSlaves.get();
+	}
+
+	/**
+	 * @return how many channel objects of headless slaves, which tell that
+	 *         they joined the federation, this federate discovered
+	 */
+	public int getJoinedSlaves(){
+		return joinedSlaves.get();
 	}
 
 	//----------------------------------------------------------  
@@ -0,0 +1,532 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.kernel.util.DebugListener;
+
+/**
+ * Run-time options handed by the HLA director to its {@link PtolemyFederate}
+ * before the federate joins the federation. The values are read from the
+ * director parameters in HLADEDirector.initialize(), so a federate never has
+ * to look at Ptolemy attributes itself.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class FederateSettings {
+
+	/** Attribute updates are sent receive ordered, without a time stamp. */
+	public static final String RECEIVE_ORDER = "receive";
+
+	/** Attribute updates are sent time stamp ordered (federateTime + lookahead). */
+	public static final String TIMESTAMP_ORDER = "timestamp";
+
+	/** Every update is sent twice, once receive ordered and once time stamped. */
+	public static final String BOTH_ORDERS = "both";
+
+	/** Time advances with timeAdvanceRequest, to the time asked for. */
+	public static final String TIME_ADVANCE_REQUEST = "timeAdvanceRequest";
+
+	/**
+	 * Time advances with nextEventRequest, up to the time asked for or the
+	 * first time stamped message received, whichever comes first.
+	 */
+	public static final String NEXT_EVENT_REQUEST = "nextEventRequest";
+
+	/** The federates talk to a CERTI RTI through the rtig. */
+	public static final String CERTI_BACKEND = "certi";
+
+	/**
+	 * The federates run as threads of one JVM and talk through a
+	 * {@link LoopbackFederation}, no RTI needed.
+	 */
+	public static final String LOOPBACK_BACKEND = "loopback";
+
+	/**
+	 * The federates talk through a {@link NioCoordinator} over sockets, no
+	 * RTI needed.
+	 */
+	public static final String NIO_BACKEND = "nio";
+
+	/** Default bound, in seconds, of the wait for the other federates */
+	public static final double DEFAULT_STARTUP_TIMEOUT = 60.0;
+
+	private boolean batchUpdates = false;
+
+	private String updateOrdering = BOTH_ORDERS;
+
+	private int slaveChannel = 3;
+
+	private String attributeCodec = AttributeCodecs.STRING;
+
+	private int receivedDataCapacity = FederateAmbassador.DEFAULT_RECEIVED_DATA_CAPACITY;
+
+	private DebugListener debugListener = null;
+
+	private TimeTrace timeTrace = null;
+
+	private boolean rtiPumpThread = false;
+
+	private String timeManagement = TIME_ADVANCE_REQUEST;
+
+	private double rtiPumpTimeout = RTIPump.DEFAULT_TICK_TIMEOUT;
+
+	private String rtiBackend = CERTI_BACKEND;
+
+	private String nioCoordinator = "localhost:" + NioCoordinator.DEFAULT_PORT;
+
+	private int numberOfSlaves = 1;
+
+	private boolean headless = false;
+
+	private boolean useDDM = false;
+
+	private String routingSpace = null;
+
+	private long regionLowerBound = -1;
+
+	private long regionUpperBound = -1;
+
+	private double startupTimeout = DEFAULT_STARTUP_TIMEOUT;
+
+	private double lookahead = FederateAmbassador.DEFAULT_LOOKAHEAD;
+
+	private String dataPlaneDirectory = null;
+
+	private int dataPlaneCapacity = MappedChannelRing.DEFAULT_CAPACITY;
+
+	/**
+	 * @return true if all channel values of one sendData() call go out as a
+	 *         single attribute update
+	 */
+	public boolean isBatchUpdates() {
+		return batchUpdates;
+	}
+
+	/**
+	 * @param batchUpdates
+	 *            true to send all channel values of one sendData() call in a
+	 *            single attribute update, false to send one update per channel
+	 */
+	public void setBatchUpdates(boolean batchUpdates) {
+		this.batchUpdates = batchUpdates;
+	}
+
+	/**
+	 * @return one of {@link #RECEIVE_ORDER}, {@link #TIMESTAMP_ORDER} or
+	 *         {@link #BOTH_ORDERS}
+	 */
+	public String getUpdateOrdering() {
+		return updateOrdering;
+	}
+
+	/**
+	 * @param updateOrdering
+	 *            one of {@link #RECEIVE_ORDER}, {@link #TIMESTAMP_ORDER} or
+	 *            {@link #BOTH_ORDERS}
+	 * @exception IllegalArgumentException
+	 *                If the value is none of the above.
+	 */
+	public void setUpdateOrdering(String updateOrdering) {
+		if (!RECEIVE_ORDER.equals(updateOrdering)
+				&& !TIMESTAMP_ORDER.equals(updateOrdering)
+				&& !BOTH_ORDERS.equals(updateOrdering)) {
+			throw new IllegalArgumentException("Unknown update ordering: "
+					+ updateOrdering);
+		}
+		this.updateOrdering = updateOrdering;
+	}
+
+	/** @return the canalN attribute a slave federate subscribes to */
+	public int getSlaveChannel() {
+		return slaveChannel;
+	}
+
+	/**
+	 * @param slaveChannel
+	 *            the canalN attribute a slave federate subscribes to, from 1
+	 */
+	public void setSlaveChannel(int slaveChannel) {
+		this.slaveChannel = slaveChannel;
+	}
+
+	/** @return the name of the codec of the channel attributes */
+	public String getAttributeCodec() {
+		return attributeCodec;
+	}
+
+	/**
+	 * @param attributeCodec
+	 *            the name of the codec of the channel attributes, see
+	 *            {@link AttributeCodecs}
+	 * @exception IllegalArgumentException
+	 *                If there is no codec with that name.
+	 */
+	public void setAttributeCodec(String attributeCodec) {
+		AttributeCodecs.forName(attributeCodec);
+		this.attributeCodec = attributeCodec;
+	}
+
+	/** @return how many reflections can wait to be consumed by the director */
+	public int getReceivedDataCapacity() {
+		return receivedDataCapacity;
+	}
+
+	/**
+	 * @param receivedDataCapacity
+	 *            how many reflections can wait to be consumed by the director;
+	 *            the ones arriving when the queue is full are dropped
+	 * @exception IllegalArgumentException
+	 *                If the capacity is not positive.
+	 */
+	public void setReceivedDataCapacity(int receivedDataCapacity) {
+		if (receivedDataCapacity < 1) {
+			throw new IllegalArgumentException(
+					"The received data capacity must be positive: "
+							+ receivedDataCapacity);
+		}
+		this.receivedDataCapacity = receivedDataCapacity;
+	}
+
+	/** @return the listener of the RTI callback messages, or null */
+	public DebugListener getDebugListener() {
+		return debugListener;
+	}
+
+	/**
+	 * @param debugListener
+	 *            the listener of the RTI callback messages; null, the default,
+	 *            means they are not even formatted
+	 */
+	public void setDebugListener(DebugListener debugListener) {
+		this.debugListener = debugListener;
+	}
+
+	/** @return the trace of the time management, or null */
+	public TimeTrace getTimeTrace() {
+		return timeTrace;
+	}
+
+	/**
+	 * @param timeTrace
+	 *            records the grants and reflections of the federate
+	 *            ambassador; null, the default, records nothing
+	 */
+	public void setTimeTrace(TimeTrace timeTrace) {
+		this.timeTrace = timeTrace;
+	}
+
+	/**
+	 * @return true if a background thread ticks the RTI, see {@link RTIPump}
+	 */
+	public boolean isRtiPumpThread() {
+		return rtiPumpThread;
+	}
+
+	/**
+	 * @param rtiPumpThread
+	 *            true to tick the RTI from a background thread, false to tick
+	 *            it with tick2() from the director thread
+	 */
+	public void setRtiPumpThread(boolean rtiPumpThread) {
+		this.rtiPumpThread = rtiPumpThread;
+	}
+
+	/** @return the longest a tick of the pump delivers callbacks, in seconds */
+	public double getRtiPumpTimeout() {
+		return rtiPumpTimeout;
+	}
+
+	/**
+	 * @param rtiPumpTimeout
+	 *            the longest a tick of the pump delivers callbacks, in
+	 *            seconds
+	 * @exception IllegalArgumentException
+	 *                If the timeout is not positive.
+	 */
+	public void setRtiPumpTimeout(double rtiPumpTimeout) {
+		if (!(rtiPumpTimeout > 0)) {
+			throw new IllegalArgumentException(
+					"The RTI pump timeout must be positive: " + rtiPumpTimeout);
+		}
+		this.rtiPumpTimeout = rtiPumpTimeout;
+	}
+
+	/**
+	 * @return {@link #TIME_ADVANCE_REQUEST} or {@link #NEXT_EVENT_REQUEST}
+	 */
+	public String getTimeManagement() {
+		return timeManagement;
+	}
+
+	/**
+	 * @param timeManagement
+	 *            {@link #TIME_ADVANCE_REQUEST} or {@link #NEXT_EVENT_REQUEST}
+	 * @exception IllegalArgumentException
+	 *                If the value is none of the above.
+	 */
+	public void setTimeManagement(String timeManagement) {
+		if (!TIME_ADVANCE_REQUEST.equals(timeManagement)
+				&& !NEXT_EVENT_REQUEST.equals(timeManagement)) {
+			throw new IllegalArgumentException("Unknown time management: "
+					+ timeManagement);
+		}
+		this.timeManagement = timeManagement;
+	}
+
+	/** @return true if time advances with nextEventRequest */
+	public boolean isNextEventRequest() {
+		return NEXT_EVENT_REQUEST.equals(timeManagement);
+	}
+
+	/**
+	 * @return {@link #CERTI_BACKEND}, {@link #LOOPBACK_BACKEND} or
+	 *         {@link #NIO_BACKEND}
+	 */
+	public String getRtiBackend() {
+		return rtiBackend;
+	}
+
+	/**
+	 * @param rtiBackend
+	 *            {@link #CERTI_BACKEND}, {@link #LOOPBACK_BACKEND} or
+	 *            {@link #NIO_BACKEND}
+	 * @exception IllegalArgumentException
+	 *                If the value is none of the above.
+	 */
+	public void setRtiBackend(String rtiBackend) {
+		if (!CERTI_BACKEND.equals(rtiBackend)
+				&& !LOOPBACK_BACKEND.equals(rtiBackend)
+				&& !NIO_BACKEND.equals(rtiBackend)) {
+			throw new IllegalArgumentException("Unknown RTI backend: "
+					+ rtiBackend);
+		}
+		this.rtiBackend = rtiBackend;
+	}
+
+	/** @return host:port of the {@link NioCoordinator} of the nio backend */
+	public String getNioCoordinator() {
+		return nioCoordinator;
+	}
+
+	/**
+	 * @param nioCoordinator
+	 *            host:port of the {@link NioCoordinator}, or only the host to
+	 *            use its default port
+	 * @exception IllegalArgumentException
+	 *                If the address is empty.
+	 */
+	public void setNioCoordinator(String nioCoordinator) {
+		if (nioCoordinator == null || nioCoordinator.trim().length() == 0) {
+			throw new IllegalArgumentException(
+					"The coordinator address cannot be empty");
+		}
+		this.nioCoordinator = nioCoordinator.trim();
+	}
+
+	/**
+	 * @return how many slaves the master waits for before the federation
+	 *         starts, when it does not ask the user
+	 */
+	public int getNumberOfSlaves() {
+		return numberOfSlaves;
+	}
+
+	/**
+	 * @param numberOfSlaves
+	 *            how many slaves the master waits for before the federation
+	 *            starts
+	 * @exception IllegalArgumentException
+	 *                If the number is negative.
+	 */
+	public void setNumberOfSlaves(int numberOfSlaves) {
+		if (numberOfSlaves < 0) {
+			throw new IllegalArgumentException(
+					"The number of slaves cannot be negative: "
+							+ numberOfSlaves);
+		}
+		this.numberOfSlaves = numberOfSlaves;
+	}
+
+	/**
+	 * @return true if the federation starts without asking the user: the
+	 *         master waits for the number of slaves of the settings and the
+	 *         slaves for the master
+	 */
+	public boolean isHeadless() {
+		return headless;
+	}
+
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+
+	/**
+	 * @return true if the channel values are routed with Data Distribution
+	 *         Management regions, see {@link ChannelRegions}
+	 */
+	public boolean isUseDDM() {
+		return useDDM;
+	}
+
+	public void setUseDDM(boolean useDDM) {
+		this.useDDM = useDDM;
+	}
+
+	/**
+	 * @return the routing space of the channel regions, null for the one the
+	 *         FOM gives the channel attributes
+	 */
+	public String getRoutingSpace() {
+		return routingSpace;
+	}
+
+	/**
+	 * @param routingSpace
+	 *            the routing space of the channel regions, null or empty for
+	 *            the one the FOM gives the channel attributes
+	 */
+	public void setRoutingSpace(String routingSpace) {
+		this.routingSpace = routingSpace == null
+				|| routingSpace.length() == 0 ? null : routingSpace;
+	}
+
+	/**
+	 * @return the lower bound of the subscription region of a slave, -1 for
+	 *         the one of its slave channel
+	 */
+	public long getRegionLowerBound() {
+		return regionLowerBound;
+	}
+
+	/**
+	 * @return the upper bound, excluded, of the subscription region of a
+	 *         slave, -1 for the one of its slave channel
+	 */
+	public long getRegionUpperBound() {
+		return regionUpperBound;
+	}
+
+	/**
+	 * Set the subscription region of a slave on the channel dimension, where
+	 * channel N covers [N, N + 1).
+	 *
+	 * @param lowerBound
+	 *            the lower bound, -1 for the one of the slave channel
+	 * @param upperBound
+	 *            the upper bound, excluded, -1 for the one of the slave
+	 *            channel
+	 * @exception IllegalArgumentException
+	 *                If a bound is below -1, or the lower bound is not below
+	 *                the upper one.
+	 */
+	public void setRegion(long lowerBound, long upperBound) {
+		if (lowerBound < -1 || upperBound < -1) {
+			throw new IllegalArgumentException("Invalid region bounds: "
+					+ lowerBound + ", " + upperBound);
+		}
+		if (lowerBound >= 0 && upperBound >= 0 && lowerBound >= upperBound) {
+			throw new IllegalArgumentException(
+					"The region lower bound must be below the upper one: "
+							+ lowerBound + ", " + upperBound);
+		}
+		this.regionLowerBound = lowerBound;
+		this.regionUpperBound = upperBound;
+	}
+
+	/**
+	 * @return how long, in seconds, a headless federate waits for the others
+	 *         before giving up, 0 to wait forever
+	 */
+	public double getStartupTimeout() {
+		return startupTimeout;
+	}
+
+	/**
+	 * @param startupTimeout
+	 *            how long, in seconds, a headless federate waits for the
+	 *            others before giving up, 0 to wait forever
+	 * @exception IllegalArgumentException
+	 *                If the timeout is negative.
+	 */
+	public void setStartupTimeout(double startupTimeout) {
+		if (!(startupTimeout >= 0)) {
+			throw new IllegalArgumentException(
+					"The startup timeout cannot be negative: " + startupTimeout);
+		}
+		this.startupTimeout = startupTimeout;
+	}
+
+	/** @return the lookahead the federate enables time regulation with */
+	public double getLookahead() {
+		return lookahead;
+	}
+
+	/**
+	 * @param lookahead
+	 *            the lookahead the federate enables time regulation with. It
+	 *            can be raised at once later, but a lower value only takes
+	 *            effect once the federate has advanced past the promise of
+	 *            this one.
+	 * @exception IllegalArgumentException
+	 *                If the lookahead is not positive.
+	 */
+	public void setLookahead(double lookahead) {
+		if (!(lookahead > 0)) {
+			throw new IllegalArgumentException(
+					"The lookahead must be positive: " + lookahead);
+		}
+		this.lookahead = lookahead;
+	}
+
+	/**
+	 * @return the directory of the channel rings shared by the master and the
+	 *         slaves of the same host, null if the data goes through the RTI
+	 */
+	public String getDataPlaneDirectory() {
+		return dataPlaneDirectory;
+	}
+
+	/**
+	 * @param dataPlaneDirectory
+	 *            the directory of the {@link MappedChannelRing}s, the same for
+	 *            the master and its slaves; null or empty to send the channel
+	 *            values through the RTI. A slave does not open it with DDM.
+	 */
+	public void setDataPlaneDirectory(String dataPlaneDirectory) {
+		this.dataPlaneDirectory = dataPlaneDirectory == null
+				|| dataPlaneDirectory.length() == 0 ? null : dataPlaneDirectory;
+	}
+
+	/** @return true if the channel values go through the channel rings */
+	public boolean isDataPlane() {
+		return dataPlaneDirectory != null;
+	}
+
+	/** @return the size of the record area of each channel ring, in bytes */
+	public int getDataPlaneCapacity() {
+		return dataPlaneCapacity;
+	}
+
+	/**
+	 * @param dataPlaneCapacity
+	 *            the size of the record area of each channel ring, in bytes
+	 * @exception IllegalArgumentException
+	 *                If the capacity is below 64 bytes.
+	 */
+	public void setDataPlaneCapacity(int dataPlaneCapacity) {
+		if (dataPlaneCapacity < 64) {
+			throw new IllegalArgumentException(
+					"The data plane capacity must be at least 64 bytes: "
+							+ dataPlaneCapacity);
+		}
+		this.dataPlaneCapacity = dataPlaneCapacity;
+	}
+
+	/** @return true if updates must be sent without a time stamp */
+	public boolean sendReceiveOrder() {
+		return !TIMESTAMP_ORDER.equals(updateOrdering);
+	}
+
+	/** @return true if updates must be sent with a time stamp */
+	public boolean sendTimestampOrder() {
+		return !RECEIVE_ORDER.equals(updateOrdering);
+	}
+}
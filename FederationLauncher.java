@@ -0,0 +1,540 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.StringTokenizer;
+
+import ptolemy.actor.CompositeActor;
+import ptolemy.actor.Director;
+import ptolemy.actor.Manager;
+import ptolemy.kernel.util.Attribute;
+import ptolemy.kernel.util.NamedObj;
+import ptolemy.kernel.util.Settable;
+import ptolemy.kernel.util.Workspace;
+import ptolemy.moml.MoMLParser;
+import ptolemy.myactors.MaximumEntropy.domain.HLADEDirector;
+
+/**
+ * Runs a whole federation from one command: the master model and the slave
+ * models of a run manifest, each slave model as many times as asked, as
+ * processes or as threads of this JVM. The federates start headless, the
+ * master waiting for the number of slaves started, and the launcher waits
+ * until they all finish. It then prints the wall time, the events (actor
+ * firings) per second and the CPU time of each federate, read from the
+ * statistics line of their HLADEDirector.
+ * <p/>
+ * The manifest is a properties file; the model files are relative to it:
+ *
+ * <pre>
+ * # process (the default) or thread; the loopback backend needs thread
+ * mode=process
+ * master=ptolemy_4c.xml
+ * slaves=SensorCertiSlaveNewPtolemyHLA_p1_1_conj_sensor.xml, \
+ *        SensorCertiSlaveNewPtolemyHLA_p2_1_conj_sensor.xml
+ * # how many federates run each slave model, in general and for one model
+ * replicas=1
+ * replicas.SensorCertiSlaveNewPtolemyHLA_p1_1_conj_sensor.xml=4
+ * # process mode: the options and class path of the federate JVMs
+ * jvmOptions=-Xmx512m
+ * classpath=
+ * # set on the director of every model
+ * rtiBackend=certi
+ * startupTimeout=60
+ * # seconds between the start of the master and of the slaves
+ * slaveDelay=2
+ * # seconds after which the federates still running are stopped, 0 never
+ * timeout=0
+ * # a csv file for the results
+ * report=
+ * </pre>
+ *
+ * Usage:
+ *
+ * <pre>
+ * java ptolemy.myactors.MaximumEntropy.FederationLauncher manifest.properties
+ * java ptolemy.myactors.MaximumEntropy.FederationLauncher -run model.xml [parameter=value ...]
+ * </pre>
+ *
+ * The second form runs one model with the given director parameters, it is
+ * what the federate processes execute.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class FederationLauncher {
+
+	/** Run the federates as processes */
+	public static final String PROCESS_MODE = "process";
+
+	/** Run the federates as threads of the launcher */
+	public static final String THREAD_MODE = "thread";
+
+	private static final String RUN = "-run";
+
+	private final File directory;
+	private final Properties manifest;
+	private final String mode;
+	private final List<Federate> federates = new ArrayList<Federate>();
+
+	/**
+	 * @param manifestFile
+	 *            the run manifest
+	 * @exception IOException
+	 *                If the manifest cannot be read.
+	 * @exception IllegalArgumentException
+	 *                If the manifest is invalid.
+	 */
+	public FederationLauncher(File manifestFile) throws IOException {
+		directory = manifestFile.getAbsoluteFile().getParentFile();
+		manifest = new Properties();
+		InputStream in = new FileInputStream(manifestFile);
+		try {
+			manifest.load(in);
+		} finally {
+			in.close();
+		}
+
+		mode = manifest.getProperty("mode", PROCESS_MODE).trim();
+		if (!PROCESS_MODE.equals(mode) && !THREAD_MODE.equals(mode)) {
+			throw new IllegalArgumentException("Unknown mode: " + mode);
+		}
+		String master = manifest.getProperty("master");
+		if (master == null || master.trim().length() == 0) {
+			throw new IllegalArgumentException("The manifest has no master");
+		}
+
+		int defaultReplicas = getInt("replicas", 1);
+		List<Federate> slaves = new ArrayList<Federate>();
+		StringTokenizer models = new StringTokenizer(manifest.getProperty(
+				"slaves", ""), ", \t");
+		while (models.hasMoreTokens()) {
+			String model = models.nextToken();
+			int replicas = getInt("replicas." + model, defaultReplicas);
+			for (int i = 1; i <= replicas; i++) {
+				Federate slave = new Federate(baseName(model) + "-" + i,
+						model);
+				// each slave needs its own name in the federation
+				slave.parameters.put("federateName", slave.name);
+				slaves.add(slave);
+			}
+		}
+
+		Federate masterFederate = new Federate(baseName(master.trim()),
+				master.trim());
+		masterFederate.parameters.put("numberOfSlaves", Integer
+				.toString(slaves.size()));
+		federates.add(masterFederate);
+		federates.addAll(slaves);
+
+		for (int i = 0; i < federates.size(); i++) {
+			Map<String, String> parameters = federates.get(i).parameters;
+			parameters.put("headless", "true");
+			copyParameter("rtiBackend", parameters);
+			copyParameter("startupTimeout", parameters);
+		}
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	/**
+	 * Start the master, then the slaves, and wait until they are all done or
+	 * the timeout of the manifest has passed.
+	 *
+	 * @return true if every federate ran to completion
+	 */
+	public boolean launch() throws IOException, InterruptedException {
+		long slaveDelay = (long) (getDouble("slaveDelay", 2.0) * 1000);
+		long timeout = (long) (getDouble("timeout", 0.0) * 1000);
+
+		log("Starting " + federates.size() + " federates, " + mode + " mode");
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < federates.size(); i++) {
+			start(federates.get(i));
+			if (i == 0 && federates.size() > 1) {
+				// the slaves announce themselves to a master already joined
+				Thread.sleep(slaveDelay);
+			}
+		}
+
+		long end = start + timeout;
+		for (int i = 0; i < federates.size(); i++) {
+			Federate federate = federates.get(i);
+			long left = end - System.currentTimeMillis();
+			federate.thread.join(timeout > 0 ? Math.max(left, 1) : 0);
+			if (federate.thread.isAlive()) {
+				federate.error = "Stopped after " + timeout / 1000.0 + " s";
+				federate.stop();
+				federate.thread.join();
+			}
+		}
+		long wall = System.currentTimeMillis() - start;
+
+		report(wall);
+		boolean success = true;
+		for (int i = 0; i < federates.size(); i++) {
+			success &= federates.get(i).error == null;
+		}
+		return success;
+	}
+
+	private void start(final Federate federate) throws IOException {
+		if (THREAD_MODE.equals(mode)) {
+			federate.thread = new Thread(federate.name) {
+				public void run() {
+					try {
+						Director director = execute(federate.model,
+								federate.parameters, federate);
+						if (director instanceof HLADEDirector) {
+							HLADEDirector hla = (HLADEDirector) director;
+							federate.events = hla.getFiringCount();
+							federate.wallTime = hla.getWallTime();
+							federate.cpuTime = hla.getCpuTime();
+						}
+					} catch (Throwable e) {
+						federate.error = String.valueOf(e);
+						e.printStackTrace();
+					}
+				}
+			};
+			federate.thread.start();
+			return;
+		}
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"),
+				"java").getPath());
+		StringTokenizer options = new StringTokenizer(manifest.getProperty(
+				"jvmOptions", ""));
+		while (options.hasMoreTokens()) {
+			command.add(options.nextToken());
+		}
+		String classpath = manifest.getProperty("classpath", "").trim();
+		command.add("-cp");
+		command.add(classpath.length() > 0 ? classpath : System
+				.getProperty("java.class.path"));
+		command.add(FederationLauncher.class.getName());
+		command.add(RUN);
+		command.add(federate.model.getPath());
+		for (Map.Entry<String, String> parameter : federate.parameters
+				.entrySet()) {
+			command.add(parameter.getKey() + "=" + parameter.getValue());
+		}
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(directory);
+		builder.redirectErrorStream(true);
+		federate.process = builder.start();
+		federate.thread = new Thread(federate.name) {
+			public void run() {
+				try {
+					federate.readOutput();
+					int exit = federate.process.waitFor();
+					if (exit != 0 && federate.error == null) {
+						federate.error = "Exit code " + exit;
+					}
+				} catch (Exception e) {
+					federate.error = String.valueOf(e);
+				}
+			}
+		};
+		federate.thread.start();
+	}
+
+	/** Print the results, and write them to the report file if any */
+	private void report(long wall) throws IOException {
+		long events = 0;
+		log("federate, events, events/s, wall ms, cpu ms, result");
+		for (int i = 0; i < federates.size(); i++) {
+			Federate federate = federates.get(i);
+			log(federate.toCsv());
+			events += Math.max(federate.events, 0);
+		}
+		log("Federation: " + federates.size() + " federates, " + events
+				+ " events in " + wall + " ms, "
+				+ Math.round(wall > 0 ? events * 1000.0 / wall : 0)
+				+ " events/s");
+
+		String report = manifest.getProperty("report", "").trim();
+		if (report.length() == 0) {
+			return;
+		}
+		File file = new File(report);
+		if (!file.isAbsolute()) {
+			file = new File(directory, report);
+		}
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			out.println("federate,model,events,eventsPerSecond,wallMs,cpuMs,result");
+			for (int i = 0; i < federates.size(); i++) {
+				Federate federate = federates.get(i);
+				out.println(federate.name + "," + federate.model.getName()
+						+ "," + federate.events + "," + federate.rate() + ","
+						+ federate.wallTime + "," + federate.cpuTime + ","
+						+ federate.result());
+			}
+			out.println("federation,," + events + ","
+					+ Math.round(wall > 0 ? events * 1000.0 / wall : 0) + ","
+					+ wall + ",,");
+		} finally {
+			out.close();
+		}
+		log("Report written to " + file);
+	}
+
+	private void copyParameter(String name, Map<String, String> parameters) {
+		String value = manifest.getProperty(name);
+		if (value != null && value.trim().length() > 0) {
+			parameters.put(name, value.trim());
+		}
+	}
+
+	private int getInt(String name, int defaultValue) {
+		String value = manifest.getProperty(name);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		try {
+			int result = Integer.parseInt(value.trim());
+			if (result < 0) {
+				throw new IllegalArgumentException(name
+						+ " cannot be negative: " + value);
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": "
+					+ value);
+		}
+	}
+
+	private double getDouble(String name, double defaultValue) {
+		String value = manifest.getProperty(name);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		try {
+			double result = Double.parseDouble(value.trim());
+			if (!(result >= 0)) {
+				throw new IllegalArgumentException(name
+						+ " cannot be negative: " + value);
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": "
+					+ value);
+		}
+	}
+
+	private static String baseName(String model) {
+		String name = new File(model).getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	private static void log(String message) {
+		System.out.println("FederationLauncher : " + message);
+	}
+
+	/** One federate of the run, and what it reported */
+	private class Federate {
+		final String name;
+		final File model;
+		final Map<String, String> parameters = new LinkedHashMap<String, String>();
+
+		Thread thread;
+		Process process;
+		// thread mode, to stop it
+		volatile Manager manager;
+
+		long events = -1;
+		long wallTime = -1;
+		long cpuTime = -1;
+		volatile String error;
+
+		Federate(String name, String model) {
+			this.name = name;
+			File file = new File(model);
+			this.model = file.isAbsolute() ? file : new File(directory, model);
+		}
+
+		/** Echo the output of the process and read its statistics line */
+		void readOutput() throws IOException {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					process.getInputStream()));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					System.out.println("[" + name + "] " + line);
+					if (line.startsWith(HLADEDirector.STATS_PREFIX)) {
+						parseStatistics(line.substring(HLADEDirector.STATS_PREFIX
+								.length()));
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		private void parseStatistics(String line) {
+			StringTokenizer fields = new StringTokenizer(line);
+			while (fields.hasMoreTokens()) {
+				String field = fields.nextToken();
+				int equals = field.indexOf('=');
+				if (equals < 0) {
+					continue;
+				}
+				String key = field.substring(0, equals);
+				String value = field.substring(equals + 1);
+				try {
+					if (key.equals("events")) {
+						events = Long.parseLong(value);
+					} else if (key.equals("wallMs")) {
+						wallTime = Long.parseLong(value);
+					} else if (key.equals("cpuMs")) {
+						cpuTime = Long.parseLong(value);
+					}
+				} catch (NumberFormatException e) {
+					// an unreadable field stays unknown
+				}
+			}
+		}
+
+		void stop() {
+			if (process != null) {
+				process.destroy();
+			} else if (manager != null) {
+				manager.stop();
+			}
+		}
+
+		long rate() {
+			return wallTime > 0 ? Math.round(events * 1000.0 / wallTime) : -1;
+		}
+
+		String result() {
+			return error == null ? "ok" : error.replace(',', ';');
+		}
+
+		String toCsv() {
+			return name + ", " + events + ", " + rate() + ", " + wallTime
+					+ ", " + cpuTime + ", " + result();
+		}
+	}
+
+	// ----------------------------------------------------------
+	// STATIC METHODS
+	// ----------------------------------------------------------
+
+	/**
+	 * Run a model to completion in the calling thread.
+	 *
+	 * @param parameters
+	 *            values of parameters of the director of the model
+	 * @return the director of the model, to read its statistics
+	 * @exception Exception
+	 *                If the model cannot be read, has no such parameter, or
+	 *                fails.
+	 */
+	public static Director run(File model, Map<String, String> parameters)
+			throws Exception {
+		return execute(model, parameters, null);
+	}
+
+	private static Director execute(File model,
+			Map<String, String> parameters, Federate federate) throws Exception {
+		// a workspace of its own, the other threads parse their models too
+		MoMLParser parser = new MoMLParser(new Workspace());
+		NamedObj toplevel = parser.parse(null, model.toURI().toURL());
+		if (!(toplevel instanceof CompositeActor)) {
+			throw new IllegalArgumentException(model + " is not a model");
+		}
+		CompositeActor composite = (CompositeActor) toplevel;
+		Director director = findDirector(composite);
+		if (director == null) {
+			throw new IllegalArgumentException(model + " has no director");
+		}
+		for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+			Attribute attribute = director.getAttribute(parameter.getKey());
+			if (!(attribute instanceof Settable)) {
+				// an older director, the model may still run
+				log("The director of " + model.getName() + " has no "
+						+ parameter.getKey() + " parameter, not set");
+				continue;
+			}
+			((Settable) attribute).setExpression(parameter.getValue());
+			((Settable) attribute).validate();
+		}
+
+		Manager manager = new Manager(toplevel.workspace(), "launcher");
+		composite.setManager(manager);
+		if (federate != null) {
+			federate.manager = manager;
+		}
+		manager.execute();
+		return director;
+	}
+
+	/**
+	 * @return the HLADEDirector of the model, which may be inside a
+	 *         composite, or the director of the model if there is none
+	 */
+	private static Director findDirector(CompositeActor model) {
+		Director director = model.getDirector();
+		if (director instanceof HLADEDirector) {
+			return director;
+		}
+		List<?> composites = model.entityList(CompositeActor.class);
+		for (int i = 0; i < composites.size(); i++) {
+			CompositeActor composite = (CompositeActor) composites.get(i);
+			if (composite.isOpaque()) {
+				Director inside = findDirector(composite);
+				if (inside instanceof HLADEDirector) {
+					return inside;
+				}
+			}
+		}
+		return director;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length >= 2 && args[0].equals(RUN)) {
+			Map<String, String> parameters = new LinkedHashMap<String, String>();
+			for (int i = 2; i < args.length; i++) {
+				int equals = args[i].indexOf('=');
+				if (equals <= 0) {
+					System.err.println("Not a parameter=value: " + args[i]);
+					System.exit(2);
+				}
+				parameters.put(args[i].substring(0, equals), args[i]
+						.substring(equals + 1));
+			}
+			try {
+				run(new File(args[1]), parameters);
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+			// the RTI libraries may leave threads behind
+			System.exit(0);
+		}
+		if (args.length != 1) {
+			System.err.println("Usage: FederationLauncher manifest.properties");
+			System.err.println("       FederationLauncher " + RUN
+					+ " model.xml [parameter=value ...]");
+			System.exit(2);
+		}
+		boolean success = new FederationLauncher(new File(args[0])).launch();
+		System.exit(success ? 0 : 1);
+	}
+}
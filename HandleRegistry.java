@@ -0,0 +1,478 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.NameNotFound;
+import hla.rti.RTIambassador;
+import hla.rti.RTIexception;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the object classes, attributes, interactions and parameters declared
+ * in a .fed file and keeps their RTI handles, so the federates resolve every
+ * name once, right after joining, and never during the simulation.
+ * <p/>
+ * The attributes of {@link #CHANNEL_CLASS} named canal1 ... canalN are the
+ * data channels between master and slaves. Their handles are kept in int
+ * arrays indexed by channel number and by attribute handle, so that going
+ * from a channel to its handle (master side) or from a reflected handle to its
+ * channel (slave side) is a plain array access. The number of channels is
+ * whatever the FOM declares.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class HandleRegistry {
+
+	/** The object class whose attributes are the data channels */
+	public static final String CHANNEL_CLASS = "ObjectRoot.aes";
+
+	/** Name prefix of the channel attributes: canal1, canal2, ... */
+	public static final String CHANNEL_PREFIX = "canal";
+
+	/** The interaction class exchanged by master and slaves */
+	public static final String DATA_INTERACTION = "InteractionRoot.X";
+
+	// class full name -> attribute / parameter names, in FOM order. Object
+	// classes also list the attributes they inherit.
+	private Map<String, List<String>> objectClasses = new LinkedHashMap<String, List<String>>();
+	private Map<String, List<String>> interactionClasses = new LinkedHashMap<String, List<String>>();
+	// routing space -> dimension names
+	private Map<String, List<String>> spaces = new LinkedHashMap<String, List<String>>();
+	// class full name + "." + attribute -> routing space, when it has one
+	private Map<String, String> attributeSpaces = new HashMap<String, String>();
+
+	// resolved handles
+	private Map<String, Integer> classHandles = new HashMap<String, Integer>();
+	private Map<String, Integer> memberHandles = new HashMap<String, Integer>();
+
+	private int channelClassHandle = -1;
+	// channel number -> attribute handle, index 0 unused
+	private int[] channelHandles = new int[1];
+	// attribute handle -> channel number, -1 when not a channel
+	private int[] handleChannels = new int[0];
+
+	private boolean resolved = false;
+
+	// ----------------------------------------------------------
+	// CONSTRUCTORS
+	// ----------------------------------------------------------
+
+	/**
+	 * Read the declarations of the given .fed file. Nothing is asked to the
+	 * RTI yet, see {@link #resolve(RTIambassador)}.
+	 */
+	public HandleRegistry(String fedFileName) throws IOException {
+		Reader in = new InputStreamReader(new FileInputStream(fedFileName),
+				"ISO-8859-1");
+		try {
+			List<Object> fed = new Parser(in).parse();
+			readFed(fed);
+		} finally {
+			in.close();
+		}
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	/**
+	 * Ask the RTI the handle of every class, attribute, interaction and
+	 * parameter read from the FOM. Must be called after joining the
+	 * federation.
+	 */
+	public void resolve(RTIambassador rtiamb) throws RTIexception {
+		classHandles.clear();
+		memberHandles.clear();
+
+		for (Map.Entry<String, List<String>> entry : objectClasses.entrySet()) {
+			int classHandle = rtiamb.getObjectClassHandle(entry.getKey());
+			classHandles.put(entry.getKey(), classHandle);
+			for (String attribute : entry.getValue()) {
+				memberHandles.put(entry.getKey() + "." + attribute, rtiamb
+						.getAttributeHandle(attribute, classHandle));
+			}
+		}
+
+		for (Map.Entry<String, List<String>> entry : interactionClasses
+				.entrySet()) {
+			int classHandle = rtiamb.getInteractionClassHandle(entry.getKey());
+			classHandles.put(entry.getKey(), classHandle);
+			for (String parameter : entry.getValue()) {
+				memberHandles.put(entry.getKey() + "." + parameter, rtiamb
+						.getParameterHandle(parameter, classHandle));
+			}
+		}
+
+		buildChannelTables();
+		resolved = true;
+	}
+
+	/**
+	 * Number the classes and their members without an RTI, for the in-process
+	 * {@link LoopbackFederation}. Classes are numbered from 1 in FOM order,
+	 * members from 1 in declaration order; inherited attributes come first,
+	 * so they keep the handle of the parent class. Every federate reading the
+	 * same FOM gets the same handles.
+	 */
+	public void resolveLocally() {
+		classHandles.clear();
+		memberHandles.clear();
+		numberLocally(objectClasses);
+		numberLocally(interactionClasses);
+		buildChannelTables();
+		resolved = true;
+	}
+
+	private void numberLocally(Map<String, List<String>> classes) {
+		int classHandle = 1;
+		for (Map.Entry<String, List<String>> entry : classes.entrySet()) {
+			classHandles.put(entry.getKey(), classHandle++);
+			List<String> members = entry.getValue();
+			for (int i = 0; i < members.size(); i++) {
+				memberHandles.put(entry.getKey() + "." + members.get(i), i + 1);
+			}
+		}
+	}
+
+	/** @return true once {@link #resolve(RTIambassador)} has been called */
+	public boolean isResolved() {
+		return resolved;
+	}
+
+	public int getObjectClassHandle(String className) throws NameNotFound {
+		return lookup(classHandles, className);
+	}
+
+	public int getAttributeHandle(String className, String attribute)
+			throws NameNotFound {
+		return lookup(memberHandles, className + "." + attribute);
+	}
+
+	public int getInteractionClassHandle(String className) throws NameNotFound {
+		return lookup(classHandles, className);
+	}
+
+	public int getParameterHandle(String className, String parameter)
+			throws NameNotFound {
+		return lookup(memberHandles, className + "." + parameter);
+	}
+
+	/** @return the attribute names of an object class, inherited ones included */
+	public List<String> getAttributes(String className) {
+		return objectClasses.get(className);
+	}
+
+	/** @return the parameter names of an interaction class */
+	public List<String> getParameters(String className) {
+		return interactionClasses.get(className);
+	}
+
+	/** @return the routing space the FOM gives an attribute, or null */
+	public String getRoutingSpace(String className, String attribute) {
+		return attributeSpaces.get(className + "." + attribute);
+	}
+
+	/**
+	 * @return the routing space of the first canalN attribute that has one,
+	 *         or null
+	 */
+	public String getChannelRoutingSpace() {
+		List<String> attributes = objectClasses.get(CHANNEL_CLASS);
+		if (attributes == null) {
+			return null;
+		}
+		for (String attribute : attributes) {
+			String space = getRoutingSpace(CHANNEL_CLASS, attribute);
+			if (channelNumber(attribute) > 0 && space != null) {
+				return space;
+			}
+		}
+		return null;
+	}
+
+	/** @return the dimension names of a routing space, or null */
+	public List<String> getDimensions(String spaceName) {
+		return spaces.get(spaceName);
+	}
+
+	/** @return the handle of {@link #CHANNEL_CLASS} */
+	public int getChannelClassHandle() throws NameNotFound {
+		if (channelClassHandle < 0) {
+			throw new NameNotFound(CHANNEL_CLASS + " is not declared in the FOM");
+		}
+		return channelClassHandle;
+	}
+
+	/**
+	 * @return the N of every canalN attribute the FOM declares, in FOM order;
+	 *         known before the handles are resolved
+	 */
+	public int[] getDeclaredChannels() {
+		List<String> attributes = objectClasses.get(CHANNEL_CLASS);
+		if (attributes == null) {
+			return new int[0];
+		}
+		int[] channels = new int[attributes.size()];
+		int count = 0;
+		for (String attribute : attributes) {
+			int channel = channelNumber(attribute);
+			if (channel > 0) {
+				channels[count++] = channel;
+			}
+		}
+		return Arrays.copyOf(channels, count);
+	}
+
+	/** @return how many canalN attributes the FOM declares */
+	public int getChannelCount() {
+		return channelHandles.length - 1;
+	}
+
+	/**
+	 * @return the attribute handle of canal<i>channel</i>, channels are
+	 *         numbered from 1
+	 */
+	public int getChannelHandle(int channel) throws NameNotFound {
+		if (channel < 1 || channel >= channelHandles.length
+				|| channelHandles[channel] < 0) {
+			throw new NameNotFound(CHANNEL_PREFIX + channel
+					+ " is not declared in the FOM");
+		}
+		return channelHandles[channel];
+	}
+
+	/**
+	 * @return the channel number of a reflected attribute handle, or -1 if
+	 *         the handle is not a channel
+	 */
+	public int getChannel(int attributeHandle) {
+		if (attributeHandle < 0 || attributeHandle >= handleChannels.length) {
+			return -1;
+		}
+		return handleChannels[attributeHandle];
+	}
+
+	private int lookup(Map<String, Integer> handles, String name)
+			throws NameNotFound {
+		Integer handle = handles.get(name);
+		if (handle == null) {
+			throw new NameNotFound(name + " is not declared in the FOM"
+					+ (resolved ? "" : " or not resolved yet"));
+		}
+		return handle.intValue();
+	}
+
+	/**
+	 * Fill the channel arrays from the canalN attributes of the channel
+	 * class. Channels missing in the FOM keep the handle -1.
+	 */
+	private void buildChannelTables() {
+		List<String> attributes = objectClasses.get(CHANNEL_CLASS);
+		if (attributes == null) {
+			channelClassHandle = -1;
+			channelHandles = new int[1];
+			handleChannels = new int[0];
+			return;
+		}
+		channelClassHandle = classHandles.get(CHANNEL_CLASS).intValue();
+
+		int channels = 0;
+		int maxHandle = -1;
+		for (String attribute : attributes) {
+			int channel = channelNumber(attribute);
+			if (channel > 0) {
+				channels = Math.max(channels, channel);
+				maxHandle = Math.max(maxHandle, memberHandles.get(
+						CHANNEL_CLASS + "." + attribute).intValue());
+			}
+		}
+
+		channelHandles = new int[channels + 1];
+		handleChannels = new int[maxHandle + 1];
+		Arrays.fill(channelHandles, -1);
+		Arrays.fill(handleChannels, -1);
+		for (String attribute : attributes) {
+			int channel = channelNumber(attribute);
+			if (channel > 0) {
+				int handle = memberHandles.get(CHANNEL_CLASS + "." + attribute)
+						.intValue();
+				channelHandles[channel] = handle;
+				handleChannels[handle] = channel;
+			}
+		}
+	}
+
+	/** @return N for an attribute named canalN, -1 otherwise */
+	private static int channelNumber(String attribute) {
+		if (!attribute.startsWith(CHANNEL_PREFIX)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(attribute.substring(CHANNEL_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	// ----------------------------------------------------------
+	// FED FILE
+	// ----------------------------------------------------------
+
+	private void readFed(List<Object> fed) throws IOException {
+		if (fed.isEmpty() || !"FED".equals(fed.get(0))) {
+			throw new IOException("Not a FED file, it must start with (FED");
+		}
+		for (List<Object> section : lists(fed)) {
+			String name = (String) section.get(0);
+			if (name.equals("spaces")) {
+				for (List<Object> space : lists(section)) {
+					List<String> dimensions = new ArrayList<String>();
+					for (List<Object> dimension : lists(space)) {
+						dimensions.add((String) dimension.get(1));
+					}
+					spaces.put((String) space.get(1), dimensions);
+				}
+			} else if (name.equals("objects")) {
+				for (List<Object> root : lists(section)) {
+					readClass(root, null, new ArrayList<String>(), "attribute",
+							objectClasses, true);
+				}
+			} else if (name.equals("interactions")) {
+				for (List<Object> root : lists(section)) {
+					readClass(root, null, new ArrayList<String>(), "parameter",
+							interactionClasses, false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a (class ...) list and its subclasses. Object classes inherit the
+	 * attributes of their parents; interaction parameters are not inherited
+	 * here because the federates only look them up in the declaring class.
+	 */
+	private void readClass(List<Object> node, String parent,
+			List<String> inherited, String memberKeyword,
+			Map<String, List<String>> classes, boolean inherit) {
+		if (!"class".equals(node.get(0))) {
+			return;
+		}
+		String name = (String) node.get(1);
+		String fullName = parent == null ? name : parent + "." + name;
+
+		List<String> members = new ArrayList<String>();
+		if (inherit) {
+			members.addAll(inherited);
+			for (String member : inherited) {
+				String space = attributeSpaces.get(parent + "." + member);
+				if (space != null) {
+					attributeSpaces.put(fullName + "." + member, space);
+				}
+			}
+		}
+		for (List<Object> child : lists(node)) {
+			if (memberKeyword.equals(child.get(0))) {
+				members.add((String) child.get(1));
+				// (attribute name transport order [space])
+				if (inherit && child.size() > 4
+						&& child.get(4) instanceof String) {
+					attributeSpaces.put(fullName + "." + child.get(1),
+							(String) child.get(4));
+				}
+			}
+		}
+		classes.put(fullName, members);
+
+		for (List<Object> child : lists(node)) {
+			readClass(child, fullName, members, memberKeyword, classes, inherit);
+		}
+	}
+
+	/** @return the sub lists of a parsed list, atoms are skipped */
+	@SuppressWarnings("unchecked")
+	private static List<List<Object>> lists(List<Object> node) {
+		List<List<Object>> result = new ArrayList<List<Object>>();
+		Iterator<Object> items = node.iterator();
+		while (items.hasNext()) {
+			Object item = items.next();
+			if (item instanceof List) {
+				result.add((List<Object>) item);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A small reader for the parenthesised .fed syntax. Atoms are returned as
+	 * Strings and lists as Lists; ";" starts a comment up to the end of line.
+	 */
+	private static class Parser {
+		private final Reader in;
+		private int next;
+
+		Parser(Reader in) throws IOException {
+			this.in = in;
+			this.next = in.read();
+		}
+
+		List<Object> parse() throws IOException {
+			skipBlanks();
+			if (next != '(') {
+				throw new IOException("FED file must start with '('");
+			}
+			return readList();
+		}
+
+		private List<Object> readList() throws IOException {
+			next = in.read(); // skip '('
+			List<Object> list = new ArrayList<Object>();
+			while (true) {
+				skipBlanks();
+				if (next == -1) {
+					throw new IOException("Unexpected end of FED file");
+				} else if (next == ')') {
+					next = in.read();
+					return list;
+				} else if (next == '(') {
+					list.add(readList());
+				} else {
+					list.add(readAtom());
+				}
+			}
+		}
+
+		private String readAtom() throws IOException {
+			StringBuilder atom = new StringBuilder();
+			while (next != -1 && next != '(' && next != ')' && next != ';'
+					&& !Character.isWhitespace(next)) {
+				atom.append((char) next);
+				next = in.read();
+			}
+			return atom.toString();
+		}
+
+		private void skipBlanks() throws IOException {
+			while (true) {
+				if (next == ';') {
+					while (next != -1 && next != '\n') {
+						next = in.read();
+					}
+				} else if (next != -1 && Character.isWhitespace(next)) {
+					next = in.read();
+				} else {
+					return;
+				}
+			}
+		}
+	}
+}
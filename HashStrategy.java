@@ -0,0 +1,23 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.data.Token;
+
+/**
+ * Sends every token of a sensor to the same output channel, so that a slave
+ * sees the whole series of the sensors it models. The sensor is the input
+ * channel of the separator, and sensor <i>n</i> goes to channel <i>n</i>
+ * modulo the width: consecutive sensors are spread evenly over the slaves.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class HashStrategy implements LoadBalancingStrategy {
+
+	public String getName() {
+		return LoadBalancingStrategies.HASH;
+	}
+
+	public int selectChannel(int source, Token token, int width,
+			ChannelLoads loads) {
+		return (source & Integer.MAX_VALUE) % width;
+	}
+}
@@ -0,0 +1,59 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.data.Token;
+
+/**
+ * Sends each token to the slave with the smallest load: the backlog it last
+ * reported (see the loadReportInterval parameter of the slave director) plus
+ * the tokens sent to it since that report. Without reports, or outside a
+ * federation, the load is the count of tokens sent, so the tokens are spread
+ * evenly. Ties go to the lowest channel.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class LeastLoadedStrategy implements LoadBalancingStrategy {
+
+	// tokens sent to each output channel since the last report of its slave
+	private int[] sent = new int[0];
+	// reports of each slave seen so far
+	private long[] reports = new long[0];
+
+	public String getName() {
+		return LoadBalancingStrategies.LEAST_LOADED;
+	}
+
+	public int selectChannel(int source, Token token, int width,
+			ChannelLoads loads) {
+		if (sent.length < width) {
+			int[] grownSent = new int[width];
+			long[] grownReports = new long[width];
+			System.arraycopy(sent, 0, grownSent, 0, sent.length);
+			System.arraycopy(reports, 0, grownReports, 0, reports.length);
+			sent = grownSent;
+			reports = grownReports;
+		}
+
+		int best = 0;
+		long bestLoad = Long.MAX_VALUE;
+		for (int c = 0; c < width; c++) {
+			long load;
+			if (loads == null) {
+				load = sent[c];
+			} else {
+				// output channel c is canal(c + 1), the channel of the slave
+				long count = loads.getReportCount(c + 1);
+				if (count != reports[c]) {
+					reports[c] = count;
+					sent[c] = 0;
+				}
+				load = sent[c] + Math.max(loads.getBacklog(c + 1), 0);
+			}
+			if (load < bestLoad) {
+				best = c;
+				bestLoad = load;
+			}
+		}
+		sent[best]++;
+		return best;
+	}
+}
@@ -0,0 +1,39 @@
+package ptolemy.myactors.MaximumEntropy;
+
+/**
+ * The available {@link LoadBalancingStrategy}s, by the name used in the
+ * strategy parameter of the {@link DataSeparator}.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class LoadBalancingStrategies {
+
+	/** One token per channel in turn, see {@link RoundRobinStrategy} */
+	public static final String ROUND_ROBIN = "roundRobin";
+
+	/** Every token of a sensor to the same channel, see {@link HashStrategy} */
+	public static final String HASH = "hash";
+
+	/** The channel of the least busy slave, see {@link LeastLoadedStrategy} */
+	public static final String LEAST_LOADED = "leastLoaded";
+
+	private LoadBalancingStrategies() {
+	}
+
+	/**
+	 * @return a new strategy with the given name
+	 * @exception IllegalArgumentException
+	 *                If there is no strategy with that name.
+	 */
+	public static LoadBalancingStrategy forName(String name) {
+		if (ROUND_ROBIN.equals(name)) {
+			return new RoundRobinStrategy();
+		} else if (HASH.equals(name)) {
+			return new HashStrategy();
+		} else if (LEAST_LOADED.equals(name)) {
+			return new LeastLoadedStrategy();
+		}
+		throw new IllegalArgumentException(
+				"Unknown load balancing strategy: " + name);
+	}
+}
@@ -0,0 +1,33 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.data.Token;
+
+/**
+ * Chooses the channel of the {@link DataSeparator} output, that is the slave,
+ * each input token goes to. Output channel <i>c</i> feeds input <i>c</i> of
+ * the MasterFederateActor, which sends it on canal<i>c + 1</i>. The strategy
+ * is chosen with the strategy parameter of the separator.
+ *
+ * @see LoadBalancingStrategies
+ * @author adapted by Alisson Brito
+ */
+public interface LoadBalancingStrategy {
+
+	/** @return the name of the strategy, as given in the actor parameter */
+	public String getName();
+
+	/**
+	 * @param source
+	 *            the input channel of the token, the sensor it comes from
+	 * @param token
+	 *            the token to send
+	 * @param width
+	 *            the width of the output, greater than zero
+	 * @param loads
+	 *            the backlogs the slaves reported, null when the model does
+	 *            not run in a federation
+	 * @return the output channel, between 0 and width - 1
+	 */
+	public int selectChannel(int source, Token token, int width,
+			ChannelLoads loads);
+}
@@ -0,0 +1,250 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.NameNotFound;
+import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The part of the {@link LoopbackFederate} and the {@link NioFederate} that
+ * does not depend on how they reach the other federates: the handles of the
+ * FOM numbered with {@link HandleRegistry#resolveLocally()}, the channels
+ * subscribed, the encoding and decoding of the samples with the codec of the
+ * settings and the pipelined time advance requests. A subclass sends the
+ * subscriptions and the requests and waits for the grants.
+ *
+ * @author adapted by Alisson Brito
+ */
+public abstract class LocalRTIFederate implements PtolemyFederate {
+
+	protected final boolean master;
+
+	protected FederateSettings settings = new FederateSettings();
+	protected AttributeCodec codec = new StringAttributeCodec();
+	protected HandleRegistry handles;
+
+	protected FederateAmbassador fedamb;
+
+	// pipelined time advance
+	protected TimeAdvanceRequests requests = new TimeAdvanceRequests();
+
+	// "LoopbackMaster  : " and so on
+	private final String logPrefix;
+
+	// samples of the old sendData(String)
+	private SampleBatch legacySamples = new SampleBatch();
+
+	/**
+	 * @param backend
+	 *            the name of the backend in the log
+	 * @param master
+	 *            true for the master, which sends on every channel, false for
+	 *            a slave, which receives its slave channel
+	 */
+	protected LocalRTIFederate(String backend, boolean master) {
+		this.master = master;
+		this.logPrefix = String.format("%-16s: ", backend
+				+ (master ? "Master" : "Slave"));
+		fedamb = new FederateAmbassador();
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	public void configure(FederateSettings settings) {
+		this.settings = settings;
+		this.codec = AttributeCodecs.forName(settings.getAttributeCodec());
+	}
+
+	/**
+	 * Read the handles of the FOM and create the FederateAmbassador, before
+	 * joining.
+	 */
+	protected void readHandles(String fedFileName) throws RTIexception {
+		try {
+			handles = new HandleRegistry(fedFileName);
+		} catch (IOException e) {
+			throw new RTIinternalError("Cannot read fom " + fedFileName + ": "
+					+ e.getMessage());
+		}
+		handles.resolveLocally();
+
+		fedamb = new FederateAmbassador(settings.getReceivedDataCapacity());
+		fedamb.setDebugListener(settings.getDebugListener());
+		fedamb.setTimeTrace(settings.getTimeTrace());
+		fedamb.federateLookahead = settings.getLookahead();
+	}
+
+	/**
+	 * Subscribe the channels of this federate: every canalN of the FOM for
+	 * the master, the channels of its region with DDM or else its slave
+	 * channel for a slave.
+	 */
+	protected void subscribeChannels() throws RTIexception {
+		if (master) {
+			// every canalN the FOM declares, there may be gaps
+			for (int channel = 1; channel <= handles.getChannelCount(); channel++) {
+				try {
+					subscribe(handles.getChannelHandle(channel));
+				} catch (NameNotFound e) {
+					continue;
+				}
+			}
+		} else if (settings.isUseDDM()) {
+			// the channels of our region, as the RTI would route them
+			int[] channels = handles.getDeclaredChannels();
+			for (int i = 0; i < channels.length; i++) {
+				if (ChannelRegions.contains(settings, channels[i])) {
+					subscribe(handles.getChannelHandle(channels[i]));
+				}
+			}
+		} else {
+			subscribe(handles.getChannelHandle(settings.getSlaveChannel()));
+		}
+	}
+
+	/** Receive the reflections of the given attribute handle */
+	protected abstract void subscribe(int handle) throws RTIexception;
+
+	public void sendData(String data) throws RTIexception {
+		if (!master) {
+			// the slave does not send data, as SlaveFederate
+			return;
+		}
+		legacySamples.clear();
+		MasterFederate.parseSamples(data, legacySamples, handles
+				.getChannelCount(), fedamb.federateTime);
+		sendData(legacySamples);
+	}
+
+	public Attributes receivedData(double time) {
+		Attributes attrs = fedamb.receivedData(null);
+		if (attrs != null && attrs.getSamples() == null) {
+			decodeSamples(attrs);
+		}
+		return attrs;
+	}
+
+	public Attributes consumeReceivedData(double time) {
+		return fedamb.consumeReceivedData(null);
+	}
+
+	public int drainReceivedData(double time, List<Attributes> into) {
+		int first = into.size();
+		int count = fedamb.drainReceivedData(time, into);
+		for (int i = first; i < into.size(); i++) {
+			if (into.get(i).getSamples() == null) {
+				decodeSamples(into.get(i));
+			}
+		}
+		return count;
+	}
+
+	public void recycleReceivedData(List<Attributes> used) {
+		fedamb.recycle(used);
+	}
+
+	public boolean hasReceivedData(double time) {
+		return fedamb.hasReceivedData(time);
+	}
+
+	/** Decode the reflected channel attributes with our codec */
+	private void decodeSamples(Attributes attrs) {
+		SampleBatch samples = attrs.getSampleBuffer();
+		double time = attrs.getTime();
+		for (int i = 0; i < attrs.size(); i++) {
+			try {
+				int channel = handles.getChannel(attrs.getAttributeHandle(i));
+				codec.decode(channel, attrs.getValueReference(i), 0, attrs
+						.getValueLength(i), time, samples);
+			} catch (IllegalArgumentException e) {
+				log("Cannot decode attribute " + i + ": " + e.getMessage());
+			}
+		}
+		attrs.setSamples(samples);
+	}
+
+	public double getRTITime() {
+		return fedamb.federateTime;
+	}
+
+	public double getRTINextTime() {
+		return fedamb.federateTime + fedamb.federateLookahead;
+	}
+
+	public void advanceTime(double timestep) throws RTIexception {
+		advanceTimeTo(fedamb.federateTime + timestep);
+	}
+
+	public void advanceTimeTo(double nextStep) throws RTIexception {
+		sendRequest(nextStep);
+		awaitGrant();
+	}
+
+	public void requestTimeAdvance(double nextStep) throws RTIexception {
+		if (requests.request(nextStep, fedamb.isAdvancing, fedamb.federateTime)) {
+			sendRequest(nextStep);
+		}
+	}
+
+	public void awaitTimeAdvance() throws RTIexception {
+		awaitGrant();
+		// send the requests merged while we were waiting
+		double deferred = requests.takeDeferred(fedamb.federateTime);
+		if (!Double.isNaN(deferred)) {
+			sendRequest(deferred);
+		}
+	}
+
+	/**
+	 * Ask for a time advance, a nextEventRequest if the settings say so.
+	 * Records the request and sets the ambassador advancing.
+	 */
+	protected abstract void sendRequest(double time) throws RTIexception;
+
+	/** Wait until the pending request, if any, is granted */
+	protected abstract void awaitGrant() throws RTIexception;
+
+	public boolean isTimeAdvancePending() {
+		return fedamb.isAdvancing;
+	}
+
+	public double getLookahead() {
+		return fedamb.federateLookahead;
+	}
+
+	public double getSendTime() {
+		return requests.getSendTime(fedamb.isAdvancing, fedamb.federateTime,
+				fedamb.federateLookahead);
+	}
+
+	public ChannelLoads getChannelLoads() {
+		return fedamb.getChannelLoads();
+	}
+
+	public long getDroppedDataCount() {
+		return fedamb.getDroppedDataCount();
+	}
+
+	/**
+	 * @return how long to wait for the other federates, in milliseconds, 0 to
+	 *         wait forever: the startup timeout when headless
+	 */
+	static long startupTimeout(FederateSettings settings) {
+		if (!settings.isHeadless()) {
+			return 0;
+		}
+		return (long) (settings.getStartupTimeout() * 1000);
+	}
+
+	/**
+	 * This is just a helper method to make sure all logging it output in the
+	 * same form
+	 */
+	protected void log(String message) {
+		System.out.println(logPrefix + message);
+	}
+}
@@ -0,0 +1,123 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.NameNotFound;
+import hla.rti.RTIexception;
+
+/**
+ * A master or slave federate talking to the other federates of the same JVM
+ * through a {@link LoopbackFederation} instead of a CERTI RTI. It reads the
+ * same FOM, numbers its handles with {@link HandleRegistry#resolveLocally()}
+ * and encodes the channels with the codec of the settings, so the directors
+ * and actors see no difference; there is no rtig, no socket and no dialog.
+ * <p/>
+ * The master publishes and subscribes every canalN of the FOM and starts the
+ * federation once the number of slaves of the settings has joined; a slave
+ * subscribes its own channel, or with DDM the channels of its region. Each
+ * channel value is one reflection, with or without batchUpdates, which only
+ * matters for the number of RTI calls.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class LoopbackFederate extends LocalRTIFederate {
+
+	/** The federation every loopback federate of the JVM joins */
+	public static final String FEDERATION_NAME = "ExampleFederation";
+
+	private LoopbackFederation federation;
+	private LoopbackFederation.Member member;
+
+	/**
+	 * @param master
+	 *            true for the master, which sends on every channel, false for
+	 *            a slave, which receives its slave channel
+	 */
+	public LoopbackFederate(boolean master) {
+		super("Loopback", master);
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	public void createFederate(String federateName, String fedFileName)
+			throws RTIexception {
+		readHandles(fedFileName);
+
+		federation = LoopbackFederation.forName(FEDERATION_NAME);
+		member = federation.join(federateName, fedamb, settings.getLookahead());
+		log("Joined Federation as " + federateName);
+
+		try {
+			subscribeChannels();
+			if (master) {
+				federation.setExpectedFederates(settings.getNumberOfSlaves() + 1);
+			}
+			federation.synchronize(member, startupTimeout(settings));
+		} catch (RTIexception e) {
+			// do not leave the others waiting for us
+			finalizeFederate();
+			throw e;
+		}
+		log("Achieved sync point: " + MasterFederate.READY_TO_RUN);
+	}
+
+	protected void subscribe(int handle) {
+		federation.subscribe(member, handle);
+	}
+
+	public void finalizeFederate() throws RTIexception {
+		if (member != null) {
+			federation.resign(member);
+			member = null;
+			log("Resigned from Federation");
+		}
+	}
+
+	public void sendData(SampleBatch samples) throws RTIexception {
+		for (int i = 0; i < samples.size(); i++) {
+			int channel = samples.getChannel(i);
+			int handle;
+			try {
+				handle = handles.getChannelHandle(channel);
+			} catch (NameNotFound e) {
+				log("Value not sent, no canal" + channel + ": "
+						+ samples.getText(i));
+				continue;
+			}
+			byte[] value = codec.encode(samples, i);
+			if (settings.sendReceiveOrder()) {
+				federation.reflect(member, handle, value, value.length);
+			}
+			if (settings.sendTimestampOrder()) {
+				federation.reflect(member, handle, value, value.length,
+						getSendTime());
+			}
+		}
+	}
+
+	protected void sendRequest(double time) throws RTIexception {
+		requests.sent(time);
+		federation.requestAdvance(member, time, settings.isNextEventRequest());
+	}
+
+	protected void awaitGrant() throws RTIexception {
+		federation.awaitGrant(member);
+	}
+
+	public void setLookahead(double lookahead) throws RTIexception {
+		if (lookahead == fedamb.federateLookahead) {
+			return;
+		}
+		if (lookahead < fedamb.federateLookahead) {
+			requests.lowerLookahead(getSendTime());
+		}
+		federation.modifyLookahead(member, lookahead);
+	}
+
+	public void reportLoad() {
+		if (!master) {
+			federation.reportLoad(member, settings.getSlaveChannel(), fedamb
+					.getReceivedDataCount());
+		}
+	}
+}
@@ -0,0 +1,464 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.InvalidFederationTime;
+import hla.rti.InvalidLookahead;
+import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+import hla.rti.TimeAdvanceAlreadyInProgress;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import certi.rti.impl.CertiLogicalTime;
+
+/**
+ * An in-process stand-in for the RTI, shared by the {@link LoopbackFederate}s
+ * running as threads of the same JVM. It covers what the master and slave
+ * federates use: join and resign, the ReadyToRun synchronization point,
+ * attribute reflection (receive ordered and time stamp ordered) and
+ * conservative time management with lookahead, for both timeAdvanceRequest
+ * and nextEventRequest. The load reports of the slaves are handed to the
+ * other federates as they come.
+ * <p/>
+ * Every federate is time regulating and time constrained. A request for time
+ * <i>T</i> is granted once <i>T</i> is below the lower bound on the time
+ * stamps the other federates can still send, that is the time they were
+ * granted or asked for, plus their lookahead. Time stamped reflections wait
+ * in the receiver's inbox until a grant covers them. The reflections, the
+ * grants and the synchronization are handed to the FederateAmbassador of
+ * each federate with the RTI callbacks, so the NioCoordinator can forward
+ * them to remote federates. The lookahead must be greater than zero.
+ * <p/>
+ * All the state is guarded by the federation monitor; the federates wait on
+ * it for the synchronization point and the grants.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class LoopbackFederation {
+
+	/** Orders the inbox by time stamp and then by sending order */
+	private static final Comparator<Message> BY_TIME = new Comparator<Message>() {
+		public int compare(Message a, Message b) {
+			if (a.time != b.time) {
+				return a.time < b.time ? -1 : 1;
+			}
+			return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0
+					: 1);
+		}
+	};
+
+	// federation name -> federation, while someone is joined
+	private static final Map<String, LoopbackFederation> federations = new HashMap<String, LoopbackFederation>();
+
+	private final String name;
+	private final List<Member> members = new ArrayList<Member>();
+
+	// how many federates the synchronization point waits for, 0 until the
+	// master says it
+	private int expectedFederates = 0;
+	private boolean readyToRun = false;
+	private long sequence = 0;
+
+	/** A federation outside the JVM wide registry, see {@link #forName(String)} */
+	LoopbackFederation(String name) {
+		this.name = name;
+	}
+
+	// ----------------------------------------------------------
+	// STATIC METHODS
+	// ----------------------------------------------------------
+
+	/**
+	 * @return the federation with the given name, created by the first
+	 *         federate asking for it
+	 */
+	public static LoopbackFederation forName(String name) {
+		synchronized (federations) {
+			LoopbackFederation federation = federations.get(name);
+			if (federation == null) {
+				federation = new LoopbackFederation(name);
+				federations.put(name, federation);
+			}
+			return federation;
+		}
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	public String getName() {
+		return name;
+	}
+
+	/** @return how many federates are joined */
+	public synchronized int getFederateCount() {
+		return members.size();
+	}
+
+	/**
+	 * Join the federation at time 0. Reflections for the federate are handed
+	 * to the given ambassador.
+	 */
+	synchronized Member join(String federateName, FederateAmbassador fedamb,
+			double lookahead) throws RTIexception {
+		if (!(lookahead > 0)) {
+			throw new InvalidLookahead("The lookahead must be positive: "
+					+ lookahead);
+		}
+		Member member = new Member(federateName, fedamb, lookahead);
+		fedamb.federateTime = 0.0;
+		fedamb.federateLookahead = lookahead;
+		fedamb.isRegulating = true;
+		fedamb.isConstrained = true;
+		members.add(member);
+		notifyAll();
+		return member;
+	}
+
+	/** Leave the federation, its pending reflections are lost */
+	synchronized void resign(Member member) {
+		members.remove(member);
+		member.inbox.clear();
+		member.pending = false;
+		if (members.isEmpty()) {
+			synchronized (federations) {
+				if (federations.get(name) == this) {
+					federations.remove(name);
+				}
+			}
+		}
+		evaluateGrants();
+		notifyAll();
+	}
+
+	/**
+	 * Set how many federates, the master included, must achieve the
+	 * synchronization point before the federation starts.
+	 */
+	synchronized void setExpectedFederates(int expectedFederates) {
+		this.expectedFederates = expectedFederates;
+		checkReadyToRun();
+	}
+
+	/**
+	 * Achieve the ReadyToRun synchronization point, without waiting. Every
+	 * federate gets federationSynchronized() once the expected federates have
+	 * all achieved it; a federate achieving it later gets it at once.
+	 */
+	synchronized void achieve(Member member) {
+		member.achieved = true;
+		if (readyToRun) {
+			member.fedamb.federationSynchronized(MasterFederate.READY_TO_RUN);
+		} else {
+			checkReadyToRun();
+		}
+	}
+
+	/**
+	 * Achieve the ReadyToRun synchronization point and wait until the
+	 * expected federates have all achieved it. Federates joining after the
+	 * federation started do not wait.
+	 *
+	 * @param timeout
+	 *            the longest wait in milliseconds, 0 to wait forever
+	 */
+	synchronized void synchronize(Member member, long timeout)
+			throws RTIexception {
+		achieve(member);
+		long end = System.currentTimeMillis() + timeout;
+		try {
+			while (!readyToRun) {
+				long left = end - System.currentTimeMillis();
+				if (timeout > 0 && left <= 0) {
+					throw new RTIinternalError("Only " + countAchieved()
+							+ " of " + expectedFederates + " federates reached "
+							+ MasterFederate.READY_TO_RUN + " in " + timeout
+							+ " ms");
+				}
+				wait(timeout > 0 ? left : 0);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RTIinternalError("Interrupted while waiting for "
+					+ MasterFederate.READY_TO_RUN);
+		}
+	}
+
+	private void checkReadyToRun() {
+		if (readyToRun || expectedFederates <= 0
+				|| countAchieved() < expectedFederates) {
+			return;
+		}
+		readyToRun = true;
+		for (int i = 0; i < members.size(); i++) {
+			members.get(i).fedamb
+					.federationSynchronized(MasterFederate.READY_TO_RUN);
+		}
+		notifyAll();
+	}
+
+	private int countAchieved() {
+		int count = 0;
+		for (int i = 0; i < members.size(); i++) {
+			if (members.get(i).achieved) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** Receive the reflections of the given attribute handle */
+	synchronized void subscribe(Member member, int handle) {
+		if (handle >= member.subscribed.length) {
+			boolean[] subscribed = new boolean[handle + 1];
+			System.arraycopy(member.subscribed, 0, subscribed, 0,
+					member.subscribed.length);
+			member.subscribed = subscribed;
+		}
+		member.subscribed[handle] = true;
+	}
+
+	/**
+	 * Reflect a value receive ordered: the subscribers get it at once, at
+	 * their current time. The value is copied.
+	 */
+	synchronized void reflect(Member sender, int handle, byte[] value,
+			int length) {
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+			if (member != sender && member.isSubscribed(handle)) {
+				member.fedamb.dataReceived(member.fedamb.federateTime, handle,
+						value, length);
+			}
+		}
+	}
+
+	/**
+	 * Reflect a value time stamp ordered: the subscribers get it when they
+	 * are granted its time. The value is copied.
+	 *
+	 * @exception InvalidFederationTime
+	 *                If the time is below the time the sender was granted or
+	 *                asked for, plus its lookahead.
+	 */
+	synchronized void reflect(Member sender, int handle, byte[] value,
+			int length, double time) throws InvalidFederationTime {
+		if (time < sender.bound()) {
+			throw new InvalidFederationTime("Time stamp " + time
+					+ " is below the lower bound " + sender.bound() + " of "
+					+ sender.name);
+		}
+		boolean queued = false;
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+			if (member != sender && member.isSubscribed(handle)) {
+				byte[] copy = new byte[length];
+				System.arraycopy(value, 0, copy, 0, length);
+				member.inbox.add(new Message(time, sequence++, handle, copy));
+				queued = true;
+			}
+		}
+		if (queued) {
+			// may be the next event of a federate waiting on nextEventRequest
+			evaluateGrants();
+		}
+	}
+
+	/**
+	 * Ask for a time advance; see {@link #awaitGrant(Member)} to wait for it.
+	 *
+	 * @param nextEvent
+	 *            true for a nextEventRequest, granted at the first time
+	 *            stamped reflection if it comes before <i>time</i>
+	 */
+	synchronized void requestAdvance(Member member, double time,
+			boolean nextEvent) throws RTIexception {
+		if (member.pending) {
+			throw new TimeAdvanceAlreadyInProgress(member.name
+					+ " already asked for " + member.requested);
+		}
+		if (time < member.granted) {
+			throw new InvalidFederationTime("Cannot go back from "
+					+ member.granted + " to " + time);
+		}
+		member.requested = time;
+		member.nextEvent = nextEvent;
+		member.pending = true;
+		member.fedamb.isAdvancing = true;
+		evaluateGrants();
+	}
+
+	/** Wait until the pending request of the federate is granted */
+	synchronized void awaitGrant(Member member) throws RTIexception {
+		try {
+			while (member.pending) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RTIinternalError("Interrupted while waiting for a grant");
+		}
+	}
+
+	/**
+	 * Change the lookahead of the federate. A smaller lookahead takes effect
+	 * at once, but the federate can never send below a time another federate
+	 * was already granted.
+	 */
+	synchronized void modifyLookahead(Member member, double lookahead)
+			throws InvalidLookahead {
+		if (!(lookahead > 0)) {
+			throw new InvalidLookahead("The lookahead must be positive: "
+					+ lookahead);
+		}
+		if (lookahead < member.lookahead) {
+			for (int i = 0; i < members.size(); i++) {
+				Member other = members.get(i);
+				if (other != member) {
+					member.floor = Math.max(member.floor, Math
+							.nextUp(other.granted));
+				}
+			}
+		}
+		member.lookahead = lookahead;
+		member.fedamb.federateLookahead = lookahead;
+		evaluateGrants();
+	}
+
+	/** Grant every pending request that can no longer receive earlier data */
+	private void evaluateGrants() {
+		boolean granted = false;
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+			if (member.pending && tryGrant(member)) {
+				granted = true;
+			}
+		}
+		if (granted) {
+			notifyAll();
+		}
+	}
+
+	private boolean tryGrant(Member member) {
+		double lowerBound = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < members.size(); i++) {
+			Member other = members.get(i);
+			if (other != member) {
+				lowerBound = Math.min(lowerBound, other.bound());
+			}
+		}
+
+		double time = member.requested;
+		if (member.nextEvent && !member.inbox.isEmpty()) {
+			time = Math.min(time, member.inbox.peek().time);
+		}
+		if (!(time < lowerBound)) {
+			return false;
+		}
+
+		while (!member.inbox.isEmpty() && member.inbox.peek().time <= time) {
+			Message message = member.inbox.poll();
+			member.fedamb.dataReceived(message.time, message.handle,
+					message.value, message.value.length);
+		}
+		member.granted = time;
+		member.pending = false;
+		member.fedamb.timeAdvanceGrant(new CertiLogicalTime(time));
+		return true;
+	}
+
+	/**
+	 * Hand the backlog of a slave to the other federates, unless it did not
+	 * change since its last report.
+	 *
+	 * @param backlog
+	 *            the reflections waiting at the federate; the ones still in
+	 *            its inbox, waiting for a grant, are added
+	 */
+	synchronized void reportLoad(Member sender, int channel, int backlog) {
+		backlog += sender.inbox.size();
+		if (backlog == sender.reportedLoad) {
+			return;
+		}
+		sender.reportedLoad = backlog;
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+			if (member != sender) {
+				member.fedamb.loadReported(channel, backlog);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------
+	// MEMBERS AND MESSAGES
+	// ----------------------------------------------------------
+
+	/** A joined federate, as seen by the federation */
+	static class Member {
+		final String name;
+		final FederateAmbassador fedamb;
+
+		double lookahead;
+		double granted = 0.0;
+		double requested = 0.0;
+		boolean pending = false;
+		boolean nextEvent = false;
+		// above the grants of the others when the lookahead shrank
+		double floor = Double.NEGATIVE_INFINITY;
+		boolean achieved = false;
+		// backlog of the last load report, -1 before the first one
+		int reportedLoad = -1;
+
+		// attribute handle -> subscribed
+		boolean[] subscribed = new boolean[0];
+		final PriorityQueue<Message> inbox = new PriorityQueue<Message>(16,
+				BY_TIME);
+
+		Member(String name, FederateAmbassador fedamb, double lookahead) {
+			this.name = name;
+			this.fedamb = fedamb;
+			this.lookahead = lookahead;
+		}
+
+		boolean isSubscribed(int handle) {
+			return handle >= 0 && handle < subscribed.length
+					&& subscribed[handle];
+		}
+
+		/**
+		 * @return the lowest time stamp this federate can still send: the
+		 *         time it was granted or asked for, or of its next event,
+		 *         plus its lookahead
+		 */
+		double bound() {
+			double time = granted;
+			if (pending) {
+				time = requested;
+				if (nextEvent && !inbox.isEmpty()) {
+					time = Math.min(time, inbox.peek().time);
+				}
+			}
+			return Math.max(floor, time + lookahead);
+		}
+	}
+
+	/** A time stamped reflection waiting for the grant of its receiver */
+	private static class Message {
+		final double time;
+		final long sequence;
+		final int handle;
+		final byte[] value;
+
+		Message(double time, long sequence, int handle, byte[] value) {
+			this.time = time;
+			this.sequence = sequence;
+			this.handle = handle;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * A single producer, single consumer ring of time stamped channel values in a
+ * memory-mapped file, the data plane between a master and a slave federate
+ * running on the same host. The master writes the values of one channel, the
+ * slave of that channel reads them; the RTI still carries time management and
+ * the synchronization points.
+ * <p/>
+ * Layout of the file: a header holding the capacity, the write position (at
+ * {@link #WRITE_POSITION}) and, on its own cache line, the read position (at
+ * {@link #READ_POSITION}); then <i>capacity</i> bytes of records. A record is
+ * its value length (int), 4 bytes of padding, its time stamp (double) and the
+ * value, padded to 8 bytes. A length of -1 marks the unused end of the ring
+ * before the writer wrapped around. Positions only grow, the offset in the
+ * ring is the position modulo the capacity.
+ * <p/>
+ * Written records are only made visible by {@link #publish()}. The federate
+ * publishes right before it asks the RTI for a time advance: a slave reads a
+ * record only once it is granted the record's time stamp, which needs that
+ * request, so the RTI call orders the writes of the master before the reads
+ * of the slave.
+ * <p/>
+ * A ring has at most one reader: {@link #open(File)} claims it with a lock on
+ * the file and a flag in the header (at {@link #READER}), and fails if another
+ * federate holds it. The writer only offers values to a claimed ring, see
+ * {@link #isClaimed()}; the values of a channel no local slave reads go
+ * through the RTI.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class MappedChannelRing {
+
+	/** Default size of the record area of a ring, in bytes */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	private static final int MAGIC = 0x50744d52; // "PtMR"
+
+	private static final int CAPACITY = 4;
+	private static final int WRITE_POSITION = 8;
+	private static final int READER = 16;
+	private static final int READ_POSITION = 64;
+	private static final int HEADER = 128;
+
+	// length, padding and time stamp
+	private static final int RECORD_HEADER = 16;
+	private static final int WRAP = -1;
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	// the record area, for the bulk copies
+	private final ByteBuffer data;
+	private final int capacity;
+
+	// the reader keeps the file open to hold its lock, null for the writer
+	private final RandomAccessFile readerFile;
+	private final FileLock readerLock;
+
+	// our own position: written but not published (producer) or read
+	// (consumer)
+	private long position;
+
+	private MappedChannelRing(File file, MappedByteBuffer buffer, int capacity,
+			long position, RandomAccessFile readerFile, FileLock readerLock) {
+		this.file = file;
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.position = position;
+		this.readerFile = readerFile;
+		this.readerLock = readerLock;
+		buffer.position(HEADER);
+		this.data = buffer.slice();
+		buffer.position(0);
+	}
+
+	// ----------------------------------------------------------
+	// STATIC METHODS
+	// ----------------------------------------------------------
+
+	/**
+	 * Create the ring of the writer, replacing any file left by a previous
+	 * run. Must be done before the reader opens it.
+	 *
+	 * @param capacity
+	 *            size of the record area in bytes, rounded up to 8
+	 */
+	public static MappedChannelRing create(File file, int capacity)
+			throws IOException {
+		capacity = (Math.max(capacity, 64) + 7) & ~7;
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Cannot replace " + file);
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(HEADER + capacity);
+			MappedByteBuffer buffer = raf.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0, HEADER + capacity);
+			buffer.putInt(CAPACITY, capacity);
+			buffer.putLong(WRITE_POSITION, 0L);
+			buffer.putLong(READ_POSITION, 0L);
+			buffer.putInt(READER, 0);
+			buffer.putInt(0, MAGIC);
+			return new MappedChannelRing(file, buffer, capacity, 0L, null,
+					null);
+		} finally {
+			// the mapping stays valid once the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Open the ring created by the writer, to read it, and claim it until
+	 * {@link #close()}: from then on the writer sends the values of the
+	 * channel through the ring.
+	 *
+	 * @exception IOException
+	 *                If the file is not a ring or another federate reads it.
+	 */
+	public static MappedChannelRing open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		boolean claimed = false;
+		try {
+			if (raf.length() < HEADER) {
+				throw new IOException(file + " is not a channel ring");
+			}
+			MappedByteBuffer buffer = raf.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0, raf.length());
+			int capacity = buffer.getInt(CAPACITY);
+			if (buffer.getInt(0) != MAGIC || HEADER + capacity > raf.length()) {
+				throw new IOException(file + " is not a channel ring");
+			}
+			// a second reader would move the read position of the first
+			FileLock lock;
+			try {
+				lock = raf.getChannel().tryLock(READER, 4, false);
+			} catch (OverlappingFileLockException e) {
+				// held by another federate of this JVM
+				lock = null;
+			}
+			if (lock == null) {
+				throw new IOException(file
+						+ " is already read by another federate");
+			}
+			buffer.putInt(READER, 1);
+			claimed = true;
+			return new MappedChannelRing(file, buffer, capacity, buffer
+					.getLong(READ_POSITION), raf, lock);
+		} finally {
+			if (!claimed) {
+				raf.close();
+			}
+		}
+	}
+
+	/** @return the ring file of a channel in the data plane directory */
+	public static File channelFile(File directory, int channel) {
+		return new File(directory, HandleRegistry.CHANNEL_PREFIX + channel
+				+ ".ring");
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	public File getFile() {
+		return file;
+	}
+
+	/** @return the size of the record area, in bytes */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return true if a reader has opened the ring and not closed it; the
+	 *         writer offers nothing to a ring no one reads
+	 */
+	public boolean isClaimed() {
+		return buffer.getInt(READER) != 0;
+	}
+
+	/**
+	 * Give up the claim of the reader, which reads nothing more. Does nothing
+	 * for the writer.
+	 */
+	public void close() throws IOException {
+		if (readerFile == null) {
+			return;
+		}
+		buffer.putInt(READER, 0);
+		try {
+			readerLock.release();
+		} finally {
+			readerFile.close();
+		}
+	}
+
+	/**
+	 * Write a value, not visible to the reader before {@link #publish()}.
+	 *
+	 * @return false, writing nothing, if the ring has no room for it
+	 */
+	public boolean offer(double time, byte[] value, int offset, int length) {
+		int size = (RECORD_HEADER + length + 7) & ~7;
+		int at = (int) (position % capacity);
+		int tail = capacity - at;
+		int skip = tail < size ? tail : 0;
+		if (size > capacity
+				|| position + skip + size - buffer.getLong(READ_POSITION) > capacity) {
+			return false;
+		}
+		if (skip > 0) {
+			// not enough room before the end, start again at 0
+			data.putInt(at, WRAP);
+			position += skip;
+			at = 0;
+		}
+		data.putInt(at, length);
+		data.putDouble(at + 8, time);
+		data.position(at + RECORD_HEADER);
+		data.put(value, offset, length);
+		position += size;
+		return true;
+	}
+
+	/** Make the records written so far visible to the reader */
+	public void publish() {
+		buffer.putLong(WRITE_POSITION, position);
+	}
+
+	/**
+	 * @return the time stamp of the next record to read, or positive infinity
+	 *         if there is none
+	 */
+	public double peekTime() {
+		if (!skipWrap()) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return data.getDouble((int) (position % capacity) + 8);
+	}
+
+	/** @return the length of the next record to read, -1 if there is none */
+	public int peekLength() {
+		if (!skipWrap()) {
+			return -1;
+		}
+		return data.getInt((int) (position % capacity));
+	}
+
+	/**
+	 * Copy the value of the next record into <i>into</i>, which must hold
+	 * {@link #peekLength()} bytes, and give its room back to the writer.
+	 *
+	 * @return the length of the value, -1 if there is no record
+	 */
+	public int take(byte[] into) {
+		if (!skipWrap()) {
+			return -1;
+		}
+		int at = (int) (position % capacity);
+		int length = data.getInt(at);
+		data.position(at + RECORD_HEADER);
+		data.get(into, 0, length);
+		position += (RECORD_HEADER + length + 7) & ~7;
+		buffer.putLong(READ_POSITION, position);
+		return length;
+	}
+
+	/**
+	 * Step over the end of the ring left unused by the writer.
+	 *
+	 * @return true if there is a record to read
+	 */
+	private boolean skipWrap() {
+		long written = buffer.getLong(WRITE_POSITION);
+		if (position >= written) {
+			return false;
+		}
+		int at = (int) (position % capacity);
+		if (data.getInt(at) == WRAP) {
+			position += capacity - at;
+			buffer.putLong(READ_POSITION, position);
+		}
+		return position < written;
+	}
+}
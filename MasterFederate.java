@@ -21,6 +21,8 @@ import hla.rti.FederationExecutionDoesNotExist;
 import hla.rti.LogicalTime;
 import hla.rti.RTIambassador;
 import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+import hla.rti.Region;
 import hla.rti.ResignAction;
 import hla.rti.SuppliedAttributes;
 import hla.rti.SuppliedParameters;
@@ -33,6 +35,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.management.MBeanServerConnection;
 import javax.swing.JOptionPane;
@@ -106,6 +110,13 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 	/** The sync point all federates will sync up on before starting */
 	public static final String READY_TO_RUN = "ReadyToRun";
 
+	/**
+	 * Prefix of the name of the channel object a headless slave registers
+	 * once it joined, followed by its federate handle; the master counts the
+	 * objects it discovers with this name
+	 */
+	public static final String SLAVE_JOINED = "SlaveJoined.";
+
 	// ----------------------------------------------------------
 	// INSTANCE VARIABLES
 	// ----------------------------------------------------------
@@ -114,6 +125,29 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 
 	private int objectHandle;
 
+	private FederateSettings settings = new FederateSettings();
+
+	// handles of the FOM, resolved once after joining
+	private HandleRegistry handles;
+
+	// ticks the RTI in the background, null when the director ticks
+	private RTIPump pump;
+
+	// pipelined time advance
+	private TimeAdvanceRequests requests = new TimeAdvanceRequests();
+
+	// channels already present in the attribute update being built
+	private boolean[] inBatch;
+
+	private AttributeCodec codec = new StringAttributeCodec();
+
+	// samples of the old sendData(String)
+	private SampleBatch legacySamples = new SampleBatch();
+
+	// data plane: the ring of each channel, null when the values go
+	// through the RTI
+	private MappedChannelRing[] rings;
+
 	// ----------------------------------------------------------
 	// CONSTRUCTORS
 	// ----------------------------------------------------------
@@ -136,10 +170,21 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 
 	public void createFederate(String federateName, String federateFile)
 			throws RTIexception {
+		// read the FOM, the handles are resolved after joining
+		try {
+			handles = new HandleRegistry(federateFile);
+		} catch (IOException e) {
+			throw new RTIinternalError("Cannot read fom " + federateFile
+					+ ": " + e.getMessage());
+		}
+
 		// ///////////////////////////////
 		// 1. create the RTIambassador //
 		// ///////////////////////////////
 		createRTIAmbassador();
+		if (settings.isRtiPumpThread()) {
+			pump = new RTIPump(rtiamb, settings.getRtiPumpTimeout());
+		}
 
 		// ////////////////////////////
 		// 2. create the federation //
@@ -168,6 +213,9 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 			e.printStackTrace();
 		}
 
+		// the channel rings must exist before the slaves pass the sync point
+		createDataPlane();
+
 		// //////////////////////////////
 		// 4. announce the sync point //
 		// //////////////////////////////
@@ -182,7 +230,14 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// So that there is time to add other federates, we will wait until the
 		// user hits enter before proceeding. That was, you have time to start
 		// other federates.
-		waitForUser();
+		// Headless, we wait for the configured number of slaves instead and
+		// register the sync point ourselves, once they are all in.
+		if (settings.isHeadless()) {
+			waitForSlaves();
+			announceSynchronizationPoint();
+		} else {
+			waitForUser();
+		}
 
 		/*
 		 * MBeanServerConnection mbsc =
@@ -217,7 +272,12 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// 7. publish and subscribe //
 		// ////////////////////////////
 		// in this section we tell the RTI of all the data we are going to
-		// produce, and all the data we want to know about
+		// produce, and all the data we want to know about. All the handles
+		// of the FOM are resolved here, once, unless waitForSlaves() did.
+		if (!handles.isResolved()) {
+			handles.resolve(rtiamb);
+		}
+		inBatch = new boolean[handles.getChannelCount() + 1];
 		publishAndSubscribe();
 		log("Published and Subscribed");
 
@@ -226,12 +286,22 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// ///////////////////////////////////
 		objectHandle = registerObject();
 		log("Registered Object, handle=" + objectHandle);
+
+		// from now on the callbacks are delivered by the pump thread
+		if (pump != null) {
+			pump.start(federateName);
+		}
 	}
 
 	public void sendData(String data) throws RTIexception {
 		// 9.1 update the attribute values of the instance //
 		// System.out.println("bbbbbbbbbb");
-		updateAttributeValues(data); // objecthandle
+		// the old "channelN - value - time ; ..." strings are turned into
+		// samples and go through the codec like everything else
+		legacySamples.clear();
+		parseSamples(data, legacySamples, handles.getChannelCount(),
+				fedamb.federateTime);
+		sendData(legacySamples);
 
 		/*
 		 * try { BufferedWriter arquivo; String str = ""; CpuPerc cpu; cpu =
@@ -268,7 +338,23 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// sendInteraction(data);//angelo
 	}
 
+	public void sendData(SampleBatch samples) throws RTIexception {
+		// 9.1 update the attribute values of the instance //
+		lockRTI();
+		try {
+			updateAttributeValues(samples);
+		} finally {
+			unlockRTI();
+		}
+	}
+
 	public void finalizeFederate() throws RTIexception {
+		// the RTI is ours again
+		if (pump != null) {
+			pump.stop();
+		}
+		publishDataPlane();
+
 		// ////////////////////////////////////
 		// 10. delete the object we created //
 		// ////////////////////////////////////
@@ -308,9 +394,39 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 	 * CertiLogicalTime(time); return fedamb.consumeReceivedData(t); }
 	 */
 
+	public void configure(FederateSettings settings) {
+		this.settings = settings;
+		this.codec = AttributeCodecs.forName(settings.getAttributeCodec());
+	}
+
 	public Attributes receivedData(double time) {
 		LogicalTime t = new CertiLogicalTime(time);
-		return fedamb.receivedData(t);
+		Attributes attrs = fedamb.receivedData(t);
+		if (attrs != null && attrs.getSamples() == null) {
+			decodeSamples(attrs);
+		}
+		return attrs;
+	}
+
+	/**
+	 * Decode the reflected channel attributes with our codec and keep the
+	 * samples in the Attributes, so the actors never see the raw bytes.
+	 */
+	private void decodeSamples(Attributes attrs) {
+		// decoded straight from the copied buffers, into the batch owned by
+		// the pooled Attributes
+		SampleBatch samples = attrs.getSampleBuffer();
+		double time = attrs.getTime();
+		for (int i = 0; i < attrs.size(); i++) {
+			try {
+				int channel = handles.getChannel(attrs.getAttributeHandle(i));
+				codec.decode(channel, attrs.getValueReference(i), 0, attrs
+						.getValueLength(i), time, samples);
+			} catch (IllegalArgumentException e) {
+				log("Cannot decode attribute " + i + ": " + e.getMessage());
+			}
+		}
+		attrs.setSamples(samples);
 	}
 
 	public Attributes consumeReceivedData(double time) {
@@ -318,6 +434,25 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		return fedamb.consumeReceivedData(t);
 	}
 
+	public int drainReceivedData(double time, List<Attributes> into) {
+		int first = into.size();
+		int count = fedamb.drainReceivedData(time, into);
+		for (int i = first; i < into.size(); i++) {
+			if (into.get(i).getSamples() == null) {
+				decodeSamples(into.get(i));
+			}
+		}
+		return count;
+	}
+
+	public void recycleReceivedData(List<Attributes> used) {
+		fedamb.recycle(used);
+	}
+
+	public double getRTITime() {
+		return fedamb.federateTime;
+	}
+
 	private void createRTIAmbassador() throws RTIexception {
 		log(" - createAmbassador()");
 		rtiamb = RtiFactoryFactory.getRtiFactory().createRtiAmbassador();
@@ -334,7 +469,10 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 
 	private void joinFederation(String federateName) throws RTIexception {
 		// create the federate ambassador and join the federation
-		fedamb = new FederateAmbassador();
+		fedamb = new FederateAmbassador(settings.getReceivedDataCapacity());
+		fedamb.setDebugListener(settings.getDebugListener());
+		fedamb.setTimeTrace(settings.getTimeTrace());
+		fedamb.federateLookahead = settings.getLookahead();
 		rtiamb.joinFederationExecution(federateName, "ExampleFederation",
 				fedamb);
 		log("Joined Federation as " + federateName);
@@ -349,7 +487,7 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// wait until the point is announced
 		while (fedamb.isRegistered == false || fedamb.isAnnounced == false) {
 			log(" tick () !!");
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 	}
 
@@ -357,7 +495,7 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// Not present in SlaveFederate
 		while (fedamb.isAnnounced == false) {
 			// log("isAnnounced == false");
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 
 		rtiamb.synchronizationPointAchieved(READY_TO_RUN);
@@ -367,13 +505,80 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		while (fedamb.isReadyToRun == false) {
 			// log("isReadyToRun == false");
 			System.out.println("Master 1: tick () !!");
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
+		}
+	}
+
+	/**
+	 * Wait until we discovered the channel objects of the number of slaves of
+	 * the settings, or the startup timeout has passed. The RTI tells us about
+	 * the objects registered before we subscribed as well, so a slave is
+	 * counted whether it joined before or after us.
+	 */
+	private void waitForSlaves() throws RTIexception {
+		handles.resolve(rtiamb);
+		int classHandle = handles.getChannelClassHandle();
+		AttributeHandleSet attributes = RtiFactoryFactory.getRtiFactory()
+				.createAttributeHandleSet();
+		for (int channel = 1; channel <= handles.getChannelCount(); channel++) {
+			attributes.add(handles.getChannelHandle(channel));
+		}
+		rtiamb.subscribeObjectClassAttributes(classHandle, attributes);
+
+		int expected = settings.getNumberOfSlaves();
+		long timeout = (long) (settings.getStartupTimeout() * 1000);
+		long end = System.currentTimeMillis() + timeout;
+		log("Waiting for " + expected + " slaves...");
+		while (fedamb.getJoinedSlaves() < expected) {
+			if (timeout > 0 && System.currentTimeMillis() >= end) {
+				throw new RTIinternalError("Only " + fedamb.getJoinedSlaves()
+						+ " of " + expected + " slaves joined in "
+						+ settings.getStartupTimeout() + " s");
+			}
+			tickStartup();
+		}
+		log(fedamb.getJoinedSlaves() + " slaves joined");
+	}
+
+	/** Let the RTI deliver callbacks, waiting no longer than a pump tick */
+	private void tickStartup() throws RTIexception {
+		if (pump == null) {
+			rtiamb.tick(settings.getRtiPumpTimeout(), settings
+					.getRtiPumpTimeout());
+		} else {
+			pump.evokeCallbacks();
 		}
 	}
 
 	// ----------------------------------------------------------
 	// INSTANCE METHODS
 	// ----------------------------------------------------------
+	/**
+	 * Let the RTI deliver callbacks: tick2() when the director ticks the RTI
+	 * itself, otherwise a bounded wait on the pump. Called in the loops that
+	 * wait for a callback, with the RTI lock held.
+	 */
+	private void evokeCallbacks() throws RTIexception {
+		if (pump == null) {
+			((CertiRtiAmbassador) rtiamb).tick2();
+		} else {
+			pump.evokeCallbacks();
+		}
+	}
+
+	/** Take the RTI lock when a pump thread shares the RTI ambassador */
+	private void lockRTI() {
+		if (pump != null) {
+			pump.lock();
+		}
+	}
+
+	private void unlockRTI() {
+		if (pump != null) {
+			pump.unlock();
+		}
+	}
+
 	/**
 	 * This is just a helper method to make sure all logging it output in the
 	 * same form
@@ -415,7 +620,7 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 
 		// tick until we get the callback
 		while (fedamb.isRegulating == false) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 
 		// ///////////////////////////
@@ -425,7 +630,7 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 
 		// tick until we get the callback
 		while (fedamb.isConstrained == false) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 	}
 
@@ -444,34 +649,16 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 
 		// get all the handle information for the attributes of ObjectRoot.A
 
-		int classHandle = rtiamb.getObjectClassHandle("ObjectRoot.aes");
-		int aaHandle = rtiamb.getAttributeHandle("canal1", classHandle);
-		int abHandle = rtiamb.getAttributeHandle("canal2", classHandle);
-		int acHandle = rtiamb.getAttributeHandle("canal3", classHandle);
-		int adHandle = rtiamb.getAttributeHandle("canal4", classHandle);
-		int aeHandle = rtiamb.getAttributeHandle("canal5", classHandle);
-		int afHandle = rtiamb.getAttributeHandle("canal6", classHandle);
-		int agHandle = rtiamb.getAttributeHandle("canal7", classHandle);
-		int ahHandle = rtiamb.getAttributeHandle("canal8", classHandle);
-		int aiHandle = rtiamb.getAttributeHandle("canal9", classHandle);
-		int ajHandle = rtiamb.getAttributeHandle("canal10", classHandle);
-
-		// int classHandle = rtiamb.getObjectClassHandle("InteractionRoot.X");
-		// int aaHandle = rtiamb.getAttributeHandle("xa", classHandle);
+		int classHandle = handles.getChannelClassHandle();
 
-		// package the information into a handle set
+		// package the information into a handle set, one canalN attribute
+		// per channel declared in the FOM
 		AttributeHandleSet attributes = RtiFactoryFactory.getRtiFactory()
 				.createAttributeHandleSet();
-		attributes.add(aaHandle);
-		attributes.add(abHandle);
-		attributes.add(acHandle);
-		attributes.add(adHandle);
-		attributes.add(aeHandle);
-		attributes.add(afHandle);
-		attributes.add(agHandle);
-		attributes.add(ahHandle);
-		attributes.add(aiHandle);
-		attributes.add(ajHandle);
+		for (int channel = 1; channel <= handles.getChannelCount(); channel++) {
+			attributes.add(handles.getChannelHandle(channel));
+		}
+
 		// do the actual publication
 		rtiamb.publishObjectClass(classHandle, attributes);
 
@@ -489,8 +676,8 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// we want to send interactions of type InteractionRoot.X, so we need
 		// to tell the RTI that we're publishing it first. We don't need to
 		// inform it of the parameters, only the class, making it much simpler
-		int interactionHandle = rtiamb
-				.getInteractionClassHandle("InteractionRoot.X");
+		int interactionHandle = handles
+				.getInteractionClassHandle(HandleRegistry.DATA_INTERACTION);
 
 		// do the publication
 		rtiamb.publishInteractionClass(interactionHandle);
@@ -509,11 +696,34 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 	 * simulation, we will update the attribute values for this instance
 	 */
 	private int registerObject() throws RTIexception {
-		int classHandle = rtiamb.getObjectClassHandle("ObjectRoot.aes");
+		int classHandle = handles.getChannelClassHandle();
 		// int classHandle = rtiamb.getObjectClassHandle("InteractionRoot.X");
+		if (settings.isUseDDM()) {
+			return registerObjectWithRegions(classHandle);
+		}
 		return rtiamb.registerObjectInstance(classHandle);
 	}
 
+	/**
+	 * Register the channel object with an update region per canalN attribute,
+	 * so that the RTI only routes a channel to the slaves whose subscription
+	 * region covers it.
+	 */
+	private int registerObjectWithRegions(int classHandle) throws RTIexception {
+		String space = ChannelRegions.getRoutingSpace(settings, handles);
+		int[] channels = handles.getDeclaredChannels();
+		int[] attributes = new int[channels.length];
+		Region[] regions = new Region[channels.length];
+		for (int i = 0; i < channels.length; i++) {
+			attributes[i] = handles.getChannelHandle(channels[i]);
+			regions[i] = ChannelRegions.createChannelRegion(rtiamb, handles,
+					space, channels[i]);
+		}
+		log("Update regions of " + channels.length + " channels in " + space);
+		return rtiamb.registerObjectInstanceWithRegion(classHandle,
+				attributes, regions);
+	}
+
 	
 	
 	/**
@@ -525,27 +735,77 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 	 * Note that we don't actually have to update all the attributes at once, we
 	 * could update them individually, in groups or not at all!
 	 */
-	private void updateAttributeValues(String data) throws RTIexception {
+	private void updateAttributeValues(SampleBatch samples) throws RTIexception {
 		// /////////////////////////////////////////////
 		// create the necessary container and values //
 		// /////////////////////////////////////////////
 		// create the collection to store the values in, as you can see
 		// this is quite a lot of work
 		
-		//SuppliedAttributes attributes = RtiFactoryFactory.getRtiFactory().createSuppliedAttributes();
-
-		// generate the new values
-		// we use EncodingHelpers to make things nice friendly for both Java and
-		// C++
+		// generate the new values, encoded by the codec chosen in the
+		// director (the "canalN:value" strings or binary samples)
 		
-		//System.out.println("Ultimo valor Processado no master Federate => "+data);
+		byte[] tag = EncodingHelpers.encodeString("hi!");
+
+		// in batch mode every channel of this call goes into the same
+		// SuppliedAttributes, so one firing of the director costs one update
+		// instead of one (or two) per channel
+		SuppliedAttributes attributes = RtiFactoryFactory.getRtiFactory().createSuppliedAttributes();
+		Arrays.fill(inBatch, false);
 		
+		for (int i = 0; i < samples.size(); i++) {
+			int channel = samples.getChannel(i);
+			if (channel < 1 || channel > handles.getChannelCount()) {
+				System.out.println("O Valor não foi adicionado no Attributes => canal"
+						+ channel + ":" + samples.getText(i));
+				continue;
+			}
+
+			if (inBatch[channel]) {
+				// the same channel twice in one call: flush what we have, a
+				// SuppliedAttributes can only hold one value per attribute
+				sendAttributes(attributes, tag);
+				attributes = RtiFactoryFactory.getRtiFactory().createSuppliedAttributes();
+				Arrays.fill(inBatch, false);
+			}
+
+			byte[] value = codec.encode(samples, i);
+			if (rings != null && rings[channel] != null
+					&& rings[channel].isClaimed()
+					&& rings[channel].offer(getSendTime(), value, 0,
+							value.length)) {
+				// the slave reads it from the ring; through the RTI when no
+				// local slave opened the ring or when it is full
+				continue;
+			}
+
+			attributes.add(handles.getChannelHandle(channel), value);
+			inBatch[channel] = true;
+
+			if (!settings.isBatchUpdates()) {
+				sendAttributes(attributes, tag);
+				attributes = RtiFactoryFactory.getRtiFactory().createSuppliedAttributes();
+				inBatch[channel] = false;
+			}
+		}
+
+		if (attributes.size() > 0) {
+			sendAttributes(attributes, tag);
+		}
+	}
+
+	/**
+	 * Read the "channelN - value - time ; ..." strings of the old
+	 * MasterFederateActor into samples. Also used by the LoopbackFederate.
+	 * 
+	 * @param time
+	 *            the time of the samples that do not carry one
+	 */
+	static void parseSamples(String data, SampleBatch samples,
+			int channelCount, double time) {
 		String[] tokens = data.split(" ; ");
 		
 		for (String token : tokens){
-			
-				
-			SuppliedAttributes attributes = RtiFactoryFactory.getRtiFactory().createSuppliedAttributes();
 			//Removing special characters 
 			token  = token.replace("\n", "");
 			token  = token.replace("\"", "");
@@ -553,82 +813,56 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 			
 			String[] valores = token.split(" - ");
 			
-			//O erro foi aqui 
-
-			int classHandle = rtiamb.getObjectClass(1);//objectHandle);
-
-			if (valores[0].equalsIgnoreCase("channel1")) {
-
-				byte[] aaValue = EncodingHelpers.encodeString("canal1:"+ valores[1]);
-				int aaHandle = rtiamb.getAttributeHandle("canal1", classHandle);
-				attributes.add(aaHandle, aaValue);
-				
-			} else if (valores[0].equalsIgnoreCase("channel2")) {
-				
-				byte[] abValue = EncodingHelpers.encodeString("canal2:"+ valores[1]);
-				int abHandle = rtiamb.getAttributeHandle("canal2", classHandle);
-				attributes.add(abHandle, abValue);
-				
-			} else if (valores[0].equalsIgnoreCase("channel3")) {
-				
-				byte[] acValue = EncodingHelpers.encodeString("canal3:"+ valores[1]);
-				int acHandle = rtiamb.getAttributeHandle("canal3", classHandle);
-				attributes.add(acHandle, acValue);
-			} else if (valores[0].equalsIgnoreCase("channel4")) {
-				
-				byte[] adValue = EncodingHelpers.encodeString("canal4:"+ valores[1]);
-				int adHandle = rtiamb.getAttributeHandle("canal4", classHandle);
-				attributes.add(adHandle, adValue);
-			} else if (valores[0].equalsIgnoreCase("channel5")) {
-				
-				byte[] aeValue = EncodingHelpers.encodeString("canal5:"+ valores[1]);
-				int aeHandle = rtiamb.getAttributeHandle("canal5", classHandle);
-				attributes.add(aeHandle, aeValue);
-			} else if (valores[0].equalsIgnoreCase("channel6")) {
-				
-				byte[] afValue = EncodingHelpers.encodeString("canal6:"+ valores[1]);
-				int afHandle = rtiamb.getAttributeHandle("canal6", classHandle);
-				attributes.add(afHandle, afValue);
-
-			} else if (valores[0].equalsIgnoreCase("channel7")) {
-				
-				byte[] agValue = EncodingHelpers.encodeString("canal7:"+ valores[1]);
-				int agHandle = rtiamb.getAttributeHandle("canal7", classHandle);
-				attributes.add(agHandle, agValue);
-				
-			} else if (valores[0].equalsIgnoreCase("channel8")) {
-				
-				byte[] ahValue = EncodingHelpers.encodeString("canal8:"+ valores[1]);
-				int ahHandle = rtiamb.getAttributeHandle("canal8", classHandle);
-				attributes.add(ahHandle, ahValue);
-
-			} else if (valores[0].equalsIgnoreCase("channel9")) {
-				
-				byte[] aiValue = EncodingHelpers.encodeString("canal9:"+ valores[1]);
-				int aiHandle = rtiamb.getAttributeHandle("canal9", classHandle);
-				attributes.add(aiHandle, aiValue);
-
-			} else if (valores[0].equalsIgnoreCase("channel10")) {
-				
-				byte[] ajValue = EncodingHelpers.encodeString("canal10:"+ valores[1]);
-				int ajHandle = rtiamb.getAttributeHandle("canal10", classHandle);
-				attributes.add(ajHandle, ajValue);
-				
-			}else {
-				System.out.println("O Valor no foi adicionado no Attributes => " + valores[1]);
+			int channel = getChannel(valores[0], channelCount);
+			if (channel < 0 || valores.length < 2) {
+				System.out.println("O Valor não foi adicionado no Attributes => " + token);
+				continue;
+			}
 
+			double sampleTime = time;
+			if (valores.length > 2) {
+				try {
+					sampleTime = Double.parseDouble(valores[2].trim());
+				} catch (NumberFormatException e) {
+					// keep the federate time
+				}
 			}
-			
-			byte[] tag = EncodingHelpers.encodeString("hi!");
+			samples.addText(channel, valores[1], sampleTime);
+		}
+	}
+
+	/**
+	 * Send the given attributes of our object instance with the ordering
+	 * chosen in the director: receive ordered, time stamp ordered (at
+	 * {@link #getSendTime()}) or both.
+	 */
+	private void sendAttributes(SuppliedAttributes attributes, byte[] tag)
+			throws RTIexception {
+		if (settings.sendReceiveOrder()) {
 			rtiamb.updateAttributeValues(objectHandle, attributes, tag);
-			CertiLogicalTime time = new CertiLogicalTime(fedamb.federateTime + fedamb.federateLookahead);
-			//System.out.println("Valor adicionado no Attributes => " + valores[1]);
+		}
+		if (settings.sendTimestampOrder()) {
+			CertiLogicalTime time = new CertiLogicalTime(getSendTime());
 			rtiamb.updateAttributeValues(objectHandle, attributes, tag, time);
+		}
+	}
 
-
+	/**
+	 * Return the channel number of a "channelN" name sent by the
+	 * MasterFederateActor, or -1 if it is not one of our channels.
+	 */
+	private static int getChannel(String name, int channelCount) {
+		if (name.regionMatches(true, 0, "channel", 0, 7)) {
+			try {
+				int channel = Integer.parseInt(name.substring(7).trim());
+				if (channel >= 1 && channel <= channelCount) {
+					return channel;
+				}
+			} catch (NumberFormatException e) {
+				// not a channel, fall through
 			}
-				
-
+		}
+		return -1;
 	}
 
 	/**
@@ -653,9 +887,12 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		byte[] xbValue = EncodingHelpers.encodeString("xb:" + (data + 1));
 
 		// get the handles
-		int classHandle = rtiamb.getInteractionClassHandle("InteractionRoot.X");
-		int xaHandle = rtiamb.getParameterHandle("xa", classHandle);
-		int xbHandle = rtiamb.getParameterHandle("xb", classHandle);
+		int classHandle = handles
+				.getInteractionClassHandle(HandleRegistry.DATA_INTERACTION);
+		int xaHandle = handles.getParameterHandle(
+				HandleRegistry.DATA_INTERACTION, "xa");
+		int xbHandle = handles.getParameterHandle(
+				HandleRegistry.DATA_INTERACTION, "xb");
 
 		// put the values into the collection
 		parameters.add(xaHandle, xaValue);
@@ -670,8 +907,7 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		// if you want to associate a particular timestamp with the
 		// interaction, you will have to supply it to the RTI. Here
 		// we send another interaction, this time with a timestamp:
-		CertiLogicalTime time = new CertiLogicalTime(fedamb.federateTime
-				+ fedamb.federateLookahead);
+		CertiLogicalTime time = new CertiLogicalTime(getSendTime());
 		rtiamb.sendInteraction(classHandle, parameters, tag, time);
 	}
 
@@ -681,33 +917,144 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 	 * advance grant has been received.
 	 */
 	public void advanceTime(double timestep) throws RTIexception {
-		// request the advance
-		fedamb.isAdvancing = true;
-		LogicalTime newTime = new CertiLogicalTime(fedamb.federateTime
-				+ timestep);
-		rtiamb.timeAdvanceRequest(newTime);
+		lockRTI();
+		try {
+			// request the advance
+			fedamb.isAdvancing = true;
+			requests.sent(fedamb.federateTime + timestep);
+			LogicalTime newTime = new CertiLogicalTime(fedamb.federateTime
+					+ timestep);
+			requestAdvance(newTime);
+
+			//log("Time Advanced to " + fedamb.federateTime);
+
+			// wait for the time advance to be granted. ticking will tell the
+			// LRC to start delivering callbacks to the federate
+			while (fedamb.isAdvancing) {
+				evokeCallbacks();
+			}
+		} finally {
+			unlockRTI();
+		}
+	}
 
-		//log("Time Advanced to " + fedamb.federateTime);
+	public void advanceTimeTo(double nextStep) throws RTIexception {
+		lockRTI();
+		try {
+			// request the advance
+			fedamb.isAdvancing = true;
+			requests.sent(nextStep);
+			LogicalTime newTime = new CertiLogicalTime(nextStep);
+			requestAdvance(newTime);
+
+			//log("Time Advanced to " + newTime);
+
+			// wait for the time advance to be granted. ticking will tell the
+			// LRC to start delivering callbacks to the federate
+			while (fedamb.isAdvancing) {
+				evokeCallbacks();
+			}
+		} finally {
+			unlockRTI();
+		}
+	}
 
-		// wait for the time advance to be granted. ticking will tell the
-		// LRC to start delivering callbacks to the federate
-		while (fedamb.isAdvancing) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+	public void requestTimeAdvance(double nextStep) throws RTIexception {
+		lockRTI();
+		try {
+			if (!requests.request(nextStep, fedamb.isAdvancing,
+					fedamb.federateTime)) {
+				return;
+			}
+			fedamb.isAdvancing = true;
+			requests.sent(nextStep);
+			requestAdvance(new CertiLogicalTime(nextStep));
+		} finally {
+			unlockRTI();
 		}
 	}
 
-	public void advanceTimeTo(double nextStep) throws RTIexception {
-		// request the advance
-		fedamb.isAdvancing = true;
-		LogicalTime newTime = new CertiLogicalTime(nextStep);
-		rtiamb.timeAdvanceRequest(newTime);
+	public void awaitTimeAdvance() throws RTIexception {
+		lockRTI();
+		try {
+			while (fedamb.isAdvancing) {
+				evokeCallbacks();
+			}
+			// send the requests merged while we were waiting
+			double deferred = requests.takeDeferred(fedamb.federateTime);
+			if (!Double.isNaN(deferred)) {
+				fedamb.isAdvancing = true;
+				requests.sent(deferred);
+				requestAdvance(new CertiLogicalTime(deferred));
+			}
+		} finally {
+			unlockRTI();
+		}
+	}
 
-		//log("Time Advanced to " + newTime);
+	public boolean isTimeAdvancePending() {
+		return fedamb.isAdvancing;
+	}
 
-		// wait for the time advance to be granted. ticking will tell the
-		// LRC to start delivering callbacks to the federate
-		while (fedamb.isAdvancing) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+	/**
+	 * Send a timeAdvanceRequest or, in next event mode, a nextEventRequest:
+	 * the grant then comes at the earliest of the given time and the next
+	 * time stamped message for us.
+	 */
+	private void requestAdvance(LogicalTime time) throws RTIexception {
+		// the slaves can be granted the time of the records only after this
+		// request, so they see them complete
+		publishDataPlane();
+		if (settings.isNextEventRequest()) {
+			rtiamb.nextEventRequest(time);
+		} else {
+			rtiamb.timeAdvanceRequest(time);
+		}
+	}
+
+	public boolean hasReceivedData(double time) {
+		return fedamb.hasReceivedData(time);
+	}
+
+	/**
+	 * Create a {@link MappedChannelRing} for each channel of the FOM in the
+	 * data plane directory, if there is one. A ring is only written once a
+	 * local slave has claimed it, we do not know which slaves are local.
+	 */
+	private void createDataPlane() throws RTIexception {
+		if (!settings.isDataPlane()) {
+			return;
+		}
+		File directory = new File(settings.getDataPlaneDirectory());
+		directory.mkdirs();
+		int[] channels = handles.getDeclaredChannels();
+		int last = 0;
+		for (int i = 0; i < channels.length; i++) {
+			last = Math.max(last, channels[i]);
+		}
+		rings = new MappedChannelRing[last + 1];
+		try {
+			for (int i = 0; i < channels.length; i++) {
+				rings[channels[i]] = MappedChannelRing.create(MappedChannelRing
+						.channelFile(directory, channels[i]), settings
+						.getDataPlaneCapacity());
+			}
+		} catch (IOException e) {
+			throw new RTIinternalError("Cannot create the data plane in "
+					+ directory + ": " + e.getMessage());
+		}
+		log("Data plane in " + directory);
+	}
+
+	/** Make the records written in the channel rings visible to the slaves */
+	private void publishDataPlane() {
+		if (rings == null) {
+			return;
+		}
+		for (int i = 0; i < rings.length; i++) {
+			if (rings[i] != null) {
+				rings[i].publish();
+			}
 		}
 	}
 
@@ -751,6 +1098,43 @@ public class MasterFederate extends SigarCommandBase implements PtolemyFederate
 		return fedamb.federateTime + fedamb.federateLookahead;
 	}
 
+	public double getLookahead() {
+		return fedamb.federateLookahead;
+	}
+
+	public double getSendTime() {
+		return requests.getSendTime(fedamb.isAdvancing, fedamb.federateTime,
+				fedamb.federateLookahead);
+	}
+
+	public void setLookahead(double lookahead) throws RTIexception {
+		if (lookahead == fedamb.federateLookahead) {
+			return;
+		}
+		lockRTI();
+		try {
+			if (lookahead < fedamb.federateLookahead) {
+				requests.lowerLookahead(getSendTime());
+			}
+			rtiamb.modifyLookahead(new CertiLogicalTimeInterval(lookahead));
+			fedamb.federateLookahead = lookahead;
+		} finally {
+			unlockRTI();
+		}
+	}
+
+	/** The master has no backlog to report */
+	public void reportLoad() {
+	}
+
+	public ChannelLoads getChannelLoads() {
+		return fedamb.getChannelLoads();
+	}
+
+	public long getDroppedDataCount() {
+		return fedamb.getDroppedDataCount();
+	}
+
 	@Override
 	public void output(String[] arg0) throws SigarException {
 		// TODO Auto-generated method stub
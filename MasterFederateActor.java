@@ -33,10 +33,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-import org.hyperic.sigar.CpuPerc;
-import org.hyperic.sigar.Mem;
-import org.hyperic.sigar.Sigar;
-
 //import com.sun.xml.internal.bind.v2.schemagen.xmlschema.List;
 
 import hla.rti.ArrayIndexOutOfBounds;
@@ -50,8 +46,11 @@ import ptolemy.data.StringToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.StringParameter;
+import ptolemy.data.type.BaseType;
 
 import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.Location;
 import ptolemy.kernel.util.NameDuplicationException;
@@ -82,11 +81,22 @@ public class MasterFederateActor extends TypedAtomicActor implements
 
 	private static final long serialVersionUID = 1L;
 
+	/** Default value of the bufferCapacity parameter */
+	public static final int DEFAULT_BUFFER_CAPACITY = 1024;
+
 	// angelo - mudei
 	// private IntToken myValue;
 	// private StringToken myValue;
 
-	Queue<StringToken> myValue = new<StringToken> LinkedList();
+	// samples waiting for the director, bounded by bufferCapacity
+	private SampleRingBuffer pending = new SampleRingBuffer(
+			DEFAULT_BUFFER_CAPACITY, SampleRingBuffer.BLOCK);
+
+	// one input token turned into a sample, before it goes to the buffer
+	private SampleBatch incoming = new SampleBatch(1);
+
+	// the samples handed to the director, drained from the buffer
+	private SampleBatch samples = new SampleBatch();
 
 	private double myTime;
 
@@ -132,6 +142,16 @@ public class MasterFederateActor extends TypedAtomicActor implements
 		// TypeAttribute outputType = new TypeAttribute(output, "type");
 		// outputType.setExpression("String");
 
+		bufferCapacity = new Parameter(this, "bufferCapacity");
+		bufferCapacity.setExpression("" + DEFAULT_BUFFER_CAPACITY);
+		bufferCapacity.setTypeEquals(BaseType.INT);
+
+		overflowPolicy = new StringParameter(this, "overflowPolicy");
+		overflowPolicy.setExpression(SampleRingBuffer.BLOCK);
+		overflowPolicy.addChoice(SampleRingBuffer.BLOCK);
+		overflowPolicy.addChoice(SampleRingBuffer.DROP_OLDEST);
+		overflowPolicy.addChoice(SampleRingBuffer.COALESCE);
+
 		// Modificando
 		//myValue.add(new StringToken(""));
 		myTime = 0;
@@ -142,10 +162,7 @@ public class MasterFederateActor extends TypedAtomicActor implements
 	// // ports and parameters ////
 
 	public boolean hasDataToSend() {
-		if (myValue.size() == 0)
-			return false;
-		else
-			return true;
+		return pending.size() > 0;
 
 		// return hasDataToSend;
 	}
@@ -158,33 +175,45 @@ public class MasterFederateActor extends TypedAtomicActor implements
 	 * @return the myValue
 	 */
 	public StringToken getValue() {
-		// return myValue;
-		return myValue.peek();
+		if (pending.size() == 0) {
+			return null;
+		}
+		return new StringToken("channel" + pending.getChannel(0) + " - "
+				+ pending.getText(0) + " - " + pending.getTime(0));
 	}
 
+	/**
+	 * Return the samples in the old "channelN - value - time ; " format. Kept
+	 * for compatibility, the director uses {@link #getSamplesToSend()}.
+	 */
 	public StringToken getDataToSend() {
 
 		hasDataToSend = false;
 		
-		String out = "";
-		for (StringToken valor: myValue ){
-			out += valor + " ; ";
+		getSamplesToSend();
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < samples.size(); i++) {
+			out.append("channel").append(samples.getChannel(i))
+					.append(" - ").append(samples.getText(i)).append(" - ")
+					.append(samples.getTime(i)).append(" ; ");
 		}
-		
-		myValue.clear();
-		return new StringToken (out);
-		
-		
-
+		return new StringToken(out.toString());
 	}
 
 	/**
-	 * @param myValue
-	 *            the myValue to set
+	 * Move the buffered samples, oldest first, to the batch the director
+	 * sends. The batch is reused by the next call.
 	 */
-	public void setValue(StringToken myValue) {
-		// this.myValue = myValue;
-		this.myValue.add(myValue);
+	public SampleBatch getSamplesToSend() {
+		hasDataToSend = false;
+		samples.clear();
+		pending.drainTo(samples);
+		return samples;
+	}
+
+	/** @return the buffer of the samples waiting for the director */
+	public SampleRingBuffer getBuffer() {
+		return pending;
 	}
 
 	/**
@@ -222,65 +251,27 @@ public class MasterFederateActor extends TypedAtomicActor implements
 	 */
 	public TypedIOPort output;
 
+	/**
+	 * How many samples can wait for the director to send them. This parameter
+	 * must contain an IntToken greater than zero. It defaults to 1024.
+	 */
+	public Parameter bufferCapacity;
+
+	/**
+	 * What happens to an input when the buffer is full: "block" (the default)
+	 * leaves it in the input port until the director has sent the buffer,
+	 * "dropOldest" drops the oldest sample and "coalesce" replaces the pending
+	 * sample of the same channel, keeping only its latest value.
+	 */
+	public StringParameter overflowPolicy;
+
 	// private SlaveFederate rtiFederation;
 
 	// /////////////////////////////////////////////////////////////////
 	// // public methods ////
 
 	public String capturarEstatisticas() {
-		try {
-			Sigar sigar = new Sigar();
-
-			BufferedWriter arquivo;
-			String str = "";
-			CpuPerc cpu;
-			cpu = sigar.getCpuPerc();
-			Mem memory = sigar.getMem();
-
-			CpuPerc cpus[] = sigar.getCpuPercList();
-
-			double totalMemory = (double) memory.getTotal()
-					/ (1024 * 1024 * 1024);
-			double usedMemory = (double) memory.getUsed()
-					/ (1024 * 1024 * 1024); // vira GB - origianl eh bytes
-			double freeMemory = (double) memory.getFree()
-					/ (1024 * 1024 * 1024);
-			double usedMemoryPercent = (double) memory.getUsedPercent();
-
-			Runtime runtime = Runtime.getRuntime();
-			double totalMemoryJVM = (double) runtime.totalMemory()
-					/ (1024 * 1024); // valor utilizado pela JVM - em bytes
-			double freeMemoryJVM = (double) runtime.freeMemory()
-					/ (1024 * 1024);
-			double maxMemory = (double) runtime.maxMemory() / 1024;
-
-			String cpu_pc = CpuPerc.format(cpu.getUser() + cpu.getSys());
-			String cpu_jvm = CpuPerc.format(cpu.getSys());
-
-			String cpu_pc_0 = CpuPerc.format(cpus[0].getUser()
-					+ cpus[0].getSys());
-			String cpu_jvm_0 = CpuPerc.format(cpus[0].getSys());
-
-			String cpu_pc_1 = CpuPerc.format(cpus[1].getUser()
-					+ cpus[1].getSys());
-			String cpu_jvm_1 = CpuPerc.format(cpus[1].getSys());
-
-			str = usedMemoryPercent + "% - "
-					+ ((totalMemoryJVM - freeMemoryJVM) / totalMemoryJVM) * 100
-					+ "% - " + cpu_pc + " - " + cpu_jvm + "% - " + cpu_pc_0
-					+ " - " + cpu_jvm_0 + "% - " + cpu_pc_1 + " - " + cpu_jvm_1;
-
-			// arquivo = new BufferedWriter(new
-			// FileWriter("config/experimentos_mem_used.txt", true));
-			// arquivo.write(str);
-			// arquivo.newLine();
-			// arquivo.close();
-
-			return str;
-		} catch (Exception e1) {
-			e1.printStackTrace();
-			return null;
-		}
+		return SystemStatistics.capture();
 	}
 
 	/**
@@ -290,17 +281,50 @@ public class MasterFederateActor extends TypedAtomicActor implements
 	 */
 	int aux = 0, aux1 = 0;
 
+	/**
+	 * If the parameter is <i>bufferCapacity</i> or <i>overflowPolicy</i>,
+	 * create the buffer of the samples again.
+	 * 
+	 * @exception IllegalActionException
+	 *                If the capacity is not greater than zero or the policy is
+	 *                unknown.
+	 */
+	public void attributeChanged(Attribute attribute)
+			throws IllegalActionException {
+		if (attribute == bufferCapacity || attribute == overflowPolicy) {
+			int capacity = ((IntToken) bufferCapacity.getToken()).intValue();
+			try {
+				if (capacity != pending.getCapacity()) {
+					pending = new SampleRingBuffer(capacity, pending
+							.getPolicy());
+				}
+				pending.setPolicy(overflowPolicy.stringValue());
+			} catch (IllegalArgumentException ex) {
+				throw new IllegalActionException(this, ex.getMessage());
+			}
+		} else {
+			super.attributeChanged(attribute);
+		}
+	}
+
+	/**
+	 * Buffer every token waiting on the input channels, a burst included, as
+	 * a sample of channel <i>i + 1</i>. With the block policy the tokens that
+	 * do not fit stay in the ports, the director fires the actor again once
+	 * it has sent the buffer.
+	 */
 	public void fire() throws IllegalActionException {
 		super.fire();
 
-
 		int width = input.getWidth();
 		for (int i = 0; i < width; i++) {
-			if (input.hasToken(i)) {
+			while (input.hasToken(i)) {
+				if (pending.isFull()
+						&& pending.getPolicy() == SampleRingBuffer.BLOCK) {
+					break;
+				}
 				// Otimiza, remove o inputValue
 				Token inputValue = input.get(i);
-				Token val = inputValue;
-				StringToken value = StringToken.convert(val);
 
 				double timeValue = getDirector().getModelTime().getDoubleValue();
 
@@ -308,14 +332,16 @@ public class MasterFederateActor extends TypedAtomicActor implements
 				double finalT = Double
 						.parseDouble(finalTime.getValueAsString());
 
-				this.setValue(new StringToken("channel" + (i + 1) + " - "+ value + " - "
-						+ getDirector().getModelTime().toString()));
+				// typed sample, no more "channelN - value - time" strings
+				incoming.clear();
+				incoming.add(i + 1, inputValue, timeValue);
+				pending.offer(incoming, 0);
 				
 				//System.out.println("-> channel" + (i + 1) + " - "+ value + " no tempo " + timeValue);
 				this.setTime(timeValue);
 				hasDataToSend = true;
 				//StringToken out = new StringToken("Valor adicionado: "+ "channel" + (i + 1) + " - " + value + " - "+ getDirector().getModelTime().toString());
-				output.send(0, new StringToken("ultimo valor adicionado foi: " + value));
+				output.send(0, new StringToken("ultimo valor adicionado foi: " + inputValue));
 
 			}
 		}
@@ -354,8 +380,22 @@ public class MasterFederateActor extends TypedAtomicActor implements
 	 */
 	@Override
 	public void initialize() throws IllegalActionException {
-		// TODO Auto-generated method stub
 		super.initialize();
+		pending.clear();
+		samples.clear();
+	}
+
+	/** Report the counters of the buffer to the debug listeners. */
+	@Override
+	public void wrapup() throws IllegalActionException {
+		super.wrapup();
+		if (_debugging) {
+			_debug("Buffer: high-water mark " + pending.getHighWaterMark()
+					+ " of " + pending.getCapacity() + ", "
+					+ pending.getDroppedCount() + " dropped, "
+					+ pending.getCoalescedCount() + " coalesced ("
+					+ pending.getPolicy() + ")");
+		}
 	}
 
 	/*
@@ -384,4 +424,10 @@ public class MasterFederateActor extends TypedAtomicActor implements
 
 	}
 
+	@Override
+	public void updateAtributesToSend(List<Attributes> attrs) {
+		// the master does not read the reflections, and they are recycled
+		// after this firing
+	}
+
 }
@@ -0,0 +1,430 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Counters, gauges and latency histograms of a run, cheap enough to stay on
+ * while measuring: updating a metric is one or two atomic operations, with no
+ * lock, no allocation and no formatting. Each HLADEDirector has its own
+ * registry, as several federates can share a JVM. The metrics are created
+ * once, when the director initializes, and the hot paths keep the returned
+ * objects.
+ * <p/>
+ * The registry can be published over JMX, as one MBean whose attributes are
+ * the metrics (a histogram gives count, mean, p50, p90, p99 and max), and
+ * appended to a CSV file, one row per metric.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class MetricsRegistry {
+
+	/** Domain of the MBeans registered by {@link #registerMBean(String)} */
+	public static final String JMX_DOMAIN = "ptolemy.hla";
+
+	/** First line of a new CSV file */
+	public static final String CSV_HEADER = "run,metric,type,count,value,min,mean,p50,p90,p99,max";
+
+	// name -> Counter, Gauge or Histogram, sorted for the exports
+	private final Map<String, Object> metrics = new ConcurrentSkipListMap<String, Object>();
+
+	private ObjectName mbeanName;
+
+	// ----------------------------------------------------------
+	// METRICS
+	// ----------------------------------------------------------
+
+	/** @return the counter with the given name, created if needed */
+	public Counter counter(String name) {
+		return (Counter) get(name, Counter.class);
+	}
+
+	/** @return the gauge with the given name, created if needed */
+	public Gauge gauge(String name) {
+		return (Gauge) get(name, Gauge.class);
+	}
+
+	/** @return the histogram with the given name, created if needed */
+	public Histogram histogram(String name) {
+		return (Histogram) get(name, Histogram.class);
+	}
+
+	private synchronized Object get(String name, Class<?> type) {
+		Object metric = metrics.get(name);
+		if (metric == null) {
+			if (type == Counter.class) {
+				metric = new Counter();
+			} else if (type == Gauge.class) {
+				metric = new Gauge();
+			} else {
+				metric = new Histogram();
+			}
+			metrics.put(name, metric);
+		} else if (!type.isInstance(metric)) {
+			throw new IllegalArgumentException(name + " is not a "
+					+ type.getSimpleName());
+		}
+		return metric;
+	}
+
+	/** Set every metric back to zero, for a new run */
+	public void reset() {
+		for (Object metric : metrics.values()) {
+			if (metric instanceof Counter) {
+				((Counter) metric).value.set(0);
+			} else if (metric instanceof Gauge) {
+				((Gauge) metric).reset();
+			} else {
+				((Histogram) metric).reset();
+			}
+		}
+	}
+
+	// ----------------------------------------------------------
+	// EXPORTS
+	// ----------------------------------------------------------
+
+	/**
+	 * Publish the metrics in the platform MBean server, replacing the MBean
+	 * registered before with the same name.
+	 *
+	 * @param name
+	 *            the name of the MBean, the federate name for instance
+	 */
+	public synchronized void registerMBean(String name) throws JMException {
+		unregisterMBean();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Metrics,name="
+				+ ObjectName.quote(name));
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+		server.registerMBean(new MetricsMBean(), objectName);
+		mbeanName = objectName;
+	}
+
+	/** Remove the MBean registered by {@link #registerMBean(String)}, if any */
+	public synchronized void unregisterMBean() throws JMException {
+		if (mbeanName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(mbeanName)) {
+				server.unregisterMBean(mbeanName);
+			}
+			mbeanName = null;
+		}
+	}
+
+	/**
+	 * Append a snapshot of the metrics to a CSV file, one row per metric,
+	 * writing the header first if the file is new.
+	 *
+	 * @param run
+	 *            the first column of the rows, to tell the runs apart
+	 */
+	public void appendCsv(File file, String run) throws IOException {
+		boolean header = !file.exists() || file.length() == 0;
+		BufferedWriter out = new BufferedWriter(new FileWriter(file, true));
+		try {
+			if (header) {
+				out.write(CSV_HEADER);
+				out.newLine();
+			}
+			for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+				out.write(run + "," + entry.getKey() + ","
+						+ toCsv(entry.getValue()));
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String toCsv(Object metric) {
+		if (metric instanceof Counter) {
+			return "counter,," + ((Counter) metric).get() + ",,,,,,";
+		} else if (metric instanceof Gauge) {
+			Gauge gauge = (Gauge) metric;
+			return "gauge,," + gauge.get() + ",,,,,," + gauge.getMax();
+		}
+		Histogram histogram = (Histogram) metric;
+		return "histogram," + histogram.getCount() + ",,"
+				+ histogram.getMin() + "," + histogram.getMean() + ","
+				+ histogram.getPercentile(50) + ","
+				+ histogram.getPercentile(90) + ","
+				+ histogram.getPercentile(99) + "," + histogram.getMax();
+	}
+
+	// ----------------------------------------------------------
+	// METRIC TYPES
+	// ----------------------------------------------------------
+
+	/** A count that only goes up, of events fired or samples sent */
+	public static class Counter {
+		private final AtomicLong value = new AtomicLong();
+
+		public void increment() {
+			value.incrementAndGet();
+		}
+
+		public void add(long delta) {
+			value.addAndGet(delta);
+		}
+
+		public long get() {
+			return value.get();
+		}
+	}
+
+	/** A value set from time to time, like a queue depth, and its maximum */
+	public static class Gauge {
+		private final AtomicLong value = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		public void set(long newValue) {
+			value.set(newValue);
+			long current;
+			while (newValue > (current = max.get())
+					&& !max.compareAndSet(current, newValue)) {
+				// another thread raised it, check again
+			}
+		}
+
+		public long get() {
+			return value.get();
+		}
+
+		/** @return the highest value set since the last reset */
+		public long getMax() {
+			return max.get();
+		}
+
+		void reset() {
+			value.set(0);
+			max.set(0);
+		}
+	}
+
+	/**
+	 * The distribution of positive values, latencies in nanoseconds mostly,
+	 * in log-linear buckets as in HdrHistogram: values below 32 are exact and
+	 * above that each power of two is split in 32 buckets, so a percentile is
+	 * within about 3% of the true value. Recording is two atomic increments
+	 * and, rarely, a compare and set of the minimum or maximum.
+	 */
+	public static class Histogram {
+		private static final int SUB_BUCKET_BITS = 5;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKETS = SUB_BUCKETS
+				+ (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong();
+
+		/** Record a value, negative values are recorded as zero */
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			counts.incrementAndGet(bucket(value));
+			count.incrementAndGet();
+			sum.addAndGet(value);
+			long current;
+			while (value < (current = min.get())
+					&& !min.compareAndSet(current, value)) {
+				// another thread lowered it, check again
+			}
+			while (value > (current = max.get())
+					&& !max.compareAndSet(current, value)) {
+				// another thread raised it, check again
+			}
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		/** @return the smallest value recorded, 0 if none was */
+		public long getMin() {
+			long value = min.get();
+			return value == Long.MAX_VALUE ? 0 : value;
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		public double getMean() {
+			long n = count.get();
+			return n == 0 ? 0.0 : (double) sum.get() / n;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return the highest value of the bucket holding the percentile, at
+		 *         most the maximum recorded
+		 */
+		public long getPercentile(double percentile) {
+			long n = count.get();
+			if (n == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts.get(i);
+				if (seen >= rank) {
+					return Math.min(highestValue(i), getMax());
+				}
+			}
+			return getMax();
+		}
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts.set(i, 0);
+			}
+			count.set(0);
+			sum.set(0);
+			min.set(Long.MAX_VALUE);
+			max.set(0);
+		}
+
+		static int bucket(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int shift = exponent - SUB_BUCKET_BITS;
+			int sub = (int) (value >>> shift) - SUB_BUCKETS;
+			return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+		}
+
+		static long highestValue(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+			int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+			return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+		}
+	}
+
+	// ----------------------------------------------------------
+	// JMX
+	// ----------------------------------------------------------
+
+	/** The metrics as read only MBean attributes, read when JMX asks */
+	private class MetricsMBean implements DynamicMBean {
+
+		public Object getAttribute(String attribute)
+				throws AttributeNotFoundException {
+			int dot = attribute.lastIndexOf('.');
+			Object metric = metrics.get(attribute);
+			if (metric instanceof Counter) {
+				return ((Counter) metric).get();
+			} else if (metric instanceof Gauge) {
+				return ((Gauge) metric).get();
+			} else if (dot > 0
+					&& metrics.get(attribute.substring(0, dot)) instanceof Histogram) {
+				Histogram histogram = (Histogram) metrics.get(attribute
+						.substring(0, dot));
+				String field = attribute.substring(dot + 1);
+				if (field.equals("count")) {
+					return histogram.getCount();
+				} else if (field.equals("mean")) {
+					return histogram.getMean();
+				} else if (field.equals("max")) {
+					return histogram.getMax();
+				} else if (field.startsWith("p")) {
+					try {
+						return histogram.getPercentile(Double
+								.parseDouble(field.substring(1)));
+					} catch (NumberFormatException e) {
+						// not a percentile
+					}
+				}
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList list = new AttributeList();
+			for (int i = 0; i < attributes.length; i++) {
+				try {
+					list.add(new Attribute(attributes[i],
+							getAttribute(attributes[i])));
+				} catch (AttributeNotFoundException e) {
+					// skipped, as the interface asks
+				}
+			}
+			return list;
+		}
+
+		public void setAttribute(Attribute attribute)
+				throws AttributeNotFoundException {
+			throw new AttributeNotFoundException(attribute.getName()
+					+ " is read only");
+		}
+
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		/** We declare no operation */
+		public Object invoke(String actionName, Object[] params,
+				String[] signature) throws ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(
+					actionName));
+		}
+
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+				String name = entry.getKey();
+				if (entry.getValue() instanceof Histogram) {
+					attributes.add(info(name + ".count", "long"));
+					attributes.add(info(name + ".mean", "double"));
+					attributes.add(info(name + ".p50", "long"));
+					attributes.add(info(name + ".p90", "long"));
+					attributes.add(info(name + ".p99", "long"));
+					attributes.add(info(name + ".max", "long"));
+				} else {
+					attributes.add(info(name, "long"));
+				}
+			}
+			return new MBeanInfo(MetricsRegistry.class.getName(),
+					"Metrics of an HLA federate", attributes
+							.toArray(new MBeanAttributeInfo[attributes.size()]),
+					null, new MBeanOperationInfo[0], null);
+		}
+
+		private MBeanAttributeInfo info(String name, String type) {
+			return new MBeanAttributeInfo(name, type, name, true, false, false);
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.LogicalTime;
+import hla.rti.RTIexception;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The small process {@link NioFederate}s connect to instead of a CERTI rtig.
+ * It runs a {@link LoopbackFederation} for them, so it provides the same
+ * ReadyToRun synchronization point and conservative time management, and
+ * forwards its callbacks (grants, synchronization, reflections) over the
+ * sockets. Everything runs in one selector thread.
+ * <p/>
+ * Frames, in both directions, are an int length (of what follows), a byte
+ * type and the payload, big endian. Usage:
+ *
+ * <pre>
+ * java ptolemy.myactors.MaximumEntropy.NioCoordinator [port]
+ * </pre>
+ *
+ * @author adapted by Alisson Brito
+ */
+public class NioCoordinator implements Runnable {
+
+	/** Default port of the coordinator */
+	public static final int DEFAULT_PORT = 7878;
+
+	// federate -> coordinator
+	static final byte JOIN = 1; // String name, double lookahead
+	static final byte EXPECT = 2; // int federates
+	static final byte ACHIEVE = 3;
+	static final byte SUBSCRIBE = 4; // int handle
+	static final byte REFLECT_RECEIVE = 5; // int handle, value
+	static final byte REFLECT_TIMESTAMP = 6; // double time, int handle, value
+	static final byte REQUEST = 7; // double time, byte nextEvent
+	static final byte LOOKAHEAD = 8; // double lookahead
+	static final byte RESIGN = 9;
+	static final byte LOAD = 10; // int channel, int backlog
+
+	// coordinator -> federate
+	static final byte SYNCHRONIZED = 20;
+	static final byte GRANT = 21; // double time
+	static final byte REFLECT = 22; // double time, int handle, value
+	static final byte ERROR = 23; // String message
+	static final byte LOAD_REPORT = 24; // int channel, int backlog
+
+	/** Size of the type byte and of the length int before it */
+	static final int FRAME_HEADER = 5;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final LoopbackFederation federation = new LoopbackFederation(
+			LoopbackFederate.FEDERATION_NAME);
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final List<Connection> connections = new ArrayList<Connection>();
+	private volatile boolean running = true;
+
+	/** Listen on the given port, 0 for any free port */
+	public NioCoordinator(int port) throws IOException {
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.socket().setReuseAddress(true);
+		server.socket().bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	/** @return the port the coordinator listens on */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/** Run the selector loop in a daemon thread */
+	public Thread start() {
+		Thread thread = new Thread(this, "NIO coordinator " + getPort());
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/** Stop the selector loop and close every connection */
+	public void close() {
+		running = false;
+		selector.wakeup();
+	}
+
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable()) {
+								connection.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								connection.flush();
+							}
+						} catch (IOException e) {
+							connection.close();
+						}
+					}
+				}
+				// the callbacks of the frames just read, in as few writes as
+				// possible
+				for (int i = connections.size() - 1; i >= 0; i--) {
+					try {
+						connections.get(i).flush();
+					} catch (IOException e) {
+						connections.get(i).close();
+					}
+				}
+			}
+		} catch (IOException e) {
+			log("Stopped: " + e.getMessage());
+		} finally {
+			for (int i = connections.size() - 1; i >= 0; i--) {
+				connections.get(i).close();
+			}
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ,
+				connection);
+		connections.add(connection);
+	}
+
+	private void log(String message) {
+		System.out.println("NioCoordinator  : " + message);
+	}
+
+	// ----------------------------------------------------------
+	// FRAMES
+	// ----------------------------------------------------------
+
+	static void putString(ByteBuffer buffer, String value) {
+		byte[] bytes = value.getBytes(UTF8);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/** @return a direct buffer holding what <i>buffer</i> holds, and more */
+	static ByteBuffer grow(ByteBuffer buffer, int needed) {
+		int capacity = buffer.capacity();
+		while (capacity - buffer.position() < needed) {
+			capacity *= 2;
+		}
+		ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+		buffer.flip();
+		bigger.put(buffer);
+		return bigger;
+	}
+
+	/** One federate: its socket, buffers, and membership of the federation */
+	private class Connection {
+		final SocketChannel channel;
+		SelectionKey key;
+		ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		byte[] value = new byte[256];
+		LoopbackFederation.Member member;
+		String name = "?";
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+			in.flip();
+			while (in.remaining() >= FRAME_HEADER) {
+				int length = in.getInt(in.position());
+				if (in.remaining() < 4 + length) {
+					if (in.capacity() < 4 + length) {
+						in.compact();
+						in = grow(in, 4 + length);
+						in.flip();
+					}
+					break;
+				}
+				int end = in.position() + 4 + length;
+				in.getInt();
+				byte type = in.get();
+				try {
+					handle(type);
+				} catch (RTIexception e) {
+					error(e.getMessage());
+				}
+				in.position(end);
+			}
+			in.compact();
+		}
+
+		private void handle(byte type) throws RTIexception {
+			if (type == JOIN) {
+				name = getString(in);
+				member = federation.join(name, new RemoteAmbassador(this), in
+						.getDouble());
+				log("Joined " + name);
+			} else if (member == null) {
+				error("Not joined");
+			} else if (type == EXPECT) {
+				federation.setExpectedFederates(in.getInt());
+			} else if (type == ACHIEVE) {
+				federation.achieve(member);
+			} else if (type == SUBSCRIBE) {
+				federation.subscribe(member, in.getInt());
+			} else if (type == REFLECT_RECEIVE) {
+				int handle = in.getInt();
+				int length = readValue();
+				federation.reflect(member, handle, value, length);
+			} else if (type == REFLECT_TIMESTAMP) {
+				double time = in.getDouble();
+				int handle = in.getInt();
+				int length = readValue();
+				federation.reflect(member, handle, value, length, time);
+			} else if (type == REQUEST) {
+				double time = in.getDouble();
+				federation.requestAdvance(member, time, in.get() != 0);
+			} else if (type == LOOKAHEAD) {
+				federation.modifyLookahead(member, in.getDouble());
+			} else if (type == LOAD) {
+				int channel = in.getInt();
+				federation.reportLoad(member, channel, in.getInt());
+			} else if (type == RESIGN) {
+				resign();
+			} else {
+				error("Unknown frame " + type);
+			}
+		}
+
+		private int readValue() {
+			int length = in.getInt();
+			if (value.length < length) {
+				value = new byte[Math.max(length, value.length * 2)];
+			}
+			in.get(value, 0, length);
+			return length;
+		}
+
+		/** Start a frame of the given payload size */
+		void frame(byte type, int payload) {
+			if (out.remaining() < FRAME_HEADER + payload) {
+				out = grow(out, FRAME_HEADER + payload);
+			}
+			out.putInt(1 + payload);
+			out.put(type);
+		}
+
+		void error(String message) {
+			byte[] bytes = String.valueOf(message).getBytes(UTF8);
+			frame(ERROR, 4 + bytes.length);
+			out.putInt(bytes.length);
+			out.put(bytes);
+		}
+
+		void flush() throws IOException {
+			if (out.position() == 0 || !channel.isOpen()) {
+				return;
+			}
+			out.flip();
+			channel.write(out);
+			out.compact();
+			if (key.isValid()) {
+				key.interestOps(out.position() > 0 ? SelectionKey.OP_READ
+						| SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+			}
+		}
+
+		private void resign() {
+			if (member != null) {
+				federation.resign(member);
+				member = null;
+				log("Resigned " + name);
+			}
+		}
+
+		void close() {
+			resign();
+			connections.remove(this);
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	/**
+	 * The ambassador of a remote federate inside the federation: it keeps the
+	 * state of the federate, like any FederateAmbassador, and sends the
+	 * callbacks to it.
+	 */
+	private static class RemoteAmbassador extends FederateAmbassador {
+		private final Connection connection;
+
+		RemoteAmbassador(Connection connection) {
+			this.connection = connection;
+		}
+
+		public void federationSynchronized(String label) {
+			super.federationSynchronized(label);
+			connection.frame(SYNCHRONIZED, 0);
+		}
+
+		public void timeAdvanceGrant(LogicalTime theTime) {
+			super.timeAdvanceGrant(theTime);
+			connection.frame(GRANT, 8);
+			connection.out.putDouble(federateTime);
+		}
+
+		protected void dataReceived(double time, int handle, byte[] value,
+				int length) {
+			connection.frame(REFLECT, 16 + length);
+			connection.out.putDouble(time);
+			connection.out.putInt(handle);
+			connection.out.putInt(length);
+			connection.out.put(value, 0, length);
+		}
+
+		public void loadReported(int channel, int backlog) {
+			connection.frame(LOAD_REPORT, 8);
+			connection.out.putInt(channel);
+			connection.out.putInt(backlog);
+		}
+	}
+
+	// ----------------------------------------------------------
+	// STATIC METHODS
+	// ----------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		NioCoordinator coordinator = new NioCoordinator(port);
+		coordinator.log("Listening on port " + coordinator.getPort());
+		coordinator.run();
+	}
+}
@@ -0,0 +1,442 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.InvalidLookahead;
+import hla.rti.NameNotFound;
+import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import certi.rti.impl.CertiLogicalTime;
+
+/**
+ * A master or slave federate talking to the others through a
+ * {@link NioCoordinator} over a socket instead of a CERTI RTI, for hosts
+ * where CERTI is not installed. It behaves as the {@link LoopbackFederate}:
+ * same FOM, same handles, same codec, same time management, which the
+ * coordinator runs.
+ * <p/>
+ * One selector thread reads the frames of the coordinator and passes them to
+ * the FederateAmbassador. The frames to the coordinator are gathered in a
+ * direct buffer: the values sent by sendData go out together when the
+ * federate asks for a time advance, or when the buffer gets large, instead of
+ * one write per value.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class NioFederate extends LocalRTIFederate implements Runnable {
+
+	// written before waiting for a time advance anyway, but not held forever
+	private static final int FLUSH_THRESHOLD = 32 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// how long the resignation may take to leave
+	private static final long CLOSE_TIMEOUT = 5000;
+
+	private SocketChannel channel;
+	private Selector selector;
+	private SelectionKey key;
+	// guards out and failure; notified when the reader changed the state
+	private final Object lock = new Object();
+	private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] value = new byte[256];
+	private String failure;
+	private volatile boolean closed;
+
+	/**
+	 * @param master
+	 *            true for the master, which sends on every channel, false for
+	 *            a slave, which receives its slave channel
+	 */
+	public NioFederate(boolean master) {
+		super("Nio", master);
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	public void createFederate(String federateName, String fedFileName)
+			throws RTIexception {
+		readHandles(fedFileName);
+
+		connect(settings.getNioCoordinator());
+		byte[] name = federateName.getBytes(NioCoordinator.UTF8);
+		synchronized (lock) {
+			frame(NioCoordinator.JOIN, 4 + name.length + 8);
+			out.putInt(name.length);
+			out.put(name);
+			out.putDouble(fedamb.federateLookahead);
+		}
+		log("Joined Federation as " + federateName);
+
+		try {
+			subscribeChannels();
+			if (master) {
+				synchronized (lock) {
+					frame(NioCoordinator.EXPECT, 4);
+					out.putInt(settings.getNumberOfSlaves() + 1);
+				}
+			}
+
+			synchronized (lock) {
+				frame(NioCoordinator.ACHIEVE, 0);
+			}
+			flush();
+			long timeout = startupTimeout(settings);
+			long end = System.currentTimeMillis() + timeout;
+			synchronized (lock) {
+				while (!fedamb.isReadyToRun) {
+					long left = end - System.currentTimeMillis();
+					if (timeout > 0 && left <= 0) {
+						throw new RTIinternalError("The federation did not reach "
+								+ MasterFederate.READY_TO_RUN + " in "
+								+ timeout + " ms");
+					}
+					await(timeout > 0 ? left : 0);
+				}
+			}
+		} catch (RTIexception e) {
+			// do not leave the others waiting for us
+			finalizeFederate();
+			throw e;
+		}
+		log("Achieved sync point: " + MasterFederate.READY_TO_RUN);
+	}
+
+	protected void subscribe(int handle) {
+		synchronized (lock) {
+			frame(NioCoordinator.SUBSCRIBE, 4);
+			out.putInt(handle);
+		}
+	}
+
+	public void finalizeFederate() throws RTIexception {
+		if (channel == null || closed) {
+			return;
+		}
+		try {
+			synchronized (lock) {
+				frame(NioCoordinator.RESIGN, 0);
+			}
+			flush();
+			long end = System.currentTimeMillis() + CLOSE_TIMEOUT;
+			synchronized (lock) {
+				while (out.position() > 0 && failure == null
+						&& System.currentTimeMillis() < end) {
+					lock.wait(100);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			close();
+		}
+		log("Resigned from Federation");
+	}
+
+	public void sendData(SampleBatch samples) throws RTIexception {
+		checkFailure();
+		double time = getSendTime();
+		boolean full;
+		synchronized (lock) {
+			for (int i = 0; i < samples.size(); i++) {
+				int channel = samples.getChannel(i);
+				int handle;
+				try {
+					handle = handles.getChannelHandle(channel);
+				} catch (NameNotFound e) {
+					log("Value not sent, no canal" + channel + ": "
+							+ samples.getText(i));
+					continue;
+				}
+				byte[] value = codec.encode(samples, i);
+				if (settings.sendReceiveOrder()) {
+					frame(NioCoordinator.REFLECT_RECEIVE, 8 + value.length);
+					out.putInt(handle);
+					out.putInt(value.length);
+					out.put(value);
+				}
+				if (settings.sendTimestampOrder()) {
+					frame(NioCoordinator.REFLECT_TIMESTAMP, 16 + value.length);
+					out.putDouble(time);
+					out.putInt(handle);
+					out.putInt(value.length);
+					out.put(value);
+				}
+			}
+			full = out.position() >= FLUSH_THRESHOLD;
+		}
+		if (full) {
+			flush();
+		}
+	}
+
+	public void setLookahead(double lookahead) throws RTIexception {
+		if (lookahead == fedamb.federateLookahead) {
+			return;
+		}
+		if (!(lookahead > 0)) {
+			throw new InvalidLookahead("The lookahead must be positive: "
+					+ lookahead);
+		}
+		checkFailure();
+		if (lookahead < fedamb.federateLookahead) {
+			requests.lowerLookahead(getSendTime());
+		}
+		synchronized (lock) {
+			frame(NioCoordinator.LOOKAHEAD, 8);
+			out.putDouble(lookahead);
+		}
+		fedamb.federateLookahead = lookahead;
+	}
+
+	/**
+	 * Send our backlog with the next frames, the coordinator adds the
+	 * reflections it holds for us and drops the reports that did not change.
+	 */
+	public void reportLoad() throws RTIexception {
+		if (master) {
+			return;
+		}
+		checkFailure();
+		synchronized (lock) {
+			frame(NioCoordinator.LOAD, 8);
+			out.putInt(settings.getSlaveChannel());
+			out.putInt(fedamb.getReceivedDataCount());
+		}
+	}
+
+	/** Ask the coordinator for a time advance, with the values sent so far */
+	protected void sendRequest(double time) throws RTIexception {
+		checkFailure();
+		requests.sent(time);
+		fedamb.isAdvancing = true;
+		synchronized (lock) {
+			frame(NioCoordinator.REQUEST, 9);
+			out.putDouble(time);
+			out.put((byte) (settings.isNextEventRequest() ? 1 : 0));
+		}
+		flush();
+	}
+
+	protected void awaitGrant() throws RTIexception {
+		synchronized (lock) {
+			while (fedamb.isAdvancing) {
+				await(0);
+			}
+		}
+	}
+
+	/**
+	 * Wait, holding the lock, for the reader to change something.
+	 *
+	 * @param timeout
+	 *            the longest wait in milliseconds, 0 to wait forever
+	 */
+	private void await(long timeout) throws RTIexception {
+		checkFailure();
+		try {
+			lock.wait(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RTIinternalError("Interrupted waiting for the coordinator");
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() throws RTIexception {
+		synchronized (lock) {
+			if (failure != null) {
+				throw new RTIinternalError(failure);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------
+	// SOCKET
+	// ----------------------------------------------------------
+
+	private void connect(String address) throws RTIexception {
+		String host = address;
+		int port = NioCoordinator.DEFAULT_PORT;
+		int colon = address.lastIndexOf(':');
+		if (colon >= 0) {
+			host = address.substring(0, colon);
+			try {
+				port = Integer.parseInt(address.substring(colon + 1).trim());
+			} catch (NumberFormatException e) {
+				throw new RTIinternalError("Invalid coordinator address: "
+						+ address);
+			}
+		}
+		try {
+			channel = SocketChannel.open(new InetSocketAddress(host.trim(),
+					port));
+			channel.socket().setTcpNoDelay(true);
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			key = channel.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			close();
+			throw new RTIinternalError("Cannot connect to the coordinator at "
+					+ address + ": " + e.getMessage());
+		}
+		Thread reader = new Thread(this, "NIO federate reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/** The reader thread */
+	public void run() {
+		try {
+			while (!closed) {
+				selector.select();
+				selector.selectedKeys().clear();
+				if (!key.isValid()) {
+					break;
+				}
+				if (key.isWritable()) {
+					synchronized (lock) {
+						write();
+						lock.notifyAll();
+					}
+				}
+				if (key.isReadable() && read()) {
+					synchronized (lock) {
+						lock.notifyAll();
+					}
+				}
+			}
+		} catch (IOException e) {
+			fail("Connection to the coordinator lost: " + e.getMessage());
+		} catch (RuntimeException e) {
+			fail("Connection to the coordinator lost: " + e);
+		} finally {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	/**
+	 * Pass the frames read to the FederateAmbassador.
+	 *
+	 * @return true if some were read
+	 */
+	private boolean read() throws IOException {
+		if (channel.read(in) < 0) {
+			fail("Connection closed by the coordinator");
+			return false;
+		}
+		in.flip();
+		boolean read = false;
+		while (in.remaining() >= NioCoordinator.FRAME_HEADER) {
+			int length = in.getInt(in.position());
+			if (in.remaining() < 4 + length) {
+				if (in.capacity() < 4 + length) {
+					in.compact();
+					in = NioCoordinator.grow(in, 4 + length);
+					in.flip();
+				}
+				break;
+			}
+			int end = in.position() + 4 + length;
+			in.getInt();
+			byte type = in.get();
+			if (type == NioCoordinator.REFLECT) {
+				double time = in.getDouble();
+				int handle = in.getInt();
+				int size = in.getInt();
+				if (value.length < size) {
+					value = new byte[Math.max(size, value.length * 2)];
+				}
+				in.get(value, 0, size);
+				fedamb.dataReceived(time, handle, value, size);
+			} else if (type == NioCoordinator.GRANT) {
+				fedamb.timeAdvanceGrant(new CertiLogicalTime(in.getDouble()));
+			} else if (type == NioCoordinator.SYNCHRONIZED) {
+				fedamb.federationSynchronized(MasterFederate.READY_TO_RUN);
+			} else if (type == NioCoordinator.LOAD_REPORT) {
+				int channel = in.getInt();
+				fedamb.loadReported(channel, in.getInt());
+			} else if (type == NioCoordinator.ERROR) {
+				fail(NioCoordinator.getString(in));
+			}
+			in.position(end);
+			read = true;
+		}
+		in.compact();
+		return read;
+	}
+
+	/** Start a frame of the given payload size, holding the lock */
+	private void frame(byte type, int payload) {
+		if (out.remaining() < NioCoordinator.FRAME_HEADER + payload) {
+			out = NioCoordinator.grow(out, NioCoordinator.FRAME_HEADER
+					+ payload);
+		}
+		out.putInt(1 + payload);
+		out.put(type);
+	}
+
+	/** Write the frames gathered so far, the reader finishes a partial write */
+	private void flush() throws RTIexception {
+		boolean partial;
+		synchronized (lock) {
+			if (out.position() == 0 || closed) {
+				return;
+			}
+			try {
+				write();
+			} catch (IOException e) {
+				failure = "Cannot write to the coordinator: " + e.getMessage();
+				throw new RTIinternalError(failure);
+			}
+			partial = out.position() > 0;
+		}
+		if (partial) {
+			selector.wakeup();
+		}
+	}
+
+	/** Write what the socket takes, holding the lock */
+	private void write() throws IOException {
+		out.flip();
+		channel.write(out);
+		out.compact();
+		key.interestOps(out.position() > 0 ? SelectionKey.OP_READ
+				| SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	private void fail(String message) {
+		synchronized (lock) {
+			if (!closed && failure == null) {
+				failure = message;
+				log(message);
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void close() {
+		closed = true;
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+			if (selector != null) {
+				selector.wakeup();
+			}
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+}
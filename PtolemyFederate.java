@@ -2,12 +2,20 @@ package ptolemy.myactors.MaximumEntropy;
 
 import hla.rti.RTIexception;
 
+import java.util.List;
+
 public interface PtolemyFederate {
 	
 	//angelo - mudei
 //	public void sendData(int data) throws RTIexception;
 	public void sendData(String data) throws RTIexception;
 
+	/**
+	 * Send the samples of one firing to the RTI, encoded with the codec of
+	 * the settings. The batch can be reused once this method returns.
+	 */
+	public void sendData(SampleBatch samples) throws RTIexception;
+
 	 //angelo - mudando de Interaction para Attributes
 //	 public Interaction receivedData(double time);	    
 //	 public Interaction consumeReceivedData(double time);
@@ -15,10 +23,45 @@ public interface PtolemyFederate {
 	 public Attributes receivedData(double time);	    
 	 
 	 public Attributes consumeReceivedData(double time);
+
+	 /**
+	  * Move every reflection with a time stamp up to <i>time</i>, earliest
+	  * first, to the given list, with its samples already decoded.
+	  * @return how many reflections were added
+	  */
+	 public int drainReceivedData(double time, List<Attributes> into);
+
+	 /**
+	  * Give back the reflections returned by drainReceivedData() once the
+	  * actor has used them; their buffers are reused by the next ones.
+	  */
+	 public void recycleReceivedData(List<Attributes> used);
+
+	 /**
+	  * @return true if a reflection with a time stamp up to <i>time</i> is
+	  *         waiting to be drained
+	  */
+	 public boolean hasReceivedData(double time);
+
+	 /** @return the logical time last granted by the RTI */
+	 public double getRTITime();
 	 
 	 public void advanceTime( double timestep ) throws RTIexception;
 	    
 	 public void advanceTimeTo( double nextStep ) throws RTIexception;
+
+	 /**
+	  * Ask the RTI to advance to <i>nextStep</i> without waiting for the
+	  * grant. While a request is pending, further requests are merged into a
+	  * single one for the furthest time, sent when the grant arrives.
+	  */
+	 public void requestTimeAdvance( double nextStep ) throws RTIexception;
+
+	 /** Wait for the grant of the pending time advance request, if any. */
+	 public void awaitTimeAdvance() throws RTIexception;
+
+	 /** @return true if a time advance was requested and not granted yet */
+	 public boolean isTimeAdvancePending();
 	 
 	 public void createFederate( String federateName, String fedFileName ) throws RTIexception;
 	 
@@ -26,6 +69,47 @@ public interface PtolemyFederate {
 
 	 public double getRTINextTime();
 
-	
+	 /** @return the lookahead this federate promised to the RTI */
+	 public double getLookahead();
+
+	 /**
+	  * @return the time stamp of the updates sent now: the time last granted,
+	  *         or the time of the pending request if it is later, plus the
+	  *         lookahead, and no earlier than the promise of a lookahead
+	  *         since lowered
+	  */
+	 public double getSendTime();
+
+	 /**
+	  * Change the lookahead promised to the RTI. Nothing is sent to the RTI if
+	  * the value does not change. A higher value takes effect at once, a lower
+	  * one only once the federate has advanced past the send time of the
+	  * previous one: the others may already have been granted up to it.
+	  */
+	 public void setLookahead( double lookahead ) throws RTIexception;
+
+	 /**
+	  * Tell the master how many reflections wait in this federate, for the
+	  * least loaded strategy of the {@link DataSeparator}. Only slaves report,
+	  * and only when the backlog changed since their last report.
+	  */
+	 public void reportLoad() throws RTIexception;
+
+	 /** @return the backlogs the slaves reported, by channel */
+	 public ChannelLoads getChannelLoads();
+
+	 /**
+	  * @return how many reflections were dropped because the inbound queue
+	  *         held receivedDataCapacity of them already
+	  */
+	 public long getDroppedDataCount();
+
+	 /**
+	  * Hand the director options to the federate. Called once, before
+	  * createFederate().
+	  */
+	 public void configure( FederateSettings settings );
+
+
 
 }
@@ -1,5 +1,7 @@
 package ptolemy.myactors.MaximumEntropy;
 
+import java.util.List;
+
 import ptolemy.data.IntToken;
 import ptolemy.data.StringToken;
 import ptolemy.kernel.util.IllegalActionException;
@@ -14,6 +16,17 @@ public interface PtolemyFederateActor {
 //	public IntToken getDataToSend();
 	public StringToken getValue();
 	public StringToken getDataToSend();
+	/**
+	 * Return the samples produced since the last call. The batch belongs to
+	 * the actor and is cleared on its next firing.
+	 */
+	public SampleBatch getSamplesToSend();
 	public void updateAtributesToSend(Attributes attr);
+	/**
+	 * Hand over all the reflections the director drained for this firing,
+	 * earliest first. The list and the Attributes are reused by the director
+	 * after fire(), the actor must not keep them.
+	 */
+	public void updateAtributesToSend(List<Attributes> attrs);
 
 }
@@ -0,0 +1,176 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.RTIambassador;
+import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread that keeps ticking the RTI ambassador, so that callbacks are
+ * delivered while the director is busy and a federate waiting for a grant
+ * sleeps on a condition instead of spinning on tick2().
+ * <p/>
+ * The RTI ambassador is not thread safe. Every call to it must be made while
+ * holding the pump lock ({@link #lock()} / {@link #unlock()}); the lock is
+ * fair, so a federate waiting for it gets it between two ticks. A tick never
+ * waits for callbacks: it delivers the pending ones, for at most the tick
+ * timeout, and returns.
+ * <p/>
+ * The pump polls, it does not wait in the RTI for the next callback: such a
+ * tick would hold the ambassador, and so the lock, until a callback came, and
+ * the director could not send meanwhile. When no callback is left the pump
+ * sleeps the idle interval, a tenth of the tick timeout (1 ms by default),
+ * without the lock. A callback waits no longer than that to be delivered, and
+ * an idle federate wakes up that often.
+ * <p/>
+ * Before {@link #start(String)} is called (while the federate joins and
+ * synchronizes) {@link #evokeCallbacks()} ticks from the calling thread the
+ * same way.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class RTIPump implements Runnable {
+
+	/** Default bound, in seconds, of the wait of one tick */
+	public static final double DEFAULT_TICK_TIMEOUT = 0.01;
+
+	private final RTIambassador rtiamb;
+	private final double tickTimeout;
+	// the idle interval: the sleep between two ticks that left no callback
+	// pending, a tenth of the tick timeout
+	private final long idleNanos;
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+	// signalled after every tick, with or without callbacks
+	private final Condition ticked = lock.newCondition();
+
+	private volatile boolean running = false;
+	private volatile RTIexception failure = null;
+	private Thread thread = null;
+
+	/**
+	 * @param tickTimeout
+	 *            the longest a tick delivers callbacks, in seconds
+	 */
+	public RTIPump(RTIambassador rtiamb, double tickTimeout) {
+		this.rtiamb = rtiamb;
+		this.tickTimeout = tickTimeout > 0 ? tickTimeout : DEFAULT_TICK_TIMEOUT;
+		this.idleNanos = (long) (this.tickTimeout / 10 * 1e9);
+	}
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	/** Start ticking in a daemon thread */
+	public void start(String name) {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "RTI pump " + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Stop ticking and wait for the thread to end */
+	public void stop() {
+		running = false;
+		if (thread != null && thread != Thread.currentThread()) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		thread = null;
+	}
+
+	/** @return true while the pump thread is ticking */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/** Take the RTI lock, needed for any call to the RTI ambassador */
+	public void lock() {
+		lock.lock();
+	}
+
+	public void unlock() {
+		lock.unlock();
+	}
+
+	/**
+	 * Let the RTI deliver callbacks. When the pump thread is running the
+	 * caller must hold the RTI lock: it is released until the next tick is
+	 * over, and taken again before returning, so the caller can check the
+	 * state set by the callbacks. Otherwise the RTI is ticked from the calling
+	 * thread, which sleeps the idle interval like the pump if no callback is
+	 * left.
+	 */
+	public void evokeCallbacks() throws RTIexception {
+		if (failure != null) {
+			throw failure;
+		}
+		if (!running) {
+			if (!tick()) {
+				LockSupport.parkNanos(this, idleNanos);
+			}
+			return;
+		}
+		try {
+			// bounded, in case the pump dies without signalling
+			ticked.await((long) (tickTimeout * 4000), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RTIinternalError("Interrupted while waiting for the RTI");
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	public void run() {
+		while (running) {
+			boolean pending = false;
+			lock.lock();
+			try {
+				pending = tick();
+				ticked.signalAll();
+			} catch (RTIexception e) {
+				failure = e;
+				running = false;
+				ticked.signalAll();
+			} catch (RuntimeException e) {
+				failure = new RTIinternalError("RTI pump failed: " + e);
+				running = false;
+				ticked.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			if (!pending && running) {
+				LockSupport.parkNanos(this, idleNanos);
+			}
+		}
+	}
+
+	/**
+	 * Deliver the pending callbacks, for at most the tick timeout, without
+	 * waiting for new ones.
+	 *
+	 * @return true if callbacks are still pending
+	 */
+	private boolean tick() throws RTIexception {
+		lock.lock();
+		try {
+			return rtiamb.tick(0, tickTimeout);
+		} finally {
+			lock.unlock();
+		}
+	}
+}
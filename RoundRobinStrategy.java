@@ -0,0 +1,26 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.data.Token;
+
+/**
+ * Sends the tokens to the output channels in turn, whatever their source.
+ * Every slave gets the same share, whatever the width of the output.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class RoundRobinStrategy implements LoadBalancingStrategy {
+
+	private int next = 0;
+
+	public String getName() {
+		return LoadBalancingStrategies.ROUND_ROBIN;
+	}
+
+	public int selectChannel(int source, Token token, int width,
+			ChannelLoads loads) {
+		if (next >= width) {
+			next = 0;
+		}
+		return next++;
+	}
+}
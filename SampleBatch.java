@@ -0,0 +1,241 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.data.DoubleToken;
+import ptolemy.data.IntToken;
+import ptolemy.data.ScalarToken;
+import ptolemy.data.StringToken;
+import ptolemy.data.Token;
+import ptolemy.kernel.util.IllegalActionException;
+
+/**
+ * The channel samples exchanged between master and slaves, kept in parallel
+ * primitive arrays instead of one String per sample. A batch is filled by the
+ * MasterFederateActor during a firing (or by an {@link AttributeCodec} when
+ * data is reflected) and is reused afterwards with {@link #clear()}, so the
+ * arrays only grow until they reach the largest batch of the run.
+ * <p/>
+ * Each sample has a channel number, a kind ({@link #INT}, {@link #DOUBLE} or
+ * {@link #STRING}), a value and the model time it was produced at. Int and
+ * double values are kept as long bits; strings (the "eof" marker, mostly) in
+ * a separate array.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class SampleBatch {
+
+	public static final byte INT = 1;
+	public static final byte DOUBLE = 2;
+	public static final byte STRING = 3;
+
+	/** Value sent by the master when a stream ends */
+	public static final String EOF = "eof";
+
+	private int size = 0;
+	private int[] channels;
+	private byte[] kinds;
+	private long[] values;
+	private double[] times;
+	private String[] strings;
+
+	public SampleBatch() {
+		this(16);
+	}
+
+	public SampleBatch(int capacity) {
+		capacity = Math.max(capacity, 1);
+		channels = new int[capacity];
+		kinds = new byte[capacity];
+		values = new long[capacity];
+		times = new double[capacity];
+		strings = new String[capacity];
+	}
+
+	// ----------------------------------------------------------
+	// ADDING SAMPLES
+	// ----------------------------------------------------------
+
+	public void addInt(int channel, int value, double time) {
+		int i = next(channel, INT, time);
+		values[i] = value;
+	}
+
+	public void addDouble(int channel, double value, double time) {
+		int i = next(channel, DOUBLE, time);
+		values[i] = Double.doubleToRawLongBits(value);
+	}
+
+	public void addString(int channel, String value, double time) {
+		int i = next(channel, STRING, time);
+		strings[i] = value;
+	}
+
+	/**
+	 * Add a sample given as text, as the string codec and the old StringToken
+	 * path produce them: integers and doubles keep their type, anything else
+	 * (the "eof" marker) stays a string. Quotes are removed.
+	 */
+	public void addText(int channel, String text, double time) {
+		if (text.indexOf('"') >= 0) {
+			text = text.replace("\"", "");
+		}
+		text = text.trim();
+		try {
+			addInt(channel, Integer.parseInt(text), time);
+			return;
+		} catch (NumberFormatException e) {
+			// not an int
+		}
+		if (text.length() > 0 && !text.equals(EOF)) {
+			try {
+				addDouble(channel, Double.parseDouble(text), time);
+				return;
+			} catch (NumberFormatException e) {
+				// not a double either
+			}
+		}
+		addString(channel, text, time);
+	}
+
+	/**
+	 * Add a Ptolemy token: IntToken and DoubleToken keep their type, any
+	 * other token is added as text.
+	 */
+	public void add(int channel, Token token, double time)
+			throws IllegalActionException {
+		if (token instanceof IntToken) {
+			addInt(channel, ((IntToken) token).intValue(), time);
+		} else if (token instanceof DoubleToken) {
+			addDouble(channel, ((DoubleToken) token).doubleValue(), time);
+		} else if (token instanceof StringToken) {
+			addText(channel, ((StringToken) token).stringValue(), time);
+		} else if (token instanceof ScalarToken) {
+			addDouble(channel, ((ScalarToken) token).doubleValue(), time);
+		} else {
+			addText(channel, token.toString(), time);
+		}
+	}
+
+	/** Append all the samples of another batch */
+	public void addAll(SampleBatch other) {
+		for (int j = 0; j < other.size; j++) {
+			int i = next(other.channels[j], other.kinds[j], other.times[j]);
+			values[i] = other.values[j];
+			strings[i] = other.strings[j];
+		}
+	}
+
+	/** Forget all the samples, keeping the arrays */
+	public void clear() {
+		// drop the string references so they can be collected
+		for (int i = 0; i < size; i++) {
+			strings[i] = null;
+		}
+		size = 0;
+	}
+
+	// ----------------------------------------------------------
+	// READING SAMPLES
+	// ----------------------------------------------------------
+
+	public int size() {
+		return size;
+	}
+
+	public int getChannel(int i) {
+		return channels[i];
+	}
+
+	public byte getKind(int i) {
+		return kinds[i];
+	}
+
+	public double getTime(int i) {
+		return times[i];
+	}
+
+	public int getInt(int i) {
+		return kinds[i] == DOUBLE ? (int) Double.longBitsToDouble(values[i])
+				: (int) values[i];
+	}
+
+	public double getDouble(int i) {
+		return kinds[i] == DOUBLE ? Double.longBitsToDouble(values[i])
+				: values[i];
+	}
+
+	/** @return the raw value bits: the int value or the double bits */
+	public long getBits(int i) {
+		return values[i];
+	}
+
+	public String getString(int i) {
+		return strings[i];
+	}
+
+	/** @return true if the sample is the end of stream marker */
+	public boolean isEof(int i) {
+		return kinds[i] == STRING && EOF.equals(strings[i]);
+	}
+
+	/** @return the value of a sample as text, as the string codec sends it */
+	public String getText(int i) {
+		switch (kinds[i]) {
+		case INT:
+			return Integer.toString((int) values[i]);
+		case DOUBLE:
+			return Double.toString(Double.longBitsToDouble(values[i]));
+		default:
+			return strings[i];
+		}
+	}
+
+	/** @return the value of a sample as a Ptolemy token */
+	public Token getToken(int i) {
+		switch (kinds[i]) {
+		case INT:
+			return new IntToken((int) values[i]);
+		case DOUBLE:
+			return new DoubleToken(Double.longBitsToDouble(values[i]));
+		default:
+			return new StringToken(strings[i]);
+		}
+	}
+
+	/** Store a raw sample, used by the codecs when decoding */
+	void addRaw(int channel, byte kind, long bits, double time) {
+		int i = next(channel, kind, time);
+		values[i] = bits;
+	}
+
+	private int next(int channel, byte kind, double time) {
+		if (size == channels.length) {
+			grow();
+		}
+		int i = size++;
+		channels[i] = channel;
+		kinds[i] = kind;
+		times[i] = time;
+		values[i] = 0;
+		strings[i] = null;
+		return i;
+	}
+
+	private void grow() {
+		int capacity = channels.length * 2;
+		int[] newChannels = new int[capacity];
+		byte[] newKinds = new byte[capacity];
+		long[] newValues = new long[capacity];
+		double[] newTimes = new double[capacity];
+		String[] newStrings = new String[capacity];
+		System.arraycopy(channels, 0, newChannels, 0, size);
+		System.arraycopy(kinds, 0, newKinds, 0, size);
+		System.arraycopy(values, 0, newValues, 0, size);
+		System.arraycopy(times, 0, newTimes, 0, size);
+		System.arraycopy(strings, 0, newStrings, 0, size);
+		channels = newChannels;
+		kinds = newKinds;
+		values = newValues;
+		times = newTimes;
+		strings = newStrings;
+	}
+}
@@ -0,0 +1,229 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.util.Arrays;
+
+/**
+ * A bounded FIFO of channel samples, kept in parallel primitive arrays like
+ * a {@link SampleBatch} but with a fixed capacity. The MasterFederateActor
+ * stages its input here and the director drains it into the batch it sends,
+ * so a burst of input cannot grow the memory of the master without limit.
+ * <p/>
+ * What happens to a sample offered to a full buffer depends on the policy:
+ * <ul>
+ * <li>{@link #BLOCK}: it is refused, the caller leaves it where it was (in
+ * the input port) until the buffer has been drained;</li>
+ * <li>{@link #DROP_OLDEST}: the oldest sample is dropped to make room;</li>
+ * <li>{@link #COALESCE}: it replaces the newest pending sample of its
+ * channel, so each channel keeps its latest value; the oldest sample is
+ * dropped if the channel has none pending.</li>
+ * </ul>
+ * The buffer counts the dropped and coalesced samples and the highest
+ * number of samples it held. It is not thread safe.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class SampleRingBuffer {
+
+	/** Refuse samples while the buffer is full */
+	public static final String BLOCK = "block";
+
+	/** Drop the oldest sample to make room */
+	public static final String DROP_OLDEST = "dropOldest";
+
+	/** Replace the pending sample of the same channel */
+	public static final String COALESCE = "coalesce";
+
+	private final int capacity;
+	private String policy;
+
+	private final int[] channels;
+	private final byte[] kinds;
+	private final long[] values;
+	private final double[] times;
+	private final String[] strings;
+
+	// sequence numbers of the oldest sample and of the next one, the slot of
+	// a sample is its sequence modulo the capacity
+	private long head = 0;
+	private long tail = 0;
+
+	// channel -> sequence of its newest sample, for the coalesce policy
+	private long[] newest = new long[0];
+
+	private long dropped = 0;
+	private long coalesced = 0;
+	private int highWaterMark = 0;
+
+	/**
+	 * @exception IllegalArgumentException
+	 *                If the capacity is not greater than zero or the policy is
+	 *                unknown.
+	 */
+	public SampleRingBuffer(int capacity, String policy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException(
+					"The capacity must be greater than zero: " + capacity);
+		}
+		this.capacity = capacity;
+		setPolicy(policy);
+		channels = new int[capacity];
+		kinds = new byte[capacity];
+		values = new long[capacity];
+		times = new double[capacity];
+		strings = new String[capacity];
+	}
+
+	/**
+	 * @exception IllegalArgumentException
+	 *                If the policy is unknown.
+	 */
+	public void setPolicy(String policy) {
+		// the constants, so that offer() can compare references
+		if (BLOCK.equals(policy)) {
+			this.policy = BLOCK;
+		} else if (DROP_OLDEST.equals(policy)) {
+			this.policy = DROP_OLDEST;
+		} else if (COALESCE.equals(policy)) {
+			this.policy = COALESCE;
+		} else {
+			throw new IllegalArgumentException("Unknown overflow policy: "
+					+ policy);
+		}
+	}
+
+	public String getPolicy() {
+		return policy;
+	}
+
+	// ----------------------------------------------------------
+	// ADDING AND DRAINING
+	// ----------------------------------------------------------
+
+	/**
+	 * Add a copy of sample <i>index</i> of the batch.
+	 *
+	 * @return false if the buffer is full and the policy is {@link #BLOCK}:
+	 *         the sample was not added
+	 */
+	public boolean offer(SampleBatch batch, int index) {
+		int channel = batch.getChannel(index);
+		if (size() == capacity) {
+			if (policy == BLOCK) {
+				return false;
+			}
+			if (policy == COALESCE && channel >= 0 && channel < newest.length
+					&& newest[channel] >= head) {
+				set((int) (newest[channel] % capacity), batch, index);
+				coalesced++;
+				return true;
+			}
+			strings[(int) (head % capacity)] = null;
+			head++;
+			dropped++;
+		}
+		long sequence = tail++;
+		set((int) (sequence % capacity), batch, index);
+		if (channel >= 0) {
+			if (channel >= newest.length) {
+				long[] grown = new long[channel + 1];
+				Arrays.fill(grown, newest.length, grown.length, -1);
+				System.arraycopy(newest, 0, grown, 0, newest.length);
+				newest = grown;
+			}
+			newest[channel] = sequence;
+		}
+		highWaterMark = Math.max(highWaterMark, size());
+		return true;
+	}
+
+	/**
+	 * Move all the samples, oldest first, to the end of a batch.
+	 *
+	 * @return how many samples were moved
+	 */
+	public int drainTo(SampleBatch into) {
+		int count = size();
+		for (long s = head; s < tail; s++) {
+			int i = (int) (s % capacity);
+			if (kinds[i] == SampleBatch.STRING) {
+				into.addString(channels[i], strings[i], times[i]);
+				strings[i] = null;
+			} else {
+				into.addRaw(channels[i], kinds[i], values[i], times[i]);
+			}
+		}
+		head = tail;
+		return count;
+	}
+
+	/** Forget the samples and reset the counters */
+	public void clear() {
+		Arrays.fill(strings, null);
+		head = tail;
+		dropped = 0;
+		coalesced = 0;
+		highWaterMark = 0;
+	}
+
+	private void set(int slot, SampleBatch batch, int index) {
+		channels[slot] = batch.getChannel(index);
+		kinds[slot] = batch.getKind(index);
+		values[slot] = batch.getBits(index);
+		times[slot] = batch.getTime(index);
+		strings[slot] = batch.getString(index);
+	}
+
+	// ----------------------------------------------------------
+	// READING
+	// ----------------------------------------------------------
+
+	public int size() {
+		return (int) (tail - head);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public boolean isFull() {
+		return size() == capacity;
+	}
+
+	/** @return the channel of the <i>i</i>th pending sample, oldest first */
+	public int getChannel(int i) {
+		return channels[(int) ((head + i) % capacity)];
+	}
+
+	/** @return the time of the <i>i</i>th pending sample, oldest first */
+	public double getTime(int i) {
+		return times[(int) ((head + i) % capacity)];
+	}
+
+	/** @return the value of the <i>i</i>th pending sample as text */
+	public String getText(int i) {
+		int slot = (int) ((head + i) % capacity);
+		switch (kinds[slot]) {
+		case SampleBatch.INT:
+			return Integer.toString((int) values[slot]);
+		case SampleBatch.DOUBLE:
+			return Double.toString(Double.longBitsToDouble(values[slot]));
+		default:
+			return strings[slot];
+		}
+	}
+
+	/** @return how many samples the drop oldest and coalesce policies dropped */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	/** @return how many samples replaced a pending one of their channel */
+	public long getCoalescedCount() {
+		return coalesced;
+	}
+
+	/** @return the highest number of samples held since the last clear */
+	public int getHighWaterMark() {
+		return highWaterMark;
+	}
+}
@@ -36,10 +36,6 @@ import java.util.ArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.hyperic.sigar.CpuPerc;
-import org.hyperic.sigar.Mem;
-import org.hyperic.sigar.Sigar;
-
 import ptolemy.actor.TypeAttribute;
 import ptolemy.actor.TypedAtomicActor;
 import ptolemy.data.ArrayToken;
@@ -258,32 +254,8 @@ public class Sensor extends TypedAtomicActor {
     
     public void capturarEstatisticas(){
     	try {
-			Sigar sigar = new Sigar();
-    		
-    		BufferedWriter arquivo;								
-			String str = "";
-			CpuPerc cpu;
-			cpu = sigar.getCpuPerc();
-			Mem memory = sigar.getMem();
-
-			//str = CpuPerc.format(cpu.getSys());
-			
-			double totalMemory = (double)memory.getTotal() / (1024*1024*1024);
-			double usedMemory = (double)memory.getUsed() / (1024*1024*1024); //vira GB - origianl eh bytes
-	        double freeMemory = (double)memory.getFree() / (1024*1024*1024);
-	        double usedMemoryPercent = (double)memory.getUsedPercent();
-			
-	        Runtime runtime = Runtime.getRuntime();
-	        double totalMemoryJVM = (double)runtime.totalMemory() / (1024*1024); //valor utilizado pela JVM - em bytes
-	        double freeMemoryJVM = (double)runtime.freeMemory() / (1024*1024);
-	        double maxMemory = (double)runtime.maxMemory() / 1024;
-	        
-//			str = ""+memory.getUsedPercent();
-												        
-	        String cpu_pc = CpuPerc.format(cpu.getCombined());
-	        String cpu_jvm = CpuPerc.format(cpu.getSys());
-	        
-	        str = usedMemoryPercent+"% - "+ ((totalMemoryJVM - freeMemoryJVM)/totalMemoryJVM)*100+"% - "+cpu_pc+" - "+cpu_jvm;
+    		BufferedWriter arquivo;
+			String str = SystemStatistics.captureSummary();
 	        
 			arquivo = new BufferedWriter(new FileWriter("config/experimentos_mem_used.txt", true));
 			arquivo.write(str);
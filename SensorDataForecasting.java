@@ -53,12 +53,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 
-import org.hyperic.sigar.CpuPerc;
-import org.hyperic.sigar.Mem;
-import org.hyperic.sigar.MultiProcCpu;
-import org.hyperic.sigar.Sigar;
-import org.hyperic.sigar.cmd.CpuInfo;
-
 //////////////////////////////////////////////////////////////////////////
 //// Triangulator
 
@@ -347,50 +341,7 @@ public class SensorDataForecasting extends TypedAtomicActor {
     }
     
     public String capturarEstatisticas(){
-    	try {
-			Sigar sigar = new Sigar();
-    		
-    		BufferedWriter arquivo;								
-			String str = "";
-			CpuPerc cpu;
-			cpu = sigar.getCpuPerc();
-			Mem memory = sigar.getMem();
-
-			CpuPerc cpus[] = sigar.getCpuPercList();
-			
-			double totalMemory = (double)memory.getTotal() / (1024*1024*1024);
-			double usedMemory = (double)memory.getUsed() / (1024*1024*1024); //vira GB - origianl eh bytes
-	        double freeMemory = (double)memory.getFree() / (1024*1024*1024);
-	        double usedMemoryPercent = (double)memory.getUsedPercent();
-			
-	        Runtime runtime = Runtime.getRuntime();
-	        double totalMemoryJVM = (double)runtime.totalMemory() / (1024*1024); //valor utilizado pela JVM - em bytes
-	        double freeMemoryJVM = (double)runtime.freeMemory() / (1024*1024);
-	        double maxMemory = (double)runtime.maxMemory() / 1024;
-	        
-	        String cpu_pc = CpuPerc.format(cpu.getUser() + cpu.getSys());
-	        String cpu_jvm = CpuPerc.format(cpu.getSys());
-	        
-	        String cpu_pc_0 = CpuPerc.format(cpus[0].getUser() + cpus[0].getSys());
-	        String cpu_jvm_0 = CpuPerc.format(cpus[0].getSys());
-
-	        
-	        String cpu_pc_1 = CpuPerc.format(cpus[1].getUser() + cpus[1].getSys());
-	        String cpu_jvm_1 = CpuPerc.format(cpus[1].getSys());	        
-	        
-	        str = usedMemoryPercent+"% - "+ ((totalMemoryJVM - freeMemoryJVM)/totalMemoryJVM)*100
-	        +"% - "+cpu_pc+" - "+cpu_jvm+"% - "+cpu_pc_0+" - "+cpu_jvm_0+"% - "+cpu_pc_1+" - "+cpu_jvm_1;
-	        
-//			arquivo = new BufferedWriter(new FileWriter("config/experimentos_mem_used.txt", true));
-//			arquivo.write(str);
-//			arquivo.newLine();
-//	        arquivo.close();
-	        
-	        return str;
-		} catch (Exception e1) {
-			e1.printStackTrace();
-			return null;
-		}		
+    	return SystemStatistics.capture();
     }
 
     public void gravarArquivoDeteccao(Token token, String idSensor){
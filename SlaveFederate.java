@@ -21,6 +21,8 @@ import hla.rti.FederationExecutionDoesNotExist;
 import hla.rti.LogicalTime;
 import hla.rti.RTIambassador;
 import hla.rti.RTIexception;
+import hla.rti.RTIinternalError;
+import hla.rti.Region;
 import hla.rti.ResignAction;
 import hla.rti.SuppliedAttributes;
 import hla.rti.SuppliedParameters;
@@ -35,6 +37,7 @@ import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.text.DecimalFormat;
 import java.util.Calendar;
+import java.util.List;
 
 import javax.management.MBeanServerConnection;
 import javax.swing.JOptionPane;
@@ -119,21 +122,45 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 	/*
 	 * Quando for executar mais de um slave no mesmo modelo, este nome a seguir
-	 * deve ser diferente. E o ltimo slave a ser executado deve receber o nome
+	 * deve ser diferente. E o último slave a ser executado deve receber o nome
 	 * ReadyToRun
 	 */
 	//private static SlaveManager sm = SlaveManager.getInstance();
 	
 
 	private static String federateName = "ReadyToRun";
-	private static int slaveChannel = 5;
+
+	// the handle the RTI gave us when we joined
+	private int federateHandle;
+
+	private FederateSettings settings = new FederateSettings();
+
+	// backlog sent by the last reportLoad(), -1 before the first one
+	private int lastReportedLoad = -1;
+
+	// handles of the FOM, resolved once after joining
+	private HandleRegistry handles;
+
+	// ticks the RTI in the background, null when the director ticks
+	private RTIPump pump;
+
+	// pipelined time advance
+	private TimeAdvanceRequests requests = new TimeAdvanceRequests();
+
+	private AttributeCodec codec = new StringAttributeCodec();
 
 
 	// ----------------------------------------------------------
 	// CONSTRUCTORS
 	// ----------------------------------------------------------
+	// data plane: the ring of our channel, null when the values come
+	// through the RTI
+	private MappedChannelRing ring;
+	private int ringHandle;
+	private byte[] ringValue = new byte[64];
+
 	public SlaveFederate() {
-		fedamb = new FederateAmbassador();
+		fedamb = new FederateAmbassador(settings.getReceivedDataCapacity());
 	}
 
 	// /////////////////////////////////////////////////////////////////////////
@@ -150,12 +177,22 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 	public void createFederate(String fedName, String fedFileName)
 			throws RTIexception {
+		// read the FOM, the handles are resolved after joining
+		try {
+			handles = new HandleRegistry(fedFileName);
+		} catch (IOException e) {
+			throw new RTIinternalError("Cannot read fom " + fedFileName + ": "
+					+ e.getMessage());
+		}
 
 		// ///////////////////////////////
 		// 1. create the RTIambassador //
 		// ///////////////////////////////
 
 		createRTIAmbassador();
+		if (settings.isRtiPumpThread()) {
+			pump = new RTIPump(rtiamb, settings.getRtiPumpTimeout());
+		}
 
 		// ////////////////////////////
 		// 2. create the federation //
@@ -180,7 +217,8 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		// //////////////////////////
 		// 3. join the federation //
 		// //////////////////////////
-		joinFederation(federateName);
+		// all slaves join as ReadyToRun, unless headless
+		joinFederation(settings.isHeadless() ? fedName : federateName);
 
 		
 		// //////////////////////////////
@@ -191,13 +229,19 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		// but we don't care about that, as long as someone registered it
 
 		// Just present in SlaveFederate
-		announceSynchronizationPoint();
-
-		// WAIT FOR USER TO KICK US OFF
-		// So that there is time to add other federates, we will wait until the
-		// user hits enter before proceeding. That was, you have time to start
-		// other federates.
-		waitForUser();
+		// Headless, we tell the master we joined and it registers the point
+		// once all slaves are in, so no user is needed.
+		if (settings.isHeadless()) {
+			announceJoin();
+		} else {
+			announceSynchronizationPoint();
+
+			// WAIT FOR USER TO KICK US OFF
+			// So that there is time to add other federates, we will wait until
+			// the user hits enter before proceeding. That was, you have time
+			// to start other federates.
+			waitForUser();
+		}
 		
 	    Calendar data = Calendar.getInstance();  
 	    int hora = data.get(Calendar.HOUR_OF_DAY);   
@@ -205,7 +249,7 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 	    int seg = data.get(Calendar.SECOND);  
 	    int mseg = data.get(Calendar.MILLISECOND);  
 
-	    System.out.println("Simulaao iniciada de " + hora + "horas, " + min + "min, " + seg +" segundos e" + mseg + "msegundos");
+	    System.out.println("Simulaçao iniciada de " + hora + "horas, " + min + "min, " + seg +" segundos e" + mseg + "msegundos");
 
 		/*
 		 * MBeanServerConnection mbsc =
@@ -247,14 +291,26 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 		// - Removendo para testes
 		// publishAndSubscribe();
-		publishAndSubscribe(slaveChannel);
+		if (!handles.isResolved()) {
+			handles.resolve(rtiamb);
+		}
+		publishAndSubscribe(settings.getSlaveChannel());
 		log("Published and Subscribed");
+		openDataPlane();
 
 		// ///////////////////////////////////
 		// 8. register an object to update //
 		// ///////////////////////////////////
-		objectHandle = registerObject();
+		// headless, announceJoin() registered it
+		if (!settings.isHeadless()) {
+			objectHandle = registerObject();
+		}
 		log("Registered Object, handle=" + objectHandle);
+
+		// from now on the callbacks are delivered by the pump thread
+		if (pump != null) {
+			pump.start(federateName);
+		}
 	}
 
 	public void sendData(String data) throws RTIexception {
@@ -267,13 +323,32 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 	}
 
+	public void sendData(SampleBatch samples) throws RTIexception {
+		// the slave does not send data, see updateAttributeValues()
+	}
+
 	public void finalizeFederate() throws RTIexception {
+		// the RTI is ours again
+		if (pump != null) {
+			pump.stop();
+		}
+
 		// ////////////////////////////////////
 		// 10. delete the object we created //
 		// ////////////////////////////////////
 		deleteObject(objectHandle);
 		log("Deleted Object, handle=" + objectHandle);
 
+		// let another slave of our channel read the ring
+		if (ring != null) {
+			try {
+				ring.close();
+			} catch (IOException e) {
+				log("Cannot close the data plane: " + e.getMessage());
+			}
+			ring = null;
+		}
+
 		// //////////////////////////////////
 		// 11. resign from the federation //
 		// //////////////////////////////////
@@ -299,6 +374,32 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 	// ----------------------------------------------------------
 	// INSTANCE METHODS
 	// ----------------------------------------------------------
+	/**
+	 * Let the RTI deliver callbacks: tick2() when the director ticks the RTI
+	 * itself, otherwise a bounded wait on the pump. Called in the loops that
+	 * wait for a callback, with the RTI lock held.
+	 */
+	private void evokeCallbacks() throws RTIexception {
+		if (pump == null) {
+			((CertiRtiAmbassador) rtiamb).tick2();
+		} else {
+			pump.evokeCallbacks();
+		}
+	}
+
+	/** Take the RTI lock when a pump thread shares the RTI ambassador */
+	private void lockRTI() {
+		if (pump != null) {
+			pump.lock();
+		}
+	}
+
+	private void unlockRTI() {
+		if (pump != null) {
+			pump.unlock();
+		}
+	}
+
 	/**
 	 * This is just a helper method to make sure all logging it output in the
 	 * same form
@@ -325,9 +426,40 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 	 * CertiLogicalTime(time); return fedamb.consumeReceivedData(t); }
 	 */
 
+	public void configure(FederateSettings settings) {
+		this.settings = settings;
+		this.codec = AttributeCodecs.forName(settings.getAttributeCodec());
+	}
+
 	public Attributes receivedData(double time) {
+		pollDataPlane();
 		LogicalTime t = new CertiLogicalTime(time);
-		return fedamb.receivedData(t);
+		Attributes attrs = fedamb.receivedData(t);
+		if (attrs != null && attrs.getSamples() == null) {
+			decodeSamples(attrs);
+		}
+		return attrs;
+	}
+
+	/**
+	 * Decode the reflected channel attributes with our codec and keep the
+	 * samples in the Attributes, so the actors never see the raw bytes.
+	 */
+	private void decodeSamples(Attributes attrs) {
+		// decoded straight from the copied buffers, into the batch owned by
+		// the pooled Attributes
+		SampleBatch samples = attrs.getSampleBuffer();
+		double time = attrs.getTime();
+		for (int i = 0; i < attrs.size(); i++) {
+			try {
+				int channel = handles.getChannel(attrs.getAttributeHandle(i));
+				codec.decode(channel, attrs.getValueReference(i), 0, attrs
+						.getValueLength(i), time, samples);
+			} catch (IllegalArgumentException e) {
+				log("Cannot decode attribute " + i + ": " + e.getMessage());
+			}
+		}
+		attrs.setSamples(samples);
 	}
 
 	public Attributes consumeReceivedData(double time) {
@@ -335,6 +467,26 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		return fedamb.consumeReceivedData(t);
 	}
 
+	public int drainReceivedData(double time, List<Attributes> into) {
+		pollDataPlane();
+		int first = into.size();
+		int count = fedamb.drainReceivedData(time, into);
+		for (int i = first; i < into.size(); i++) {
+			if (into.get(i).getSamples() == null) {
+				decodeSamples(into.get(i));
+			}
+		}
+		return count;
+	}
+
+	public void recycleReceivedData(List<Attributes> used) {
+		fedamb.recycle(used);
+	}
+
+	public double getRTITime() {
+		return fedamb.federateTime;
+	}
+
 	private void createRTIAmbassador() throws RTIexception {
 		log("SlaveFederate - createAmbassador()");
 		rtiamb = RtiFactoryFactory.getRtiFactory().createRtiAmbassador();
@@ -350,10 +502,46 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 	private void joinFederation(String fedName) throws RTIexception {
 		// create the federate ambassador and join the federation
-		fedamb = new FederateAmbassador();
-		rtiamb.joinFederationExecution(federateName, "ExampleFederation",
-				fedamb);
-		log("Joined Federation as " + federateName);
+		fedamb = new FederateAmbassador(settings.getReceivedDataCapacity());
+		fedamb.setDebugListener(settings.getDebugListener());
+		fedamb.setTimeTrace(settings.getTimeTrace());
+		fedamb.federateLookahead = settings.getLookahead();
+		federateHandle = rtiamb.joinFederationExecution(fedName,
+				"ExampleFederation", fedamb);
+		log("Joined Federation as " + fedName);
+	}
+
+	/**
+	 * Register our channel object with a name that tells the master we
+	 * joined, and wait until the master registers ReadyToRun or the startup
+	 * timeout has passed. The master discovers the object even if it joins
+	 * after us, and the object goes away when we delete it at the end.
+	 */
+	private void announceJoin() throws RTIexception {
+		handles.resolve(rtiamb);
+		int classHandle = handles.getChannelClassHandle();
+		AttributeHandleSet attributes = RtiFactoryFactory.getRtiFactory()
+				.createAttributeHandleSet();
+		attributes.add(handles.getChannelHandle(settings.getSlaveChannel()));
+		rtiamb.publishObjectClass(classHandle, attributes);
+		objectHandle = rtiamb.registerObjectInstance(classHandle,
+				MasterFederate.SLAVE_JOINED + federateHandle);
+
+		long timeout = (long) (settings.getStartupTimeout() * 1000);
+		long end = System.currentTimeMillis() + timeout;
+		while (fedamb.isAnnounced == false) {
+			if (timeout > 0 && System.currentTimeMillis() >= end) {
+				throw new RTIinternalError("The master did not announce "
+						+ READY_TO_RUN + " in " + settings.getStartupTimeout()
+						+ " s");
+			}
+			if (pump == null) {
+				rtiamb.tick(settings.getRtiPumpTimeout(), settings
+						.getRtiPumpTimeout());
+			} else {
+				pump.evokeCallbacks();
+			}
+		}
 	}
 
 	private void announceSynchronizationPoint() throws RTIexception {
@@ -366,7 +554,7 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		// wait until the point is announced
 		while (fedamb.isRegistered == false || fedamb.isAnnounced == false) {
 			log("tick () !!");
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 	}
 
@@ -383,7 +571,7 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 		while (fedamb.isReadyToRun == false) {
 			log("isReadyToRun == false");
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 	}
 
@@ -412,7 +600,7 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 		// tick until we get the callback
 		while (fedamb.isRegulating == false) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 
 		// ///////////////////////////
@@ -422,7 +610,7 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 		// tick until we get the callback
 		while (fedamb.isConstrained == false) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+			evokeCallbacks();
 		}
 	}
 
@@ -441,12 +629,8 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 		// get all the handle information for the attributes of ObjectRoot.A
 
-		int classHandle = rtiamb.getObjectClassHandle("ObjectRoot.aes");
-		// int classHandle = rtiamb.getObjectClassHandle( "ObjectRoot.string" );
-		int aaHandle = rtiamb.getAttributeHandle("canal1", classHandle);
-
-		// int classHandle = rtiamb.getObjectClassHandle("InteractionRoot.X");
-		// int aaHandle = rtiamb.getAttributeHandle("xa", classHandle);
+		int classHandle = handles.getChannelClassHandle();
+		int aaHandle = handles.getChannelHandle(1);
 
 		// package the information into a handle set
 		AttributeHandleSet attributes = RtiFactoryFactory.getRtiFactory()
@@ -470,8 +654,8 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		// we want to send interactions of type InteractionRoot.X, so we need
 		// to tell the RTI that we're publishing it first. We don't need to
 		// inform it of the parameters, only the class, making it much simpler
-		int interactionHandle = rtiamb
-				.getInteractionClassHandle("InteractionRoot.X");
+		int interactionHandle = handles
+				.getInteractionClassHandle(HandleRegistry.DATA_INTERACTION);
 
 		// do the publication
 		rtiamb.publishInteractionClass(interactionHandle);
@@ -486,20 +670,14 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 	/*
 	 * 
-	 * Reescrito para atender a comunicao por canais
+	 * Reescrito para atender a comunicação por canais
 	 */
 	private void publishAndSubscribe(int channel) throws RTIexception {
 
-		int classHandle = rtiamb.getObjectClassHandle("ObjectRoot.aes");
+		int classHandle = handles.getChannelClassHandle();
 
-		int handle;
-		if (channel == 1){
-			handle = rtiamb.getAttributeHandle("canal1", classHandle);
-		}else if (channel == 2){
-			handle = rtiamb.getAttributeHandle("canal2", classHandle);
-		}else{
-			handle = rtiamb.getAttributeHandle("canal3", classHandle);
-		}
+		// any canalN declared in the FOM, not only the first three
+		int handle = handles.getChannelHandle(channel);
 		
 		AttributeHandleSet attributes = RtiFactoryFactory.getRtiFactory()
 				.createAttributeHandleSet();
@@ -507,19 +685,48 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 
 		rtiamb.publishObjectClass(classHandle, attributes);
 		
-		rtiamb.subscribeObjectClassAttributes(classHandle, attributes);
-		int interactionHandle = rtiamb.getInteractionClassHandle("InteractionRoot.X");
+		if (settings.isUseDDM()) {
+			subscribeWithRegion(classHandle);
+		} else {
+			rtiamb.subscribeObjectClassAttributes(classHandle, attributes);
+		}
+		int interactionHandle = handles.getInteractionClassHandle(HandleRegistry.DATA_INTERACTION);
 		rtiamb.publishInteractionClass(interactionHandle);
 		rtiamb.subscribeInteractionClass(interactionHandle);
 	}
 
+	/**
+	 * Subscribe the canalN attributes our region covers, with that region:
+	 * the RTI only delivers the updates of the master whose region overlaps.
+	 */
+	private void subscribeWithRegion(int classHandle) throws RTIexception {
+		String space = ChannelRegions.getRoutingSpace(settings, handles);
+		long lowerBound = ChannelRegions.getLowerBound(settings);
+		long upperBound = ChannelRegions.getUpperBound(settings);
+
+		AttributeHandleSet attributes = RtiFactoryFactory.getRtiFactory()
+				.createAttributeHandleSet();
+		int[] channels = handles.getDeclaredChannels();
+		for (int i = 0; i < channels.length; i++) {
+			if (ChannelRegions.contains(settings, channels[i])) {
+				attributes.add(handles.getChannelHandle(channels[i]));
+			}
+		}
+		Region region = ChannelRegions.createRegion(rtiamb, handles, space,
+				lowerBound, upperBound);
+		rtiamb.subscribeObjectClassAttributesWithRegion(classHandle, region,
+				attributes);
+		log("Subscribed with region [" + lowerBound + ", " + upperBound
+				+ ") of " + space);
+	}
+
 	/**
 	 * This method will register an instance of the class ObjectRoot.A and will
 	 * return the federation-wide unique handle for that instance. Later in the
 	 * simulation, we will update the attribute values for this instance
 	 */
 	private int registerObject() throws RTIexception {
-		int classHandle = rtiamb.getObjectClassHandle("ObjectRoot.aes");
+		int classHandle = handles.getChannelClassHandle();
 		// int classHandle = rtiamb.getObjectClassHandle("InteractionRoot.X");
 		return rtiamb.registerObjectInstance(classHandle);
 	}
@@ -599,9 +806,12 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		byte[] xbValue = EncodingHelpers.encodeString("xb:" + (data + 1));
 
 		// get the handles
-		int classHandle = rtiamb.getInteractionClassHandle("InteractionRoot.X");
-		int xaHandle = rtiamb.getParameterHandle("xa", classHandle);
-		int xbHandle = rtiamb.getParameterHandle("xb", classHandle);
+		int classHandle = handles
+				.getInteractionClassHandle(HandleRegistry.DATA_INTERACTION);
+		int xaHandle = handles.getParameterHandle(
+				HandleRegistry.DATA_INTERACTION, "xa");
+		int xbHandle = handles.getParameterHandle(
+				HandleRegistry.DATA_INTERACTION, "xb");
 
 		// put the values into the collection
 		parameters.add(xaHandle, xaValue);
@@ -616,8 +826,7 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		// if you want to associate a particular timestamp with the
 		// interaction, you will have to supply it to the RTI. Here
 		// we send another interaction, this time with a timestamp:
-		CertiLogicalTime time = new CertiLogicalTime(fedamb.federateTime
-				+ fedamb.federateLookahead);
+		CertiLogicalTime time = new CertiLogicalTime(getSendTime());
 		rtiamb.sendInteraction(classHandle, parameters, tag, time);
 	}
 
@@ -627,35 +836,149 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 	 * advance grant has been received.
 	 */
 	public void advanceTime(double timestep) throws RTIexception {
-		// request the advance
-		fedamb.isAdvancing = true;
-		LogicalTime newTime = new CertiLogicalTime(fedamb.federateTime
-				+ timestep);
-		rtiamb.timeAdvanceRequest(newTime);
-
-		// syso
-		// log( "Time Advanced to " + fedamb.federateTime );
-
-		// wait for the time advance to be granted. ticking will tell the
-		// LRC to start delivering callbacks to the federate
-		while (fedamb.isAdvancing) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+		lockRTI();
+		try {
+			// request the advance
+			fedamb.isAdvancing = true;
+			requests.sent(fedamb.federateTime + timestep);
+			LogicalTime newTime = new CertiLogicalTime(fedamb.federateTime
+					+ timestep);
+			requestAdvance(newTime);
+
+			// syso
+			// log( "Time Advanced to " + fedamb.federateTime );
+
+			// wait for the time advance to be granted. ticking will tell the
+			// LRC to start delivering callbacks to the federate
+			while (fedamb.isAdvancing) {
+				evokeCallbacks();
+			}
+		} finally {
+			unlockRTI();
 		}
 	}
 
 	public void advanceTimeTo(double nextStep) throws RTIexception {
-		// request the advance
-		fedamb.isAdvancing = true;
-		LogicalTime newTime = new CertiLogicalTime(nextStep);
-		rtiamb.timeAdvanceRequest(newTime);
+		lockRTI();
+		try {
+			// request the advance
+			fedamb.isAdvancing = true;
+			requests.sent(nextStep);
+			LogicalTime newTime = new CertiLogicalTime(nextStep);
+			requestAdvance(newTime);
+
+			// syso
+			// log( "Time Advanced to " + newTime );
+
+			// wait for the time advance to be granted. ticking will tell the
+			// LRC to start delivering callbacks to the federate
+			while (fedamb.isAdvancing) {
+				evokeCallbacks();
+			}
+		} finally {
+			unlockRTI();
+		}
+	}
 
-		// syso
-		// log( "Time Advanced to " + newTime );
+	public void requestTimeAdvance(double nextStep) throws RTIexception {
+		lockRTI();
+		try {
+			if (!requests.request(nextStep, fedamb.isAdvancing,
+					fedamb.federateTime)) {
+				return;
+			}
+			fedamb.isAdvancing = true;
+			requests.sent(nextStep);
+			requestAdvance(new CertiLogicalTime(nextStep));
+		} finally {
+			unlockRTI();
+		}
+	}
 
-		// wait for the time advance to be granted. ticking will tell the
-		// LRC to start delivering callbacks to the federate
-		while (fedamb.isAdvancing) {
-			((CertiRtiAmbassador) rtiamb).tick2();
+	public void awaitTimeAdvance() throws RTIexception {
+		lockRTI();
+		try {
+			while (fedamb.isAdvancing) {
+				evokeCallbacks();
+			}
+			// send the requests merged while we were waiting
+			double deferred = requests.takeDeferred(fedamb.federateTime);
+			if (!Double.isNaN(deferred)) {
+				fedamb.isAdvancing = true;
+				requests.sent(deferred);
+				requestAdvance(new CertiLogicalTime(deferred));
+			}
+		} finally {
+			unlockRTI();
+		}
+	}
+
+	public boolean isTimeAdvancePending() {
+		return fedamb.isAdvancing;
+	}
+
+	/**
+	 * Send a timeAdvanceRequest or, in next event mode, a nextEventRequest:
+	 * the grant then comes at the earliest of the given time and the next
+	 * time stamped message for us.
+	 */
+	private void requestAdvance(LogicalTime time) throws RTIexception {
+		if (settings.isNextEventRequest()) {
+			rtiamb.nextEventRequest(time);
+		} else {
+			rtiamb.timeAdvanceRequest(time);
+		}
+	}
+
+	public boolean hasReceivedData(double time) {
+		pollDataPlane();
+		return fedamb.hasReceivedData(time);
+	}
+
+	/**
+	 * Open the {@link MappedChannelRing} of our channel, created by the master
+	 * before the sync point, if there is a data plane directory. From then on
+	 * the master sends our channel through it; another slave of the channel
+	 * can no longer open it. Not with DDM, whose region may cover more
+	 * channels than ours.
+	 */
+	private void openDataPlane() throws RTIexception {
+		if (!settings.isDataPlane()) {
+			return;
+		}
+		if (settings.isUseDDM()) {
+			throw new RTIinternalError(
+					"The data plane cannot be used with DDM");
+		}
+		File file = MappedChannelRing.channelFile(new File(settings
+				.getDataPlaneDirectory()), settings.getSlaveChannel());
+		try {
+			ring = MappedChannelRing.open(file);
+		} catch (IOException e) {
+			throw new RTIinternalError("Cannot open the data plane " + file
+					+ ": " + e.getMessage());
+		}
+		ringHandle = handles.getChannelHandle(settings.getSlaveChannel());
+		log("Data plane " + file);
+	}
+
+	/**
+	 * Move the ring records we have been granted into the reflection queue,
+	 * as if the RTI had reflected them.
+	 */
+	private void pollDataPlane() {
+		if (ring == null) {
+			return;
+		}
+		double granted = fedamb.federateTime;
+		double time;
+		while ((time = ring.peekTime()) <= granted) {
+			int length = ring.peekLength();
+			if (ringValue.length < length) {
+				ringValue = new byte[Math.max(length, ringValue.length * 2)];
+			}
+			ring.take(ringValue);
+			fedamb.dataReceived(time, ringHandle, ringValue, length);
 		}
 	}
 
@@ -700,6 +1023,65 @@ public class SlaveFederate extends SigarCommandBase implements PtolemyFederate {
 		return fedamb.federateTime + fedamb.federateLookahead;
 	}
 
+	public double getLookahead() {
+		return fedamb.federateLookahead;
+	}
+
+	public double getSendTime() {
+		return requests.getSendTime(fedamb.isAdvancing, fedamb.federateTime,
+				fedamb.federateLookahead);
+	}
+
+	public void setLookahead(double lookahead) throws RTIexception {
+		if (lookahead == fedamb.federateLookahead) {
+			return;
+		}
+		lockRTI();
+		try {
+			if (lookahead < fedamb.federateLookahead) {
+				requests.lowerLookahead(getSendTime());
+			}
+			rtiamb.modifyLookahead(new CertiLogicalTimeInterval(lookahead));
+			fedamb.federateLookahead = lookahead;
+		} finally {
+			unlockRTI();
+		}
+	}
+
+	/**
+	 * Send our backlog to the master as a receive ordered InteractionRoot.X,
+	 * see {@link ChannelLoads}.
+	 */
+	public void reportLoad() throws RTIexception {
+		int backlog = fedamb.getReceivedDataCount();
+		if (backlog == lastReportedLoad) {
+			return;
+		}
+		SuppliedParameters parameters = RtiFactoryFactory.getRtiFactory()
+				.createSuppliedParameters();
+		parameters.add(handles.getParameterHandle(
+				HandleRegistry.DATA_INTERACTION, "xa"), EncodingHelpers
+				.encodeString(ChannelLoads.encode(settings.getSlaveChannel(),
+						backlog)));
+		lockRTI();
+		try {
+			rtiamb.sendInteraction(handles
+					.getInteractionClassHandle(HandleRegistry.DATA_INTERACTION),
+					parameters, EncodingHelpers.encodeString("load"));
+		} finally {
+			unlockRTI();
+		}
+		lastReportedLoad = backlog;
+	}
+
+	public ChannelLoads getChannelLoads() {
+		return fedamb.getChannelLoads();
+	}
+
+	public long getDroppedDataCount() {
+		return fedamb.getDroppedDataCount();
+	}
+
 	@Override
 	public void output(String[] arg0) throws SigarException {
 		// TODO Auto-generated method stub
@@ -27,13 +27,14 @@
  */
 package ptolemy.myactors.MaximumEntropy;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 
-import hla.rti.ArrayIndexOutOfBounds;
-import hla.rti.jlc.EncodingHelpers;
 import ptolemy.actor.TypedAtomicActor;
 import ptolemy.actor.TypedIOPort;
 import ptolemy.actor.lib.conversions.ExpressionToToken;
+import ptolemy.data.ArrayToken;
 import ptolemy.data.BooleanToken;
 import ptolemy.data.DoubleToken;
 import ptolemy.data.IntMatrixToken;
@@ -42,8 +43,12 @@ import ptolemy.data.StringToken;
 import ptolemy.data.IntToken;
 import ptolemy.data.Token;
 import ptolemy.data.expr.Parameter;
+import ptolemy.data.expr.StringParameter;
+import ptolemy.data.type.ArrayType;
+import ptolemy.data.type.BaseType;
 
 import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.Attribute;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.Location;
 import ptolemy.kernel.util.NameDuplicationException;
@@ -75,6 +80,15 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
     
 	private static final long serialVersionUID = 1L;
 
+	/** One token per value on channel 0 of the output, the default */
+	public static final String BATCH_NONE = "none";
+
+	/** The values of a firing as a single ArrayToken on channel 0 */
+	public static final String BATCH_ARRAY = "array";
+
+	/** The values of a firing spread over the channels of the output */
+	public static final String BATCH_BURST = "burst";
+
 	//angelo - mudei
 	//private IntToken myValue;
 	private StringToken myValue;
@@ -86,12 +100,22 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
 	//angelo - mudando de Interaction para Attributes
 	//private Interaction interactionToSend = null; //comentei
 	
-	private Attributes attributesToSend = null;
+	// reflections received since the last firing, earliest first
+	private List<Attributes> attributesToSend = new ArrayList<Attributes>();
 	
 	private boolean hasDataToSend = false;
+
+	// the slave sends nothing to the RTI
+	private final SampleBatch noSamples = new SampleBatch(1);
 	
 	//angelo
 	private boolean hasDataToReceive = false;
+
+	// the value of the batchMode parameter
+	private String mode = BATCH_NONE;
+
+	// values of the firing, in array mode
+	private List<Token> batch = new ArrayList<Token>();
 	
 	
 	
@@ -120,9 +144,20 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
         input = new TypedIOPort(this, "input", true, false);
         
         output = new TypedIOPort(this, "output", false, true);
+        // one channel per value of a burst
+        output.setMultiport(true);
+        // the int and double samples, as doubles; an array of them with
+        // the array batch mode, see attributeChanged()
+        output.setTypeEquals(BaseType.DOUBLE);
         
         eof= new TypedIOPort(this, "eof", false, true);
 
+        batchMode = new StringParameter(this, "batchMode");
+        batchMode.setExpression(BATCH_NONE);
+        batchMode.addChoice(BATCH_NONE);
+        batchMode.addChoice(BATCH_ARRAY);
+        batchMode.addChoice(BATCH_BURST);
+
         myValue = new StringToken("");
         myTime = 0;
 
@@ -154,6 +189,11 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
 		return myValue;
 	}
 
+	public SampleBatch getSamplesToSend() {
+		hasDataToSend = false;
+		return noSamples;
+	}
+
 	/**
 	 * @param myValue the myValue to set
 	 */
@@ -193,6 +233,16 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
 
     public TypedIOPort eof;
 
+    /** How the values received in a firing leave the actor: "none" (the
+     *  default) one token each on channel 0 of <i>output</i>, "array" a
+     *  single ArrayToken on channel 0, to be split downstream by an
+     *  {@link UnbatchArray}, or "burst" value <i>k</i> on channel <i>k</i>
+     *  modulo the width of <i>output</i>. The end of stream marker always
+     *  goes to <i>eof</i>. The type of <i>output</i> is double, or an
+     *  array of doubles with "array".
+     */
+    public StringParameter batchMode;
+
     
     //private SlaveFederate rtiFederation;
     
@@ -204,6 +254,36 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
      *  port.  The value of the input is ignored.
      */
     int aux = 0, aux1 = 0;
+
+    /** If the parameter is <i>batchMode</i>, check its value and set
+     *  the type of <i>output</i> for it, so that type resolution rejects
+     *  a downstream actor that does not take what the mode sends.
+     *  @exception IllegalActionException If the mode is unknown.
+     */
+    public void attributeChanged(Attribute attribute)
+            throws IllegalActionException {
+        if (attribute == batchMode) {
+            String value = batchMode.stringValue();
+            if (value.equals(BATCH_NONE)) {
+                mode = BATCH_NONE;
+            } else if (value.equals(BATCH_ARRAY)) {
+                mode = BATCH_ARRAY;
+            } else if (value.equals(BATCH_BURST)) {
+                mode = BATCH_BURST;
+            } else {
+                throw new IllegalActionException(this,
+                        "Unknown batch mode: " + value);
+            }
+            if (mode == BATCH_ARRAY) {
+                output.setTypeEquals(new ArrayType(BaseType.DOUBLE));
+            } else {
+                output.setTypeEquals(BaseType.DOUBLE);
+            }
+        } else {
+            super.attributeChanged(attribute);
+        }
+    }
+
     public void fire() throws IllegalActionException {
         super.fire();
         
@@ -211,18 +291,15 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
         
         //angelo - mudar essa variavel - dados recebidos do master
         //angelo - estava comentado - novo modelo
-        if(attributesToSend != null){
-        	
-        	String s, s1, value;
-        	String [] v;
+        int sent = 0;
+        int width = output.getWidth();
+        for (int a = 0; a < attributesToSend.size(); a++) {
         	
-			try {
-				
-				value = EncodingHelpers.decodeString(attributesToSend.getReceivedData().getValue(0));
-				//System.out.println("Dado recebido: " + value);
-			    v=  value.split(":");
-			    v[1] = v[1].replace("\"", "");
-			    if (v[1].equals("eof")){
+        	// samples already decoded by the federate with the codec of the
+        	// director, no more splitting "canalN:value" strings here
+        	SampleBatch samples = attributesToSend.get(a).getSamples();
+        	for (int i = 0; samples != null && i < samples.size(); i++) {
+			    if (samples.isEof(i)){
 			    	eof.send(0, new BooleanToken(true));
 
 				    Calendar data = Calendar.getInstance();  
@@ -231,24 +308,31 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
 				    int seg = data.get(Calendar.SECOND);  
 				    int mseg = data.get(Calendar.MILLISECOND);  
 
-				    System.out.println("termino de simulao em " + hora + "horas, " + min + "min, " + seg +" segundos e" + mseg + "msegundos");
+				    System.out.println("termino de simulação em " + hora + "horas, " + min + "min, " + seg +" segundos e" + mseg + "msegundos");
 				    terminate();
 			    
 			    }else{
-			    	IntToken it = new IntToken(v[1]);
-			    	output.send(0, it);
+			    	// as before, any other text is read as an int
+			    	Token value = samples.getKind(i) == SampleBatch.STRING ? new IntToken(
+			    			samples.getString(i)) : samples.getToken(i);
+			    	if (mode == BATCH_ARRAY) {
+			    		batch.add(value);
+			    	} else if (mode == BATCH_BURST) {
+			    		if (width > 0) {
+			    			output.send(sent++ % width, value);
+			    		}
+			    	} else {
+			    		output.send(0, value);
+			    	}
 			    }
-				
-	            
-			} catch (ArrayIndexOutOfBounds e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				
-			}
-        	
-			attributesToSend = null;
-			
+        	}
         }//angelo - estava comentado - novo modelo
+        attributesToSend.clear();
+
+        if (!batch.isEmpty()) {
+        	output.send(0, _toArrayToken(batch));
+        	batch.clear();
+        }
         
         if (input.hasToken(0)) {
         	
@@ -279,6 +363,33 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
+    /** Return the values as one ArrayToken. The elements of an array
+     *  must have the same type, so the int values become doubles when
+     *  the values mix the two.
+     *  @param values The values, not empty.
+     *  @return The array.
+     *  @exception IllegalActionException If the array cannot be built.
+     */
+    protected ArrayToken _toArrayToken(List<Token> values)
+            throws IllegalActionException {
+        Token[] elements = values.toArray(new Token[values.size()]);
+        boolean hasDouble = false;
+        boolean hasInt = false;
+        for (int i = 0; i < elements.length; i++) {
+            hasDouble |= elements[i] instanceof DoubleToken;
+            hasInt |= elements[i] instanceof IntToken;
+        }
+        if (hasDouble && hasInt) {
+            for (int i = 0; i < elements.length; i++) {
+                if (elements[i] instanceof IntToken) {
+                    elements[i] = new DoubleToken(((IntToken) elements[i])
+                            .doubleValue());
+                }
+            }
+        }
+        return new ArrayToken(elements);
+    }
+
     /** Return the location of this sensor. In this base class,
      *  this is determined by looking for an attribute with name
      *  "_location" and class Location.  Normally, a visual editor
@@ -333,10 +444,15 @@ public class SlaveFederateActor extends TypedAtomicActor implements PtolemyFeder
 	public void updateAtributesToSend(Attributes attr) {		
 		//syso
 		//		System.out.println("Data received by MasterFederateActor at "+ attr.getReceivedTime()+" : "+attr.getReceivedData() );
-		attributesToSend = attr;
+		attributesToSend.add(attr);
 		
 	}
 
+	@Override
+	public void updateAtributesToSend(List<Attributes> attrs) {
+		attributesToSend.addAll(attrs);
+	}
+
 	
 	
 	
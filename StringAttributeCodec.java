@@ -0,0 +1,48 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import hla.rti.jlc.EncodingHelpers;
+
+/**
+ * The original text format: every value is sent as the string
+ * "canalN:value" through EncodingHelpers.encodeString(). The time of the
+ * sample is not sent, the reflect time is used instead. Kept so that
+ * federates built before the binary codec can still talk to the new ones.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class StringAttributeCodec implements AttributeCodec {
+
+	public String getName() {
+		return AttributeCodecs.STRING;
+	}
+
+	public byte[] encode(SampleBatch batch, int index) {
+		return EncodingHelpers.encodeString(HandleRegistry.CHANNEL_PREFIX
+				+ batch.getChannel(index) + ":" + batch.getText(index));
+	}
+
+	public void decode(int channel, byte[] data, int offset, int length,
+			double time, SampleBatch into) {
+		byte[] value = data;
+		if (offset != 0 || length != data.length) {
+			value = new byte[length];
+			System.arraycopy(data, offset, value, 0, length);
+		}
+		String text = EncodingHelpers.decodeString(value);
+
+		int colon = text.indexOf(':');
+		if (colon < 0) {
+			throw new IllegalArgumentException("Not a canalN:value string: "
+					+ text);
+		}
+		if (text.startsWith(HandleRegistry.CHANNEL_PREFIX)) {
+			try {
+				channel = Integer.parseInt(text.substring(
+						HandleRegistry.CHANNEL_PREFIX.length(), colon));
+			} catch (NumberFormatException e) {
+				// keep the channel of the attribute handle
+			}
+		}
+		into.addText(channel, text.substring(colon + 1), time);
+	}
+}
@@ -0,0 +1,137 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import org.hyperic.sigar.CpuPerc;
+import org.hyperic.sigar.Mem;
+import org.hyperic.sigar.Sigar;
+
+/**
+ * The memory and CPU usage the actors log during the experiments, read with
+ * Sigar. A single Sigar instance is opened, on the first use, and shared:
+ * opening one per sample loads the native library state again each time and
+ * its CPU percentages then cover the time since boot instead of the time
+ * since the previous sample. If the native library is missing the numbers
+ * of the machine are replaced by "n/a" and only those of the JVM are read.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class SystemStatistics {
+
+	/** What replaces the numbers Sigar could not read */
+	public static final String UNAVAILABLE = "n/a";
+
+	private static Sigar shared;
+	private static boolean sigarFailed = false;
+
+	private SystemStatistics() {
+	}
+
+	/**
+	 * The detailed line of the master and of the forecasting actor: "memory% -
+	 * JVM memory% - CPU - system CPU", then "% - CPU - system CPU" for every
+	 * processor.
+	 *
+	 * @return the line, null if Sigar failed while reading
+	 */
+	public static synchronized String capture() {
+		StringBuilder str = new StringBuilder();
+		Sigar sigar = sigar();
+		if (sigar == null) {
+			str.append(UNAVAILABLE + "% - " + getJvmMemoryPercent() + "% - "
+					+ UNAVAILABLE + " - " + UNAVAILABLE);
+			return str.toString();
+		}
+		try {
+			CpuPerc cpu = sigar.getCpuPerc();
+			str.append(sigar.getMem().getUsedPercent() + "% - "
+					+ getJvmMemoryPercent() + "% - "
+					+ CpuPerc.format(cpu.getUser() + cpu.getSys()) + " - "
+					+ CpuPerc.format(cpu.getSys()));
+			CpuPerc cpus[] = sigar.getCpuPercList();
+			for (int i = 0; i < cpus.length; i++) {
+				str.append("% - "
+						+ CpuPerc.format(cpus[i].getUser() + cpus[i].getSys())
+						+ " - " + CpuPerc.format(cpus[i].getSys()));
+			}
+			return str.toString();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * The shorter line of the sensors: "memory% - JVM memory% - CPU - system
+	 * CPU".
+	 *
+	 * @return the line, null if Sigar failed while reading
+	 */
+	public static synchronized String captureSummary() {
+		Sigar sigar = sigar();
+		if (sigar == null) {
+			return UNAVAILABLE + "% - " + getJvmMemoryPercent() + "% - "
+					+ UNAVAILABLE + " - " + UNAVAILABLE;
+		}
+		try {
+			CpuPerc cpu = sigar.getCpuPerc();
+			return sigar.getMem().getUsedPercent() + "% - "
+					+ getJvmMemoryPercent() + "% - "
+					+ CpuPerc.format(cpu.getCombined()) + " - "
+					+ CpuPerc.format(cpu.getSys());
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/** @return the percentage of the machine memory in use, -1 if unknown */
+	public static synchronized double getMemoryPercent() {
+		Sigar sigar = sigar();
+		if (sigar == null) {
+			return -1;
+		}
+		try {
+			Mem memory = sigar.getMem();
+			return memory.getUsedPercent();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/** @return the percentage of the CPU time in use, -1 if unknown */
+	public static synchronized double getCpuPercent() {
+		Sigar sigar = sigar();
+		if (sigar == null) {
+			return -1;
+		}
+		try {
+			return sigar.getCpuPerc().getCombined() * 100;
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/** @return the percentage of the heap the JVM reserved that is in use */
+	public static double getJvmMemoryPercent() {
+		Runtime runtime = Runtime.getRuntime();
+		double totalMemoryJVM = (double) runtime.totalMemory() / (1024 * 1024);
+		double freeMemoryJVM = (double) runtime.freeMemory() / (1024 * 1024);
+		return ((totalMemoryJVM - freeMemoryJVM) / totalMemoryJVM) * 100;
+	}
+
+	// the shared instance, null if the native library could not be loaded
+	private static Sigar sigar() {
+		if (shared == null && !sigarFailed) {
+			try {
+				shared = new Sigar();
+				// loads the native library, which fails here if it is missing
+				shared.getMem();
+			} catch (Throwable e) {
+				System.err.println("Sigar is not available, only the JVM "
+						+ "statistics are read: " + e);
+				shared = null;
+				sigarFailed = true;
+			}
+		}
+		return shared;
+	}
+}
@@ -0,0 +1,104 @@
+package ptolemy.myactors.MaximumEntropy;
+
+/**
+ * The time advance requests of a federate with a pipelined time advance,
+ * where the director asks for its next time before it needs it and waits for
+ * the grant only when it must. The RTI takes one request at a time: those
+ * made while one is pending become a single request, for the furthest time,
+ * sent once the pending one is granted.
+ * <p/>
+ * The federates keep the pending flag and the granted time in their
+ * FederateAmbassador; this class only decides what to send, so every backend
+ * merges the requests, and stamps the updates sent while one is pending, the
+ * same way.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class TimeAdvanceRequests {
+
+	// the time of the last request sent, and the furthest time asked for
+	// while it was pending
+	private double requestedTime = 0.0;
+	private double deferredTime = Double.NEGATIVE_INFINITY;
+
+	// the send time when the lookahead was last lowered
+	private double floor = Double.NEGATIVE_INFINITY;
+
+	// ----------------------------------------------------------
+	// INSTANCE METHODS
+	// ----------------------------------------------------------
+
+	/**
+	 * Take a request of the director.
+	 *
+	 * @param nextStep
+	 *            the time asked for
+	 * @param pending
+	 *            true if a request was sent and not granted yet
+	 * @param granted
+	 *            the time last granted
+	 * @return true if the request must be sent now, false if it was merged
+	 *         with the pending one or the time is already granted
+	 */
+	public boolean request(double nextStep, boolean pending, double granted) {
+		if (pending) {
+			// one request at a time, the others become a single one
+			if (nextStep > requestedTime && nextStep > deferredTime) {
+				deferredTime = nextStep;
+			}
+			return false;
+		}
+		return nextStep > granted;
+	}
+
+	/** Record a request sent to the RTI */
+	public void sent(double time) {
+		requestedTime = time;
+	}
+
+	/**
+	 * Forget the requests merged while the last one was pending.
+	 *
+	 * @param granted
+	 *            the time granted to the last request
+	 * @return the time to request now, NaN if no later time was asked for
+	 */
+	public double takeDeferred(double granted) {
+		double time = deferredTime > granted ? deferredTime : Double.NaN;
+		deferredTime = Double.NEGATIVE_INFINITY;
+		return time;
+	}
+
+	/**
+	 * @param pending
+	 *            true if a request was sent and not granted yet, read before
+	 *            the granted time
+	 * @param granted
+	 *            the time last granted
+	 * @param lookahead
+	 *            the lookahead of the federate
+	 * @return the time stamp of an update sent now. While a request is
+	 *         pending the RTI may let the others advance up to its time plus
+	 *         the lookahead, so an update sent then goes at that time, not at
+	 *         the granted time plus the lookahead. Never below the send time
+	 *         of a lookahead since lowered.
+	 */
+	public double getSendTime(boolean pending, double granted, double lookahead) {
+		return Math.max(floor, (pending && requestedTime > granted
+				? requestedTime : granted)
+				+ lookahead);
+	}
+
+	/**
+	 * Keep the promise of the lookahead about to be lowered: the others may
+	 * already have been granted up to its send time, so no update goes below
+	 * it, and the lower lookahead only takes effect once the federate has
+	 * advanced past it.
+	 *
+	 * @param sendTime
+	 *            the send time with the current lookahead
+	 */
+	public void lowerLookahead(double sendTime) {
+		floor = Math.max(floor, sendTime);
+	}
+}
@@ -0,0 +1,213 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A binary trace of the time management of one federate: its time advance
+ * requests, the grants, the updates it sent and the reflections it received,
+ * each with its wall clock time and its logical time. The traces of the
+ * federates of a run are merged by the {@link TraceAnalyzer}, which finds
+ * the federate holding the others back.
+ * <p/>
+ * The file starts with a header (magic number, version, federate name, wall
+ * clock time of the start) followed by records of 21 bytes: the event type,
+ * the wall clock time in nanoseconds since the epoch, the logical time and a
+ * count (samples sent or received). The wall clock times come from
+ * System.nanoTime() anchored to the system clock when the trace opens, so
+ * the traces of federates on different hosts are only comparable if their
+ * clocks are synchronized.
+ * <p/>
+ * The grants and reflections are recorded by the thread delivering the RTI
+ * callbacks, the requests and updates by the director thread, so recording
+ * is synchronized.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class TimeTrace {
+
+	/** "PTTR" */
+	public static final int MAGIC = 0x50545452;
+
+	public static final short VERSION = 1;
+
+	/** Bytes of a record */
+	public static final int RECORD_SIZE = 21;
+
+	/** Suffix of the trace files, named after their federate */
+	public static final String FILE_SUFFIX = ".trace";
+
+	/** A time advance request, or next event request */
+	public static final byte REQUEST = 1;
+
+	/** A time advance grant */
+	public static final byte GRANT = 2;
+
+	/** Samples sent in one update */
+	public static final byte SEND = 3;
+
+	/** A reflection queued by the federate ambassador */
+	public static final byte REFLECT = 4;
+
+	private final String federate;
+	private final long startWallTime;
+	private final long nanoBase;
+	private DataOutputStream out;
+
+	/**
+	 * Create the trace file, replacing an older one.
+	 */
+	public TimeTrace(File file, String federate) throws IOException {
+		this.federate = federate;
+		nanoBase = System.nanoTime();
+		startWallTime = System.currentTimeMillis() * 1000000L;
+		out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeUTF(federate);
+		out.writeLong(startWallTime);
+	}
+
+	public String getFederate() {
+		return federate;
+	}
+
+	// ----------------------------------------------------------
+	// RECORDING
+	// ----------------------------------------------------------
+
+	/** The federate asked to advance to a logical time */
+	public void request(double time) {
+		record(REQUEST, time, 0);
+	}
+
+	/** The RTI granted a logical time */
+	public void grant(double time) {
+		record(GRANT, time, 0);
+	}
+
+	/** The federate sent samples at its logical time */
+	public void send(double time, int samples) {
+		record(SEND, time, samples);
+	}
+
+	/** A reflection stamped with a logical time arrived */
+	public void reflect(double time) {
+		record(REFLECT, time, 1);
+	}
+
+	private synchronized void record(byte type, double time, int count) {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.writeByte(type);
+			out.writeLong(startWallTime + (System.nanoTime() - nanoBase));
+			out.writeDouble(time);
+			out.writeInt(count);
+		} catch (IOException e) {
+			// a broken trace must not stop the federate
+			System.err.println("Trace of " + federate + " stopped: " + e);
+			closeQuietly();
+		}
+	}
+
+	/** Flush and close the file, nothing is recorded afterwards */
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			DataOutputStream closing = out;
+			out = null;
+			closing.close();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			// already reported
+		}
+	}
+
+	// ----------------------------------------------------------
+	// READING
+	// ----------------------------------------------------------
+
+	/** A trace read back from its file, in recording order */
+	public static class Events {
+		public final String federate;
+		public final long startWallTime;
+		public final byte[] types;
+		public final long[] wallTimes;
+		public final double[] times;
+		public final int[] counts;
+		private int size = 0;
+
+		Events(String federate, long startWallTime, int capacity) {
+			this.federate = federate;
+			this.startWallTime = startWallTime;
+			types = new byte[capacity];
+			wallTimes = new long[capacity];
+			times = new double[capacity];
+			counts = new int[capacity];
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Read a trace file. A truncated last record, left by a federate that
+	 * was killed, is ignored.
+	 *
+	 * @exception IOException
+	 *                If the file cannot be read or is not a trace.
+	 */
+	public static Events read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a time trace");
+			}
+			short version = in.readShort();
+			if (version != VERSION) {
+				throw new IOException(file + ": unsupported trace version "
+						+ version);
+			}
+			String federate = in.readUTF();
+			long start = in.readLong();
+
+			// the file holds at most that many records
+			Events events = new Events(federate, start,
+					(int) (file.length() / RECORD_SIZE));
+			try {
+				while (events.size < events.types.length) {
+					byte type = in.readByte();
+					long wall = in.readLong();
+					double time = in.readDouble();
+					int count = in.readInt();
+					events.types[events.size] = type;
+					events.wallTimes[events.size] = wall;
+					events.times[events.size] = time;
+					events.counts[events.size] = count;
+					events.size++;
+				}
+			} catch (EOFException e) {
+				// end of the trace
+			}
+			return events;
+		} finally {
+			in.close();
+		}
+	}
+}
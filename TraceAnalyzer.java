@@ -0,0 +1,350 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges the {@link TimeTrace}s of the federates of a run and tells which
+ * federate held the federation back. Run it with the trace files, or the
+ * directories holding them:
+ *
+ * <pre>
+ * java ptolemy.myactors.MaximumEntropy.TraceAnalyzer traces/
+ * </pre>
+ *
+ * For each federate it reports the time it spent blocked, between a time
+ * advance request and its grant, and the time the others spent blocked
+ * because of it. A grant comes when the last federate holding the lower
+ * bound of the federation asks to advance, so the wait of a federate is
+ * blamed on the other federate whose request came last before the grant; if
+ * none asked meanwhile, the wait is blamed on the RTI.
+ * <p/>
+ * The critical path is walked back from the end of the run: the federate
+ * computes from its grant back to its previous request, then, if another
+ * federate released that grant, the path goes on from the request of that
+ * federate. The federate with the most computing time on the path is the
+ * one to optimize or split.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class TraceAnalyzer {
+
+	/** Where a blocking time goes when no federate released the grant */
+	public static final int RTI = -1;
+
+	/** Steps of the critical path printed by {@link #report(PrintStream)} */
+	public static final int REPORTED_STEPS = 40;
+
+	private final TimeTrace.Events[] traces;
+
+	// per federate, the indexes of its requests and grants
+	private final int[][] clock;
+
+	private final long[] blocked;
+	private final long[] held;
+	private final long[] critical;
+	private final int[][] counts;
+	private long heldByRti = 0;
+	private long rtiOnPath = 0;
+	// the steps of the critical path, latest first
+	private final List<String> steps = new ArrayList<String>();
+	private final List<Long> stepTimes = new ArrayList<Long>();
+
+	public TraceAnalyzer(List<TimeTrace.Events> traces) {
+		this.traces = traces.toArray(new TimeTrace.Events[traces.size()]);
+		int n = this.traces.length;
+		clock = new int[n][];
+		blocked = new long[n];
+		held = new long[n];
+		critical = new long[n];
+		counts = new int[n][5];
+		for (int f = 0; f < n; f++) {
+			TimeTrace.Events events = this.traces[f];
+			int[] indexes = new int[events.size()];
+			int size = 0;
+			for (int i = 0; i < events.size(); i++) {
+				byte type = events.types[i];
+				if (type > 0 && type < counts[f].length) {
+					counts[f][type] += type == TimeTrace.SEND
+							|| type == TimeTrace.REFLECT ? events.counts[i] : 1;
+				}
+				if (type == TimeTrace.REQUEST || type == TimeTrace.GRANT) {
+					indexes[size++] = i;
+				}
+			}
+			clock[f] = Arrays.copyOf(indexes, size);
+		}
+		analyzeBlocking();
+		analyzeCriticalPath();
+	}
+
+	// ----------------------------------------------------------
+	// RESULTS
+	// ----------------------------------------------------------
+
+	public int getFederateCount() {
+		return traces.length;
+	}
+
+	public String getFederate(int f) {
+		return traces[f].federate;
+	}
+
+	/** @return nanoseconds federate f spent between a request and its grant */
+	public long getBlockedTime(int f) {
+		return blocked[f];
+	}
+
+	/** @return nanoseconds the other federates were blocked by federate f */
+	public long getHeldTime(int f) {
+		return f == RTI ? heldByRti : held[f];
+	}
+
+	/** @return nanoseconds federate f computed on the critical path */
+	public long getCriticalTime(int f) {
+		return f == RTI ? rtiOnPath : critical[f];
+	}
+
+	/** @return the steps of the critical path, latest first */
+	public List<String> getCriticalPath() {
+		List<String> path = new ArrayList<String>();
+		for (int i = 0; i < steps.size(); i++) {
+			path.add(steps.get(i) + ": "
+					+ String.format("%.3f", millis(stepTimes.get(i))) + " ms");
+		}
+		return path;
+	}
+
+	/** Print the table of the federates and the critical path */
+	public void report(PrintStream out) {
+		out.println(String.format("%-24s %9s %9s %9s %9s %11s %11s %11s",
+				"federate", "requests", "grants", "sent", "received",
+				"blockedMs", "heldMs", "criticalMs"));
+		int slowest = RTI;
+		for (int f = 0; f < traces.length; f++) {
+			out.println(String.format("%-24s %9d %9d %9d %9d %11.1f %11.1f %11.1f",
+					getFederate(f), counts[f][TimeTrace.REQUEST],
+					counts[f][TimeTrace.GRANT], counts[f][TimeTrace.SEND],
+					counts[f][TimeTrace.REFLECT], millis(blocked[f]),
+					millis(held[f]), millis(critical[f])));
+			if (slowest == RTI || critical[f] > critical[slowest]) {
+				slowest = f;
+			}
+		}
+		out.println(String.format("%-24s %9s %9s %9s %9s %11s %11.1f %11.1f",
+				"(rti)", "", "", "", "", "", millis(heldByRti),
+				millis(rtiOnPath)));
+		out.println();
+		out.println("Critical path, latest first:");
+		List<String> path = getCriticalPath();
+		for (int i = 0; i < Math.min(path.size(), REPORTED_STEPS); i++) {
+			out.println("  " + path.get(i));
+		}
+		if (path.size() > REPORTED_STEPS) {
+			out.println("  ... " + (path.size() - REPORTED_STEPS)
+					+ " earlier steps");
+		}
+		if (slowest != RTI) {
+			out.println();
+			out.println("Most time on the critical path: " + getFederate(slowest));
+		}
+	}
+
+	// ----------------------------------------------------------
+	// ANALYSIS
+	// ----------------------------------------------------------
+
+	private void analyzeBlocking() {
+		for (int f = 0; f < traces.length; f++) {
+			TimeTrace.Events events = traces[f];
+			for (int k = 1; k < clock[f].length; k++) {
+				int grant = clock[f][k];
+				int request = clock[f][k - 1];
+				if (events.types[grant] != TimeTrace.GRANT
+						|| events.types[request] != TimeTrace.REQUEST) {
+					continue;
+				}
+				long from = events.wallTimes[request];
+				long to = events.wallTimes[grant];
+				blocked[f] += to - from;
+				int[] releaser = findReleaser(f, from, to);
+				if (releaser == null) {
+					heldByRti += to - from;
+				} else {
+					held[releaser[0]] += to - from;
+				}
+			}
+		}
+	}
+
+	private void analyzeCriticalPath() {
+		int f = RTI;
+		long end = Long.MIN_VALUE;
+		for (int g = 0; g < traces.length; g++) {
+			TimeTrace.Events events = traces[g];
+			if (events.size() > 0 && events.wallTimes[events.size() - 1] > end) {
+				end = events.wallTimes[events.size() - 1];
+				f = g;
+			}
+		}
+		if (f == RTI || clock[f].length == 0) {
+			return;
+		}
+		int k = clock[f].length - 1;
+		long t = end;
+		// each step moves back in one trace, so the walk ends
+		int budget = 0;
+		for (int[] indexes : clock) {
+			budget += indexes.length + 1;
+		}
+		while (k >= 0 && budget-- > 0) {
+			TimeTrace.Events events = traces[f];
+			int event = clock[f][k];
+			long wall = events.wallTimes[event];
+			if (events.types[event] == TimeTrace.GRANT) {
+				compute(f, wall, t, events.times[event]);
+				t = wall;
+				if (k == 0
+						|| events.types[clock[f][k - 1]] != TimeTrace.REQUEST) {
+					k--;
+					continue;
+				}
+				long from = events.wallTimes[clock[f][k - 1]];
+				int[] releaser = findReleaser(f, from, wall);
+				if (releaser == null) {
+					rti(wall - from, getFederate(f));
+					t = from;
+					k--;
+				} else {
+					long released = traces[releaser[0]].wallTimes[clock[releaser[0]][releaser[1]]];
+					rti(wall - released, getFederate(f));
+					f = releaser[0];
+					k = releaser[1];
+					t = released;
+				}
+			} else {
+				if (t > wall) {
+					// blocked at the end of the run
+					rti(t - wall, getFederate(f));
+				}
+				long previous = k > 0 ? events.wallTimes[clock[f][k - 1]]
+						: events.startWallTime;
+				compute(f, previous, wall, k > 0 ? events.times[clock[f][k - 1]]
+						: 0.0);
+				t = previous;
+				k--;
+			}
+		}
+	}
+
+	private void compute(int f, long from, long to, double time) {
+		if (to <= from) {
+			return;
+		}
+		critical[f] += to - from;
+		step(getFederate(f) + " computing at logical time " + time, to
+				- from);
+	}
+
+	private void rti(long nanos, String federate) {
+		if (nanos <= 0) {
+			return;
+		}
+		rtiOnPath += nanos;
+		step("rti granting " + federate, nanos);
+	}
+
+	// consecutive steps of the same kind are merged
+	private void step(String what, long nanos) {
+		int last = steps.size() - 1;
+		if (last >= 0 && steps.get(last).equals(what)) {
+			stepTimes.set(last, stepTimes.get(last) + nanos);
+		} else {
+			steps.add(what);
+			stepTimes.add(nanos);
+		}
+	}
+
+	/**
+	 * @return the federate, and the position in its clock, of the last
+	 *         request made by another federate than f after <i>from</i> and
+	 *         at the latest at <i>to</i>; null if there is none
+	 */
+	private int[] findReleaser(int f, long from, long to) {
+		int[] releaser = null;
+		long latest = Long.MIN_VALUE;
+		for (int g = 0; g < traces.length; g++) {
+			if (g == f) {
+				continue;
+			}
+			TimeTrace.Events events = traces[g];
+			// the last clock event at the latest at "to"
+			int low = 0;
+			int high = clock[g].length - 1;
+			int found = -1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (events.wallTimes[clock[g][middle]] <= to) {
+					found = middle;
+					low = middle + 1;
+				} else {
+					high = middle - 1;
+				}
+			}
+			for (int k = found; k >= 0; k--) {
+				int event = clock[g][k];
+				long wall = events.wallTimes[event];
+				if (wall <= from) {
+					break;
+				}
+				if (events.types[event] == TimeTrace.REQUEST) {
+					if (wall > latest) {
+						latest = wall;
+						releaser = new int[] { g, k };
+					}
+					break;
+				}
+			}
+		}
+		return releaser;
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
+	}
+
+	// ----------------------------------------------------------
+	// MAIN
+	// ----------------------------------------------------------
+
+	/**
+	 * @param args
+	 *            trace files, or directories whose ".trace" files are read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: TraceAnalyzer <trace file or directory>...");
+			System.exit(1);
+		}
+		List<TimeTrace.Events> traces = new ArrayList<TimeTrace.Events>();
+		for (String arg : args) {
+			File file = new File(arg);
+			if (file.isDirectory()) {
+				File[] files = file.listFiles();
+				Arrays.sort(files);
+				for (File trace : files) {
+					if (trace.getName().endsWith(TimeTrace.FILE_SUFFIX)) {
+						traces.add(TimeTrace.read(trace));
+					}
+				}
+			} else {
+				traces.add(TimeTrace.read(file));
+			}
+		}
+		new TraceAnalyzer(traces).report(System.out);
+	}
+}
@@ -0,0 +1,84 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import ptolemy.actor.TypedAtomicActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.data.ArrayToken;
+import ptolemy.data.type.ArrayType;
+import ptolemy.data.type.BaseType;
+import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+
+//////////////////////////////////////////////////////////////////////////
+//// UnbatchArray
+
+/**
+ * Companion of the array batch mode of the {@link SlaveFederateActor}: it
+ * splits each ArrayToken received on <i>input</i> back into its elements, so
+ * that the actors downstream see the values one by one. Element <i>k</i> goes
+ * to channel <i>k</i> modulo the width of <i>output</i>; with a single
+ * channel the elements are sent in order, all in the same firing.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class UnbatchArray extends TypedAtomicActor {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construct an actor with the specified container and name.
+	 *
+	 * @param container
+	 *            The container.
+	 * @param name
+	 *            The name.
+	 * @exception IllegalActionException
+	 *                If the entity cannot be contained by the proposed
+	 *                container.
+	 * @exception NameDuplicationException
+	 *                If the container already has an actor with this name.
+	 */
+	public UnbatchArray(CompositeEntity container, String name)
+			throws NameDuplicationException, IllegalActionException {
+		super(container, name);
+
+		input = new TypedIOPort(this, "input", true, false);
+		input.setTypeEquals(new ArrayType(BaseType.UNKNOWN));
+
+		output = new TypedIOPort(this, "output", false, true);
+		output.setMultiport(true);
+		// the elements keep the type of the array elements
+		output.setTypeAtLeast(((ArrayType) input.getType())
+				.getElementTypeTerm());
+	}
+
+	// /////////////////////////////////////////////////////////////////
+	// // ports and parameters ////
+
+	/** The arrays to split, as sent by a SlaveFederateActor in array mode. */
+	public TypedIOPort input;
+
+	/** The elements of the arrays, spread over the channels. */
+	public TypedIOPort output;
+
+	// /////////////////////////////////////////////////////////////////
+	// // public methods ////
+
+	/**
+	 * Send the elements of every array waiting on the input.
+	 */
+	public void fire() throws IllegalActionException {
+		super.fire();
+
+		int width = output.getWidth();
+		while (input.hasToken(0)) {
+			ArrayToken array = (ArrayToken) input.get(0);
+			if (width == 0) {
+				continue;
+			}
+			for (int k = 0; k < array.length(); k++) {
+				output.send(k % width, array.getElement(k));
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package ptolemy.myactors.MaximumEntropy;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A master and a slave {@link LoopbackFederate} advancing with pipelined
+ * time advance requests, as the HLADEDirector does with
+ * pipelinedTimeAdvance. One operation is one time step of the master: it
+ * asks for the next step, sends <i>samples</i> values on the channel of the
+ * slave while the request is pending, as the actors firing at the granted
+ * time do, and waits for the grant. The slave advances one step at a time
+ * in its own thread and drains what it receives.
+ * <p/>
+ * The values sent while a request is pending must be stamped above its time
+ * plus the lookahead, or the federation rejects them; the trial fails if the
+ * slave received nothing.
+ *
+ * @author adapted by Alisson Brito
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopbackFederationBenchmark {
+
+	/** The channel class of the FOM, with the two channels we use */
+	private static final String FOM = "(FED (Federation LoopbackBenchmark)"
+			+ " (FEDversion v1.3)"
+			+ " (objects (class ObjectRoot"
+			+ " (attribute privilegeToDelete reliable timestamp)"
+			+ " (class aes (attribute canal1 reliable timestamp)"
+			+ " (attribute canal2 reliable timestamp))))"
+			+ " (interactions (class InteractionRoot reliable timestamp"
+			+ " (class X reliable timestamp (parameter xa) (parameter xb)))))";
+
+	private static final double LOOKAHEAD = 1.0;
+
+	@Param( { FederateSettings.TIME_ADVANCE_REQUEST,
+			FederateSettings.NEXT_EVENT_REQUEST })
+	public String timeManagement;
+
+	@Param( { "1", "16" })
+	public int samples;
+
+	private File fom;
+	private LoopbackFederate master;
+	private SampleBatch batch = new SampleBatch();
+
+	private Thread slave;
+	private volatile boolean running;
+	private volatile Exception slaveFailure;
+	private volatile long received;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fom = File.createTempFile("loopback", ".fed");
+		Writer writer = new FileWriter(fom);
+		try {
+			writer.write(FOM);
+		} finally {
+			writer.close();
+		}
+
+		running = true;
+		slave = new Thread("Loopback benchmark slave") {
+			public void run() {
+				try {
+					runSlave();
+				} catch (Exception e) {
+					slaveFailure = e;
+				}
+			}
+		};
+		slave.setDaemon(true);
+		slave.start();
+
+		master = new LoopbackFederate(true);
+		master.configure(settings());
+		master.createFederate("master", fom.getPath());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		running = false;
+		master.finalizeFederate();
+		slave.join();
+		fom.delete();
+		if (slaveFailure != null) {
+			throw slaveFailure;
+		}
+		if (received == 0) {
+			throw new IllegalStateException("The slave received no sample");
+		}
+	}
+
+	@Benchmark
+	public double step() throws Exception {
+		master.requestTimeAdvance(master.getRTITime() + 1);
+		batch.clear();
+		for (int i = 0; i < samples; i++) {
+			batch.addInt(1, i, master.getRTITime());
+		}
+		master.sendData(batch);
+		master.awaitTimeAdvance();
+		return master.getRTITime();
+	}
+
+	private void runSlave() throws Exception {
+		LoopbackFederate federate = new LoopbackFederate(false);
+		federate.configure(settings());
+		federate.createFederate("slave", fom.getPath());
+
+		List<Attributes> data = new ArrayList<Attributes>();
+		try {
+			// the master resigns first, which grants our last request
+			while (running) {
+				federate.requestTimeAdvance(federate.getRTITime() + 1);
+				federate.awaitTimeAdvance();
+				data.clear();
+				federate.drainReceivedData(federate.getRTITime(), data);
+				for (int i = 0; i < data.size(); i++) {
+					received += data.get(i).getSamples().size();
+				}
+				federate.recycleReceivedData(data);
+			}
+		} finally {
+			federate.finalizeFederate();
+		}
+	}
+
+	private FederateSettings settings() {
+		FederateSettings settings = new FederateSettings();
+		settings.setRtiBackend(FederateSettings.LOOPBACK_BACKEND);
+		// a federate that failed to start does not hang the trial
+		settings.setHeadless(true);
+		settings.setNumberOfSlaves(1);
+		settings.setSlaveChannel(1);
+		settings.setTimeManagement(timeManagement);
+		settings.setUpdateOrdering(FederateSettings.TIMESTAMP_ORDER);
+		// join with the lookahead: lowering it after the join would keep
+		// the promise of the default one until the federates pass it
+		settings.setLookahead(LOOKAHEAD);
+		return settings;
+	}
+}
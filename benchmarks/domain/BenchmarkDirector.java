@@ -0,0 +1,26 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+import ptolemy.myactors.MaximumEntropy.PtolemyFederate;
+
+/**
+ * The HLADEDirector of the benchmark models, with a {@link NullFederate} in
+ * place of the RTI so that the benchmarks run on a plain JVM.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class BenchmarkDirector extends HLADEDirector {
+
+	private static final long serialVersionUID = 1L;
+
+	public BenchmarkDirector(CompositeEntity container, String name)
+			throws IllegalActionException, NameDuplicationException {
+		super(container, name);
+	}
+
+	protected PtolemyFederate _createRTIFederation(String backend) {
+		return new NullFederate();
+	}
+}
@@ -0,0 +1,80 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import ptolemy.actor.Manager;
+import ptolemy.actor.TypedCompositeActor;
+import ptolemy.kernel.util.KernelException;
+import ptolemy.kernel.util.Workspace;
+
+/**
+ * A model of {@link Ticker}s under a {@link BenchmarkDirector}, built in
+ * code for the JMH benchmarks of the DE kernel.
+ * <p/>
+ * The benchmarks sit in the benchmarks directory, in the packages of the
+ * classes they measure. They need the Ptolemy II and hla.rti jars, as the
+ * models do, plus jmh-core and its annotation processor
+ * (jmh-generator-annprocess) to compile; no RTI has to run. For instance,
+ * with the classes of the project and the jars on the classpath:
+ *
+ * <pre>
+ * javac -cp $CP -d bench-classes benchmarks/domain/*.java
+ * java -cp $CP:bench-classes org.openjdk.jmh.Main DEEventQueueBenchmark
+ * </pre>
+ *
+ * @author adapted by Alisson Brito
+ */
+public class BenchmarkModel {
+
+	public final TypedCompositeActor toplevel;
+
+	public final BenchmarkDirector director;
+
+	public final Ticker[] tickers;
+
+	private final Manager manager;
+
+	/**
+	 * @param actors
+	 *            how many tickers, all firing every time unit
+	 * @param staggered
+	 *            if false, all the tickers fire at the same time stamps; if
+	 *            true, ticker i fires at i / actors past each time unit
+	 * @param chained
+	 *            if true, each ticker sends its counter to the next one
+	 */
+	public BenchmarkModel(int actors, boolean staggered, boolean chained)
+			throws KernelException {
+		Workspace workspace = new Workspace("benchmark");
+		toplevel = new TypedCompositeActor(workspace);
+		toplevel.setName("benchmark");
+		director = new BenchmarkDirector(toplevel, "director");
+		tickers = new Ticker[actors];
+		for (int i = 0; i < actors; i++) {
+			tickers[i] = new Ticker(toplevel, "ticker" + i, 1.0,
+					staggered ? (double) i / actors : 0.0);
+			if (chained && i > 0) {
+				toplevel.connect(tickers[i - 1].output, tickers[i].input);
+			}
+		}
+		manager = new Manager(workspace, "manager");
+		toplevel.setManager(manager);
+	}
+
+	/** Preinitialize and initialize the model, ready to iterate */
+	public void initialize() throws KernelException {
+		manager.initialize();
+	}
+
+	/**
+	 * One iteration of the toplevel: the director fires the actors of the
+	 * next time stamp.
+	 *
+	 * @return false if the model wants to stop
+	 */
+	public boolean iterate() throws KernelException {
+		return manager.iterate();
+	}
+
+	public void wrapup() throws KernelException {
+		manager.wrapup();
+	}
+}
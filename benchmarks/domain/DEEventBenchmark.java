@@ -0,0 +1,64 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.util.Time;
+
+/**
+ * DEEvent.compareTo(), called on every put and take of the event queue. With
+ * <i>ties</i> "distinct" the events differ by time stamp; with "sameTime"
+ * they share it and the comparison goes on to the microstep and the depth.
+ *
+ * @author adapted by Alisson Brito
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DEEventBenchmark {
+
+	@Param( { "distinct", "sameTime" })
+	public String ties;
+
+	private static final int EVENTS = 1024;
+
+	private DEEvent[] events;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkModel model = new BenchmarkModel(0, false, false);
+		Random random = new Random(42);
+		events = new DEEvent[EVENTS];
+		Time zero = new Time(model.director, 0.0);
+		for (int i = 0; i < EVENTS; i++) {
+			Time time = ties.equals("sameTime") ? zero : zero.add(random
+					.nextDouble() * 100.0);
+			events[i] = new DEEvent((Actor) null, time, random.nextInt(2),
+					random.nextInt(16));
+		}
+	}
+
+	@Benchmark
+	public int compareTo() {
+		int i = next++ & (EVENTS - 1);
+		return events[i].compareTo(events[(i + 1) & (EVENTS - 1)]);
+	}
+}
@@ -0,0 +1,146 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.util.Time;
+import ptolemy.kernel.util.IllegalActionException;
+
+/**
+ * The DE event queue under the classic hold model: with <i>size</i> events
+ * queued, take the earliest one and put a new one a random increment later.
+ * The increments follow a distribution:
+ * <ul>
+ * <li>uniform: between 0 and 2;</li>
+ * <li>exponential: of mean 1;</li>
+ * <li>bimodal: 90% below 0.01, 10% up to 100, which upsets the bin width of
+ * a calendar queue;</li>
+ * <li>simultaneous: 0, all the events share a time stamp and are ordered by
+ * depth only.</li>
+ * </ul>
+ * The increments and depths are drawn before the measurement, with a fixed
+ * seed, so that all the queues see the same sequence.
+ *
+ * @author adapted by Alisson Brito
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DEEventQueueBenchmark {
+
+	/** The queue implementation, see {@link #createQueue(String)} */
+	@Param( { "calendar", "heap", "ladder", "adaptive" })
+	public String queue;
+
+	@Param( { "uniform", "exponential", "bimodal", "simultaneous" })
+	public String distribution;
+
+	/** Events in the queue while holding */
+	@Param( { "100", "10000" })
+	public int size;
+
+	private static final int DRAWS = 1 << 16;
+
+	private BenchmarkModel model;
+	private DEEventQueue events;
+	private double[] increments;
+	private int[] depths;
+	private int draw = 0;
+
+	// the events of fillAndDrain(), created once
+	private DEEvent[] batch;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		model = new BenchmarkModel(0, false, false);
+		Random random = new Random(42);
+		increments = new double[DRAWS];
+		depths = new int[DRAWS];
+		for (int i = 0; i < DRAWS; i++) {
+			increments[i] = increment(distribution, random);
+			depths[i] = random.nextInt(16);
+		}
+
+		events = createQueue(queue);
+		batch = new DEEvent[size];
+		Time zero = new Time(model.director, 0.0);
+		for (int i = 0; i < size; i++) {
+			DEEvent event = new DEEvent((Actor) null, zero.add(increments[i]),
+					0, depths[i]);
+			events.put(event);
+			batch[i] = event;
+		}
+	}
+
+	/** Take the earliest event and put one a random increment later */
+	@Benchmark
+	public DEEvent hold() throws IllegalActionException {
+		DEEvent earliest = events.take();
+		int i = draw++ & (DRAWS - 1);
+		events.put(new DEEvent((Actor) null, earliest.timeStamp().add(
+				increments[i]), 0, depths[i]));
+		return earliest;
+	}
+
+	/** Peek at the earliest event, as the director does before each firing */
+	@Benchmark
+	public DEEvent get() {
+		return events.get();
+	}
+
+	/** Put <i>size</i> events in an empty queue, then take them all */
+	@Benchmark
+	public int fillAndDrain() throws IllegalActionException {
+		DEEventQueue scratch = createQueue(queue);
+		for (int i = 0; i < batch.length; i++) {
+			scratch.put(batch[i]);
+		}
+		int taken = 0;
+		while (!scratch.isEmpty()) {
+			scratch.take();
+			taken++;
+		}
+		return taken;
+	}
+
+	/**
+	 * @param name
+	 *            a name of {@link DEEventQueues}, the calendar queue with the
+	 *            defaults of the director parameters
+	 */
+	static DEEventQueue createQueue(String name) {
+		return DEEventQueues.forName(name, 2, 2, true);
+	}
+
+	static double increment(String distribution, Random random) {
+		if (distribution.equals("uniform")) {
+			return random.nextDouble() * 2.0;
+		} else if (distribution.equals("exponential")) {
+			return -Math.log(1.0 - random.nextDouble());
+		} else if (distribution.equals("bimodal")) {
+			return random.nextDouble() < 0.9 ? random.nextDouble() * 0.01
+					: random.nextDouble() * 100.0;
+		} else if (distribution.equals("simultaneous")) {
+			return 0.0;
+		}
+		throw new IllegalArgumentException("Unknown distribution: "
+				+ distribution);
+	}
+}
@@ -0,0 +1,63 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ptolemy.data.IntToken;
+import ptolemy.data.Token;
+
+/**
+ * A token through the DEReceiver of a connected input port: put() queues the
+ * token and a trigger event for the director, get() reads the token back,
+ * and the trigger event is taken off the queue so that it keeps its size.
+ *
+ * @author adapted by Alisson Brito
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DEReceiverBenchmark {
+
+	private BenchmarkModel model;
+	private DEReceiver receiver;
+	private DEEventQueue events;
+	private final Token token = new IntToken(1);
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		model = new BenchmarkModel(2, false, true);
+		model.initialize();
+		receiver = (DEReceiver) model.tickers[1].input.getReceivers()[0][0];
+		events = model.director.getEventQueue();
+		// only the trigger events of the benchmark from now on
+		events.clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		model.wrapup();
+	}
+
+	@Benchmark
+	public Token putGet() {
+		receiver.put(token);
+		Token received = receiver.get();
+		events.take();
+		return received;
+	}
+}
@@ -0,0 +1,64 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The HLADEDirector fire() loop over <i>actors</i> {@link Ticker}s, with the
+ * RTI replaced by a {@link NullFederate}. One operation is one iteration of
+ * the model, the firings of one time stamp:
+ * <ul>
+ * <li>simultaneous: all the tickers fire at each time unit;</li>
+ * <li>staggered: the tickers fire one after the other, one per iteration;</li>
+ * <li>chained: as simultaneous, each ticker also sending a token to the
+ * next one, which adds a trigger event per firing.</li>
+ * </ul>
+ *
+ * @author adapted by Alisson Brito
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HLADEDirectorBenchmark {
+
+	@Param( { "1", "10", "100" })
+	public int actors;
+
+	@Param( { "simultaneous", "staggered", "chained" })
+	public String layout;
+
+	private BenchmarkModel model;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		model = new BenchmarkModel(actors, layout.equals("staggered"), layout
+				.equals("chained"));
+		model.initialize();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		model.wrapup();
+	}
+
+	@Benchmark
+	public boolean iterate() throws Exception {
+		return model.iterate();
+	}
+}
@@ -0,0 +1,107 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.List;
+
+import ptolemy.myactors.MaximumEntropy.Attributes;
+import ptolemy.myactors.MaximumEntropy.ChannelLoads;
+import ptolemy.myactors.MaximumEntropy.FederateSettings;
+import ptolemy.myactors.MaximumEntropy.PtolemyFederate;
+import ptolemy.myactors.MaximumEntropy.SampleBatch;
+
+/**
+ * A federate without federation, for the benchmarks: every time advance is
+ * granted at once, the lookahead is infinite so that the RTI never holds the
+ * model time back, nothing is sent and nothing is received. What is measured
+ * is the DE kernel alone.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class NullFederate implements PtolemyFederate {
+
+	private final ChannelLoads channelLoads = new ChannelLoads();
+	private double time = 0.0;
+
+	public void configure(FederateSettings settings) {
+	}
+
+	public void createFederate(String federateName, String fedFileName) {
+		time = 0.0;
+	}
+
+	public void finalizeFederate() {
+	}
+
+	public void sendData(String data) {
+	}
+
+	public void sendData(SampleBatch samples) {
+	}
+
+	public Attributes receivedData(double time) {
+		return null;
+	}
+
+	public Attributes consumeReceivedData(double time) {
+		return null;
+	}
+
+	public int drainReceivedData(double time, List<Attributes> into) {
+		return 0;
+	}
+
+	public void recycleReceivedData(List<Attributes> used) {
+	}
+
+	public boolean hasReceivedData(double time) {
+		return false;
+	}
+
+	public double getRTITime() {
+		return time;
+	}
+
+	public void advanceTime(double timestep) {
+		time += timestep;
+	}
+
+	public void advanceTimeTo(double nextStep) {
+		time = nextStep;
+	}
+
+	public void requestTimeAdvance(double nextStep) {
+		time = nextStep;
+	}
+
+	public void awaitTimeAdvance() {
+	}
+
+	public boolean isTimeAdvancePending() {
+		return false;
+	}
+
+	public double getRTINextTime() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	public double getLookahead() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	public double getSendTime() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	public void setLookahead(double lookahead) {
+	}
+
+	public void reportLoad() {
+	}
+
+	public ChannelLoads getChannelLoads() {
+		return channelLoads;
+	}
+
+	public long getDroppedDataCount() {
+		return 0;
+	}
+}
@@ -0,0 +1,65 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import ptolemy.actor.TypedAtomicActor;
+import ptolemy.actor.TypedIOPort;
+import ptolemy.actor.util.Time;
+import ptolemy.data.IntToken;
+import ptolemy.data.type.BaseType;
+import ptolemy.kernel.CompositeEntity;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.NameDuplicationException;
+
+/**
+ * The dummy actor of the benchmark models: it fires every <i>period</i>,
+ * starting at <i>offset</i>, consumes what arrived on its input and sends a
+ * counter on its output. With the output left unconnected the firings only
+ * cost the scheduling; chained, every firing also goes through a
+ * DEReceiver and a trigger event.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class Ticker extends TypedAtomicActor {
+
+	private static final long serialVersionUID = 1L;
+
+	public TypedIOPort input;
+
+	public TypedIOPort output;
+
+	private final double period;
+	private final double offset;
+	private int count = 0;
+	private Time next;
+
+	public Ticker(CompositeEntity container, String name, double period,
+			double offset) throws IllegalActionException,
+			NameDuplicationException {
+		super(container, name);
+		this.period = period;
+		this.offset = offset;
+		input = new TypedIOPort(this, "input", true, false);
+		input.setTypeEquals(BaseType.INT);
+		output = new TypedIOPort(this, "output", false, true);
+		output.setTypeEquals(BaseType.INT);
+	}
+
+	public void initialize() throws IllegalActionException {
+		super.initialize();
+		count = 0;
+		next = new Time(getDirector(), offset);
+		getDirector().fireAt(this, next);
+	}
+
+	public void fire() throws IllegalActionException {
+		super.fire();
+		while (input.hasToken(0)) {
+			input.get(0);
+		}
+		if (getDirector().getModelTime().compareTo(next) >= 0) {
+			// the firing this actor asked for, not only a trigger event
+			output.send(0, new IntToken(count++));
+			next = next.add(period);
+			getDirector().fireAt(this, next);
+		}
+	}
+}
@@ -0,0 +1,354 @@
+/* A DE event queue that changes its implementation with the workload.
+ */
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import ptolemy.actor.util.Time;
+import ptolemy.kernel.util.DebugListener;
+import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.InternalErrorException;
+import ptolemy.kernel.util.InvalidStateException;
+
+//////////////////////////////////////////////////////////////////////////
+//// DEAdaptiveEventQueue
+
+/**
+ A DE event queue that samples its workload and moves its events to
+ another implementation when the current one does not suit it. This
+ queue stores DE events in the order of their timestamps, microsteps,
+ and then depths of their destination actors. See {@link DEEventQueue}
+ for more explanation of the order of DE events.
+ <P>
+ Each put() samples the size of the queue and the gap between the time
+ stamp of the event and that of the last event taken, the current time of
+ the model. Every 1024 puts, the samples choose an implementation:
+ <ul>
+ <li>{@link DEHeapEventQueue} when the queue is small, or when at least
+ half of the gaps are zero, the events coming in bursts at one time
+ stamp, which piles them up in one bin of a calendar queue or in the
+ sorted bottom of a ladder queue;</li>
+ <li>{@link DELadderEventQueue} when the queue is large and the nonzero
+ gaps are skewed, with a standard deviation over twice their mean, which
+ upsets the bin width of a calendar queue;</li>
+ <li>{@link DECQEventQueue} otherwise, regular gaps being the best case
+ of a calendar queue.</li>
+ </ul>
+ The events move when two periods in a row choose the same other
+ implementation, so that one odd period does not move them back and
+ forth. The queue starts as a heap, the queues of a model being small
+ at first. Each move, and the samples that decided it, are reported to
+ the debug listeners, which also receive the messages of the current
+ implementation.
+
+ @author adapted by Alisson Brito
+ @see DEEventQueues
+ */
+public class DEAdaptiveEventQueue implements DEEventQueue {
+    /** Construct an empty event queue, with the default parameters of
+     *  the calendar queue.
+     */
+    public DEAdaptiveEventQueue() {
+        this(2, 2, true);
+    }
+
+    /** Construct an empty event queue with the given parameters for the
+     *  calendar queue, when this queue uses one.
+     *  @param minBinCount The minimum number of bins.
+     *  @param binCountFactor The factor when changing the bin count.
+     *  @param isCQAdaptive If the queue changes its number of bins at
+     *   run time.
+     */
+    public DEAdaptiveEventQueue(int minBinCount, int binCountFactor,
+            boolean isCQAdaptive) {
+        _minBinCount = minBinCount;
+        _binCountFactor = binCountFactor;
+        _isCQAdaptive = isCQAdaptive;
+        _type = DEEventQueues.HEAP;
+        _queue = new DEHeapEventQueue();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Append a listener to the current set of debug listeners.
+     *  @param listener A listener to which to send debug messages.
+     *  @see #removeDebugListener(DebugListener)
+     */
+    public synchronized void addDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            _debugListeners = new LinkedList();
+        } else if (_debugListeners.contains(listener)) {
+            return;
+        }
+        _debugListeners.add(listener);
+        _queue.addDebugListener(listener);
+    }
+
+    /** Empty the event queue. This method is synchronized since there
+     *  may be actors running under different threads in the DE domain.
+     *  The samples are kept, the workload being the same.
+     */
+    public synchronized void clear() {
+        _queue.clear();
+    }
+
+    /** Return the earliest DE event in the queue without removing it
+     *  from the queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    public synchronized final DEEvent get() {
+        return _queue.get();
+    }
+
+    /** Return the name of the implementation in use, one of
+     *  {@link DEEventQueues#CALENDAR}, {@link DEEventQueues#HEAP} and
+     *  {@link DEEventQueues#LADDER}.
+     *  @return The name of the current implementation.
+     */
+    public synchronized String getCurrentType() {
+        return _type;
+    }
+
+    /** Return the time stamp of the earliest event in the queue whose
+     *  tag is strictly after the given one, from the current
+     *  implementation.
+     *  @param time The time stamp of the tag.
+     *  @param microstep The microstep of the tag.
+     *  @return The time stamp of the earliest later event, or null if
+     *   there is none.
+     */
+    public synchronized final Time getNextEventTimeAfter(Time time,
+            int microstep) {
+        return _queue.getNextEventTimeAfter(time, microstep);
+    }
+
+    /** Return true if this event queue is empty.
+     *  @return True if there are no event in the queue.
+     */
+    public synchronized final boolean isEmpty() {
+        return _queue.isEmpty();
+    }
+
+    /** Put an event into the event queue, and sample its gap to the
+     *  current time.
+     *  If the given DE event is not in the event queue, enqueue it
+     *  into the event queue and notify all threads
+     *  that are stalled waiting for a DE event to be put in the queue.
+     *  This method is synchronized since there
+     *  may be actors running under different threads in the DE domain.
+     *  @param event The event to enqueue.
+     *  @exception IllegalActionException If the current implementation
+     *   cannot enqueue the event.
+     */
+    public synchronized final void put(DEEvent event)
+            throws IllegalActionException {
+        _sizeSum += _queue.size();
+        _queue.put(event);
+        // Infinite gaps, before the first take or to the end of time,
+        // say nothing of the workload.
+        double gap = event.timeStamp().getDoubleValue() - _lastTime;
+        if (gap == 0.0) {
+            _zeroGaps++;
+        } else if ((gap > 0.0) && !Double.isInfinite(gap)) {
+            _gaps++;
+            _gapSum += gap;
+            _gapSquareSum += gap * gap;
+        }
+        if (++_samples == _SAMPLE_PERIOD) {
+            _choose();
+        }
+        notifyAll();
+    }
+
+    /** Unregister a debug listener.  If the specified listener has not
+     *  been previously registered, then do nothing.
+     *  @param listener The listener to remove from the list of listeners
+     *   to which debug messages are sent.
+     *  @see #addDebugListener(DebugListener)
+     */
+    public synchronized void removeDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            return;
+        }
+        _debugListeners.remove(listener);
+        _queue.removeDebugListener(listener);
+        if (_debugListeners.size() == 0) {
+            _debugListeners = null;
+        }
+    }
+
+    /** Return the size of the event queue.
+     *  @return The size of the event queue.
+     */
+    public synchronized final int size() {
+        return _queue.size();
+    }
+
+    /** Dequeue the earliest DE event in this event queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    public synchronized final DEEvent take() {
+        DEEvent earliest = _queue.take();
+        _lastTime = earliest.timeStamp().getDoubleValue();
+        return earliest;
+    }
+
+    /** Return the events currently in the queue as an array, sorted
+     *  from the earliest to the latest.
+     *  @return The events currently in the queue.
+     */
+    public synchronized final Object[] toArray() {
+        return _queue.toArray();
+    }
+
+    /** Describe the Contents of the queue as a string.
+     *  @return A string with a comma-separated list of events.
+     */
+    public String toString() {
+        return _queue.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Choose an implementation from the samples of the period that ends,
+    // and move the events if it is the second choice in a row of another
+    // implementation.
+    private void _choose() {
+        double meanSize = (double) _sizeSum / _samples;
+        int measured = _zeroGaps + _gaps;
+        double simultaneous = (measured == 0) ? 0.0 : (double) _zeroGaps
+                / measured;
+        double variation = 0.0;
+        if (_gaps > 1) {
+            double mean = _gapSum / _gaps;
+            double variance = Math.max(0.0, (_gapSquareSum / _gaps)
+                    - (mean * mean));
+            variation = Math.sqrt(variance) / mean;
+        }
+
+        String type;
+        if ((meanSize < _SMALL_SIZE) || (simultaneous >= 0.5)) {
+            type = DEEventQueues.HEAP;
+        } else if ((meanSize >= _LARGE_SIZE) && (variation > 2.0)) {
+            type = DEEventQueues.LADDER;
+        } else {
+            type = DEEventQueues.CALENDAR;
+        }
+
+        if (type.equals(_type)) {
+            _candidate = null;
+        } else if (!type.equals(_candidate)) {
+            _candidate = type;
+        } else {
+            _candidate = null;
+            if (_debugListeners != null) {
+                _debug("Event queue moves from " + _type + " to " + type
+                        + ": mean size " + Math.round(meanSize) + ", "
+                        + Math.round(simultaneous * 100.0)
+                        + "% simultaneous, gap variation "
+                        + (Math.round(variation * 100.0) / 100.0) + ".");
+            }
+            _moveTo(type);
+        }
+
+        _samples = 0;
+        _sizeSum = 0;
+        _zeroGaps = 0;
+        _gaps = 0;
+        _gapSum = 0.0;
+        _gapSquareSum = 0.0;
+    }
+
+    // Send a debug message to the listeners.
+    private void _debug(String message) {
+        for (int i = 0; i < _debugListeners.size(); i++) {
+            ((DebugListener) _debugListeners.get(i)).message(message);
+        }
+    }
+
+    // Move the events to a new queue of the given type, in time stamp
+    // order, which is the cheapest order for the heap and the ladder.
+    private void _moveTo(String type) {
+        DEEventQueue queue = DEEventQueues.forName(type, _minBinCount,
+                _binCountFactor, _isCQAdaptive);
+        try {
+            while (!_queue.isEmpty()) {
+                queue.put(_queue.take());
+            }
+        } catch (IllegalActionException ex) {
+            // None of the implementations throws it.
+            throw new InternalErrorException(null, ex,
+                    "Cannot move the events to a " + type + " queue.");
+        }
+        if (_debugListeners != null) {
+            for (int i = 0; i < _debugListeners.size(); i++) {
+                DebugListener listener = (DebugListener) _debugListeners
+                        .get(i);
+                _queue.removeDebugListener(listener);
+                queue.addDebugListener(listener);
+            }
+        }
+        _queue = queue;
+        _type = type;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+    // A queue with at least this mean size is large.
+    private static final int _LARGE_SIZE = 1024;
+
+    // The number of puts between two choices of implementation.
+    private static final int _SAMPLE_PERIOD = 1024;
+
+    // A queue with less than this mean size is small.
+    private static final int _SMALL_SIZE = 64;
+
+    // The bin count factor of a calendar queue.
+    private int _binCountFactor;
+
+    // The implementation chosen by the previous period, if it is not
+    // the current one, or null.
+    private String _candidate;
+
+    // The list of DebugListeners registered with this object, or null
+    // if there are none.
+    private List _debugListeners;
+
+    // The number of positive finite gaps of the period.
+    private int _gaps;
+
+    // The sum of the positive finite gaps of the period.
+    private double _gapSum;
+
+    // The sum of the squares of the positive finite gaps of the period.
+    private double _gapSquareSum;
+
+    // Whether a calendar queue changes its bin count at run time.
+    private boolean _isCQAdaptive;
+
+    // The time stamp of the previous event taken.
+    private double _lastTime = Double.NEGATIVE_INFINITY;
+
+    // The minimum bin count of a calendar queue.
+    private int _minBinCount;
+
+    // The current implementation.
+    private DEEventQueue _queue;
+
+    // The number of puts of the period.
+    private int _samples;
+
+    // The sum of the sizes of the queue before each put of the period.
+    private long _sizeSum;
+
+    // The name of the current implementation.
+    private String _type;
+
+    // The number of zero gaps of the period.
+    private int _zeroGaps;
+}
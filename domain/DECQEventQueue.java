@@ -88,8 +88,9 @@ public class DECQEventQueue implements DEEventQueue {
     /** Empty the event queue. This method is synchronized since there
      *  may be actors running under different threads in the DE domain.
      */
-    public void clear() {
+    public synchronized void clear() {
         _cQueue.clear();
+        _tags.clear();
     }
 
     /** Return the earliest DE event in the queue without removing it
@@ -101,6 +102,19 @@ public class DECQEventQueue implements DEEventQueue {
         return (DEEvent) _cQueue.get();
     }
 
+    /** Return the time stamp of the earliest event in the queue whose
+     *  tag is strictly after the given one, from an index of the tags of
+     *  the events.
+     *  @param time The time stamp of the tag.
+     *  @param microstep The microstep of the tag.
+     *  @return The time stamp of the earliest later event, or null if
+     *   there is none.
+     */
+    public synchronized final Time getNextEventTimeAfter(Time time,
+            int microstep) {
+        return _tags.getNextTimeAfter(time, microstep);
+    }
+
     /** Return true if this event queue is empty.
      *  @return True if there are no event in the queue.
      */
@@ -119,6 +133,7 @@ public class DECQEventQueue implements DEEventQueue {
     public synchronized final void put(DEEvent event) {
         if (!_cQueue.includes(event)) {
             _cQueue.put(event);
+            _tags.add(event);
             notifyAll();
         }
     }
@@ -144,8 +159,10 @@ public class DECQEventQueue implements DEEventQueue {
      *  @return The earliest DE event in the queue.
      *  @exception InvalidStateException If the queue is empty.
      */
-    public final DEEvent take() {
-        return (DEEvent) _cQueue.take();
+    public synchronized final DEEvent take() {
+        DEEvent event = (DEEvent) _cQueue.take();
+        _tags.remove(event);
+        return event;
     }
 
     /** Return the events currently in the queue as an array.
@@ -269,7 +286,6 @@ public class DECQEventQueue implements DEEventQueue {
                 return;
             }
 
-            double[] diff = new double[entryArray.length - 1];
             Time firstEntryTime = ((DEEvent) entryArray[0]).timeStamp();
             Time lastEntryTime = ((DEEvent) entryArray[entryArray.length - 1])
                     .timeStamp();
@@ -282,8 +298,8 @@ public class DECQEventQueue implements DEEventQueue {
                 return;
             }
 
-            double average = lastEntryTime.subtract(firstEntryTime)
-                    .getDoubleValue();
+            double average = lastEntryTime.getDoubleValue()
+                    - firstEntryTime.getDoubleValue();
             average = average / (entryArray.length - 1);
 
             double effectiveAverage = 0;
@@ -293,12 +309,17 @@ public class DECQEventQueue implements DEEventQueue {
                 return;
             }
 
-            for (int i = 0; i < (entryArray.length - 1); ++i) {
-                diff[i] = ((DEEvent) entryArray[i + 1]).timeStamp().subtract(
-                        ((DEEvent) entryArray[i]).timeStamp()).getDoubleValue();
-                if (diff[i] < 2 * average) {
+            // The gaps are taken on the double values of the time stamps,
+            // not on Time objects, so that a resize allocates nothing.
+            double previous = firstEntryTime.getDoubleValue();
+            for (int i = 1; i < entryArray.length; ++i) {
+                double next = ((DEEvent) entryArray[i]).timeStamp()
+                        .getDoubleValue();
+                double diff = next - previous;
+                previous = next;
+                if (diff < 2 * average) {
                     effectiveSamples++;
-                    effectiveAverage = effectiveAverage + diff[i];
+                    effectiveAverage = effectiveAverage + diff;
                 }
             }
 
@@ -337,4 +358,7 @@ public class DECQEventQueue implements DEEventQueue {
     ////                         private variables                 ////
     // An instance of CalendarQueue used for sorting and storing events.
     private CalendarQueue _cQueue;
+
+    // The tags of the events, for getNextEventTimeAfter().
+    private DETagIndex _tags = new DETagIndex();
 }
@@ -65,7 +65,9 @@ import ptolemy.kernel.util.NamedObj;
  by using the compareTo() method.
  <p>
  This class is final to improve the simulation performance because new
- events get created and discarded through the whole simulation.
+ events get created and discarded through the whole simulation. For the
+ same reason, a director may reuse the events it is done with, see
+ {@link DEEventPool}.
 
  @author Lukito Muliadi, Edward A. Lee, Haiyang Zheng
  @version $Id: DEEvent.java,v 1.61 2005/07/08 19:58:14 cxh Exp $
@@ -226,6 +228,27 @@ public final class DEEvent implements Comparable {
         }
     }
 
+    ///////////////////////////////////////////////////////////////////
+    ////                         package methods                   ////
+
+    /** Give this event a new destination, timestamp, microstep, and
+     *  depth, so that a pool can reuse it. The event must not be in an
+     *  event queue.
+     *  @param actor The destination actor.
+     *  @param ioPort The destination IO port, or null for a pure event.
+     *  @param timeStamp The time when the event occurs.
+     *  @param microstep The phase of execution within a fixed time.
+     *  @param depth The topological depth of the destination.
+     */
+    void _reinitialize(Actor actor, IOPort ioPort, Time timeStamp,
+            int microstep, int depth) {
+        _actor = actor;
+        _ioPort = ioPort;
+        _timestamp = timeStamp;
+        _microstep = microstep;
+        _depth = depth;
+    }
+
     ///////////////////////////////////////////////////////////////////
     ////                         protected methods                 ////
 
@@ -0,0 +1,144 @@
+/* A pool of DE events for a director to reuse.
+ */
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Arrays;
+
+import ptolemy.actor.Actor;
+import ptolemy.actor.IOPort;
+import ptolemy.actor.util.Time;
+
+//////////////////////////////////////////////////////////////////////////
+//// DEEventPool
+
+/**
+ A pool of DE events, from which a director takes the events it enqueues
+ and to which it returns the events it has taken from its event queue
+ and is done with. A DE event is a small object, but a director creates
+ one for every fireAt() and every token sent to a DE receiver, so that
+ reusing them keeps the steady state of a model free of allocations, and
+ of the garbage collections they cause.
+ <p>
+ An event must be released only when nothing refers to it any longer:
+ not the event queue, where an event stays until it is taken, and not the
+ director, which compares the events of an iteration with the first one.
+ The pool keeps at most a given number of events, so that a burst of
+ events does not hold memory for the rest of the execution; the events
+ released beyond it are left to the garbage collector. This class is
+ synchronized, since events may be enqueued from other threads than that
+ of the director.
+
+ @author adapted by Alisson Brito
+ @see HLADEDirector
+ */
+final class DEEventPool {
+    /** Construct an empty pool that keeps at most the default number of
+     *  events.
+     */
+    DEEventPool() {
+        this(_DEFAULT_CAPACITY);
+    }
+
+    /** Construct an empty pool that keeps at most the given number of
+     *  events.
+     *  @param capacity The maximum number of events kept.
+     */
+    DEEventPool(int capacity) {
+        _capacity = Math.max(capacity, 1);
+        _events = new DEEvent[Math.min(_capacity, _INITIAL_CAPACITY)];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         package methods                   ////
+
+    /** Return a pure event with the specified destination actor,
+     *  timestamp, microstep, and depth, reused from the pool if it is not
+     *  empty.
+     *  @param actor The destination actor
+     *  @param timeStamp The time when the event occurs.
+     *  @param microstep The phase of execution within a fixed time.
+     *  @param depth The topological depth of the destination actor.
+     *  @return The event.
+     */
+    synchronized DEEvent acquire(Actor actor, Time timeStamp, int microstep,
+            int depth) {
+        if (_size == 0) {
+            return new DEEvent(actor, timeStamp, microstep, depth);
+        }
+        DEEvent event = _events[--_size];
+        _events[_size] = null;
+        event._reinitialize(actor, null, timeStamp, microstep, depth);
+        return event;
+    }
+
+    /** Return a trigger event with the specified destination IO port,
+     *  timestamp, microstep, and depth, reused from the pool if it is not
+     *  empty.
+     *  @param ioPort The destination IO port.
+     *  @param timeStamp The time when the event occurs.
+     *  @param microstep The phase of execution within a fixed time.
+     *  @param depth The topological depth of the destination IO Port.
+     *  @return The event.
+     */
+    synchronized DEEvent acquire(IOPort ioPort, Time timeStamp,
+            int microstep, int depth) {
+        if (_size == 0) {
+            return new DEEvent(ioPort, timeStamp, microstep, depth);
+        }
+        DEEvent event = _events[--_size];
+        _events[_size] = null;
+        event._reinitialize((Actor) ioPort.getContainer(), ioPort, timeStamp,
+                microstep, depth);
+        return event;
+    }
+
+    /** Remove all the events from the pool.
+     */
+    synchronized void clear() {
+        Arrays.fill(_events, 0, _size, null);
+        _size = 0;
+    }
+
+    /** Return an event to the pool, which forgets its destination and
+     *  time stamp so that they can be collected. Nothing else may refer
+     *  to the event. If the pool is full, do nothing.
+     *  @param event The event, or null to do nothing.
+     */
+    synchronized void release(DEEvent event) {
+        if ((event == null) || (_size == _capacity)) {
+            return;
+        }
+        if (_size == _events.length) {
+            DEEvent[] events = new DEEvent[Math.min(_events.length << 1,
+                    _capacity)];
+            System.arraycopy(_events, 0, events, 0, _size);
+            _events = events;
+        }
+        event._reinitialize(null, null, null, 0, 0);
+        _events[_size++] = event;
+    }
+
+    /** Return the number of events in the pool.
+     *  @return The number of events in the pool.
+     */
+    synchronized int size() {
+        return _size;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+    // The default maximum number of events kept.
+    private static final int _DEFAULT_CAPACITY = 4096;
+
+    // The initial length of the array of events.
+    private static final int _INITIAL_CAPACITY = 64;
+
+    // The maximum number of events kept.
+    private int _capacity;
+
+    // The free events, the last one being the next to be reused.
+    private DEEvent[] _events;
+
+    // The number of free events.
+    private int _size;
+}
@@ -27,6 +27,7 @@
  */
 package ptolemy.myactors.MaximumEntropy.domain;
 
+import ptolemy.actor.util.Time;
 import ptolemy.kernel.util.Debuggable;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InvalidStateException;
@@ -74,6 +75,19 @@ public interface DEEventQueue extends Debuggable {
      */
     public DEEvent get() throws InvalidStateException;
 
+    /** Return the time stamp of the earliest event in this event queue
+     *  whose tag is strictly after the given one: a later time stamp, or
+     *  the same time stamp and a larger microstep. The depth is not
+     *  considered. An implementation should maintain what it needs
+     *  for this query as events come and go, rather than search the
+     *  events, since a director asks for it at each iteration.
+     *  @param time The time stamp of the tag.
+     *  @param microstep The microstep of the tag.
+     *  @return The time stamp of the earliest later event, or null if
+     *   there is none.
+     */
+    public Time getNextEventTimeAfter(Time time, int microstep);
+
     /** Return true if this event queue is empty.
      *  @return True if this queue is empty, false otherwise.
      */
@@ -0,0 +1,63 @@
+package ptolemy.myactors.MaximumEntropy.domain;
+
+/**
+ * The available {@link DEEventQueue}s, by the name used in the
+ * eventQueueType director parameter.
+ *
+ * @author adapted by Alisson Brito
+ */
+public class DEEventQueues {
+
+	/** {@link DECQEventQueue}, the calendar queue of Ptolemy II */
+	public static final String CALENDAR = "calendar";
+
+	/** {@link DEHeapEventQueue}, for bursts of events at the same time */
+	public static final String HEAP = "heap";
+
+	/** {@link DELadderEventQueue}, for large and skewed queues */
+	public static final String LADDER = "ladder";
+
+	/**
+	 * {@link DEAdaptiveEventQueue}, moving between the other three as the
+	 * workload changes
+	 */
+	public static final String ADAPTIVE = "adaptive";
+
+	private DEEventQueues() {
+	}
+
+	/**
+	 * @return true if there is a queue with the given name
+	 */
+	public static boolean isKnown(String name) {
+		return CALENDAR.equals(name) || HEAP.equals(name)
+				|| LADDER.equals(name) || ADAPTIVE.equals(name);
+	}
+
+	/**
+	 * @param minBinCount
+	 *            the minimum number of bins of a calendar queue
+	 * @param binCountFactor
+	 *            the factor when changing the bin count of a calendar queue
+	 * @param isCQAdaptive
+	 *            if a calendar queue changes its number of bins at run time
+	 * @return a new empty queue of the given name
+	 * @exception IllegalArgumentException
+	 *                If there is no queue with that name.
+	 */
+	public static DEEventQueue forName(String name, int minBinCount,
+			int binCountFactor, boolean isCQAdaptive) {
+		if (CALENDAR.equals(name)) {
+			return new DECQEventQueue(minBinCount, binCountFactor,
+					isCQAdaptive);
+		} else if (HEAP.equals(name)) {
+			return new DEHeapEventQueue();
+		} else if (LADDER.equals(name)) {
+			return new DELadderEventQueue();
+		} else if (ADAPTIVE.equals(name)) {
+			return new DEAdaptiveEventQueue(minBinCount, binCountFactor,
+					isCQAdaptive);
+		}
+		throw new IllegalArgumentException("Unknown event queue: " + name);
+	}
+}
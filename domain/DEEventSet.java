@@ -0,0 +1,150 @@
+/* A hash set of DE events, for the duplicate check of the event queues.
+ */
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Arrays;
+
+//////////////////////////////////////////////////////////////////////////
+//// DEEventSet
+
+/**
+ A hash set of the DE events in an event queue, used by the queues that
+ cannot search their own contents to refuse identical events, as required
+ by {@link DEEventQueue}. Two events are the same element if they are
+ identical in the sense of {@link DEEvent#compareTo(DEEvent)}: same time
+ stamp, microstep and depth.
+ <p>
+ The set uses open addressing with linear probing over a power of two
+ table, so that adding and removing an event allocates nothing until the
+ table has to grow. This class is not synchronized; the queues using it
+ are.
+
+ @author adapted by Alisson Brito
+ @see DEHeapEventQueue
+ @see DELadderEventQueue
+ */
+final class DEEventSet {
+    /** Construct an empty set.
+     */
+    DEEventSet() {
+        _table = new DEEvent[_INITIAL_CAPACITY];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         package methods                   ////
+
+    /** Add an event to the set, unless an identical event is already
+     *  in it.
+     *  @param event The event to add.
+     *  @return True if the event was added, false if an identical event
+     *   is in the set.
+     */
+    boolean add(DEEvent event) {
+        int mask = _table.length - 1;
+        int index = _hash(event) & mask;
+        DEEvent entry;
+        while ((entry = _table[index]) != null) {
+            if (entry == event || entry.compareTo(event) == 0) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        _table[index] = event;
+        if (++_size > (_table.length >> 1)) {
+            _resize(_table.length << 1);
+        }
+        return true;
+    }
+
+    /** Remove all the events from the set.
+     */
+    void clear() {
+        Arrays.fill(_table, null);
+        _size = 0;
+    }
+
+    /** Remove the event identical to the argument from the set.
+     *  @param event The event to remove.
+     *  @return True if the event was in the set.
+     */
+    boolean remove(DEEvent event) {
+        int mask = _table.length - 1;
+        int index = _hash(event) & mask;
+        DEEvent entry;
+        while ((entry = _table[index]) != null) {
+            if (entry == event || entry.compareTo(event) == 0) {
+                _delete(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Empty the slot at the given index, moving back the entries of the
+    // same probe run that would no longer be found, so that no tombstone
+    // is needed.
+    private void _delete(int index) {
+        int mask = _table.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        DEEvent entry;
+        while ((entry = _table[next]) != null) {
+            int home = _hash(entry) & mask;
+            // Move the entry into the hole if its home slot is not
+            // cyclically within (hole, next].
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                _table[hole] = entry;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        _table[hole] = null;
+        _size--;
+    }
+
+    // Return a hash of the tag and depth of the event. Identical time
+    // stamps have identical double values, so hashing the double value
+    // is consistent with compareTo().
+    private static int _hash(DEEvent event) {
+        long bits = Double.doubleToLongBits(event.timeStamp()
+                .getDoubleValue() + 0.0);
+        int hash = (int) (bits ^ (bits >>> 32));
+        hash = (hash * 31) + event.microstep();
+        hash = (hash * 31) + event.depth();
+        // Spread the high bits, the table is indexed by the low ones.
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Rehash the entries into a table of the given capacity.
+    private void _resize(int capacity) {
+        DEEvent[] old = _table;
+        _table = new DEEvent[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length; i++) {
+            DEEvent entry = old[i];
+            if (entry != null) {
+                int index = _hash(entry) & mask;
+                while (_table[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                _table[index] = entry;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+    // The initial capacity of the table, a power of two.
+    private static final int _INITIAL_CAPACITY = 64;
+
+    // The number of events in the set.
+    private int _size;
+
+    // The hash table, at most half full.
+    private DEEvent[] _table;
+}
@@ -0,0 +1,349 @@
+/* A 4-ary heap implementation of the DE event queue.
+ */
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import ptolemy.actor.util.Time;
+import ptolemy.kernel.util.DebugListener;
+import ptolemy.kernel.util.InvalidStateException;
+
+//////////////////////////////////////////////////////////////////////////
+//// DEHeapEventQueue
+
+/**
+ A 4-ary heap implementation of the DE event queue.
+ This queue stores DE events in the order of their timestamps,
+ microsteps, and then depths of their destination actors. See
+ {@link DEEventQueue} for more explanation of the order of DE events.
+ <P>
+ The heap is kept in arrays: the events, and next to them the double
+ value of their time stamps, their microsteps and their depths, so that
+ sifting an event compares primitives and does not touch the Time
+ objects, except for two time stamps with the same double value, which
+ are then compared exactly. A node has four children, which halves the
+ height of the tree compared to a binary heap and keeps the children
+ of a node next to each other in memory.
+ <P>
+ Enqueue and dequeue are O(log n) whatever the distribution of the time
+ stamps, in particular when many events share the same time stamp, where
+ a calendar queue piles them up in one bin. Identical events are refused
+ with the help of a {@link DEEventSet}.
+
+ @author adapted by Alisson Brito
+ @see DECQEventQueue
+ */
+public class DEHeapEventQueue implements DEEventQueue {
+    /** Construct an empty event queue.
+     */
+    public DEHeapEventQueue() {
+        this(_DEFAULT_CAPACITY);
+    }
+
+    /** Construct an empty event queue with room for the given number
+     *  of events before the arrays have to grow.
+     *  @param initialCapacity The initial capacity.
+     */
+    public DEHeapEventQueue(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        _events = new DEEvent[capacity];
+        _times = new double[capacity];
+        _microsteps = new int[capacity];
+        _depths = new int[capacity];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Append a listener to the current set of debug listeners.
+     *  @param listener A listener to which to send debug messages.
+     *  @see #removeDebugListener(DebugListener)
+     */
+    public synchronized void addDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            _debugListeners = new LinkedList();
+        } else if (_debugListeners.contains(listener)) {
+            return;
+        }
+        _debugListeners.add(listener);
+    }
+
+    /** Empty the event queue. This method is synchronized since there
+     *  may be actors running under different threads in the DE domain.
+     */
+    public synchronized void clear() {
+        Arrays.fill(_events, 0, _size, null);
+        _size = 0;
+        _set.clear();
+        _tags.clear();
+    }
+
+    /** Return the earliest DE event in the queue without removing it
+     *  from the queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    public synchronized final DEEvent get() {
+        if (_size == 0) {
+            throw new InvalidStateException("Cannot get from an empty "
+                    + "event queue.");
+        }
+        return _events[0];
+    }
+
+    /** Return the time stamp of the earliest event in the queue whose
+     *  tag is strictly after the given one, from an index of the tags of
+     *  the events.
+     *  @param time The time stamp of the tag.
+     *  @param microstep The microstep of the tag.
+     *  @return The time stamp of the earliest later event, or null if
+     *   there is none.
+     */
+    public synchronized final Time getNextEventTimeAfter(Time time,
+            int microstep) {
+        return _tags.getNextTimeAfter(time, microstep);
+    }
+
+    /** Return true if this event queue is empty.
+     *  @return True if there are no event in the queue.
+     */
+    public synchronized final boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Put an event into the event queue.
+     *  If the given DE event is not in the event queue, enqueue it
+     *  into the event queue and notify all threads
+     *  that are stalled waiting for a DE event to be put in the queue.
+     *  This method is synchronized since there
+     *  may be actors running under different threads in the DE domain.
+     *  @param event The event to enqueue.
+     */
+    public synchronized final void put(DEEvent event) {
+        if (!_set.add(event)) {
+            return;
+        }
+        _tags.add(event);
+        if (_size == _events.length) {
+            _grow();
+        }
+        _siftUp(_size++, event, event.timeStamp().getDoubleValue(), event
+                .microstep(), event.depth());
+        if (_debugListeners != null) {
+            _debug("Put " + event);
+        }
+        notifyAll();
+    }
+
+    /** Unregister a debug listener.  If the specified listener has not
+     *  been previously registered, then do nothing.
+     *  @param listener The listener to remove from the list of listeners
+     *   to which debug messages are sent.
+     *  @see #addDebugListener(DebugListener)
+     */
+    public synchronized void removeDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            return;
+        }
+        _debugListeners.remove(listener);
+        if (_debugListeners.size() == 0) {
+            _debugListeners = null;
+        }
+    }
+
+    /** Return the size of the event queue.
+     *  @return The size of the event queue.
+     */
+    public synchronized final int size() {
+        return _size;
+    }
+
+    /** Dequeue the earliest DE event in this event queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    public synchronized final DEEvent take() {
+        if (_size == 0) {
+            throw new InvalidStateException("Cannot take from an empty "
+                    + "event queue.");
+        }
+        DEEvent earliest = _events[0];
+        int last = --_size;
+        if (last > 0) {
+            _siftDown(0, _events[last], _times[last], _microsteps[last],
+                    _depths[last]);
+        }
+        _events[last] = null;
+        _set.remove(earliest);
+        _tags.remove(earliest);
+        if (_debugListeners != null) {
+            _debug("Take " + earliest);
+        }
+        return earliest;
+    }
+
+    /** Return the events currently in the queue as an array, sorted
+     *  from the earliest to the latest.
+     *  @return The events currently in the queue.
+     */
+    public synchronized final Object[] toArray() {
+        Object[] array = new Object[_size];
+        System.arraycopy(_events, 0, array, 0, _size);
+        Arrays.sort(array);
+        return array;
+    }
+
+    /** Describe the Contents of the queue as a string.
+     *  @return A string with a comma-separated list of events.
+     */
+    public String toString() {
+        Object[] array = toArray();
+        StringBuffer buffer = new StringBuffer("{");
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(array[i]);
+        }
+        buffer.append("}");
+        return buffer.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Send a debug message to the listeners.
+    private void _debug(String message) {
+        for (int i = 0; i < _debugListeners.size(); i++) {
+            ((DebugListener) _debugListeners.get(i)).message(message);
+        }
+    }
+
+    // Return true if the event with the given key is earlier than the
+    // event at the given index of the heap.
+    private boolean _earlier(DEEvent event, double time, int microstep,
+            int depth, int index) {
+        double other = _times[index];
+        if (time != other) {
+            return time < other;
+        }
+        // Same double value, possibly different times past the
+        // precision of a double.
+        int comparison = event.timeStamp().compareTo(
+                _events[index].timeStamp());
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+        if (microstep != _microsteps[index]) {
+            return microstep < _microsteps[index];
+        }
+        return depth < _depths[index];
+    }
+
+    // Double the capacity of the arrays.
+    private void _grow() {
+        int capacity = _events.length << 1;
+        DEEvent[] events = new DEEvent[capacity];
+        System.arraycopy(_events, 0, events, 0, _size);
+        _events = events;
+        double[] times = new double[capacity];
+        System.arraycopy(_times, 0, times, 0, _size);
+        _times = times;
+        int[] microsteps = new int[capacity];
+        System.arraycopy(_microsteps, 0, microsteps, 0, _size);
+        _microsteps = microsteps;
+        int[] depths = new int[capacity];
+        System.arraycopy(_depths, 0, depths, 0, _size);
+        _depths = depths;
+    }
+
+    // Store the entry at the given index.
+    private void _set(int index, DEEvent event, double time, int microstep,
+            int depth) {
+        _events[index] = event;
+        _times[index] = time;
+        _microsteps[index] = microstep;
+        _depths[index] = depth;
+    }
+
+    // Move the entry at the given index to the hole at the other index.
+    private void _move(int from, int to) {
+        _set(to, _events[from], _times[from], _microsteps[from],
+                _depths[from]);
+    }
+
+    // Sift the given event down from the hole at the given index, the
+    // earliest of the children moving up, until it is no later than
+    // any of them.
+    private void _siftDown(int index, DEEvent event, double time,
+            int microstep, int depth) {
+        int hole = index;
+        int firstChild;
+        while ((firstChild = (hole << 2) + 1) < _size) {
+            int earliest = firstChild;
+            int lastChild = Math.min(firstChild + 4, _size);
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (_earlier(_events[child], _times[child],
+                        _microsteps[child], _depths[child], earliest)) {
+                    earliest = child;
+                }
+            }
+            // No two events of the queue are identical.
+            if (_earlier(event, time, microstep, depth, earliest)) {
+                break;
+            }
+            _move(earliest, hole);
+            hole = earliest;
+        }
+        _set(hole, event, time, microstep, depth);
+    }
+
+    // Sift the given event up from the hole at the given index, the
+    // parents moving down, until it is no earlier than its parent.
+    private void _siftUp(int index, DEEvent event, double time,
+            int microstep, int depth) {
+        int hole = index;
+        while (hole > 0) {
+            int parent = (hole - 1) >> 2;
+            if (!_earlier(event, time, microstep, depth, parent)) {
+                break;
+            }
+            _move(parent, hole);
+            hole = parent;
+        }
+        _set(hole, event, time, microstep, depth);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+    // The default initial capacity.
+    private static final int _DEFAULT_CAPACITY = 64;
+
+    // The list of DebugListeners registered with this object, or null
+    // if there are none.
+    private List _debugListeners;
+
+    // The depths of the events of the heap.
+    private int[] _depths;
+
+    // The events, in heap order: the children of the event at index i
+    // are at 4i + 1 to 4i + 4.
+    private DEEvent[] _events;
+
+    // The microsteps of the events of the heap.
+    private int[] _microsteps;
+
+    // The events of the heap, to refuse identical events.
+    private DEEventSet _set = new DEEventSet();
+
+    // The number of events in the heap.
+    private int _size;
+
+    // The tags of the events, for getNextEventTimeAfter().
+    private DETagIndex _tags = new DETagIndex();
+
+    // The double values of the time stamps of the events of the heap.
+    private double[] _times;
+}
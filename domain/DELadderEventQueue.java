@@ -0,0 +1,700 @@
+/* A ladder queue implementation of the DE event queue.
+ */
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import ptolemy.actor.util.Time;
+import ptolemy.kernel.util.DebugListener;
+import ptolemy.kernel.util.InvalidStateException;
+
+//////////////////////////////////////////////////////////////////////////
+//// DELadderEventQueue
+
+/**
+ A ladder queue implementation of the DE event queue, after W. T. Tang,
+ R. S. M. Goh and I. L.-J. Thng, "Ladder Queue: An O(1) Priority Queue
+ Structure for Large-Scale Discrete Event Simulation", ACM TOMACS 15(3),
+ 2005. This queue stores DE events in the order of their timestamps,
+ microsteps, and then depths of their destination actors. See
+ {@link DEEventQueue} for more explanation of the order of DE events.
+ <P>
+ The events are kept in three tiers:
+ <ul>
+ <li>top: an unsorted list of the events at or after a time stamp,
+ usually the far future;</li>
+ <li>the ladder: up to eight rungs of buckets, each rung spreading
+ the events of one bucket of the rung above over finer buckets,
+ the events of a bucket being unsorted;</li>
+ <li>bottom: the earliest events, sorted.</li>
+ </ul>
+ Events are dequeued from bottom. When it is empty, the first non empty
+ bucket of the lowest rung is sorted into bottom if it holds few events,
+ or is spread over a new rung otherwise, and when the ladder is empty the
+ events of top make its first rung. The bucket widths are taken from the
+ events themselves, not from a sample, so that unlike a calendar queue
+ the ladder queue needs no resize and keeps enqueue and dequeue O(1)
+ amortized on skewed distributions of time stamps.
+ <P>
+ A bucket whose events all have the same time stamp cannot be spread, it
+ goes to bottom whatever its size and then costs O(log n) per enqueue,
+ as {@link DEHeapEventQueue} does. Identical events are refused with
+ the help of a {@link DEEventSet}.
+
+ @author adapted by Alisson Brito
+ @see DECQEventQueue
+ */
+public class DELadderEventQueue implements DEEventQueue {
+    /** Construct an empty event queue.
+     */
+    public DELadderEventQueue() {
+        _top = new DEEvent[_INITIAL_CAPACITY];
+        _topTimes = new double[_INITIAL_CAPACITY];
+        _bottom = new DEEvent[_INITIAL_CAPACITY];
+        _bottomTimes = new double[_INITIAL_CAPACITY];
+        _rungs = new Rung[_MAX_RUNGS];
+        for (int i = 0; i < _MAX_RUNGS; i++) {
+            _rungs[i] = new Rung();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         public methods                    ////
+
+    /** Append a listener to the current set of debug listeners.
+     *  @param listener A listener to which to send debug messages.
+     *  @see #removeDebugListener(DebugListener)
+     */
+    public synchronized void addDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            _debugListeners = new LinkedList();
+        } else if (_debugListeners.contains(listener)) {
+            return;
+        }
+        _debugListeners.add(listener);
+    }
+
+    /** Empty the event queue. This method is synchronized since there
+     *  may be actors running under different threads in the DE domain.
+     */
+    public synchronized void clear() {
+        Arrays.fill(_top, 0, _topCount, null);
+        _topCount = 0;
+        _topStart = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < _rungCount; i++) {
+            _rungs[i].clear();
+        }
+        _rungCount = 0;
+        Arrays.fill(_bottom, _bottomHead, _bottomTail, null);
+        _bottomHead = 0;
+        _bottomTail = 0;
+        _size = 0;
+        _set.clear();
+        _tags.clear();
+    }
+
+    /** Return the earliest DE event in the queue without removing it
+     *  from the queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    public synchronized final DEEvent get() {
+        if (_size == 0) {
+            throw new InvalidStateException("Cannot get from an empty "
+                    + "event queue.");
+        }
+        if (_bottomHead == _bottomTail) {
+            _fillBottom();
+        }
+        return _bottom[_bottomHead];
+    }
+
+    /** Return the time stamp of the earliest event in the queue whose
+     *  tag is strictly after the given one, from an index of the tags of
+     *  the events.
+     *  @param time The time stamp of the tag.
+     *  @param microstep The microstep of the tag.
+     *  @return The time stamp of the earliest later event, or null if
+     *   there is none.
+     */
+    public synchronized final Time getNextEventTimeAfter(Time time,
+            int microstep) {
+        return _tags.getNextTimeAfter(time, microstep);
+    }
+
+    /** Return true if this event queue is empty.
+     *  @return True if there are no event in the queue.
+     */
+    public synchronized final boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Put an event into the event queue.
+     *  If the given DE event is not in the event queue, enqueue it
+     *  into the event queue and notify all threads
+     *  that are stalled waiting for a DE event to be put in the queue.
+     *  This method is synchronized since there
+     *  may be actors running under different threads in the DE domain.
+     *  @param event The event to enqueue.
+     */
+    public synchronized final void put(DEEvent event) {
+        if (!_set.add(event)) {
+            return;
+        }
+        _tags.add(event);
+        _insert(event, event.timeStamp().getDoubleValue());
+        _size++;
+        if (_debugListeners != null) {
+            _debug("Put " + event);
+        }
+        notifyAll();
+    }
+
+    /** Unregister a debug listener.  If the specified listener has not
+     *  been previously registered, then do nothing.
+     *  @param listener The listener to remove from the list of listeners
+     *   to which debug messages are sent.
+     *  @see #addDebugListener(DebugListener)
+     */
+    public synchronized void removeDebugListener(DebugListener listener) {
+        if (_debugListeners == null) {
+            return;
+        }
+        _debugListeners.remove(listener);
+        if (_debugListeners.size() == 0) {
+            _debugListeners = null;
+        }
+    }
+
+    /** Return the size of the event queue.
+     *  @return The size of the event queue.
+     */
+    public synchronized final int size() {
+        return _size;
+    }
+
+    /** Dequeue the earliest DE event in this event queue.
+     *  @return The earliest DE event in the queue.
+     *  @exception InvalidStateException If the queue is empty.
+     */
+    public synchronized final DEEvent take() {
+        if (_size == 0) {
+            throw new InvalidStateException("Cannot take from an empty "
+                    + "event queue.");
+        }
+        if (_bottomHead == _bottomTail) {
+            _fillBottom();
+        }
+        DEEvent earliest = _bottom[_bottomHead];
+        _bottom[_bottomHead++] = null;
+        if (_bottomHead == _bottomTail) {
+            _bottomHead = 0;
+            _bottomTail = 0;
+        }
+        _size--;
+        _set.remove(earliest);
+        _tags.remove(earliest);
+        if (_debugListeners != null) {
+            _debug("Take " + earliest);
+        }
+        return earliest;
+    }
+
+    /** Return the events currently in the queue as an array, sorted
+     *  from the earliest to the latest.
+     *  @return The events currently in the queue.
+     */
+    public synchronized final Object[] toArray() {
+        Object[] array = new Object[_size];
+        int count = _bottomTail - _bottomHead;
+        System.arraycopy(_bottom, _bottomHead, array, 0, count);
+        for (int i = 0; i < _rungCount; i++) {
+            Rung rung = _rungs[i];
+            for (int bucket = rung.current; bucket < rung.bucketCount;
+                    bucket++) {
+                if (rung.counts[bucket] > 0) {
+                    System.arraycopy(rung.events[bucket], 0, array, count,
+                            rung.counts[bucket]);
+                    count += rung.counts[bucket];
+                }
+            }
+        }
+        System.arraycopy(_top, 0, array, count, _topCount);
+        Arrays.sort(array);
+        return array;
+    }
+
+    /** Describe the Contents of the queue as a string.
+     *  @return A string with a comma-separated list of events.
+     */
+    public String toString() {
+        Object[] array = toArray();
+        StringBuffer buffer = new StringBuffer("{");
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(array[i]);
+        }
+        buffer.append("}");
+        return buffer.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Insert an event into bottom, which is sorted.
+    private void _addToBottom(DEEvent event, double time) {
+        // Binary search of the first later event.
+        int low = _bottomHead;
+        int high = _bottomTail;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (_compare(_bottom[middle], _bottomTimes[middle], event,
+                    time) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if ((_bottomHead > 0)
+                && (((low - _bottomHead) < (_bottomTail - low))
+                        || (_bottomTail == _bottom.length))) {
+            // Shift the earlier events down, into the free space left
+            // by the takes.
+            _bottomHead--;
+            low--;
+            System.arraycopy(_bottom, _bottomHead + 1, _bottom, _bottomHead,
+                    low - _bottomHead);
+            System.arraycopy(_bottomTimes, _bottomHead + 1, _bottomTimes,
+                    _bottomHead, low - _bottomHead);
+        } else {
+            if (_bottomTail == _bottom.length) {
+                _growBottom();
+            }
+            System.arraycopy(_bottom, low, _bottom, low + 1, _bottomTail - low);
+            System.arraycopy(_bottomTimes, low, _bottomTimes, low + 1,
+                    _bottomTail - low);
+            _bottomTail++;
+        }
+        _bottom[low] = event;
+        _bottomTimes[low] = time;
+    }
+
+    // Append an event to top.
+    private void _addToTop(DEEvent event, double time) {
+        if (_topCount == _top.length) {
+            DEEvent[] top = new DEEvent[_topCount << 1];
+            System.arraycopy(_top, 0, top, 0, _topCount);
+            _top = top;
+            double[] topTimes = new double[_topCount << 1];
+            System.arraycopy(_topTimes, 0, topTimes, 0, _topCount);
+            _topTimes = topTimes;
+        }
+        _top[_topCount] = event;
+        _topTimes[_topCount++] = time;
+    }
+
+    // Move the events of a bucket to the empty bottom, sorted.
+    private void _bucketToBottom(Rung rung, int bucket) {
+        int count = rung.counts[bucket];
+        DEEvent[] events = rung.events[bucket];
+        double[] times = rung.times[bucket];
+        for (int i = 0; i < count; i++) {
+            _addToBottomUnsorted(events[i], times[i]);
+            events[i] = null;
+        }
+        rung.counts[bucket] = 0;
+        _sortBottom();
+    }
+
+    // Append an event to bottom, which has to be sorted afterwards.
+    private void _addToBottomUnsorted(DEEvent event, double time) {
+        if (_bottomTail == _bottom.length) {
+            _growBottom();
+        }
+        _bottom[_bottomTail] = event;
+        _bottomTimes[_bottomTail++] = time;
+    }
+
+    // Return a negative integer, zero, or a positive integer if the
+    // first event is earlier than, identical to or later than the second.
+    private static int _compare(DEEvent event1, double time1,
+            DEEvent event2, double time2) {
+        if (time1 < time2) {
+            return -1;
+        } else if (time1 > time2) {
+            return 1;
+        }
+        return event1.compareTo(event2);
+    }
+
+    // Send a debug message to the listeners.
+    private void _debug(String message) {
+        for (int i = 0; i < _debugListeners.size(); i++) {
+            ((DebugListener) _debugListeners.get(i)).message(message);
+        }
+    }
+
+    // Fill the empty bottom with the earliest events of the ladder, or
+    // of top if the ladder is empty. The queue must not be empty.
+    private void _fillBottom() {
+        while (true) {
+            if (_rungCount == 0) {
+                _topToLadder();
+                if (_bottomHead < _bottomTail) {
+                    return;
+                }
+                continue;
+            }
+            Rung rung = _rungs[_rungCount - 1];
+            while ((rung.current < rung.bucketCount)
+                    && (rung.counts[rung.current] == 0)) {
+                rung.current++;
+            }
+            if (rung.current == rung.bucketCount) {
+                _rungCount--;
+                continue;
+            }
+            // Events enqueued from now on in the region of this bucket
+            // go to a lower rung or to bottom.
+            int bucket = rung.current++;
+            if ((rung.counts[bucket] <= _THRESHOLD)
+                    || (_rungCount == _MAX_RUNGS) || !_spawn(rung, bucket)) {
+                _bucketToBottom(rung, bucket);
+                return;
+            }
+        }
+    }
+
+    // Double the capacity of bottom, compacting it to the start.
+    private void _growBottom() {
+        int count = _bottomTail - _bottomHead;
+        int capacity = Math.max(_bottom.length, count << 1);
+        DEEvent[] bottom = new DEEvent[capacity];
+        System.arraycopy(_bottom, _bottomHead, bottom, 0, count);
+        _bottom = bottom;
+        double[] bottomTimes = new double[capacity];
+        System.arraycopy(_bottomTimes, _bottomHead, bottomTimes, 0, count);
+        _bottomTimes = bottomTimes;
+        _bottomHead = 0;
+        _bottomTail = count;
+    }
+
+    // Insert an event in the tier where it belongs.
+    private void _insert(DEEvent event, double time) {
+        if ((time >= _topStart) && (_topStart != Double.POSITIVE_INFINITY)) {
+            _addToTop(event, time);
+            return;
+        }
+        for (int i = 0; i < _rungCount; i++) {
+            // A rung whose buckets have all been moved down keeps no
+            // event, those of its region go to the rungs below it.
+            Rung rung = _rungs[i];
+            int bucket = rung.bucketOf(time);
+            if ((bucket >= rung.current) && (rung.current < rung.bucketCount)) {
+                rung.add(Math.min(bucket, rung.bucketCount - 1), event, time);
+                return;
+            }
+        }
+        _addToBottom(event, time);
+        if (((_bottomTail - _bottomHead) > _THRESHOLD)
+                && (_rungCount < _MAX_RUNGS)) {
+            _spawnBottom();
+        }
+    }
+
+    // Sort bottom, after events have been appended to it.
+    private void _sortBottom() {
+        int count = _bottomTail - _bottomHead;
+        if (count <= _INSERTION_SORT_THRESHOLD) {
+            for (int i = _bottomHead + 1; i < _bottomTail; i++) {
+                DEEvent event = _bottom[i];
+                double time = _bottomTimes[i];
+                int j = i - 1;
+                while ((j >= _bottomHead)
+                        && (_compare(_bottom[j], _bottomTimes[j], event,
+                                time) > 0)) {
+                    _bottom[j + 1] = _bottom[j];
+                    _bottomTimes[j + 1] = _bottomTimes[j];
+                    j--;
+                }
+                _bottom[j + 1] = event;
+                _bottomTimes[j + 1] = time;
+            }
+        } else {
+            Arrays.sort(_bottom, _bottomHead, _bottomTail);
+            for (int i = _bottomHead; i < _bottomTail; i++) {
+                _bottomTimes[i] = _bottom[i].timeStamp().getDoubleValue();
+            }
+        }
+    }
+
+    // Spread the events of a bucket over a new rung, below the others.
+    // Return false if they all have the same time stamp, or if their
+    // range is too wide for a double.
+    private boolean _spawn(Rung parent, int bucket) {
+        int count = parent.counts[bucket];
+        DEEvent[] events = parent.events[bucket];
+        double[] times = parent.times[bucket];
+        double min = times[0];
+        double max = times[0];
+        for (int i = 1; i < count; i++) {
+            min = Math.min(min, times[i]);
+            max = Math.max(max, times[i]);
+        }
+        double width = (max - min) / count;
+        if (!(width > 0.0) || Double.isInfinite(width)) {
+            return false;
+        }
+        Rung rung = _rungs[_rungCount++];
+        rung.reset(min, width, count + 1);
+        for (int i = 0; i < count; i++) {
+            rung.add(Math.min(rung.bucketOf(times[i]), count), events[i],
+                    times[i]);
+            events[i] = null;
+        }
+        parent.counts[bucket] = 0;
+        return true;
+    }
+
+    // Spread the events of bottom, grown past the threshold, over a new
+    // rung below the others.
+    private void _spawnBottom() {
+        int count = _bottomTail - _bottomHead;
+        double min = _bottomTimes[_bottomHead];
+        double max = _bottomTimes[_bottomTail - 1];
+        double width = (max - min) / count;
+        if (!(width > 0.0) || Double.isInfinite(width)) {
+            return;
+        }
+        Rung rung = _rungs[_rungCount++];
+        rung.reset(min, width, count + 1);
+        for (int i = _bottomHead; i < _bottomTail; i++) {
+            rung.add(Math.min(rung.bucketOf(_bottomTimes[i]), count),
+                    _bottom[i], _bottomTimes[i]);
+            _bottom[i] = null;
+        }
+        _bottomHead = 0;
+        _bottomTail = 0;
+    }
+
+    // Move the events of top to the empty ladder, as its first rung, or
+    // to the empty bottom if they are few or share one time stamp.
+    // Events at positive infinity stay in top, unless top has nothing
+    // else.
+    private void _topToLadder() {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int finite = 0;
+        for (int i = 0; i < _topCount; i++) {
+            double time = _topTimes[i];
+            if (time != Double.POSITIVE_INFINITY) {
+                min = Math.min(min, time);
+                max = Math.max(max, time);
+                finite++;
+            }
+        }
+        if (finite == 0) {
+            // Nothing but events at infinity, and nothing goes to top
+            // any more.
+            for (int i = 0; i < _topCount; i++) {
+                _addToBottomUnsorted(_top[i], _topTimes[i]);
+                _top[i] = null;
+            }
+            _topCount = 0;
+            _topStart = Double.POSITIVE_INFINITY;
+            _sortBottom();
+            return;
+        }
+        double width = (max - min) / finite;
+        Rung rung = null;
+        if ((finite > _THRESHOLD) && (width > 0.0)
+                && !Double.isInfinite(width)) {
+            rung = _rungs[_rungCount++];
+            rung.reset(min, width, finite + 1);
+            // The start of top is past the last bucket, and past max
+            // even if the widths are too small for the precision.
+            _topStart = Math.max(min + ((finite + 1) * width), _nextUp(max));
+        } else {
+            _topStart = _nextUp(max);
+        }
+        int remaining = 0;
+        for (int i = 0; i < _topCount; i++) {
+            DEEvent event = _top[i];
+            double time = _topTimes[i];
+            _top[i] = null;
+            if (time == Double.POSITIVE_INFINITY) {
+                _top[remaining] = event;
+                _topTimes[remaining++] = time;
+            } else if (rung != null) {
+                rung.add(Math.min(rung.bucketOf(time), finite), event, time);
+            } else {
+                _addToBottomUnsorted(event, time);
+            }
+        }
+        _topCount = remaining;
+        if (rung == null) {
+            _sortBottom();
+        }
+    }
+
+    // Return the smallest double greater than the argument, which is
+    // finite.
+    private static double _nextUp(double value) {
+        if (value == 0.0) {
+            return Double.MIN_VALUE;
+        }
+        long bits = Double.doubleToLongBits(value);
+        return Double.longBitsToDouble(value > 0.0 ? bits + 1 : bits - 1);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private inner class               ////
+    // A rung of the ladder: buckets of the same width from a start time,
+    // the buckets before the current one having been emptied.
+    private static class Rung {
+        // Append an event to a bucket.
+        void add(int bucket, DEEvent event, double time) {
+            int count = counts[bucket];
+            if (events[bucket] == null) {
+                events[bucket] = new DEEvent[_BUCKET_CAPACITY];
+                times[bucket] = new double[_BUCKET_CAPACITY];
+            } else if (count == events[bucket].length) {
+                DEEvent[] grown = new DEEvent[count << 1];
+                System.arraycopy(events[bucket], 0, grown, 0, count);
+                events[bucket] = grown;
+                double[] grownTimes = new double[count << 1];
+                System.arraycopy(times[bucket], 0, grownTimes, 0, count);
+                times[bucket] = grownTimes;
+            }
+            events[bucket][count] = event;
+            times[bucket][count] = time;
+            counts[bucket] = count + 1;
+        }
+
+        // Return the index of the bucket of the given time, which may be
+        // negative or past the last bucket.
+        int bucketOf(double time) {
+            return (int) Math.floor((time - start) / width);
+        }
+
+        // Empty the rung.
+        void clear() {
+            for (int bucket = current; bucket < bucketCount; bucket++) {
+                if (counts[bucket] > 0) {
+                    Arrays.fill(events[bucket], 0, counts[bucket], null);
+                    counts[bucket] = 0;
+                }
+            }
+        }
+
+        // Prepare the empty rung for the given buckets, keeping the
+        // arrays of the buckets of its previous use.
+        void reset(double start, double width, int bucketCount) {
+            if ((counts == null) || (counts.length < bucketCount)) {
+                int capacity = Math.max(bucketCount, (counts == null) ? 0
+                        : counts.length << 1);
+                DEEvent[][] grownEvents = new DEEvent[capacity][];
+                double[][] grownTimes = new double[capacity][];
+                if (counts != null) {
+                    System.arraycopy(events, 0, grownEvents, 0, events.length);
+                    System.arraycopy(times, 0, grownTimes, 0, times.length);
+                }
+                events = grownEvents;
+                times = grownTimes;
+                counts = new int[capacity];
+            }
+            this.start = start;
+            this.width = width;
+            this.bucketCount = bucketCount;
+            current = 0;
+        }
+
+        // The number of buckets in use.
+        int bucketCount;
+
+        // The number of events in each bucket.
+        int[] counts;
+
+        // The index of the first bucket not yet moved down.
+        int current;
+
+        // The events of each bucket, unsorted.
+        DEEvent[][] events;
+
+        // The time of the start of the first bucket.
+        double start;
+
+        // The double values of the time stamps of the events of each
+        // bucket.
+        double[][] times;
+
+        // The width of the buckets.
+        double width;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+    // The initial capacity of the arrays of a bucket.
+    private static final int _BUCKET_CAPACITY = 4;
+
+    // The initial capacity of top and bottom.
+    private static final int _INITIAL_CAPACITY = 64;
+
+    // Below this number of events, bottom is sorted by insertion.
+    private static final int _INSERTION_SORT_THRESHOLD = 32;
+
+    // The maximum number of rungs.
+    private static final int _MAX_RUNGS = 8;
+
+    // A bucket with more events than this is spread over a new rung
+    // instead of being sorted into bottom, as is bottom when it grows
+    // past it.
+    private static final int _THRESHOLD = 50;
+
+    // The sorted earliest events, from _bottomHead to _bottomTail.
+    private DEEvent[] _bottom;
+
+    // The index of the earliest event of bottom.
+    private int _bottomHead;
+
+    // The index after the latest event of bottom.
+    private int _bottomTail;
+
+    // The double values of the time stamps of the events of bottom.
+    private double[] _bottomTimes;
+
+    // The list of DebugListeners registered with this object, or null
+    // if there are none.
+    private List _debugListeners;
+
+    // The number of rungs in use, the first ones of _rungs.
+    private int _rungCount;
+
+    // The rungs, from the coarsest to the finest.
+    private Rung[] _rungs;
+
+    // The events of the queue, to refuse identical events.
+    private DEEventSet _set = new DEEventSet();
+
+    // The number of events in the queue.
+    private int _size;
+
+    // The tags of the events, for getNextEventTimeAfter().
+    private DETagIndex _tags = new DETagIndex();
+
+    // The unsorted events at or after _topStart.
+    private DEEvent[] _top;
+
+    // The number of events in top.
+    private int _topCount;
+
+    // The time stamp from which events go to top.
+    private double _topStart = Double.NEGATIVE_INFINITY;
+
+    // The double values of the time stamps of the events of top.
+    private double[] _topTimes;
+}
@@ -0,0 +1,370 @@
+/* An index of the distinct tags of the events of an event queue.
+ */
+package ptolemy.myactors.MaximumEntropy.domain;
+
+import java.util.Arrays;
+
+import ptolemy.actor.util.Time;
+
+//////////////////////////////////////////////////////////////////////////
+//// DETagIndex
+
+/**
+ An index of the distinct tags, time stamp and microstep, of the events
+ of an event queue, with the number of events of each tag. It answers
+ {@link DEEventQueue#getNextEventTimeAfter(Time, int)} without looking at
+ the events themselves, and may index only some of the events of a queue,
+ as the director does with those of the federate actors.
+ <p>
+ The tags are kept in a binary heap, ordered as the events are but
+ without the depth, and in an open addressing hash table that finds the
+ entry of a tag when an event is added or removed. The earliest tag after
+ a given tag is found by walking down the heap from the root through the
+ tags not after the given one, which is O(1) when the given tag is that
+ of the earliest events, as it is when a director asks for its next
+ iteration time. Adding and removing an event is O(1) for a tag already
+ in the index, O(log n) otherwise.
+ <p>
+ The entries are kept in parallel arrays and reused, so that nothing is
+ allocated until the index has to grow. This class is not synchronized;
+ the queues using it are.
+
+ @author adapted by Alisson Brito
+ @see DEEventQueue
+ */
+final class DETagIndex {
+    /** Construct an empty index.
+     */
+    DETagIndex() {
+        _table = new int[_INITIAL_CAPACITY << 1];
+        _allocate(_INITIAL_CAPACITY);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         package methods                   ////
+
+    /** Count an event added to the queue.
+     *  @param event The event.
+     */
+    void add(DEEvent event) {
+        double time = event.timeStamp().getDoubleValue();
+        int microstep = event.microstep();
+        int mask = _table.length - 1;
+        int index = _hash(time, microstep) & mask;
+        int entry;
+        while ((entry = _table[index]) != 0) {
+            if (_isTag(entry - 1, event, time, microstep)) {
+                _counts[entry - 1]++;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        if (_size == _counts.length) {
+            _allocate(_counts.length << 1);
+            _add(event, time, microstep);
+        } else {
+            int slot = _free;
+            _free = _positions[slot];
+            _table[index] = slot + 1;
+            _setSlot(slot, event, time, microstep);
+        }
+    }
+
+    /** Remove all the tags.
+     */
+    void clear() {
+        Arrays.fill(_table, 0);
+        Arrays.fill(_timeStamps, null);
+        _size = 0;
+        _free = 0;
+        for (int i = 0; i < _counts.length; i++) {
+            _positions[i] = i + 1;
+        }
+    }
+
+    /** Return the time stamp of the earliest tag, or null if there is
+     *  none.
+     *  @return The time stamp of the earliest tag, or null.
+     */
+    Time getEarliestTime() {
+        return (_size == 0) ? null : _timeStamps[_heap[0]];
+    }
+
+    /** Return the time stamp of the earliest tag strictly after the
+     *  given one, or null if there is none.
+     *  @param time The time stamp of the tag.
+     *  @param microstep The microstep of the tag.
+     *  @return The time stamp of the earliest later tag, or null.
+     */
+    Time getNextTimeAfter(Time time, int microstep) {
+        double value = time.getDoubleValue();
+        int earliest = -1;
+        int top = 0;
+        if (_size > 0) {
+            _stack[top++] = 0;
+        }
+        while (top > 0) {
+            int position = _stack[--top];
+            int slot = _heap[position];
+            if (_isAfter(slot, time, value, microstep)) {
+                if ((earliest < 0) || _isBefore(slot, earliest)) {
+                    earliest = slot;
+                }
+            } else {
+                // The children of a tag not after the given one may be.
+                int child = (position << 1) + 1;
+                if (child < _size) {
+                    _stack[top++] = child;
+                }
+                if (child + 1 < _size) {
+                    _stack[top++] = child + 1;
+                }
+            }
+        }
+        return (earliest < 0) ? null : _timeStamps[earliest];
+    }
+
+    /** Count an event removed from the queue.
+     *  @param event The event.
+     */
+    void remove(DEEvent event) {
+        double time = event.timeStamp().getDoubleValue();
+        int microstep = event.microstep();
+        int mask = _table.length - 1;
+        int index = _hash(time, microstep) & mask;
+        int entry;
+        while ((entry = _table[index]) != 0) {
+            int slot = entry - 1;
+            if (_isTag(slot, event, time, microstep)) {
+                if (--_counts[slot] == 0) {
+                    _deleteFromTable(index);
+                    _deleteFromHeap(_positions[slot]);
+                    _timeStamps[slot] = null;
+                    _positions[slot] = _free;
+                    _free = slot;
+                }
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private methods                   ////
+
+    // Add the tag of an event to the table and the heap, which have room
+    // for it.
+    private void _add(DEEvent event, double time, int microstep) {
+        int mask = _table.length - 1;
+        int index = _hash(time, microstep) & mask;
+        while (_table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        int slot = _free;
+        _free = _positions[slot];
+        _table[index] = slot + 1;
+        _setSlot(slot, event, time, microstep);
+    }
+
+    // Grow the arrays to the given number of tags and rehash the table.
+    private void _allocate(int capacity) {
+        int old = (_counts == null) ? 0 : _counts.length;
+        _counts = _grow(_counts, capacity);
+        _heap = _grow(_heap, capacity);
+        _microsteps = _grow(_microsteps, capacity);
+        _positions = _grow(_positions, capacity);
+        _stack = new int[capacity];
+        double[] times = new double[capacity];
+        Time[] timeStamps = new Time[capacity];
+        if (old > 0) {
+            System.arraycopy(_times, 0, times, 0, old);
+            System.arraycopy(_timeStamps, 0, timeStamps, 0, old);
+        }
+        _times = times;
+        _timeStamps = timeStamps;
+        // The new slots are free; the old ones are all in use.
+        for (int i = old; i < capacity; i++) {
+            _positions[i] = i + 1;
+        }
+        _free = old;
+        if (old > 0) {
+            _table = new int[capacity << 1];
+            int mask = _table.length - 1;
+            for (int slot = 0; slot < old; slot++) {
+                int index = _hash(_times[slot], _microsteps[slot]) & mask;
+                while (_table[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                _table[index] = slot + 1;
+            }
+        }
+    }
+
+    // Remove the heap entry at the given position.
+    private void _deleteFromHeap(int position) {
+        int last = --_size;
+        if (position != last) {
+            int slot = _heap[last];
+            _heap[position] = slot;
+            _positions[slot] = position;
+            _siftDown(position);
+            _siftUp(_positions[slot]);
+        }
+    }
+
+    // Empty the slot of the table at the given index, moving back the
+    // entries of the same probe run that would no longer be found.
+    private void _deleteFromTable(int index) {
+        int mask = _table.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        int entry;
+        while ((entry = _table[next]) != 0) {
+            int home = _hash(_times[entry - 1], _microsteps[entry - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                _table[hole] = entry;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        _table[hole] = 0;
+    }
+
+    // Return a copy of the array with the given length.
+    private static int[] _grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, grown, 0, array.length);
+        }
+        return grown;
+    }
+
+    // Return a hash of a tag. Identical time stamps have identical double
+    // values.
+    private static int _hash(double time, int microstep) {
+        long bits = Double.doubleToLongBits(time + 0.0);
+        int hash = ((int) (bits ^ (bits >>> 32)) * 31) + microstep;
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Return true if the tag of the slot is strictly after the given tag.
+    private boolean _isAfter(int slot, Time time, double value,
+            int microstep) {
+        if (_times[slot] != value) {
+            return _times[slot] > value;
+        }
+        int comparison = _timeStamps[slot].compareTo(time);
+        if (comparison != 0) {
+            return comparison > 0;
+        }
+        return _microsteps[slot] > microstep;
+    }
+
+    // Return true if the tag of the first slot is before that of the
+    // second.
+    private boolean _isBefore(int slot1, int slot2) {
+        if (_times[slot1] != _times[slot2]) {
+            return _times[slot1] < _times[slot2];
+        }
+        int comparison = _timeStamps[slot1].compareTo(_timeStamps[slot2]);
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+        return _microsteps[slot1] < _microsteps[slot2];
+    }
+
+    // Return true if the slot holds the tag of the event.
+    private boolean _isTag(int slot, DEEvent event, double time,
+            int microstep) {
+        return (_times[slot] == time) && (_microsteps[slot] == microstep)
+                && (_timeStamps[slot].compareTo(event.timeStamp()) == 0);
+    }
+
+    // Fill a free slot with the tag of an event, counted once, and put
+    // it in the heap.
+    private void _setSlot(int slot, DEEvent event, double time,
+            int microstep) {
+        _times[slot] = time;
+        _timeStamps[slot] = event.timeStamp();
+        _microsteps[slot] = microstep;
+        _counts[slot] = 1;
+        _heap[_size] = slot;
+        _positions[slot] = _size;
+        _siftUp(_size++);
+    }
+
+    // Move the heap entry at the given position down to its place.
+    private void _siftDown(int position) {
+        int slot = _heap[position];
+        int child;
+        while ((child = (position << 1) + 1) < _size) {
+            if ((child + 1 < _size)
+                    && _isBefore(_heap[child + 1], _heap[child])) {
+                child++;
+            }
+            if (!_isBefore(_heap[child], slot)) {
+                break;
+            }
+            _heap[position] = _heap[child];
+            _positions[_heap[position]] = position;
+            position = child;
+        }
+        _heap[position] = slot;
+        _positions[slot] = position;
+    }
+
+    // Move the heap entry at the given position up to its place.
+    private void _siftUp(int position) {
+        int slot = _heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >> 1;
+            if (!_isBefore(slot, _heap[parent])) {
+                break;
+            }
+            _heap[position] = _heap[parent];
+            _positions[_heap[position]] = position;
+            position = parent;
+        }
+        _heap[position] = slot;
+        _positions[slot] = position;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    ////                         private variables                 ////
+    // The initial number of tags, a power of two.
+    private static final int _INITIAL_CAPACITY = 64;
+
+    // The number of events of the tag of each slot.
+    private int[] _counts;
+
+    // The first free slot, the others following through _positions.
+    private int _free;
+
+    // The slots of the tags, in heap order: the children of position i
+    // are at 2i + 1 and 2i + 2.
+    private int[] _heap;
+
+    // The microstep of the tag of each slot.
+    private int[] _microsteps;
+
+    // The position in the heap of each slot in use, the next free slot
+    // for the others.
+    private int[] _positions;
+
+    // The number of tags, in the heap.
+    private int _size;
+
+    // The positions to visit when looking for the next tag.
+    private int[] _stack;
+
+    // The hash table of the slots, plus one, 0 being empty; twice as
+    // large as the number of slots, so at most half full.
+    private int[] _table;
+
+    // The double value of the time stamp of the tag of each slot.
+    private double[] _times;
+
+    // The time stamp of the tag of each slot.
+    private Time[] _timeStamps;
+}
@@ -4,6 +4,11 @@ import hla.rti.ArrayIndexOutOfBounds;
 import hla.rti.RTIexception;
 import hla.rti.jlc.EncodingHelpers;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -11,6 +16,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import javax.management.JMException;
+
 import ptolemy.actor.Actor;
 import ptolemy.actor.CompositeActor;
 import ptolemy.actor.Director;
@@ -31,6 +38,7 @@ import ptolemy.data.type.BaseType;
 import ptolemy.graph.DirectedAcyclicGraph;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.Attribute;
+import ptolemy.kernel.util.DebugEvent;
 import ptolemy.kernel.util.DebugListener;
 import ptolemy.kernel.util.IllegalActionException;
 import ptolemy.kernel.util.InternalErrorException;
@@ -40,11 +48,21 @@ import ptolemy.kernel.util.Nameable;
 import ptolemy.kernel.util.NamedObj;
 import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
+import ptolemy.myactors.MaximumEntropy.AttributeCodecs;
 import ptolemy.myactors.MaximumEntropy.Attributes;
+import ptolemy.myactors.MaximumEntropy.FederateAmbassador;
+import ptolemy.myactors.MaximumEntropy.FederateSettings;
 import ptolemy.myactors.MaximumEntropy.Interaction;
+import ptolemy.myactors.MaximumEntropy.MappedChannelRing;
+import ptolemy.myactors.MaximumEntropy.MetricsRegistry;
+import ptolemy.myactors.MaximumEntropy.NioCoordinator;
 import ptolemy.myactors.MaximumEntropy.PtolemyFederate;
 import ptolemy.myactors.MaximumEntropy.PtolemyFederateActor;
+import ptolemy.myactors.MaximumEntropy.RTIPump;
+import ptolemy.myactors.MaximumEntropy.SampleBatch;
 import ptolemy.myactors.MaximumEntropy.SlaveFederate;
+import ptolemy.myactors.MaximumEntropy.SystemStatistics;
+import ptolemy.myactors.MaximumEntropy.TimeTrace;
 
 public abstract class HLADEDirector extends Director implements TimedDirector {
 
@@ -53,6 +71,13 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Start of the line printed by wrapup() with the statistics of the run
+	 * when headless, which the FederationLauncher reads from the federate
+	 * processes. Otherwise the line goes to the debug listeners.
+	 */
+	public static final String STATS_PREFIX = "HLADEDirector stats:";
+
 	protected PtolemyFederate rtiFederation;
 
 	public StringParameter federateName;
@@ -67,6 +92,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	public HLADEDirector() {
 		super();
 		_initParameters();
+		_createMetrics();
 	}
 
 	/**
@@ -80,6 +106,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	public HLADEDirector(Workspace workspace) {
 		super(workspace);
 		_initParameters();
+		_createMetrics();
 	}
 
 	/**
@@ -103,6 +130,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 			throws IllegalActionException, NameDuplicationException {
 		super(container, name);
 		_initParameters();
+		_createMetrics();
 	}
 
 	// /////////////////////////////////////////////////////////////////
@@ -131,6 +159,19 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	public Parameter minBinCount;
 
+	/**
+	 * The implementation of the event queue: "calendar" for the calendar queue
+	 * of Ptolemy II, tuned by <i>isCQAdaptive</i>, <i>minBinCount</i> and
+	 * <i>binCountFactor</i>; "heap" for a 4-ary heap, which is not slowed
+	 * down by many events at the same time stamp; "ladder" for a ladder
+	 * queue, for large queues with skewed time stamps; or "adaptive" for a
+	 * queue that samples the time stamps and moves between the other three
+	 * as the model changes, reporting its moves to the debug listeners of
+	 * the director. Changes to this parameter are ignored when the model is
+	 * running. The default is "calendar".
+	 */
+	public StringParameter eventQueueType;
+
 	/**
 	 * The start time of model. This parameter must contain a DoubleToken. The
 	 * value defaults to 0.0.
@@ -159,6 +200,188 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	public Parameter synchronizeToRealTime;
 
+	/**
+	 * Specify whether all the channel values produced in one firing of a
+	 * federate actor are sent to the RTI as a single attribute update. If
+	 * false, one update is sent per channel. This parameter must contain a
+	 * BooleanToken and defaults to false.
+	 */
+	public Parameter batchUpdates;
+
+	/**
+	 * The ordering of the attribute updates sent to the RTI: "receive" (no
+	 * time stamp), "timestamp" (federate time plus lookahead) or "both", which
+	 * sends every update twice. The default is "both".
+	 */
+	public StringParameter updateOrdering;
+
+	/**
+	 * The encoding of the channel values sent between master and slaves:
+	 * "string" for the original "canalN:value" text or "binary" for fixed
+	 * layout binary samples. All the federates of a federation must use the
+	 * same codec. The default is "string".
+	 */
+	public StringParameter attributeCodec;
+
+	/**
+	 * How many reflections received from the RTI can wait to be handed to the
+	 * federate actor. Reflections arriving when the queue is full are dropped.
+	 * This parameter must contain an IntToken and defaults to 4096.
+	 */
+	public Parameter receivedDataCapacity;
+
+	/**
+	 * If true, a background thread ticks the RTI and the director waits for
+	 * time advance grants on a condition instead of spinning on tick2(). The
+	 * thread polls the RTI, sleeping a tenth of <i>rtiPumpTimeout</i> when no
+	 * callback is pending. This parameter must contain a BooleanToken and
+	 * defaults to false.
+	 */
+	public Parameter rtiPumpThread;
+
+	/**
+	 * The longest, in seconds, one tick of the RTI pump thread delivers
+	 * callbacks, and so the longest the director waits to use the RTI. The
+	 * pump does not wait for callbacks while it holds the RTI: when none are
+	 * pending it sleeps a tenth of this time. This parameter must contain a
+	 * DoubleToken and defaults to 0.01.
+	 */
+	public Parameter rtiPumpTimeout;
+
+	/**
+	 * If true, the federation starts without dialogs: the master waits on
+	 * the ReadyToRun synchronization point until <i>numberOfSlaves</i> slaves
+	 * have joined, and a slave joins with <i>federateName</i> and waits for
+	 * the master. This parameter must contain a BooleanToken and defaults to
+	 * false, which asks the user when all federates are started.
+	 */
+	public Parameter headless;
+
+	/**
+	 * How long, in seconds, a headless federate waits for the other federates
+	 * before initialize() fails; 0 waits forever. This parameter must contain
+	 * a DoubleToken and defaults to 60.0.
+	 */
+	public Parameter startupTimeout;
+
+	/**
+	 * If true, the channel values are routed with Data Distribution
+	 * Management: the master updates each canalN attribute with the region
+	 * of its channel and a slave subscribes with its own region, so the RTI
+	 * only delivers to a slave the channels it covers. The FOM must give the
+	 * canalN attributes a routing space. It cannot be used with a
+	 * <i>dataPlaneDirectory</i>. This parameter must contain a BooleanToken
+	 * and defaults to false.
+	 */
+	public Parameter useDDM;
+
+	/**
+	 * The routing space of the channel regions. The default, an empty
+	 * string, uses the one the FOM gives the canalN attributes.
+	 */
+	public StringParameter routingSpace;
+
+	/**
+	 * If true, the time advance after a federate actor firing is only
+	 * requested: the director keeps firing the local events already covered
+	 * by the last grant and waits for the grant only when the next event is
+	 * later than it. If false, the director waits for every grant. This
+	 * parameter must contain a BooleanToken and defaults to false.
+	 */
+	public Parameter pipelinedTimeAdvance;
+
+	/**
+	 * If true, the lookahead of the federate follows the event queue: the
+	 * federate joins with <i>minimumLookahead</i>, and after each federate
+	 * actor firing the lookahead is set to the distance between the granted
+	 * time and the earliest time the model can send an update, no more than
+	 * 1000. A lower value only takes effect once the federate has advanced
+	 * past the promise of the previous one. If false, the lookahead stays at
+	 * 1000. This parameter must contain a BooleanToken and defaults to false.
+	 */
+	public Parameter adaptiveLookahead;
+
+	/**
+	 * The smallest delay between an event of the model, other than one of a
+	 * federate actor, and an update sent to the RTI: the adaptive lookahead
+	 * counts on it, so the model must not send an update earlier. It is also
+	 * the lookahead the federate joins with when it is adaptive. A zero
+	 * lookahead lets the federate actor be refired at the same time over and
+	 * over, so keep it positive unless the model needs it. This parameter
+	 * must contain a DoubleToken and defaults to 1.0.
+	 */
+	public Parameter minimumLookahead;
+
+	/**
+	 * How the federate advances its time after a federate actor firing:
+	 * "timeAdvanceRequest" asks for the granted time plus the lookahead and
+	 * refires the federate actor there; "nextEventRequest" asks for the time
+	 * of the next local event and is granted earlier if a time stamped update
+	 * arrives first, so model time jumps straight from one event to the next.
+	 * The default is "timeAdvanceRequest".
+	 */
+	public StringParameter timeManagement;
+
+	/**
+	 * The RTI the federate talks to: "certi", the default, for a CERTI rtig,
+	 * "loopback" for the other federates of this JVM, through a
+	 * LoopbackFederation, or "nio" for a NioCoordinator reached over a
+	 * socket; the last two need no RTI.
+	 */
+	public StringParameter rtiBackend;
+
+	/**
+	 * The host:port of the NioCoordinator, used with the "nio" rtiBackend.
+	 * The default is "localhost:7878".
+	 */
+	public StringParameter nioCoordinator;
+
+	/**
+	 * The directory of the memory-mapped channel rings through which the
+	 * master sends the channel values to the slaves of the same host, the RTI
+	 * only carrying time management. The master and its slaves must name the
+	 * same directory. A channel is sent through its ring once a slave of the
+	 * host has opened it, through the RTI otherwise, so a channel read that
+	 * way must have a single slave: a second one fails to open it. The
+	 * default, an empty string, sends the values through the RTI. Values are
+	 * delivered at their time stamp with timeAdvanceRequest; with
+	 * nextEventRequest the RTI does not know about them, so they can arrive
+	 * with a later grant.
+	 */
+	public StringParameter dataPlaneDirectory;
+
+	/**
+	 * The size in bytes of the record area of each channel ring. A value that
+	 * does not fit goes through the RTI. This parameter must contain an
+	 * IntToken and defaults to 1048576.
+	 */
+	public Parameter dataPlaneCapacity;
+
+	/**
+	 * The CSV file to which the metrics of the run are appended at wrapup,
+	 * one row per metric: firings, event queue depth, updates and samples
+	 * sent, samples received, time advance grant waits, and the memory and
+	 * CPU usage at the end of the run. The default, an empty string, writes
+	 * no file.
+	 */
+	public StringParameter metricsFile;
+
+	/**
+	 * If true, publish the metrics over JMX while the model runs, as an MBean
+	 * named after the federate in the "ptolemy.hla" domain. This parameter
+	 * must contain a BooleanToken and defaults to false.
+	 */
+	public Parameter exportJMX;
+
+	/**
+	 * The directory in which the federate writes the binary trace of its
+	 * time management, named after the federate: its time advance requests,
+	 * the grants, the updates sent and the reflections received. The traces
+	 * of the federates of a run are merged by the TraceAnalyzer. The default,
+	 * an empty string, records no trace.
+	 */
+	public StringParameter traceDirectory;
+
 	private int iteractions = 0;
 
 	// /////////////////////////////////////////////////////////////////
@@ -181,11 +404,42 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		super.addDebugListener(listener);
 	}
 
+	/**
+	 * Clone the director into the specified workspace. The new object has its
+	 * own metrics registry, which is not registered as an MBean, its own
+	 * buffers, event pool and federation, and no event queue or trace until
+	 * it is initialized.
+	 * 
+	 * @param workspace
+	 *            The workspace for the new object.
+	 * @return A new HLADEDirector.
+	 * @exception CloneNotSupportedException
+	 *                If one of the attributes cannot be cloned.
+	 */
+	public Object clone(Workspace workspace) throws CloneNotSupportedException {
+		HLADEDirector newObject = (HLADEDirector) super.clone(workspace);
+		newObject._createMetrics();
+		newObject._receivedData = new ArrayList<Attributes>();
+		newObject.rtiFederation = new SlaveFederate();
+		newObject._eventQueue = null;
+		newObject._eventPool = new DEEventPool();
+		newObject._federateEvents = new DETagIndex();
+		newObject._lastRTITime = null;
+		newObject._timeTrace = null;
+		newObject._actorToDepth = null;
+		newObject._portToDepth = null;
+		newObject._disabledActors = null;
+		newObject._sortValid = -1;
+		newObject._lastFederateActor = null;
+		newObject._executiveNextTime = null;
+		return newObject;
+	}
+
 	/**
 	 * Update the director parameters when attributes are changed. Changes to
-	 * <i>isCQAdaptive</i>, <i>minBinCount</i>, and <i>binCountFactor</i>
-	 * parameters will only be effective on the next time when the model is
-	 * executed.
+	 * <i>isCQAdaptive</i>, <i>minBinCount</i>, <i>binCountFactor</i> and
+	 * <i>eventQueueType</i> parameters will only be effective on the next
+	 * time when the model is executed.
 	 * 
 	 * @param attribute
 	 *            The changed parameter.
@@ -210,6 +464,122 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		} else if (attribute == synchronizeToRealTime) {
 			_synchronizeToRealTime = ((BooleanToken) synchronizeToRealTime
 					.getToken()).booleanValue();
+		} else if (attribute == batchUpdates) {
+			_batchUpdates = ((BooleanToken) batchUpdates.getToken())
+					.booleanValue();
+		} else if (attribute == updateOrdering) {
+			String ordering = updateOrdering.stringValue();
+			if (!ordering.equals(FederateSettings.RECEIVE_ORDER)
+					&& !ordering.equals(FederateSettings.TIMESTAMP_ORDER)
+					&& !ordering.equals(FederateSettings.BOTH_ORDERS)) {
+				throw new IllegalActionException(this,
+						"Unknown update ordering: " + ordering);
+			}
+			_updateOrdering = ordering;
+		} else if (attribute == eventQueueType) {
+			String type = eventQueueType.stringValue();
+			if (!DEEventQueues.isKnown(type)) {
+				throw new IllegalActionException(this, "Unknown event queue: "
+						+ type);
+			}
+			_eventQueueType = type;
+		} else if (attribute == attributeCodec) {
+			String codec = attributeCodec.stringValue();
+			try {
+				AttributeCodecs.forName(codec);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalActionException(this, e.getMessage());
+			}
+			_attributeCodec = codec;
+		} else if (attribute == receivedDataCapacity) {
+			int capacity = ((IntToken) receivedDataCapacity.getToken())
+					.intValue();
+			if (capacity < 1) {
+				throw new IllegalActionException(this,
+						"Cannot set a non-positive receivedDataCapacity: "
+								+ capacity);
+			}
+			_receivedDataCapacity = capacity;
+		} else if (attribute == rtiPumpThread) {
+			_rtiPumpThread = ((BooleanToken) rtiPumpThread.getToken())
+					.booleanValue();
+		} else if (attribute == rtiPumpTimeout) {
+			double timeout = ((DoubleToken) rtiPumpTimeout.getToken())
+					.doubleValue();
+			if (timeout <= 0.0) {
+				throw new IllegalActionException(this,
+						"Cannot set a non-positive rtiPumpTimeout: " + timeout);
+			}
+			_rtiPumpTimeout = timeout;
+		} else if (attribute == useDDM) {
+			_useDDM = ((BooleanToken) useDDM.getToken()).booleanValue();
+		} else if (attribute == routingSpace) {
+			_routingSpace = routingSpace.stringValue().trim();
+		} else if (attribute == headless) {
+			_headless = ((BooleanToken) headless.getToken()).booleanValue();
+		} else if (attribute == startupTimeout) {
+			double timeout = ((DoubleToken) startupTimeout.getToken())
+					.doubleValue();
+			if (timeout < 0.0) {
+				throw new IllegalActionException(this,
+						"Cannot set a negative startupTimeout: " + timeout);
+			}
+			_startupTimeout = timeout;
+		} else if (attribute == pipelinedTimeAdvance) {
+			_pipelinedTimeAdvance = ((BooleanToken) pipelinedTimeAdvance
+					.getToken()).booleanValue();
+		} else if (attribute == adaptiveLookahead) {
+			_adaptiveLookahead = ((BooleanToken) adaptiveLookahead.getToken())
+					.booleanValue();
+		} else if (attribute == minimumLookahead) {
+			double lookahead = ((DoubleToken) minimumLookahead.getToken())
+					.doubleValue();
+			if (lookahead < 0.0) {
+				throw new IllegalActionException(this,
+						"Cannot set a negative minimumLookahead: " + lookahead);
+			}
+			_minimumLookahead = lookahead;
+		} else if (attribute == timeManagement) {
+			String management = timeManagement.stringValue();
+			if (!management.equals(FederateSettings.TIME_ADVANCE_REQUEST)
+					&& !management.equals(FederateSettings.NEXT_EVENT_REQUEST)) {
+				throw new IllegalActionException(this,
+						"Unknown time management: " + management);
+			}
+			_nextEventRequest = management
+					.equals(FederateSettings.NEXT_EVENT_REQUEST);
+		} else if (attribute == rtiBackend) {
+			String backend = rtiBackend.stringValue();
+			if (!backend.equals(FederateSettings.CERTI_BACKEND)
+					&& !backend.equals(FederateSettings.LOOPBACK_BACKEND)
+					&& !backend.equals(FederateSettings.NIO_BACKEND)) {
+				throw new IllegalActionException(this, "Unknown RTI backend: "
+						+ backend);
+			}
+			_rtiBackend = backend;
+		} else if (attribute == nioCoordinator) {
+			String address = nioCoordinator.stringValue().trim();
+			if (address.length() == 0) {
+				throw new IllegalActionException(this,
+						"The nioCoordinator address cannot be empty");
+			}
+			_nioCoordinator = address;
+		} else if (attribute == dataPlaneDirectory) {
+			_dataPlaneDirectory = dataPlaneDirectory.stringValue().trim();
+		} else if (attribute == dataPlaneCapacity) {
+			int capacity = ((IntToken) dataPlaneCapacity.getToken()).intValue();
+			if (capacity < 64) {
+				throw new IllegalActionException(this,
+						"Cannot set a dataPlaneCapacity below 64 bytes: "
+								+ capacity);
+			}
+			_dataPlaneCapacity = capacity;
+		} else if (attribute == metricsFile) {
+			_metricsFile = metricsFile.stringValue().trim();
+		} else if (attribute == traceDirectory) {
+			_traceDirectory = traceDirectory.stringValue().trim();
+		} else if (attribute == exportJMX) {
+			_exportJMX = ((BooleanToken) exportJMX.getToken()).booleanValue();
 		} else {
 			super.attributeChanged(attribute);
 		}
@@ -245,6 +615,10 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	public void fire() throws IllegalActionException {
 		// NOTE: This fire method does not call super.fire()
 		// because this method is very different from that of the super class.
+		// The executive director may have fired other actors since the last
+		// firing.
+		_executiveNextTime = null;
+
 		// A BIG while loop that handles all events with the same tag.
 		while (true) {
 			// Find the next actor to be fired.
@@ -321,6 +695,8 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 						+ "  with microstep as " + _microstep);
 			}
 
+			_queueDepth.set(_eventQueue.size());
+
 			// Keep firing the actor to be fired until there are no more input
 			// tokens available in any of its input ports, or its prefire()
 			// method returns false.
@@ -357,6 +733,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 					_debug(new FiringEvent(this, actorToFire,
 							FiringEvent.BEFORE_FIRE));
 					actorToFire.fire();
+					_firings.increment();
 					_debug(new FiringEvent(this, actorToFire,
 							FiringEvent.AFTER_FIRE));
 
@@ -405,34 +782,19 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 					// Interaction inter =
 					// rtiFederation.receivedData(nextHLAEventTime());
 
-					Attributes attrs = rtiFederation.receivedData(nextHLAEventTime());
-
-					if (attrs != null) {
-						// syso
-						// System.out.println("  ### Evento HLA recebido em " +
-						// attrs.getReceivedTime().toString());
-
-						if (actorToFire instanceof PtolemyFederateActor) {
-							PtolemyFederateActor fedActor = (PtolemyFederateActor) actorToFire;
-							
+					// All the reflections the RTI delivered up to the granted
+					// time, earliest first, go to the actor in this firing.
+					if (actorToFire instanceof PtolemyFederateActor) {
+						_receivedData.clear();
+						int received = rtiFederation.drainReceivedData(
+								rtiFederation.getRTITime(), _receivedData);
+						if (received > 0) {
+							_samplesReceived.add(received);
 							// angelo - mudando de Interaction para Attributes
 							// fedActor.addInteractionToSend(inter);//angelo -
 							// envia a interaction - comentei
-							// if(aux1 > 99){
-							// aux1 = 0;
-							fedActor.updateAtributesToSend(attrs);
-							// }else{
-							// aux1++;
-							// }
-							double nextTime = nextHLAEventTime(); // era normal
-							rtiFederation.consumeReceivedData(nextTime); // era
-																			// normal
-							// try {
-							// this.rtiFederation.advanceTimeTo(nextTime);
-							// } catch (RTIexception e) {
-							// e.printStackTrace();
-							// }
-							// System.out.println("masterrr");
+							((PtolemyFederateActor) actorToFire)
+									.updateAtributesToSend(_receivedData);
 						}
 					}
 
@@ -443,14 +805,33 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 					if (actorToFire instanceof PtolemyFederateActor) {
 
 						PtolemyFederateActor fedActor = (PtolemyFederateActor) actorToFire;
+						_lastFederateActor = fedActor;
 
 						fedActor.fire();
+						_firings.increment();
+
+						// the actor is done with the reflections, their
+						// buffers go back to the federate ambassador
+						if (!_receivedData.isEmpty()) {
+							rtiFederation.recycleReceivedData(_receivedData);
+							_receivedData.clear();
+						}
 						try {
+							_reportLoad();
 
 							// if(aux > 1){
 							if (fedActor.hasDataToSend()) {
-								String k = fedActor.getDataToSend().stringValue();
-								this.rtiFederation.sendData(k);
+								// typed samples, encoded by the codec of the
+								// attributeCodec parameter
+								SampleBatch samples = fedActor
+										.getSamplesToSend();
+								_updatesSent.increment();
+								_samplesSent.add(samples.size());
+								if (_timeTrace != null) {
+									_timeTrace.send(rtiFederation.getRTITime(),
+											samples.size());
+								}
+								this.rtiFederation.sendData(samples);
 								//System.out.println("Data sent to HLA: " + k);
 								// syso
 								// System.out.println("\t*** HLADirector - Data sent by "+
@@ -462,25 +843,60 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 							aux = 0;
 							double nextTime = nextHLAEventTime();
 
-							double certiTime = rtiFederation.getRTINextTime();
+							if (_adaptiveLookahead) {
+								_updateLookahead();
+							}
+							double certiTime;
+							if (_nextEventRequest) {
+								// the next local event, the RTI may grant an
+								// earlier time if an update comes first
+								certiTime = _nextLocalEventTime();
+							} else {
+								certiTime = rtiFederation.getRTINextTime();
+							}
 
-							this.rtiFederation.advanceTimeTo(certiTime);
+							if (_timeTrace != null) {
+								_timeTrace.request(certiTime);
+							}
+							if (_pipelinedTimeAdvance) {
+								// don't wait, the grant is awaited in
+								// _getNextActorToFire() when an event needs it
+								this.rtiFederation.requestTimeAdvance(certiTime);
+							} else {
+								long waitStart = System.nanoTime();
+								this.rtiFederation.advanceTimeTo(certiTime);
+								_grantWait.record(System.nanoTime() - waitStart);
+							}
 
 							// aki
-							if (certiTime < nextTime)
-								this.fireAt((Actor) fedActor, new Time(this,
-										certiTime));
+							if (_nextEventRequest) {
+								// refire at the grant: the next local event,
+								// or an earlier update to hand to the actor
+								double granted = _pipelinedTimeAdvance ? certiTime
+										: rtiFederation.getRTITime();
+								if (granted > getModelTime().getDoubleValue()
+										|| rtiFederation.hasReceivedData(granted)) {
+									this.fireAt((Actor) fedActor,
+											_timeAt(granted));
+								}
+							} else if (certiTime < nextTime)
+								this.fireAt((Actor) fedActor,
+										_timeAt(certiTime));
 							// this.rtiFederation.advanceTimeTo(nextTime);
 							// }else{
 							// aux++;
 							// }
 
 						} catch (RTIexception e) {
-							// System.out.println("testandoooo");
-							e.printStackTrace();
+							// a federate that lost the RTI cannot go on
+							// unsynchronized
+							throw new IllegalActionException(this, e,
+									"Cannot exchange data with the RTI at "
+											+ getModelTime());
 						}
 					} else {
 						actorToFire.fire();
+						_firings.increment();
 					}
 					// System.out.println("slavesss");
 				}
@@ -571,48 +987,104 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		}
 	}
 
-	private double nextHLAEventTime() {
-		Time aFutureTime = Time.POSITIVE_INFINITY;
-
-		// Record the model next iteration time as the tag of the the earliest
-		// event in the queue.
-		if (_eventQueue.size() > 0) {
-			aFutureTime = _eventQueue.get().timeStamp();
+	/**
+	 * Set the lookahead of the federate to a safe lower bound of the time of
+	 * its next update: an event of a federate actor may send at its own time,
+	 * any other event can only reach a federate actor <i>minimumLookahead</i>
+	 * later, and the earliest event of the queue is the earliest of those.
+	 * The lookahead is never raised above that bound, only kept positive as
+	 * the RTI requires. The federate stamps its updates no lower than the
+	 * promise of a lookahead it lowers, until it has advanced past it. The
+	 * RTI is only told when the value changes.
+	 */
+	private void _updateLookahead() throws RTIexception {
+		double bound = Double.POSITIVE_INFINITY;
+		synchronized (_eventQueue) {
+			if (!_eventQueue.isEmpty()) {
+				bound = _eventQueue.get().timeStamp().getDoubleValue()
+						+ _minimumLookahead;
+			}
+			Time federateTime = _federateEvents.getEarliestTime();
+			if (federateTime != null) {
+				bound = Math.min(bound, federateTime.getDoubleValue());
+			}
 		}
+		double lookahead = bound - rtiFederation.getRTITime();
+		lookahead = Math.min(lookahead, FederateAmbassador.DEFAULT_LOOKAHEAD);
+		lookahead = Math.max(lookahead, getTimeResolution());
+		rtiFederation.setLookahead(lookahead);
+	}
 
-		// Iterate the event queue to find the earliest event with a bigger tag
-		// ((either timestamp or microstop). If such an event exists,
-		// use its time as the model next iteration time. If no such event
-		// exists, it means that the model next iteration time still needs to
-		// be resolved. In other words, the model next iteration time is
-		// just the current time.
-		Object[] events = _eventQueue.toArray();
-		for (int i = 0; i < events.length; i++) {
-			DEEvent event = (DEEvent) events[i];
-			// if(event.actor() instanceof PtolemyFederateActor){
-
-			Time eventTime = event.timeStamp();
-			int eventMicrostep = event.microstep();
-			if (eventTime.compareTo(getModelTime()) > 0
-					|| eventMicrostep > _microstep) {
-				aFutureTime = eventTime;
-				break;
+	/**
+	 * Return the time of the earliest event later than the current model
+	 * time, the time a next event request asks for. If there is none, the
+	 * stop time, or the granted time plus the lookahead if there is no stop
+	 * time.
+	 */
+	private double _nextLocalEventTime() {
+		// a tag after any microstep of the current time: a later time
+		Time nextTime = _eventQueue.getNextEventTimeAfter(getModelTime(),
+				Integer.MAX_VALUE);
+		double next = (nextTime == null) ? Double.POSITIVE_INFINITY
+				: nextTime.getDoubleValue();
+		if (next == Double.POSITIVE_INFINITY) {
+			next = getModelStopTime().getDoubleValue();
+			if (next == Double.POSITIVE_INFINITY) {
+				next = rtiFederation.getRTINextTime();
 			}
-			// }
 		}
+		return next;
+	}
 
-		// Go through hierarchy to find the minimum step.
-		Director executiveDirector = ((CompositeActor) getContainer())
-				.getExecutiveDirector();
-		if (executiveDirector != null) {
-			Time aFutureTimeOfUpperLevel = executiveDirector
-					.getModelNextIterationTime();
-			if (aFutureTime.compareTo(aFutureTimeOfUpperLevel) > 0) {
-				aFutureTime = aFutureTimeOfUpperLevel;
+	/**
+	 * Wait for the pending time advance grants until the given event time is
+	 * covered by a grant, or no request is pending any more.
+	 */
+	private void _awaitTimeAdvance(Time eventTime)
+			throws IllegalActionException {
+		double time = eventTime.getDoubleValue();
+		try {
+			while (rtiFederation.isTimeAdvancePending()
+					&& time > rtiFederation.getRTITime()) {
+				long waitStart = System.nanoTime();
+				rtiFederation.awaitTimeAdvance();
+				_grantWait.record(System.nanoTime() - waitStart);
+			}
+			// a next event request granted before the event: an update came
+			// first, the federate actor takes it at the granted time
+			double granted = rtiFederation.getRTITime();
+			if (_nextEventRequest && granted < time
+					&& _lastFederateActor != null
+					&& rtiFederation.hasReceivedData(granted)) {
+				fireAt((Actor) _lastFederateActor, _timeAt(Math.max(
+						granted, getModelTime().getDoubleValue())));
 			}
+		} catch (RTIexception e) {
+			throw new IllegalActionException(this, e,
+					"Time advance to " + time + " failed");
 		}
+	}
+
+	private double nextHLAEventTime() {
+		return getModelNextIterationTime().getDoubleValue();
+	}
 
-		return aFutureTime.getDoubleValue();
+	/**
+	 * Return the model next iteration time of the executive director. It is
+	 * asked once per tag of this director: within a tag it only changes when
+	 * this director requests a firing from the executive director, which
+	 * drops the cached value, as does the start of each firing.
+	 */
+	private Time _getExecutiveNextIterationTime(Director executiveDirector) {
+		Time now = getModelTime();
+		if (_executiveNextTime == null
+				|| _executiveNextTimeMicrostep != _microstep
+				|| now.compareTo(_executiveNextTimeTag) != 0) {
+			_executiveNextTime = executiveDirector.getModelNextIterationTime();
+			_executiveNextTimeTag = now;
+			_executiveNextTimeMicrostep = _microstep;
+		}
+		return _executiveNextTime;
 	}
 
 	/**
@@ -659,6 +1131,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 			}
 			// Enqueue a pure event to fire the container of this director.
 			container.getExecutiveDirector().fireAt(container, time);
+			_executiveNextTime = null;
 		}
 	}
 
@@ -710,6 +1183,56 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		return _eventQueue;
 	}
 
+	/**
+	 * Return the federate of this director, the one of the last
+	 * initialization.
+	 * 
+	 * @return The federate talking to the RTI.
+	 */
+	public PtolemyFederate getRTIFederation() {
+		return rtiFederation;
+	}
+
+	/**
+	 * Return the number of actor firings since the last initialization,
+	 * federate actor firings included.
+	 * 
+	 * @return The number of firings.
+	 */
+	public long getFiringCount() {
+		return _firings.get();
+	}
+
+	/**
+	 * Return the metrics of this director, reset at each initialization.
+	 * 
+	 * @return The metrics registry.
+	 */
+	public MetricsRegistry getMetrics() {
+		return _metrics;
+	}
+
+	/**
+	 * Return the CPU time the thread running the model used between the last
+	 * initialization and its wrapup, in milliseconds.
+	 * 
+	 * @return The CPU time, or -1 if the JVM does not measure it or the model
+	 *         has not wrapped up yet.
+	 */
+	public long getCpuTime() {
+		return _cpuTime;
+	}
+
+	/**
+	 * Return the real time between the last initialization and its wrapup, in
+	 * milliseconds.
+	 * 
+	 * @return The wall time, or -1 if the model has not wrapped up yet.
+	 */
+	public long getWallTime() {
+		return _wallTime;
+	}
+
 	/**
 	 * Return the timestamp of the next event in the queue. The next iteration
 	 * time, for example, is used to estimate the run-ahead time, when a
@@ -725,23 +1248,17 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		// event in the queue.
 		if (_eventQueue.size() > 0) {
 			aFutureTime = _eventQueue.get().timeStamp();
-		}
 
-		// Iterate the event queue to find the earliest event with a bigger tag
-		// ((either timestamp or microstop). If such an event exists,
-		// use its time as the model next iteration time. If no such event
-		// exists, it means that the model next iteration time still needs to
-		// be resolved. In other words, the model next iteration time is
-		// just the current time.
-		Object[] events = _eventQueue.toArray();
-		for (int i = 0; i < events.length; i++) {
-			DEEvent event = (DEEvent) events[i];
-			Time eventTime = event.timeStamp();
-			int eventMicrostep = event.microstep();
-			if (eventTime.compareTo(getModelTime()) > 0
-					|| eventMicrostep > _microstep) {
-				aFutureTime = eventTime;
-				break;
+			// Ask the tag index of the event queue for the earliest event with
+			// a bigger tag (either timestamp or microstep). If such an event
+			// exists, use its time as the model next iteration time. If no
+			// such event exists, it means that the model next iteration time
+			// still needs to be resolved. In other words, the model next
+			// iteration time is just the current time.
+			Time nextTime = _eventQueue.getNextEventTimeAfter(getModelTime(),
+					_microstep);
+			if (nextTime != null) {
+				aFutureTime = nextTime;
 			}
 		}
 
@@ -749,8 +1266,8 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		Director executiveDirector = ((CompositeActor) getContainer())
 				.getExecutiveDirector();
 		if (executiveDirector != null) {
-			Time aFutureTimeOfUpperLevel = executiveDirector
-					.getModelNextIterationTime();
+			Time aFutureTimeOfUpperLevel = _getExecutiveNextIterationTime(
+					executiveDirector);
 			if (aFutureTime.compareTo(aFutureTimeOfUpperLevel) > 0) {
 				aFutureTime = aFutureTimeOfUpperLevel;
 			}
@@ -839,6 +1356,8 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	public void initialize() throws IllegalActionException {
 		_isInitializing = true;
 		_eventQueue.clear();
+		_federateEvents.clear();
+		_lastRTITime = null;
 
 		// Reset the following private variables.
 		_disabledActors = null;
@@ -847,6 +1366,10 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		_noMoreActorsToFire = false;
 		_realStartTime = System.currentTimeMillis();
 		_stopFireRequested = false;
+		_metrics.reset();
+		_cpuStartTime = _currentThreadCpuTime();
+		_cpuTime = -1;
+		_wallTime = -1;
 
 		super.initialize();
 
@@ -857,11 +1380,38 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 				.stringValue();
 		String fedFileName = ((StringToken) (this.federateFile.getToken()))
 				.stringValue();
+
+		rtiFederation = _createRTIFederation(_rtiBackend);
+		if (_traceDirectory.length() > 0) {
+			File directory = new File(_traceDirectory);
+			directory.mkdirs();
+			try {
+				_timeTrace = new TimeTrace(new File(directory, name
+						+ TimeTrace.FILE_SUFFIX), name);
+			} catch (IOException e) {
+				throw new IllegalActionException(this, e,
+						"Cannot create the time trace of " + name + " in "
+								+ _traceDirectory);
+			}
+		}
+		rtiFederation.configure(_createFederateSettings());
+
 		try {
 			rtiFederation.createFederate(name, fedFileName);
 		} catch (RTIexception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			// the model cannot run without the federation, and a launcher
+			// waiting for it must see the failure
+			throw new IllegalActionException(this, e,
+					"Cannot join the federation as " + name);
+		}
+
+		if (_exportJMX) {
+			try {
+				_metrics.registerMBean(name);
+			} catch (JMException e) {
+				throw new IllegalActionException(this, e,
+						"Cannot publish the metrics of " + name + " over JMX");
+			}
 		}
 
 		// Register the stop time as an event such that the model is
@@ -1070,7 +1620,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		// modal model and this director was in an inactive mode before
 		// we reached the time of the event.
 		while (modelTime.compareTo(nextEventTime) > 0) {
-			_eventQueue.take();
+			_eventPool.release(_takeEvent());
 
 			if (!_eventQueue.isEmpty()) {
 				nextEventTime = _eventQueue.get().timeStamp();
@@ -1144,7 +1694,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	public void preinitialize() throws IllegalActionException {
 		// Initialize an event queue.
-		_eventQueue = new DECQEventQueue(
+		_eventQueue = DEEventQueues.forName(_eventQueueType,
 				((IntToken) minBinCount.getToken()).intValue(),
 				((IntToken) binCountFactor.getToken()).intValue(),
 				((BooleanToken) isCQAdaptive.getToken()).booleanValue());
@@ -1293,13 +1843,157 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		super.wrapup();
 		_disabledActors = null;
 		_eventQueue.clear();
+		_federateEvents.clear();
 		_noMoreActorsToFire = false;
 		_microstep = 0;
+
+		_wallTime = System.currentTimeMillis() - _realStartTime;
+		long cpu = _currentThreadCpuTime();
+		_cpuTime = cpu < 0 || _cpuStartTime < 0 ? -1
+				: (cpu - _cpuStartTime) / 1000000L;
+		long firings = _firings.get();
+		double rate = _wallTime > 0 ? firings * 1000.0 / _wallTime : 0.0;
+		String name = ((StringToken) federateName.getToken()).stringValue();
+		long dropped = rtiFederation.getDroppedDataCount();
+		_reflectionsDropped.set(dropped);
+		String stats = STATS_PREFIX + " federate=" + name + " events="
+				+ firings + " wallMs=" + _wallTime + " cpuMs=" + _cpuTime
+				+ " eventsPerSecond=" + Math.round(rate) + " dropped="
+				+ dropped;
+		if (_headless) {
+			// read by the FederationLauncher, which starts us headless
+			System.out.println(stats);
+		} else if (_debugging) {
+			_debug(stats);
+		}
+		if (dropped > 0) {
+			System.err.println("HLADEDirector: " + name + " dropped " + dropped
+					+ " reflections, raise receivedDataCapacity");
+		}
+
+		if (_metricsFile.length() > 0 || _exportJMX) {
+			// read once per run, Sigar stays out of the firings
+			_metrics.gauge("director.wallMs").set(_wallTime);
+			_metrics.gauge("director.cpuMs").set(_cpuTime);
+			_metrics.gauge("system.memoryPercent").set(
+					Math.round(SystemStatistics.getMemoryPercent()));
+			_metrics.gauge("system.cpuPercent").set(
+					Math.round(SystemStatistics.getCpuPercent()));
+			_metrics.gauge("system.jvmMemoryPercent").set(
+					Math.round(SystemStatistics.getJvmMemoryPercent()));
+		}
+		if (_metricsFile.length() > 0) {
+			try {
+				_metrics.appendCsv(new File(_metricsFile), name + "@"
+						+ _realStartTime);
+			} catch (IOException e) {
+				throw new IllegalActionException(this, e,
+						"Cannot write the metrics to " + _metricsFile);
+			}
+		}
+		try {
+			_metrics.unregisterMBean();
+		} catch (JMException e) {
+			throw new IllegalActionException(this, e,
+					"Cannot remove the metrics MBean of " + name);
+		}
+		if (_timeTrace != null) {
+			TimeTrace trace = _timeTrace;
+			_timeTrace = null;
+			try {
+				trace.close();
+			} catch (IOException e) {
+				throw new IllegalActionException(this, e,
+						"Cannot write the time trace of " + name);
+			}
+		}
 	}
 
 	// /////////////////////////////////////////////////////////////////
 	// // protected methods ////
 
+	/**
+	 * Called after each firing of the federate actor, so that a slave can
+	 * report its backlog to the master. This base class does nothing.
+	 * 
+	 * @exception RTIexception
+	 *                If the report cannot be sent.
+	 */
+	protected void _reportLoad() throws RTIexception {
+	}
+
+	/**
+	 * Return the federate talking to the given RTI backend, called at each
+	 * initialization before the federate is configured. This base class keeps
+	 * the current federate; the master and slave directors return the
+	 * federate of their role for the backend.
+	 * 
+	 * @param backend
+	 *            "certi", "loopback" or "nio".
+	 * @return The federate to use in this run.
+	 * @exception IllegalActionException
+	 *                If the backend is not supported.
+	 */
+	protected PtolemyFederate _createRTIFederation(String backend)
+			throws IllegalActionException {
+		return rtiFederation;
+	}
+
+	/**
+	 * Return the options handed to the federate before it joins the
+	 * federation, built from the parameters of this director. Subclasses
+	 * override this method to add the options of their own parameters.
+	 * 
+	 * @return The federate settings.
+	 * @exception IllegalActionException
+	 *                If a parameter value cannot be read.
+	 */
+	protected FederateSettings _createFederateSettings()
+			throws IllegalActionException {
+		FederateSettings settings = new FederateSettings();
+		settings.setBatchUpdates(_batchUpdates);
+		settings.setUpdateOrdering(_updateOrdering);
+		settings.setAttributeCodec(_attributeCodec);
+		settings.setReceivedDataCapacity(_receivedDataCapacity);
+		settings.setRtiPumpThread(_rtiPumpThread);
+		settings.setRtiPumpTimeout(_rtiPumpTimeout);
+		settings.setHeadless(_headless);
+		settings.setUseDDM(_useDDM);
+		settings.setRoutingSpace(_routingSpace);
+		settings.setStartupTimeout(_startupTimeout);
+		settings.setTimeManagement(_nextEventRequest ? FederateSettings.NEXT_EVENT_REQUEST
+				: FederateSettings.TIME_ADVANCE_REQUEST);
+		settings.setRtiBackend(_rtiBackend);
+		settings.setNioCoordinator(_nioCoordinator);
+		settings.setDataPlaneDirectory(_dataPlaneDirectory);
+		settings.setDataPlaneCapacity(_dataPlaneCapacity);
+		if (_useDDM && settings.isDataPlane()) {
+			// a slave reads the ring of its own channel only, not those of
+			// its region
+			throw new IllegalActionException(this,
+					"Cannot use a dataPlaneDirectory with useDDM.");
+		}
+		settings.setTimeTrace(_timeTrace);
+		if (_adaptiveLookahead) {
+			// start low, the adaptive lookahead is raised at once but lowered
+			// only as the federate advances
+			settings.setLookahead(Math.max(_minimumLookahead,
+					getTimeResolution()));
+		}
+		if (_debugging) {
+			// the RTI callbacks are only described when someone listens
+			settings.setDebugListener(new DebugListener() {
+				public void event(DebugEvent event) {
+				}
+
+				public void message(String message) {
+					_debug(message);
+				}
+			});
+		}
+		return settings;
+	}
+
 	/**
 	 * Put a pure event into the event queue to schedule the given actor to fire
 	 * at the specified timestamp.
@@ -1363,8 +2057,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 							+ " depth = " + depth);
 		}
 
-		DEEvent newEvent = new DEEvent(actor, time, microstep, depth);
-		_eventQueue.put(newEvent);
+		_putEvent(_eventPool.acquire(actor, time, microstep, depth));
 	}
 
 	/**
@@ -1407,9 +2100,8 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		}
 
 		// Register this trigger event.
-		DEEvent newEvent = new DEEvent(ioPort, getModelTime(), _microstep,
-				depth);
-		_eventQueue.put(newEvent);
+		_putEvent(_eventPool.acquire(ioPort, getModelTime(), _microstep,
+				depth));
 	}
 
 	// /////////////////////////////////////////////////////////////////
@@ -1832,6 +2524,20 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		}
 	}
 
+	/**
+	 * Return the CPU time used so far by the calling thread.
+	 * 
+	 * @return The CPU time in nanoseconds, or -1 if the JVM does not measure
+	 *         it.
+	 */
+	private static long _currentThreadCpuTime() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!threads.isCurrentThreadCpuTimeSupported()) {
+			return -1;
+		}
+		return threads.getCurrentThreadCpuTime();
+	}
+
 	/**
 	 * Dequeue the events that have the smallest tag from the event queue.
 	 * Return their destination actor. Advance the model tag to their tag. If
@@ -2017,6 +2723,12 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 				// and update the current tag with the event tag.
 				Time currentTime;
 
+				// Pipelined time advance: the local events up to the last
+				// grant are safe, a later one waits for the pending grant.
+				if (_pipelinedTimeAdvance) {
+					_awaitTimeAdvance(nextEvent.timeStamp());
+				}
+
 				if (_synchronizeToRealTime) {
 					// If synchronized to the real time.
 					synchronized (_eventQueue) {
@@ -2032,6 +2744,15 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 							// the DE domain has an upper limit on running
 							// time of Double.MAX_VALUE milliseconds.
 							double elapsedTimeInSeconds = elapsedTime / 1000.0;
+
+							// An event more than one time resolution behind
+							// the real time is due whatever the quantization
+							// below, so that it needs no Time object.
+							if (currentTime.getDoubleValue()
+									+ getTimeResolution() < elapsedTimeInSeconds) {
+								break;
+							}
+
 							ptolemy.actor.util.Time elapsed = new ptolemy.actor.util.Time(
 									this, elapsedTimeInSeconds);
 							if (currentTime.compareTo(elapsed) <= 0) {
@@ -2104,7 +2825,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 				// Will this cause problems, such as setting time backwards?
 				// TESTIT How to??
 				synchronized (_eventQueue) {
-					lastFoundEvent = _eventQueue.take();
+					lastFoundEvent = _takeEvent();
 					currentTime = lastFoundEvent.timeStamp();
 					actorToFire = lastFoundEvent.actor();
 
@@ -2119,6 +2840,8 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 						}
 
 						actorToFire = null;
+						_eventPool.release(lastFoundEvent);
+						lastFoundEvent = null;
 
 						// start a new iteration of the loop:
 						// LOOPLABEL::GetNextEvent
@@ -2132,18 +2855,22 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 
 					// aki
 					// HLA: Time avanced now based on RTI, and not on Ptolemy!
-					Time rtiTime = new Time(this,
-							rtiFederation.getRTINextTime());
+					// Compare the doubles, a Time is needed only when the
+					// RTI time is earlier than the event.
+					double rtiTime = rtiFederation.getRTINextTime();
 
 					// syso
 					// System.out.println("\t\tNext Ptolemy CurrentTime = " +
 					// currentTime.toString() + " Next CERTI Time = " +
-					// rtiTime.toString());
+					// rtiTime);
 
-					if (rtiTime.getDoubleValue() < currentTime.getDoubleValue()) {
+					if (_nextEventRequest) {
+						// the grant covers the event, jump straight to it
+						setModelTime(currentTime);
+					} else if (rtiTime < currentTime.getDoubleValue()) {
 						// System.out.println("\n %%%% Ptolemy time advanced to : "
 						// + rtiTime);
-						setModelTime(rtiTime);
+						setModelTime(_timeAt(rtiTime));
 					} else {
 						// System.out.println("\n %%%% Ptolemy time advanced to : "
 						// + currentTime);
@@ -2162,6 +2889,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 					}
 
 					_exceedStopTime = true;
+					_eventPool.release(lastFoundEvent);
 					return null;
 				}
 			} else { // if (actorToFire == null)
@@ -2177,7 +2905,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 					// by fireAt() calls. The Repeat actor, for one, produces a
 					// sequence
 					// of outputs, each of which will have the same microstep.
-					_eventQueue.take();
+					_eventPool.release(_takeEvent());
 				} else if (nextEvent.hasTheSameTagAs(lastFoundEvent)) {
 					// The actor to be fired is the container, we remove all
 					// the trigger events with the same tag from the event
@@ -2185,7 +2913,7 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 					// can react to these events.
 					Actor actor = nextEvent.actor();
 					if (actor == actorToFire) {
-						_eventQueue.take();
+						_eventPool.release(_takeEvent());
 					} else {
 						// Next event has a future tag or a different
 						// destination.
@@ -2198,10 +2926,26 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 			}
 		} // close the loop: LOOPLABEL::GetNextEvent
 
+		// The events of this iteration have been compared with the first
+		// one, which can now be reused.
+		_eventPool.release(lastFoundEvent);
+
 		// Note that the actor to be fired can be null.
 		return actorToFire;
 	}
 
+	// create the metrics registry of this director and its metrics.
+	private void _createMetrics() {
+		_metrics = new MetricsRegistry();
+		_firings = _metrics.counter("director.firings");
+		_queueDepth = _metrics.gauge("director.eventQueueDepth");
+		_updatesSent = _metrics.counter("rti.updatesSent");
+		_samplesSent = _metrics.counter("rti.samplesSent");
+		_samplesReceived = _metrics.counter("rti.samplesReceived");
+		_reflectionsDropped = _metrics.gauge("rti.reflectionsDropped");
+		_grantWait = _metrics.histogram("rti.grantWaitNanos");
+	}
+
 	// initialize parameters. Set all parameters to their default values.
 	private void _initParameters() {
 
@@ -2257,6 +3001,109 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 			binCountFactor.setTypeEquals(BaseType.INT);
 			binCountFactor.setVisibility(Settable.EXPERT);
 
+			eventQueueType = new StringParameter(this, "eventQueueType");
+			eventQueueType.setExpression(DEEventQueues.CALENDAR);
+			eventQueueType.addChoice(DEEventQueues.CALENDAR);
+			eventQueueType.addChoice(DEEventQueues.HEAP);
+			eventQueueType.addChoice(DEEventQueues.LADDER);
+			eventQueueType.addChoice(DEEventQueues.ADAPTIVE);
+			eventQueueType.setVisibility(Settable.EXPERT);
+
+			batchUpdates = new Parameter(this, "batchUpdates");
+			batchUpdates.setExpression("false");
+			batchUpdates.setTypeEquals(BaseType.BOOLEAN);
+
+			updateOrdering = new StringParameter(this, "updateOrdering");
+			updateOrdering.setExpression(FederateSettings.BOTH_ORDERS);
+			updateOrdering.addChoice(FederateSettings.RECEIVE_ORDER);
+			updateOrdering.addChoice(FederateSettings.TIMESTAMP_ORDER);
+			updateOrdering.addChoice(FederateSettings.BOTH_ORDERS);
+
+			attributeCodec = new StringParameter(this, "attributeCodec");
+			attributeCodec.setExpression(AttributeCodecs.STRING);
+			attributeCodec.addChoice(AttributeCodecs.STRING);
+			attributeCodec.addChoice(AttributeCodecs.BINARY);
+
+			receivedDataCapacity = new Parameter(this, "receivedDataCapacity");
+			receivedDataCapacity.setExpression(Integer
+					.toString(FederateAmbassador.DEFAULT_RECEIVED_DATA_CAPACITY));
+			receivedDataCapacity.setTypeEquals(BaseType.INT);
+			receivedDataCapacity.setVisibility(Settable.EXPERT);
+
+			rtiPumpThread = new Parameter(this, "rtiPumpThread");
+			rtiPumpThread.setExpression("false");
+			rtiPumpThread.setTypeEquals(BaseType.BOOLEAN);
+
+			rtiPumpTimeout = new Parameter(this, "rtiPumpTimeout");
+			rtiPumpTimeout.setExpression(Double
+					.toString(RTIPump.DEFAULT_TICK_TIMEOUT));
+			rtiPumpTimeout.setTypeEquals(BaseType.DOUBLE);
+			rtiPumpTimeout.setVisibility(Settable.EXPERT);
+
+			headless = new Parameter(this, "headless");
+			headless.setExpression("false");
+			headless.setTypeEquals(BaseType.BOOLEAN);
+
+			startupTimeout = new Parameter(this, "startupTimeout");
+			startupTimeout.setExpression(Double
+					.toString(FederateSettings.DEFAULT_STARTUP_TIMEOUT));
+			startupTimeout.setTypeEquals(BaseType.DOUBLE);
+
+			useDDM = new Parameter(this, "useDDM");
+			useDDM.setExpression("false");
+			useDDM.setTypeEquals(BaseType.BOOLEAN);
+
+			routingSpace = new StringParameter(this, "routingSpace");
+			routingSpace.setExpression("");
+			routingSpace.setVisibility(Settable.EXPERT);
+
+			pipelinedTimeAdvance = new Parameter(this, "pipelinedTimeAdvance");
+			pipelinedTimeAdvance.setExpression("false");
+			pipelinedTimeAdvance.setTypeEquals(BaseType.BOOLEAN);
+
+			adaptiveLookahead = new Parameter(this, "adaptiveLookahead");
+			adaptiveLookahead.setExpression("false");
+			adaptiveLookahead.setTypeEquals(BaseType.BOOLEAN);
+
+			minimumLookahead = new Parameter(this, "minimumLookahead");
+			minimumLookahead.setExpression("1.0");
+			minimumLookahead.setTypeEquals(BaseType.DOUBLE);
+
+			timeManagement = new StringParameter(this, "timeManagement");
+			timeManagement.setExpression(FederateSettings.TIME_ADVANCE_REQUEST);
+			timeManagement.addChoice(FederateSettings.TIME_ADVANCE_REQUEST);
+			timeManagement.addChoice(FederateSettings.NEXT_EVENT_REQUEST);
+
+			rtiBackend = new StringParameter(this, "rtiBackend");
+			rtiBackend.setExpression(FederateSettings.CERTI_BACKEND);
+			rtiBackend.addChoice(FederateSettings.CERTI_BACKEND);
+			rtiBackend.addChoice(FederateSettings.LOOPBACK_BACKEND);
+			rtiBackend.addChoice(FederateSettings.NIO_BACKEND);
+
+			nioCoordinator = new StringParameter(this, "nioCoordinator");
+			nioCoordinator.setExpression("localhost:"
+					+ NioCoordinator.DEFAULT_PORT);
+
+			dataPlaneDirectory = new StringParameter(this, "dataPlaneDirectory");
+			dataPlaneDirectory.setExpression("");
+			dataPlaneDirectory.setVisibility(Settable.EXPERT);
+
+			dataPlaneCapacity = new Parameter(this, "dataPlaneCapacity");
+			dataPlaneCapacity.setExpression(Integer
+					.toString(MappedChannelRing.DEFAULT_CAPACITY));
+			dataPlaneCapacity.setTypeEquals(BaseType.INT);
+			dataPlaneCapacity.setVisibility(Settable.EXPERT);
+
+			metricsFile = new StringParameter(this, "metricsFile");
+			metricsFile.setExpression("");
+
+			traceDirectory = new StringParameter(this, "traceDirectory");
+			traceDirectory.setExpression("");
+
+			exportJMX = new Parameter(this, "exportJMX");
+			exportJMX.setExpression("false");
+			exportJMX.setTypeEquals(BaseType.BOOLEAN);
+
 			timeResolution.setVisibility(Settable.FULL);
 			timeResolution.moveToLast();
 		} catch (KernelException e) {
@@ -2265,6 +3112,43 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		}
 	}
 
+	/**
+	 * Put an event into the event queue, and return it to the pool if the
+	 * queue refuses it, an identical event being already in the queue.
+	 * 
+	 * @param event
+	 *            The event, from the pool.
+	 * @exception IllegalActionException
+	 *                If the event queue cannot enqueue the event.
+	 */
+	private void _putEvent(DEEvent event) throws IllegalActionException {
+		synchronized (_eventQueue) {
+			int size = _eventQueue.size();
+			_eventQueue.put(event);
+			if (_eventQueue.size() == size) {
+				_eventPool.release(event);
+			} else if (event.actor() instanceof PtolemyFederateActor) {
+				_federateEvents.add(event);
+			}
+		}
+	}
+
+	/**
+	 * Take the first event from the event queue, and forget it in the index
+	 * of the events of the federate actors. The queue must not be empty.
+	 * 
+	 * @return The first event of the queue.
+	 */
+	private DEEvent _takeEvent() {
+		synchronized (_eventQueue) {
+			DEEvent event = _eventQueue.take();
+			if (event.actor() instanceof PtolemyFederateActor) {
+				_federateEvents.remove(event);
+			}
+			return event;
+		}
+	}
+
 	/**
 	 * Request that the container of this director be refired in some future
 	 * time specified by the first event of the local event queue. This method
@@ -2288,6 +3172,25 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 		// Enqueue a pure event to fire the container of this director.
 		container.getExecutiveDirector().fireAt(container,
 				nextEvent.timeStamp());
+		_executiveNextTime = null;
+	}
+
+	/**
+	 * Return the model time of the given double value. The RTI grants the
+	 * same time several times, to the federate actor and to the next event,
+	 * so that the last one is kept and returned again rather than building
+	 * a new Time object each time.
+	 * 
+	 * @param time
+	 *            The double value of the time.
+	 * @return The model time.
+	 */
+	private Time _timeAt(double time) {
+		if ((_lastRTITime == null) || (_lastRTITimeValue != time)) {
+			_lastRTITime = new Time(this, time);
+			_lastRTITimeValue = time;
+		}
+		return _lastRTITime;
 	}
 
 	// /////////////////////////////////////////////////////////////////
@@ -2309,9 +3212,18 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	private Set _disabledActors;
 
+	/** The events taken from the queue, to be reused by _enqueueEvent(). */
+	private DEEventPool _eventPool = new DEEventPool();
+
 	/** The queue used for sorting events. */
 	private DEEventQueue _eventQueue;
 
+	/**
+	 * The tags of the events of the federate actors in the queue, for the
+	 * adaptive lookahead.
+	 */
+	private DETagIndex _federateEvents = new DETagIndex();
+
 	/**
 	 * Set to true when the time stamp of the token to be dequeue has exceeded
 	 * the stopTime.
@@ -2324,6 +3236,25 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	private boolean _isInitializing = false;
 
+	/** The last time returned by _timeAt(), or null. */
+	private Time _lastRTITime;
+
+	/** The double value of _lastRTITime. */
+	private double _lastRTITimeValue;
+
+	/**
+	 * The model next iteration time of the executive director at the tag
+	 * _executiveNextTimeTag, _executiveNextTimeMicrostep, or null if it has to
+	 * be asked again.
+	 */
+	private Time _executiveNextTime = null;
+
+	/** The microstep at which _executiveNextTime was asked. */
+	private int _executiveNextTimeMicrostep;
+
+	/** The model time at which _executiveNextTime was asked. */
+	private Time _executiveNextTimeTag;
+
 	/** The current microstep. */
 	private int _microstep = 0;
 
@@ -2368,4 +3299,112 @@ public abstract class HLADEDirector extends Director implements TimedDirector {
 	 */
 	private boolean _synchronizeToRealTime;
 
+	/** The value of the batchUpdates parameter. */
+	private boolean _batchUpdates = false;
+
+	/** The value of the updateOrdering parameter. */
+	private String _updateOrdering = FederateSettings.BOTH_ORDERS;
+
+	/** The value of the eventQueueType parameter. */
+	private String _eventQueueType = DEEventQueues.CALENDAR;
+
+	/** The value of the attributeCodec parameter. */
+	private String _attributeCodec = AttributeCodecs.STRING;
+
+	/** The value of the receivedDataCapacity parameter. */
+	private int _receivedDataCapacity = FederateAmbassador.DEFAULT_RECEIVED_DATA_CAPACITY;
+
+	/** The value of the rtiPumpThread parameter. */
+	private boolean _rtiPumpThread = false;
+
+	/** The value of the rtiPumpTimeout parameter. */
+	private double _rtiPumpTimeout = RTIPump.DEFAULT_TICK_TIMEOUT;
+
+	/** The counters, gauges and histograms of the runs of this director. */
+	private MetricsRegistry _metrics;
+
+	/** Actor firings since the last initialization. */
+	private MetricsRegistry.Counter _firings;
+
+	/** Events in the queue when an actor is selected to fire. */
+	private MetricsRegistry.Gauge _queueDepth;
+
+	/** Calls to sendData(), one per firing of the federate actor at most. */
+	private MetricsRegistry.Counter _updatesSent;
+
+	/** Samples handed to sendData(). */
+	private MetricsRegistry.Counter _samplesSent;
+
+	/** Reflections handed to the federate actor. */
+	private MetricsRegistry.Counter _samplesReceived;
+
+	/** Reflections the federate dropped, its inbound queue being full. */
+	private MetricsRegistry.Gauge _reflectionsDropped;
+
+	/** Time spent waiting for time advance grants, in nanoseconds. */
+	private MetricsRegistry.Histogram _grantWait;
+
+	/** The value of the metricsFile parameter. */
+	private String _metricsFile = "";
+
+	/** The value of the exportJMX parameter. */
+	private boolean _exportJMX = false;
+
+	/** The value of the traceDirectory parameter. */
+	private String _traceDirectory = "";
+
+	/** The trace of this run, null if the run is not traced. */
+	private TimeTrace _timeTrace;
+
+	/** CPU time of the model thread at initialization, in nanoseconds. */
+	private long _cpuStartTime = -1;
+
+	/** CPU time of the last run in milliseconds, -1 if unknown. */
+	private long _cpuTime = -1;
+
+	/** Wall time of the last run in milliseconds, -1 if unknown. */
+	private long _wallTime = -1;
+
+	/** The value of the useDDM parameter. */
+	private boolean _useDDM = false;
+
+	/** The value of the routingSpace parameter. */
+	private String _routingSpace = "";
+
+	/** The value of the headless parameter. */
+	private boolean _headless = false;
+
+	/** The value of the startupTimeout parameter. */
+	private double _startupTimeout = FederateSettings.DEFAULT_STARTUP_TIMEOUT;
+
+	/** The value of the pipelinedTimeAdvance parameter. */
+	private boolean _pipelinedTimeAdvance = false;
+
+	/** The value of the adaptiveLookahead parameter. */
+	private boolean _adaptiveLookahead = false;
+
+	/** The value of the minimumLookahead parameter. */
+	private double _minimumLookahead = 1.0;
+
+	/** True if the timeManagement parameter is "nextEventRequest". */
+	private boolean _nextEventRequest = false;
+
+	/** The value of the rtiBackend parameter. */
+	private String _rtiBackend = FederateSettings.CERTI_BACKEND;
+
+	/** The value of the nioCoordinator parameter. */
+	private String _nioCoordinator = "localhost:" + NioCoordinator.DEFAULT_PORT;
+
+	/** The value of the dataPlaneDirectory parameter. */
+	private String _dataPlaneDirectory = "";
+
+	/** The value of the dataPlaneCapacity parameter. */
+	private int _dataPlaneCapacity = MappedChannelRing.DEFAULT_CAPACITY;
+
+	/** The federate actor fired last, refired when a grant comes early. */
+	private PtolemyFederateActor _lastFederateActor;
+
+	/** The reflections drained for one firing, reused between firings. */
+	private List<Attributes> _receivedData = new ArrayList<Attributes>();
+
 }
@@ -26,11 +26,20 @@
  */
 package ptolemy.myactors.MaximumEntropy.domain;
 
+import ptolemy.data.IntToken;
+import ptolemy.data.expr.Parameter;
+import ptolemy.data.type.BaseType;
 import ptolemy.kernel.CompositeEntity;
 import ptolemy.kernel.util.IllegalActionException;
+import ptolemy.kernel.util.InternalErrorException;
+import ptolemy.kernel.util.KernelException;
 import ptolemy.kernel.util.NameDuplicationException;
 import ptolemy.kernel.util.Workspace;
+import ptolemy.myactors.MaximumEntropy.FederateSettings;
+import ptolemy.myactors.MaximumEntropy.LoopbackFederate;
 import ptolemy.myactors.MaximumEntropy.MasterFederate;
+import ptolemy.myactors.MaximumEntropy.NioFederate;
+import ptolemy.myactors.MaximumEntropy.PtolemyFederate;
 
 //////////////////////////////////////////////////////////////////////////
 //// DEDirector
@@ -58,6 +67,7 @@ public class MasterHLADEDirector extends HLADEDirector{
 		
 		super();
 		rtiFederation = new MasterFederate();
+		_initMasterParameters();
 	}
 
 	/** Construct a director in the workspace with an empty name.
@@ -68,6 +78,7 @@ public class MasterHLADEDirector extends HLADEDirector{
 	public MasterHLADEDirector(Workspace workspace) {
 		super(workspace);
 		rtiFederation = new MasterFederate();
+		_initMasterParameters();
 	}
 
 	/** Construct a director in the given container with the given name.
@@ -86,6 +97,68 @@ public class MasterHLADEDirector extends HLADEDirector{
 			throws IllegalActionException, NameDuplicationException {
 		super(container, name);
 		rtiFederation = new MasterFederate();
-		
+		_initMasterParameters();
+	}
+
+	///////////////////////////////////////////////////////////////////
+	////                         parameters                        ////
+
+	/** The number of slaves the master waits for before the federation
+	 *  starts, with the loopback and nio RTI backends or when the director
+	 *  is headless. This parameter must contain
+	 *  an IntToken that is not negative. The value defaults to 1.
+	 */
+	public Parameter numberOfSlaves;
+
+	///////////////////////////////////////////////////////////////////
+	////                         protected methods                 ////
+
+	/** Return a master federate for the given RTI backend.
+	 *  @param backend "certi", "loopback" or "nio".
+	 *  @return The current federate if it already talks to that backend,
+	 *   a new one otherwise.
+	 */
+	protected PtolemyFederate _createRTIFederation(String backend) {
+		if (backend.equals(FederateSettings.LOOPBACK_BACKEND)) {
+			return new LoopbackFederate(true);
+		}
+		if (backend.equals(FederateSettings.NIO_BACKEND)) {
+			return new NioFederate(true);
+		}
+		if (rtiFederation instanceof MasterFederate) {
+			return rtiFederation;
+		}
+		return new MasterFederate();
+	}
+
+	/** Add the number of slaves to the settings of the base class.
+	 *  @return The federate settings.
+	 *  @exception IllegalActionException If the number of slaves is
+	 *   negative.
+	 */
+	protected FederateSettings _createFederateSettings()
+			throws IllegalActionException {
+		FederateSettings settings = super._createFederateSettings();
+		int slaves = ((IntToken) numberOfSlaves.getToken()).intValue();
+		if (slaves < 0) {
+			throw new IllegalActionException(this,
+					"numberOfSlaves cannot be negative, was " + slaves);
+		}
+		settings.setNumberOfSlaves(slaves);
+		return settings;
+	}
+
+	///////////////////////////////////////////////////////////////////
+	////                         private methods                   ////
+
+	private void _initMasterParameters() {
+		try {
+			numberOfSlaves = new Parameter(this, "numberOfSlaves");
+			numberOfSlaves.setExpression("1");
+			numberOfSlaves.setTypeEquals(BaseType.INT);
+		} catch (KernelException e) {
+			throw new InternalErrorException("Cannot set parameter:\n"
+					+ e.getMessage());
+		}
 	}
 }
@@ -64,7 +64,10 @@ import ptolemy.kernel.util.Nameable;
 import ptolemy.kernel.util.NamedObj;
 import ptolemy.kernel.util.Settable;
 import ptolemy.kernel.util.Workspace;
+import ptolemy.myactors.MaximumEntropy.FederateSettings;
 import ptolemy.myactors.MaximumEntropy.Interaction;
+import ptolemy.myactors.MaximumEntropy.LoopbackFederate;
+import ptolemy.myactors.MaximumEntropy.NioFederate;
 import ptolemy.myactors.MaximumEntropy.PtolemyFederate;
 import ptolemy.myactors.MaximumEntropy.PtolemyFederateActor;
 import ptolemy.myactors.MaximumEntropy.SlaveFederate;
@@ -96,6 +99,7 @@ public class SlaveHLADEDirector extends HLADEDirector{
 				
 		
 		rtiFederation = new SlaveFederate();
+		_initSlaveParameters();
 	}
 
 	/** Construct a director in the workspace with an empty name.
@@ -111,6 +115,7 @@ public class SlaveHLADEDirector extends HLADEDirector{
 		
 		
 		rtiFederation = new SlaveFederate();
+		_initSlaveParameters();
 	}
 
 	/** Construct a director in the given container with the given name.
@@ -130,6 +135,142 @@ public class SlaveHLADEDirector extends HLADEDirector{
 		super(container, name);
 				
 		rtiFederation = new SlaveFederate();
-		
+		_initSlaveParameters();
 	}
+
+	///////////////////////////////////////////////////////////////////
+	////                         parameters                        ////
+
+	/** The channel of the master this slave subscribes to, that is the
+	 *  canalN attribute of the FOM. This parameter must contain an
+	 *  IntToken greater than zero. The value defaults to 3.
+	 */
+	public Parameter slaveChannel;
+
+	/** The lower bound of the region this slave subscribes with when
+	 *  useDDM is true, on the channel dimension where channel N covers
+	 *  [N, N + 1). This parameter must contain an IntToken. The value
+	 *  defaults to -1, the lower bound of the slave channel.
+	 */
+	public Parameter regionLowerBound;
+
+	/** The upper bound, excluded, of the region this slave subscribes
+	 *  with when useDDM is true; a region spanning several channels, a
+	 *  sensor area for instance, receives all of them. This parameter must
+	 *  contain an IntToken. The value defaults to -1, the upper bound of the
+	 *  slave channel.
+	 */
+	public Parameter regionUpperBound;
+
+	/** The model time between two reports of the backlog of this slave
+	 *  to the master, read by the leastLoaded strategy of the
+	 *  DataSeparator. This parameter must contain a DoubleToken. The value
+	 *  defaults to 0.0, meaning that no report is sent.
+	 */
+	public Parameter loadReportInterval;
+
+	///////////////////////////////////////////////////////////////////
+	////                         protected methods                 ////
+
+	/** Add the slave channel and the region to the settings of the base
+	 *  class.
+	 *  @return The federate settings.
+	 *  @exception IllegalActionException If the slave channel is not
+	 *   greater than zero, the region is empty or the load report
+	 *   interval is negative.
+	 */
+	protected FederateSettings _createFederateSettings()
+			throws IllegalActionException {
+		FederateSettings settings = super._createFederateSettings();
+		int channel = ((IntToken) slaveChannel.getToken()).intValue();
+		if (channel < 1) {
+			throw new IllegalActionException(this,
+					"slaveChannel must be greater than zero, was " + channel);
+		}
+		settings.setSlaveChannel(channel);
+		int lower = ((IntToken) regionLowerBound.getToken()).intValue();
+		int upper = ((IntToken) regionUpperBound.getToken()).intValue();
+		try {
+			settings.setRegion(lower, upper);
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalActionException(this, ex.getMessage());
+		}
+		_loadReportInterval = ((DoubleToken) loadReportInterval.getToken())
+				.doubleValue();
+		if (_loadReportInterval < 0.0) {
+			throw new IllegalActionException(this,
+					"loadReportInterval cannot be negative, was "
+							+ _loadReportInterval);
+		}
+		_nextLoadReport = 0.0;
+		return settings;
+	}
+
+	/** Report the backlog of this slave to the master, at most once per
+	 *  loadReportInterval of model time.
+	 *  @exception RTIexception If the report cannot be sent.
+	 */
+	protected void _reportLoad() throws RTIexception {
+		if (_loadReportInterval <= 0.0) {
+			return;
+		}
+		double now = getModelTime().getDoubleValue();
+		if (now >= _nextLoadReport) {
+			rtiFederation.reportLoad();
+			_nextLoadReport = now + _loadReportInterval;
+		}
+	}
+
+	/** Return a slave federate for the given RTI backend.
+	 *  @param backend "certi", "loopback" or "nio".
+	 *  @return The current federate if it already talks to that backend,
+	 *   a new one otherwise.
+	 */
+	protected PtolemyFederate _createRTIFederation(String backend) {
+		if (backend.equals(FederateSettings.LOOPBACK_BACKEND)) {
+			return new LoopbackFederate(false);
+		}
+		if (backend.equals(FederateSettings.NIO_BACKEND)) {
+			return new NioFederate(false);
+		}
+		if (rtiFederation instanceof SlaveFederate) {
+			return rtiFederation;
+		}
+		return new SlaveFederate();
+	}
+
+	///////////////////////////////////////////////////////////////////
+	////                         private methods                   ////
+
+	private void _initSlaveParameters() {
+		try {
+			slaveChannel = new Parameter(this, "slaveChannel");
+			slaveChannel.setExpression("3");
+			slaveChannel.setTypeEquals(BaseType.INT);
+
+			regionLowerBound = new Parameter(this, "regionLowerBound");
+			regionLowerBound.setExpression("-1");
+			regionLowerBound.setTypeEquals(BaseType.INT);
+
+			regionUpperBound = new Parameter(this, "regionUpperBound");
+			regionUpperBound.setExpression("-1");
+			regionUpperBound.setTypeEquals(BaseType.INT);
+
+			loadReportInterval = new Parameter(this, "loadReportInterval");
+			loadReportInterval.setExpression("0.0");
+			loadReportInterval.setTypeEquals(BaseType.DOUBLE);
+		} catch (KernelException e) {
+			throw new InternalErrorException("Cannot set parameter:\n"
+					+ e.getMessage());
+		}
+	}
+
+	///////////////////////////////////////////////////////////////////
+	////                         private variables                 ////
+
+	/** The value of the loadReportInterval parameter. */
+	private double _loadReportInterval = 0.0;
+
+	/** The model time of the next load report. */
+	private double _nextLoadReport = 0.0;
 }